@@ -0,0 +1,108 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.benchmarks;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.Annotations;
+
+/**
+ * Deterministic synthetic fixtures for the benchmarks, shaped like the targets and data seen in
+ * large fleets so that the benchmarks do not need a database, a cluster or any network access.
+ */
+public final class Fixtures {
+
+    public static final long SEED = 0x5eed;
+
+    static final String[] TIERS = {"frontend", "backend", "database", "cache"};
+    static final String[] ENVIRONMENTS = {"production", "qa", "staging", "dev"};
+    static final String[] NAMESPACES = {"default", "payments", "inventory", "search", "auth"};
+
+    private Fixtures() {}
+
+    /**
+     * Generate targets with Kubernetes-like labels and annotations. Targets with the same index
+     * are equal across calls with the same seed.
+     */
+    public static List<Target> targets(int count, long seed) {
+        Random random = new Random(seed);
+        List<Target> targets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            targets.add(target(i, random));
+        }
+        return targets;
+    }
+
+    /** A copy of the given target, as a discovery plugin would report it again. */
+    public static Target copy(Target source) {
+        Target target = new Target();
+        target.id = source.id;
+        target.connectUrl = source.connectUrl;
+        target.alias = source.alias;
+        target.jvmId = source.jvmId;
+        target.labels = new HashMap<>(source.labels);
+        target.annotations =
+                new Annotations(
+                        new HashMap<>(source.annotations.platform()),
+                        new HashMap<>(source.annotations.cryostat()));
+        return target;
+    }
+
+    /** Build a label map with the same shape as the generated target labels. */
+    public static Map<String, String> labels(int index) {
+        Map<String, String> labels = new HashMap<>();
+        labels.put("app", "app-" + (index % 50));
+        labels.put("app.kubernetes.io/part-of", "suite-" + (index % 7));
+        labels.put("tier", TIERS[index % TIERS.length]);
+        labels.put("environment", ENVIRONMENTS[index % ENVIRONMENTS.length]);
+        labels.put("pod-template-hash", Integer.toHexString(index * 0x9e3779b1));
+        if (index % 3 == 0) {
+            labels.put("autoanalyze", "true");
+        }
+        return labels;
+    }
+
+    private static Target target(int index, Random random) {
+        String namespace = NAMESPACES[index % NAMESPACES.length];
+        String host =
+                String.format(
+                        "10.%d.%d.%d", (index >> 16) & 0xff, (index >> 8) & 0xff, index & 0xff);
+        Target target = new Target();
+        target.id = (long) index + 1;
+        target.connectUrl =
+                URI.create(String.format("service:jmx:rmi:///jndi/rmi://%s:9091/jmxrmi", host));
+        target.alias = String.format("%s-app-%d-%08x", namespace, index, random.nextInt());
+        target.jvmId = String.format("%016x%016x", random.nextLong(), random.nextLong());
+        target.labels = labels(index);
+        Map<String, String> platform = new HashMap<>();
+        platform.put("kubernetes.io/config.seen", "2024-01-01T00:00:00Z");
+        platform.put("openshift.io/scc", "restricted-v2");
+        Map<String, String> cryostat = new HashMap<>();
+        cryostat.put("REALM", "KubernetesApi");
+        cryostat.put("HOST", host);
+        cryostat.put("PORT", "9091");
+        cryostat.put("NAMESPACE", namespace);
+        cryostat.put("POD_NAME", target.alias);
+        target.annotations = new Annotations(platform, cryostat);
+        return target;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.diagnostic;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.benchmarks.Fixtures;
+
+import me.bechberger.jthreaddump.model.ThreadDump;
+import me.bechberger.jthreaddump.parser.ThreadDumpParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Aggregation of a parsed thread dump by {@link ThreadDumpAnalysis}, and parsing plus aggregation
+ * of the raw dump text as done when a stored thread dump is analyzed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThreadDumpAnalysisBenchmark {
+
+    private static final String[][] STACKS = {
+        {
+            "sun.nio.ch.EPoll.wait(java.base@21/Native Method)",
+            "sun.nio.ch.EPollSelectorImpl.doSelect(java.base@21/EPollSelectorImpl.java:121)",
+            "sun.nio.ch.SelectorImpl.select(java.base@21/SelectorImpl.java:141)",
+            "io.netty.channel.nio.NioEventLoop.run(NioEventLoop.java:562)",
+        },
+        {
+            "jdk.internal.misc.Unsafe.park(java.base@21/Native Method)",
+            "java.util.concurrent.locks.LockSupport.park(java.base@21/LockSupport.java:371)",
+            "java.util.concurrent.LinkedBlockingQueue.take("
+                    + "java.base@21/LinkedBlockingQueue.java:435)",
+            "java.util.concurrent.ThreadPoolExecutor.getTask("
+                    + "java.base@21/ThreadPoolExecutor.java:1070)",
+        },
+        {
+            "java.util.Arrays.copyOf(java.base@21/Arrays.java:3541)",
+            "java.lang.AbstractStringBuilder.ensureCapacityInternal("
+                    + "java.base@21/AbstractStringBuilder.java:242)",
+            "java.lang.StringBuilder.append(java.base@21/StringBuilder.java:179)",
+            "com.example.Handler.handle(Handler.java:88)",
+        },
+        {
+            "org.jboss.logmanager.handlers.WriterHandler.doPublish(WriterHandler.java:50)",
+            "org.jboss.logmanager.ExtHandler.publish(ExtHandler.java:88)",
+            "org.jboss.logmanager.LoggerNode.publish(LoggerNode.java:324)",
+            "com.example.Service.process(Service.java:120)",
+        },
+    };
+
+    private static final String[] STATES = {
+        "RUNNABLE", "WAITING (parking)", "TIMED_WAITING (sleeping)", "BLOCKED (on object monitor)",
+    };
+
+    @Param({"100", "1000", "5000"})
+    public int threadCount;
+
+    private String text;
+    private ThreadDump dump;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        text = generate(threadCount, new Random(Fixtures.SEED));
+        dump = ThreadDumpParser.parse(text);
+    }
+
+    @Benchmark
+    public ThreadDumpAnalysis aggregate() {
+        return new ThreadDumpAnalysis(dump);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ThreadDumpAnalysis parseAndAggregate() throws Exception {
+        return new ThreadDumpAnalysis(ThreadDumpParser.parse(text));
+    }
+
+    /** Generate jstack-style thread dump text. */
+    static String generate(int threads, Random random) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("2024-01-01 00:00:00\n");
+        sb.append("Full thread dump OpenJDK 64-Bit Server VM (21.0.2+13 mixed mode, sharing):\n\n");
+        for (int i = 0; i < threads; i++) {
+            int kind = random.nextInt(STACKS.length);
+            String state = STATES[random.nextInt(STATES.length)];
+            sb.append(
+                    String.format(
+                            "\"worker-%d\" #%d prio=5 os_prio=0 cpu=%d.00ms elapsed=%d.00s"
+                                    + " tid=0x%016x nid=0x%x %s  [0x%016x]\n",
+                            i,
+                            i + 20,
+                            random.nextInt(10_000),
+                            random.nextInt(10_000),
+                            0x7f0000000000L + i * 0x1000L,
+                            i + 100,
+                            state.startsWith("RUNNABLE") ? "runnable" : "waiting on condition",
+                            0x7e0000000000L + i * 0x1000L));
+            sb.append("   java.lang.Thread.State: ").append(state).append('\n');
+            String[] stack = STACKS[kind];
+            for (int f = 0; f < stack.length; f++) {
+                sb.append("\tat ").append(stack[f]).append('\n');
+                if (f == 1 && state.startsWith("BLOCKED")) {
+                    sb.append(
+                            String.format(
+                                    "\t- waiting to lock <0x%016x> (a java.lang.Object)\n",
+                                    0x6000000000L + random.nextInt(8) * 0x10L));
+                } else if (f == 2 && random.nextInt(4) == 0) {
+                    sb.append(
+                            String.format(
+                                    "\t- locked <0x%016x> (a java.util.concurrent.locks"
+                                            + ".ReentrantLock$NonfairSync)\n",
+                                    0x6000000000L + i * 0x10L));
+                }
+            }
+            sb.append("\tat java.lang.Thread.run(java.base@21/Thread.java:1583)\n\n");
+        }
+        return sb.toString();
+    }
+}
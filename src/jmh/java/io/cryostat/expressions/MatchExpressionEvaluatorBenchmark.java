@@ -0,0 +1,125 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.Producers;
+import io.cryostat.benchmarks.Fixtures;
+import io.cryostat.targets.Target;
+
+import org.jboss.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.projectnessie.cel.tools.Script;
+
+/**
+ * Compilation and evaluation cost of match expressions. Result caching is disabled so that every
+ * evaluation actually executes the compiled program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchExpressionEvaluatorBenchmark {
+
+    @Param({"alias", "labels", "annotations", "compound"})
+    public String expression;
+
+    @Param({"1000", "10000"})
+    public int targetCount;
+
+    private MatchExpressionEvaluator evaluator;
+    private MatchExpression matchExpression;
+    private List<Target> targets;
+    private Target target;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        evaluator = new MatchExpressionEvaluator();
+        evaluator.scriptHost = Producers.produceScriptHost();
+        evaluator.logger = Logger.getLogger(MatchExpressionEvaluator.class);
+        evaluator.results = new UncachedResults();
+        evaluator.programCacheMaxSize = 16;
+        evaluator.batchChunkSize = 256;
+        evaluator.init();
+
+        matchExpression = new MatchExpression(script(expression));
+        targets = Fixtures.targets(targetCount, Fixtures.SEED);
+        target = targets.get(targets.size() / 2);
+        // warm the program cache
+        evaluator.applies(matchExpression, target);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        evaluator.shutdown();
+    }
+
+    @Benchmark
+    public Script compile() throws Exception {
+        return evaluator.createScript(matchExpression.script);
+    }
+
+    @Benchmark
+    public boolean evaluateSingle() throws Exception {
+        return evaluator.applies(matchExpression, target);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public MatchExpressionEvaluator.BatchEvaluation evaluateBatch() throws Exception {
+        return evaluator.evaluate(matchExpression, targets);
+    }
+
+    private static String script(String kind) {
+        switch (kind) {
+            case "alias":
+                return "target.alias == 'payments-app-42-00000000'";
+            case "labels":
+                return "target.labels['tier'] == 'backend'";
+            case "annotations":
+                return "target.annotations.cryostat['NAMESPACE'] in ['payments', 'search']";
+            case "compound":
+                return "target.labels['environment'] == 'production'"
+                        + " && target.annotations.cryostat['REALM'] == 'KubernetesApi'"
+                        + " && ('autoanalyze' in target.labels"
+                        + " || target.connectUrl.contains(':9091/'))";
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+
+    /** Never returns a cached result, so each evaluation executes the program. */
+    static class UncachedResults extends MatchExpressionResultCache {
+        @Override
+        Optional<Boolean> get(String matchExpression, Target target) {
+            return Optional.empty();
+        }
+
+        @Override
+        void put(String matchExpression, Target target, boolean result) {}
+    }
+}
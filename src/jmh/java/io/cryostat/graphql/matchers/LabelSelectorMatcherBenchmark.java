@@ -0,0 +1,93 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql.matchers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.benchmarks.Fixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Parsing label selector clauses and testing them against target label sets. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LabelSelectorMatcherBenchmark {
+
+    @Param({"equality", "inequality", "in", "notin", "exists", "notexists"})
+    public String selector;
+
+    private String clause;
+    private LabelSelectorMatcher matcher;
+    private List<Map<String, String>> labelSets;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        clause = clause(selector);
+        matcher = LabelSelectorMatcher.parse(clause);
+        labelSets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            labelSets.add(Fixtures.labels(i));
+        }
+    }
+
+    @Benchmark
+    public LabelSelectorMatcher parse() {
+        return LabelSelectorMatcher.parse(clause);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int test() {
+        int matches = 0;
+        for (Map<String, String> labels : labelSets) {
+            if (matcher.test(labels)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String clause(String kind) {
+        switch (kind) {
+            case "equality":
+                return "tier = backend";
+            case "inequality":
+                return "environment != production";
+            case "in":
+                return "app in (app-1, app-2, app-3, app-5, app-8, app-13, app-21, app-34)";
+            case "notin":
+                return "tier notin (frontend, cache)";
+            case "exists":
+                return "autoanalyze";
+            case "notexists":
+                return "!autoanalyze";
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+}
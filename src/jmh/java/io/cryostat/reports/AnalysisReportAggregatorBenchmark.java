@@ -0,0 +1,124 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.benchmarks.Fixtures;
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.reports.AnalysisReportAggregator.Entry;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Rendering an aggregated automated analysis report in Prometheus exposition format. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalysisReportAggregatorBenchmark {
+
+    private static final String[] RULE_IDS = {
+        "Allocations.class",
+        "Allocations.thread",
+        "ClassLeak",
+        "ClassLoading",
+        "CodeCache",
+        "CompareCpu",
+        "ContextSwitch",
+        "DMSIncident",
+        "DumpReason",
+        "Errors",
+        "Exceptions",
+        "Fatal Errors",
+        "GcFreedRatio",
+        "GcLocker",
+        "GcPauseRatio",
+        "GcStall",
+        "HeapContent",
+        "HeapDump",
+        "HighGc",
+        "HighJvmCpu",
+        "IncreasingLiveSet",
+        "IncreasingMetaSpaceLiveSet",
+        "JavaBlocking",
+        "LongGcPause",
+        "ManagementAgent",
+        "MetaspaceOom",
+        "Options",
+        "PID1Rule",
+        "ProcessStarted",
+        "StringDeduplication",
+        "SystemGc",
+        "ThreadCount",
+    };
+
+    @Param({"8", "32"})
+    public int ruleCount;
+
+    private AnalysisReportAggregator aggregator;
+    private Entry entry;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        aggregator = new AnalysisReportAggregator();
+
+        Random random = new Random(Fixtures.SEED);
+        ObjectMapper mapper =
+                new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        Map<String, Map<String, Object>> json = new LinkedHashMap<>();
+        for (int i = 0; i < ruleCount; i++) {
+            json.put(
+                    RULE_IDS[i % RULE_IDS.length],
+                    Map.of("score", Math.floor(random.nextDouble() * 10000) / 100));
+        }
+        Map<String, AnalysisResult> report =
+                mapper.readValue(
+                        mapper.writeValueAsString(json),
+                        new TypeReference<Map<String, AnalysisResult>>() {});
+
+        var target = Fixtures.targets(1, Fixtures.SEED).get(0);
+        List<Pair<String, String>> ownerChain =
+                List.of(
+                        Pair.of("realm", "KubernetesApi"),
+                        Pair.of("namespace", "payments"),
+                        Pair.of("deployment", "payments-app"),
+                        Pair.of("replicaset", "payments-app-5d8f7c9b6"),
+                        Pair.of("pod", target.alias),
+                        Pair.of("jvmId", target.jvmId),
+                        Pair.of("targetId", String.valueOf(target.id)));
+        entry = new Entry(System.currentTimeMillis() / 1000, ownerChain, report);
+    }
+
+    @Benchmark
+    public String stringify() {
+        return aggregator.stringify(entry);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.targets;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.benchmarks.Fixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Diffing a discovery plugin's previous and current target sets with {@link Target.Compare}. The
+ * current set has a few percent of the previous targets removed, replaced or updated in place, as
+ * a typical periodic discovery refresh would. The largest parameter reflects a big cluster's worth
+ * of targets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TargetCompareBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int targetCount;
+
+    @Param({"0.05"})
+    public double churn;
+
+    private List<Target> previous;
+    private List<Target> current;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        previous = Fixtures.targets(targetCount, Fixtures.SEED);
+        List<Target> replacements = Fixtures.targets(targetCount, Fixtures.SEED + 1);
+        int step = Math.max(1, (int) Math.round(1 / churn));
+        current = new ArrayList<>(targetCount);
+        for (int i = 0; i < targetCount; i++) {
+            Target target = Fixtures.copy(previous.get(i));
+            switch (i % (3 * step)) {
+                case 0:
+                    // removed
+                    continue;
+                case 1:
+                    // updated in place, same connection URL
+                    target.labels.put("tier", "updated");
+                    break;
+                case 2:
+                    // added, a new target not seen before
+                    Target added = replacements.get(i);
+                    added.connectUrl = URI.create(added.connectUrl + "?added");
+                    current.add(added);
+                    break;
+                default:
+                    break;
+            }
+            current.add(target);
+        }
+    }
+
+    @Benchmark
+    public void compare(Blackhole bh) {
+        Target.Compare compare = Target.compare(previous).to(current);
+        Collection<Target> added = compare.added();
+        Collection<Target> removed = compare.removed();
+        Collection<Target> updated = compare.updated(false);
+        bh.consume(added);
+        bh.consume(removed);
+        bh.consume(updated);
+    }
+
+    @Benchmark
+    public void compareWithFieldChanges(Blackhole bh) {
+        Target.Compare compare = Target.compare(previous).to(current);
+        bh.consume(compare.added());
+        bh.consume(compare.removed());
+        for (Target.Update update : compare.updates()) {
+            bh.consume(update.changed());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.cryostat.benchmarks.Fixtures;
+import io.cryostat.targets.Target;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.jboss.logging.Logger;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Serializing and fanning out a notification to connected WebSocket clients. The sessions are
+ * stubs which discard the sent text and complete immediately, so this measures the server's own
+ * per-broadcast cost of serializing, queueing and framing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessagingServerBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int sessionCount;
+
+    @Param({"small", "discovery"})
+    public String payload;
+
+    private MessagingServer server;
+    private Notification notification;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new MessagingServer();
+        server.mapper = new ObjectMapper();
+        server.logger = Logger.getLogger(MessagingServer.class);
+        server.meterRegistry = new SimpleMeterRegistry();
+        server.maxQueueSize = 1024;
+        server.maxBatchSize = 64;
+        // send immediately, so that each broadcast is fully delivered to the stub sessions
+        server.coalesceWindow = Duration.ZERO;
+        server.init();
+
+        RemoteEndpoint.Async remote =
+                Mockito.mock(RemoteEndpoint.Async.class, Mockito.withSettings().stubOnly());
+        SendResult ok = new SendResult();
+        Mockito.doAnswer(
+                        invocation -> {
+                            invocation.<SendHandler>getArgument(1).onResult(ok);
+                            return null;
+                        })
+                .when(remote)
+                .sendText(Mockito.anyString(), Mockito.any(SendHandler.class));
+        for (int i = 0; i < sessionCount; i++) {
+            Session session = Mockito.mock(Session.class, Mockito.withSettings().stubOnly());
+            Mockito.when(session.getId()).thenReturn("session-" + i);
+            Mockito.when(session.getAsyncRemote()).thenReturn(remote);
+            server.onOpen(session);
+        }
+
+        notification = new Notification("Benchmark", message(payload));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public void broadcast() {
+        server.broadcast(notification);
+    }
+
+    private static Object message(String kind) {
+        switch (kind) {
+            case "small":
+                return Map.of("jvmId", "abc123", "recording", "onstart", "state", "STOPPED");
+            case "discovery":
+                Target target = Fixtures.targets(1, Fixtures.SEED).get(0);
+                Map<String, Object> serviceRef = new HashMap<>();
+                serviceRef.put("id", target.id);
+                serviceRef.put("jvmId", target.jvmId);
+                serviceRef.put("connectUrl", target.connectUrl.toString());
+                serviceRef.put("alias", target.alias);
+                serviceRef.put("labels", target.labels);
+                serviceRef.put("annotations", target.annotations);
+                List<Map<String, Object>> recordings = new ArrayList<>();
+                for (int i = 0; i < 10; i++) {
+                    recordings.add(
+                            Map.of(
+                                    "id", i,
+                                    "name", "recording-" + i,
+                                    "state", "RUNNING",
+                                    "labels", Fixtures.labels(i)));
+                }
+                serviceRef.put("activeRecordings", recordings);
+                return Map.of("event", Map.of("kind", "FOUND", "serviceRef", serviceRef));
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+}
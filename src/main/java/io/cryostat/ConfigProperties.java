@@ -56,6 +56,21 @@ public class ConfigProperties {
             "cryostat.discovery.plugins.ping-period";
     public static final String DISCOVERY_PLUGINS_MAX_BACKOFF_MULTIPLIER =
             "cryostat.discovery.plugins.max-backoff-multiplier";
+    public static final String DISCOVERY_PLUGINS_PING_JITTER =
+            "cryostat.discovery.plugins.ping.jitter";
+    public static final String DISCOVERY_PLUGINS_PING_SWEEP_PERIOD =
+            "cryostat.discovery.plugins.ping.sweep-period";
+    public static final String DISCOVERY_PLUGINS_PING_CONCURRENCY_INITIAL =
+            "cryostat.discovery.plugins.ping.concurrency.initial";
+    public static final String DISCOVERY_PLUGINS_PING_CONCURRENCY_MIN =
+            "cryostat.discovery.plugins.ping.concurrency.min";
+    public static final String DISCOVERY_PLUGINS_PING_CONCURRENCY_MAX =
+            "cryostat.discovery.plugins.ping.concurrency.max";
+    public static final String DISCOVERY_PLUGINS_PING_LATENCY_TARGET =
+            "cryostat.discovery.plugins.ping.latency-target";
+    public static final String DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD =
+            "cryostat.discovery.plugins.ping.startup-grace-period";
+    // deprecated, superseded by the adaptive ping properties above
     public static final String DISCOVERY_PLUGINS_PING_WORKER_POOL_SIZE =
             "cryostat.discovery.plugins.ping.worker-pool-size";
     public static final String DISCOVERY_PLUGINS_PING_DELAY_MS =
@@ -70,6 +85,17 @@ public class ConfigProperties {
     public static final String CONNECTIONS_FAILED_TIMEOUT = "cryostat.connections.failed-timeout";
     public static final String CONNECTIONS_UPLOAD_TIMEOUT = "cryostat.connections.upload-timeout";
 
+    public static final String TARGET_UPDATES_PERIOD = "cryostat.target-updates.period";
+    public static final String TARGET_UPDATES_JITTER = "cryostat.target-updates.jitter";
+    public static final String TARGET_UPDATES_SWEEP_PERIOD = "cryostat.target-updates.sweep-period";
+    public static final String TARGET_UPDATES_CONCURRENCY = "cryostat.target-updates.concurrency";
+    public static final String TARGET_UPDATES_BATCH_SIZE = "cryostat.target-updates.batch-size";
+    public static final String TARGET_UPDATES_PUSH_GRACE = "cryostat.target-updates.push-grace";
+
+    public static final String WEBSOCKET_QUEUE_MAX_SIZE = "cryostat.websocket.queue.max-size";
+    public static final String WEBSOCKET_BATCH_MAX_SIZE = "cryostat.websocket.batch.max-size";
+    public static final String WEBSOCKET_COALESCE_WINDOW = "cryostat.websocket.coalesce-window";
+
     public static final String CONNECTIONS_HEALTH_TIMEOUT =
             "cryostat.services.health-check.timeout";
     public static final String REPORTS_FILTER = "cryostat.services.reports.filter";
@@ -84,6 +110,8 @@ public class ConfigProperties {
             "cryostat.services.reports.storage-cache.name";
     public static final String ARCHIVED_REPORTS_EXPIRY_DURATION =
             "cryostat.services.reports.storage-cache.expiry-duration";
+    public static final String ARCHIVED_REPORTS_STORAGE_CACHE_INDEX_TTL =
+            "cryostat.services.reports.storage-cache.index-ttl";
     public static final String HEAP_DUMP_REPORTS_MEMORY_CACHE_ENABLED =
             "cryostat.services.heap-dump.reports.memory-cache.enabled";
     public static final String HEAP_DUMP_REPORTS_STORAGE_CACHE_ENABLED =
@@ -99,6 +127,15 @@ public class ConfigProperties {
     public static final String JFR_ANALYTICS_CACHE_MAX_WEIGHT =
             "cryostat.jfr-analytics.cache.max-weight";
     public static final String JFR_ANALYTICS_CACHE_TTL = "cryostat.jfr-analytics.cache.ttl";
+    public static final String JFR_ANALYTICS_CACHE_DIR = "cryostat.jfr-analytics.cache.dir";
+    public static final String JFR_ANALYTICS_SCHEMA_CACHE_MAX_SIZE =
+            "cryostat.jfr-analytics.schema-cache.max-size";
+    public static final String JFR_ANALYTICS_PLAN_CACHE_MAX_SIZE =
+            "cryostat.jfr-analytics.plan-cache.max-size";
+    public static final String JFR_ANALYTICS_PARALLEL_ENABLED =
+            "cryostat.jfr-analytics.parallel.enabled";
+    public static final String JFR_ANALYTICS_PARALLEL_MIN_SIZE =
+            "cryostat.jfr-analytics.parallel.min-size";
 
     public static final String GRAFANA_DASHBOARD_URL = "grafana-dashboard.url";
     public static final String GRAFANA_DASHBOARD_EXT_URL = "grafana-dashboard-ext.url";
@@ -111,6 +148,35 @@ public class ConfigProperties {
     public static final String STORAGE_PRESIGNED_DOWNLOADS_ENABLED =
             "storage.presigned-downloads.enabled";
 
+    public static final String ARCHIVES_INDEX_RECONCILE_ENABLED =
+            "cryostat.archives.index.reconcile.enabled";
+    public static final String ARCHIVES_INDEX_RECONCILE_PERIOD =
+            "cryostat.archives.index.reconcile.period";
+    public static final String ARCHIVES_INDEX_RECONCILE_DELAY =
+            "cryostat.archives.index.reconcile.delay";
+
+    public static final String ARCHIVES_UPLOAD_PART_SIZE = "cryostat.archives.upload.part-size";
+    public static final String ARCHIVES_UPLOAD_BUFFERS = "cryostat.archives.upload.buffers";
+    public static final String ARCHIVES_UPLOAD_BUFFER_TIMEOUT =
+            "cryostat.archives.upload.buffer-timeout";
+    public static final String ARCHIVES_UPLOAD_CONCURRENT_PARTS =
+            "cryostat.archives.upload.concurrent-parts";
+    public static final String ARCHIVES_UPLOAD_PART_RETRIES =
+            "cryostat.archives.upload.part-retries";
+    public static final String ARCHIVES_FAN_OUT_ANALYTICS_ENABLED =
+            "cryostat.archives.fan-out.analytics.enabled";
+
+    public static final String EXPRESSIONS_RESULT_CACHE_MAX_SIZE =
+            "cryostat.expressions.result-cache.max-size";
+    public static final String EXPRESSIONS_RESULT_CACHE_LEGACY_MAX_SIZE =
+            "quarkus.cache.caffeine.matchexpressions.maximum-size";
+    public static final String EXPRESSIONS_PROGRAM_CACHE_MAX_SIZE =
+            "cryostat.expressions.program-cache.max-size";
+    public static final String EXPRESSIONS_ACTIVATION_CACHE_MAX_SIZE =
+            "cryostat.expressions.activation-cache.max-size";
+    public static final String EXPRESSIONS_BATCH_CHUNK_SIZE =
+            "cryostat.expressions.batch.chunk-size";
+
     public static final String STORAGE_METADATA_HEAP_DUMPS_STORAGE_MODE =
             "storage.metadata.heap-dumps.storage-mode";
     public static final String STORAGE_METADATA_THREAD_DUMPS_STORAGE_MODE =
@@ -15,22 +15,32 @@
  */
 package io.cryostat;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 import org.apache.commons.io.input.ProxyInputStream;
 
 /**
  * An InputStream which informs a provided {@link java.util.function.Consumer} about the number of
- * bytes read each time a chunk is read from this stream.
+ * bytes read each time a chunk is read from this stream, and optionally runs a callback the first
+ * time the stream is closed.
  */
 public class ProgressInputStream extends ProxyInputStream {
 
     private final Consumer<Integer> onUpdate;
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     public ProgressInputStream(InputStream delegate, Consumer<Integer> onUpdate) {
+        this(delegate, onUpdate, () -> {});
+    }
+
+    public ProgressInputStream(InputStream delegate, Consumer<Integer> onUpdate, Runnable onClose) {
         super(delegate);
         this.onUpdate = onUpdate;
+        this.onClose = onClose;
     }
 
     @Override
@@ -40,4 +50,15 @@ public class ProgressInputStream extends ProxyInputStream {
         }
         onUpdate.accept(n);
     }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (closed.compareAndSet(false, true)) {
+                onClose.run();
+            }
+        }
+    }
 }
@@ -16,25 +16,37 @@
 package io.cryostat.credentials;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import io.cryostat.expressions.MatchExpression;
 import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.targets.Target;
 import io.cryostat.targets.Target.TargetDiscovery;
 
+import io.quarkus.hibernate.orm.panache.common.ProjectedFieldName;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.vertx.ConsumeEvent;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import org.apache.commons.collections4.BidiMap;
-import org.apache.commons.collections4.bidimap.DualHashBidiMap;
 import org.jboss.logging.Logger;
 import org.projectnessie.cel.tools.ScriptException;
 
 /**
  * Utility for mapping and caching {@link io.cryostat.targets.Target} to associated {@link
  * io.cryostat.credentials.Credential}.
+ *
+ * <p>Resolution only loads the ID and match expression of each Credential, which are not
+ * encrypted, and evaluates the match expressions in ID order using the {@link
+ * MatchExpressionEvaluator}'s compiled programs. Only the winning Credential is loaded in full, and
+ * so only its username and password are decrypted. Both the list of match expressions and the
+ * resolved Credential ID for each target ID, including the absence of any match, are cached, and
+ * invalidated by Credential ID and target ID as Credentials and targets change.
  */
 @ApplicationScoped
 public class CredentialsFinder {
@@ -42,16 +54,30 @@ public class CredentialsFinder {
     @Inject MatchExpressionEvaluator expressionEvaluator;
     @Inject Logger logger;
 
-    private final BidiMap<Target, Long> cache = new DualHashBidiMap<>();
+    // target ID -> ID of the first matching credential, or empty if none matched
+    private final ConcurrentMap<Long, Optional<Long>> resolved = new ConcurrentHashMap<>();
+    // incremented on every invalidation, so that a resolution which raced with an invalidation
+    // is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private volatile List<CredentialMatcher> matchers;
+
+    @ConsumeEvent(Credential.CREDENTIALS_STORED)
+    void onCredentialsStored(Credential credential) {
+        // credential IDs increase monotonically and the first match by ID wins, so a new
+        // credential can only change the result for targets which had no match at all
+        invalidate(Optional::isEmpty);
+    }
 
     @ConsumeEvent(Credential.CREDENTIALS_UPDATED)
     void onCredentialsUpdated(Credential credential) {
-        cache.removeValue(credential.id);
+        // an updated match expression may stop matching, or may now match targets which
+        // previously resolved to a later credential or to none
+        invalidate(r -> r.isEmpty() || r.get() >= credential.id);
     }
 
     @ConsumeEvent(Credential.CREDENTIALS_DELETED)
     void onCredentialsDeleted(Credential credential) {
-        cache.removeValue(credential.id);
+        invalidate(r -> r.isPresent() && r.get().equals(credential.id));
     }
 
     @ConsumeEvent(Target.TARGET_JVM_DISCOVERY)
@@ -60,7 +86,10 @@ public class CredentialsFinder {
             case MODIFIED:
             // fall-through
             case LOST:
-                cache.remove(event.serviceRef());
+                if (event.serviceRef().id != null) {
+                    generation.incrementAndGet();
+                    resolved.remove(event.serviceRef().id);
+                }
                 break;
             default:
                 // no-op
@@ -69,17 +98,12 @@ public class CredentialsFinder {
     }
 
     public Optional<Credential> getCredentialsForTarget(Target target) {
-        return Optional.ofNullable(
-                        cache.computeIfAbsent(
-                                target,
-                                t ->
-                                        QuarkusTransaction.joiningExisting()
-                                                .call(() -> Credential.<Credential>streamAll())
-                                                .filter(c -> applies(t, c.matchExpression))
-                                                .map(c -> c.id)
-                                                .findFirst()
-                                                .orElse(null)))
-                .flatMap(i -> Optional.ofNullable(Credential.findById(i)));
+        Objects.requireNonNull(target);
+        return resolve(target)
+                .flatMap(
+                        id ->
+                                QuarkusTransaction.joiningExisting()
+                                        .call(() -> Credential.<Credential>findByIdOptional(id)));
     }
 
     public Optional<Credential> getCredentialsForConnectUrl(URI connectUrl) {
@@ -89,6 +113,60 @@ public class CredentialsFinder {
                 .flatMap(this::getCredentialsForTarget);
     }
 
+    private Optional<Long> resolve(Target target) {
+        Long targetId = target.id;
+        if (targetId != null) {
+            Optional<Long> cached = resolved.get(targetId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long gen = generation.get();
+        List<CredentialMatcher> candidates = matchers(gen);
+        Optional<Long> result = Optional.empty();
+        for (CredentialMatcher candidate : candidates) {
+            if (applies(target, candidate.matchExpression())) {
+                result = Optional.of(candidate.id());
+                break;
+            }
+        }
+        if (targetId != null && generation.get() == gen) {
+            resolved.putIfAbsent(targetId, result);
+            if (generation.get() != gen) {
+                // raced with an invalidation which may have missed this entry
+                resolved.remove(targetId, result);
+            }
+        }
+        return result;
+    }
+
+    private List<CredentialMatcher> matchers(long gen) {
+        List<CredentialMatcher> current = matchers;
+        if (current != null) {
+            return current;
+        }
+        current =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () ->
+                                        Credential.find("order by id")
+                                                .project(CredentialMatcher.class)
+                                                .list());
+        if (generation.get() == gen) {
+            matchers = current;
+            if (generation.get() != gen) {
+                matchers = null;
+            }
+        }
+        return current;
+    }
+
+    private void invalidate(Predicate<Optional<Long>> affected) {
+        generation.incrementAndGet();
+        matchers = null;
+        resolved.values().removeIf(affected);
+    }
+
     private boolean applies(Target t, MatchExpression m) {
         try {
             return expressionEvaluator.applies(m, t);
@@ -97,4 +175,16 @@ public class CredentialsFinder {
             return false;
         }
     }
+
+    /** The unencrypted columns of a {@link Credential} needed to test it against targets. */
+    public record CredentialMatcher(
+            Long id,
+            @ProjectedFieldName("matchExpression.id") Long matchExpressionId,
+            @ProjectedFieldName("matchExpression.script") String script) {
+        MatchExpression matchExpression() {
+            MatchExpression matchExpression = new MatchExpression(script);
+            matchExpression.id = matchExpressionId;
+            return matchExpression;
+        }
+    }
 }
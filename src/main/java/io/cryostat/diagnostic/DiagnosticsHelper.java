@@ -22,12 +22,20 @@ import java.nio.file.Files;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.Producers;
@@ -41,6 +49,7 @@ import io.cryostat.targets.Target;
 import io.cryostat.targets.TargetConnectionManager;
 import io.cryostat.ws.MessagingServer;
 import io.cryostat.ws.Notification;
+import io.cryostat.ws.notifications.JvmScopedPayload;
 
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.StartupEvent;
@@ -49,6 +58,7 @@ import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.ext.web.handler.HttpException;
 import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Instance;
@@ -98,6 +108,8 @@ public class DiagnosticsHelper {
     private static final String DIAGNOSTIC_BEAN_NAME = "com.sun.management:type=DiagnosticCommand";
     private static final String HOTSPOT_DIAGNOSTIC_BEAN_NAME =
             "com.sun.management:type=HotSpotDiagnostic";
+    // bounds the S3 connections taken by the per-JVM listings of a single batch
+    private static final int MAX_CONCURRENT_LISTINGS = 8;
 
     @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_THREAD_DUMPS)
     String threadDumpBucket;
@@ -130,6 +142,13 @@ public class DiagnosticsHelper {
     @Inject TargetConnectionManager targetConnectionManager;
     @Inject StorageBuckets buckets;
 
+    private final ExecutorService listingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    void shutdown() {
+        listingExecutor.shutdownNow();
+    }
+
     void onStart(@Observes StartupEvent evt) {
         log.tracev("Creating heap dump bucket: {0}", heapDumpBucket);
         buckets.createIfNecessary(heapDumpBucket);
@@ -263,6 +282,26 @@ public class DiagnosticsHelper {
                 .toList();
     }
 
+    /**
+     * List the heap dumps of several JVMs, see {@link #listObjects(String, Collection)}.
+     *
+     * @return the heap dumps of each JVM by JVM ID. JVMs without any heap dumps are absent
+     */
+    public Map<String, List<HeapDump>> getHeapDumps(Collection<String> jvmIds) {
+        return listObjects(heapDumpBucket, jvmIds).stream()
+                .map(
+                        item -> {
+                            try {
+                                return convertHeapDump(item);
+                            } catch (Exception e) {
+                                log.error(e);
+                                return null;
+                            }
+                        })
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(HeapDump::jvmId));
+    }
+
     public ThreadDump dumpThreads(Target target, String format, String requestId) {
         if (!(format.equals(DUMP_THREADS) || format.equals(DUMP_THREADS_TO_FIlE))) {
             throw new IllegalArgumentException();
@@ -359,6 +398,26 @@ public class DiagnosticsHelper {
                 .toList();
     }
 
+    /**
+     * List the thread dumps of several JVMs, see {@link #listObjects(String, Collection)}.
+     *
+     * @return the thread dumps of each JVM by JVM ID. JVMs without any thread dumps are absent
+     */
+    public Map<String, List<ThreadDump>> getThreadDumps(Collection<String> jvmIds) {
+        return listObjects(threadDumpBucket, jvmIds).stream()
+                .map(
+                        item -> {
+                            try {
+                                return convertThreadDump(item);
+                            } catch (Exception e) {
+                                log.error(e);
+                                return null;
+                            }
+                        })
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(ThreadDump::jvmId));
+    }
+
     private HeapDump convertHeapDump(S3Object object) throws Exception {
         String jvmId = object.key().split("/")[0];
         String uuid = object.key().split("/")[1];
@@ -587,6 +646,81 @@ public class DiagnosticsHelper {
         return storage.listObjectsV2(builder.build()).contents();
     }
 
+    /**
+     * List the objects belonging to several JVMs. Each JVM's prefix is listed separately, a few at
+     * a time in parallel, so that the cost scales with the JVMs requested rather than with the
+     * size of the bucket. If most of the known JVMs are requested then the whole bucket is listed
+     * once instead, which takes fewer requests.
+     */
+    private List<S3Object> listObjects(String bucket, Collection<String> jvmIds) {
+        Set<String> wanted =
+                jvmIds.stream().filter(StringUtils::isNotBlank).collect(Collectors.toSet());
+        if (wanted.isEmpty()) {
+            return List.of();
+        }
+        if (wanted.size() > 1 && wanted.size() * 2 > knownJvmCount()) {
+            var objects = new ArrayList<S3Object>();
+            listPrefix(bucket, null)
+                    .forEach(
+                            o -> {
+                                int idx = o.key().indexOf('/');
+                                if (idx > 0 && wanted.contains(o.key().substring(0, idx))) {
+                                    objects.add(o);
+                                }
+                            });
+            return objects;
+        }
+        if (wanted.size() == 1) {
+            return listPrefix(bucket, wanted.iterator().next());
+        }
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_LISTINGS);
+        List<Future<List<S3Object>>> listings = new ArrayList<>(wanted.size());
+        for (String jvmId : wanted) {
+            listings.add(
+                    listingExecutor.submit(
+                            () -> {
+                                permits.acquire();
+                                try {
+                                    return listPrefix(bucket, jvmId);
+                                } finally {
+                                    permits.release();
+                                }
+                            }));
+        }
+        var objects = new ArrayList<S3Object>();
+        try {
+            for (Future<List<S3Object>> listing : listings) {
+                objects.addAll(listing.get());
+            }
+        } catch (InterruptedException e) {
+            listings.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            listings.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return objects;
+    }
+
+    /** List the objects under the given JVM's prefix, or the whole bucket if it is null. */
+    private List<S3Object> listPrefix(String bucket, String jvmId) {
+        var builder = ListObjectsV2Request.builder().bucket(bucket);
+        if (jvmId != null) {
+            builder = builder.prefix(jvmId + "/");
+        }
+        var objects = new ArrayList<S3Object>();
+        storage.listObjectsV2Paginator(builder.build()).contents().forEach(objects::add);
+        return objects;
+    }
+
+    private long knownJvmCount() {
+        return QuarkusTransaction.joiningExisting().call(() -> Target.count("jvmId is not null"));
+    }
+
     public Optional<Metadata> getThreadDumpMetadata(String storageKey) {
         return getObjectMetadata(storageKey, threadDumpBucket);
     }
@@ -826,7 +960,8 @@ public class DiagnosticsHelper {
             Objects.requireNonNull(payload);
         }
 
-        public record Payload(String jvmId, ThreadDump threadDump, String jobId) {
+        public record Payload(String jvmId, ThreadDump threadDump, String jobId)
+                implements JvmScopedPayload {
             public Payload {
                 Objects.requireNonNull(jvmId);
                 Objects.requireNonNull(threadDump);
@@ -844,7 +979,7 @@ public class DiagnosticsHelper {
             Objects.requireNonNull(payload);
         }
 
-        public record Payload(String jvmId, HeapDump heapDump) {
+        public record Payload(String jvmId, HeapDump heapDump) implements JvmScopedPayload {
             public Payload {
                 Objects.requireNonNull(jvmId);
                 Objects.requireNonNull(heapDump);
@@ -0,0 +1,124 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit which adapts to observed latency and failures by additive increase,
+ * multiplicative decrease (AIMD). Each task which completes successfully within the latency target
+ * raises the limit by {@code 1/limit}, so the limit grows by roughly one per limit's worth of
+ * successful tasks. A task which fails or exceeds the latency target halves the limit. Tasks which
+ * were already in flight when the limit was last decreased do not decrease it again, so that a
+ * burst of failures caused by the same condition only backs off once.
+ */
+final class AimdLimiter {
+
+    private final int min;
+    private final int max;
+    private final long latencyTargetNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    AimdLimiter(int initial, int min, int max, Duration latencyTarget) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid concurrency bounds [%d, %d]", min, max));
+        }
+        this.min = min;
+        this.max = max;
+        this.limit = Math.max(min, Math.min(max, initial));
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.lastDecrease = System.nanoTime();
+    }
+
+    /**
+     * Wait until there is capacity for another task.
+     *
+     * @return the task's start time, to be passed to {@link #release(long, boolean)} or {@link
+     *     #cancel()}
+     */
+    long acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a task's capacity and adjust the limit by its outcome.
+     *
+     * @param start the start time returned by {@link #acquire()}
+     * @param success whether the task succeeded
+     */
+    void release(long start, boolean success) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            inFlight--;
+            if (success && now - start <= latencyTargetNanos) {
+                limit = Math.min(max, limit + 1 / limit);
+            } else if (start - lastDecrease >= 0) {
+                limit = Math.max(min, limit / 2);
+                lastDecrease = now;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Release a task's capacity without adjusting the limit, ie. if it did no remote work. */
+    void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -20,7 +20,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +30,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -52,14 +55,21 @@ import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.vertx.ConsumeEvent;
+import io.smallrye.mutiny.Uni;
 import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.smallrye.mutiny.subscription.Cancellable;
 import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import io.vertx.mutiny.core.net.SocketAddress;
+import io.vertx.mutiny.core.parsetools.JsonParser;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
 import io.vertx.mutiny.ext.web.client.WebClient;
 import io.vertx.mutiny.ext.web.codec.BodyCodec;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.transaction.Transactional.TxType;
@@ -106,6 +116,11 @@ class PodmanDiscovery extends ContainerDiscovery {
         return "http://d/v3.0.0/libpod/containers/%s/json";
     }
 
+    @Override
+    protected String getEventsURL() {
+        return "http://d/v3.0.0/libpod/events";
+    }
+
     @Override
     protected boolean enabled() {
         return enabled;
@@ -148,6 +163,11 @@ class DockerDiscovery extends ContainerDiscovery {
         return "http://d/v1.42/containers/%s/json";
     }
 
+    @Override
+    protected String getEventsURL() {
+        return "http://d/v1.42/events";
+    }
+
     @Override
     protected boolean enabled() {
         return enabled;
@@ -165,6 +185,13 @@ class DockerDiscovery extends ContainerDiscovery {
     }
 }
 
+/**
+ * Common base for container engine discovery. Containers labelled for discovery are tracked by
+ * subscribing to the engine's events stream, so that container start and die events are applied
+ * as they happen. A full listing of the engine's containers is also compared against the
+ * persisted targets whenever the events stream is (re)established, and periodically after that as
+ * a safety net in case any events are missed.
+ */
 public abstract class ContainerDiscovery {
 
     public static final String DISCOVERY_LABEL = "io.cryostat.discovery";
@@ -173,18 +200,28 @@ public abstract class ContainerDiscovery {
     public static final String JMX_PORT_LABEL = "io.cryostat.jmxPort";
 
     private static final String JOB_DATA_KEY_REALM = "realm";
-    private static final String JOB_DATA_KEY_CONTAINERS_QUERY_URL = "containers-query-url";
-    private static final String JOB_DATA_KEY_CONTAINER_QUERY_URL = "container-query-url";
-    private static final String JOB_DATA_KEY_SOCKET_ADDRESS = "socket-address";
-    private static final String JOB_DATA_KEY_NOTIFICATION_ADDRESS = "notification-address";
 
     @Inject FileSystem fs;
     @Inject Scheduler scheduler;
+    @Inject WebClient webClient;
+    @Inject JFRConnectionToolkit connectionToolkit;
+    @Inject ObjectMapper mapper;
+    @Inject EventBus bus;
+    @Inject URIUtil uriUtil;
     @Inject Logger logger;
 
     @ConfigProperty(name = ConfigProperties.CONTAINERS_POLL_PERIOD)
     Duration pollPeriod;
 
+    @ConfigProperty(name = ConfigProperties.CONTAINERS_REQUEST_TIMEOUT)
+    Duration requestTimeout;
+
+    // container ID -> connect URL of the discovered containers, so that die events, which only
+    // identify the container, can be mapped back to targets
+    private final Map<String, URI> containers = new ConcurrentHashMap<>();
+
+    private volatile Cancellable eventStream;
+
     JobKey jobKey() {
         return new JobKey("query-containers", String.format("container-%s-discovery", getRealm()));
     }
@@ -202,12 +239,10 @@ public abstract class ContainerDiscovery {
         }
 
         logger.debugv("Starting {0} client", getRealm());
+        subscribeEvents();
+
         var jobData = new JobDataMap();
         jobData.put(JOB_DATA_KEY_REALM, getRealm());
-        jobData.put(JOB_DATA_KEY_CONTAINERS_QUERY_URL, getContainersQueryURL());
-        jobData.put(JOB_DATA_KEY_CONTAINER_QUERY_URL, getContainerQueryURL());
-        jobData.put(JOB_DATA_KEY_SOCKET_ADDRESS, getSocket());
-        jobData.put(JOB_DATA_KEY_NOTIFICATION_ADDRESS, notificationAddress());
         JobDetail jobDetail =
                 JobBuilder.newJob(ContainersQueryJob.class)
                         .withIdentity(jobKey())
@@ -216,7 +251,8 @@ public abstract class ContainerDiscovery {
         var trigger =
                 TriggerBuilder.newTrigger()
                         .withIdentity(jobDetail.getKey().getName(), jobDetail.getKey().getGroup())
-                        .startNow()
+                        // the events stream performs the initial query when it connects
+                        .startAt(Date.from(Instant.now().plus(pollPeriod)))
                         .withSchedule(
                                 SimpleScheduleBuilder.simpleSchedule()
                                         .repeatForever()
@@ -233,6 +269,11 @@ public abstract class ContainerDiscovery {
             return;
         }
         logger.debugv("Shutting down {0} client", getRealm());
+        Cancellable stream = eventStream;
+        if (stream != null) {
+            stream.cancel();
+            eventStream = null;
+        }
         try {
             scheduler.deleteJob(jobKey());
         } catch (SchedulerException se) {
@@ -257,6 +298,11 @@ public abstract class ContainerDiscovery {
         DiscoveryNode realm = DiscoveryNode.getRealm(getRealm()).orElseThrow();
 
         if (evtKind == EventKind.FOUND) {
+            // the same container may be reported by both an event and a full query
+            if (Target.find("connectUrl", target.connectUrl).count() > 0) {
+                logger.debugv("{0} target {1} already discovered", getRealm(), target.connectUrl);
+                return;
+            }
             DiscoveryNode node = DiscoveryNode.target(target, NodeType.BaseNodeType.JVM);
             target.discoveryNode = node;
 
@@ -297,7 +343,13 @@ public abstract class ContainerDiscovery {
             // Retrieve the latest snapshot of the target
             // The target received from event message is outdated as it belongs to the previous
             // transaction
-            target = Target.getTargetByConnectUrl(target.connectUrl);
+            Optional<Target> persisted =
+                    Target.<Target>find("connectUrl", target.connectUrl).firstResultOptional();
+            if (persisted.isEmpty()) {
+                logger.debugv("{0} target {1} already removed", getRealm(), target.connectUrl);
+                return;
+            }
+            target = persisted.get();
             DiscoveryNode node = target.discoveryNode;
 
             while (true) {
@@ -323,6 +375,298 @@ public abstract class ContainerDiscovery {
         }
     }
 
+    /**
+     * Subscribe to the container engine's events stream. The stream is re-established whenever
+     * it ends or fails, with a backoff delay on failure.
+     */
+    private void subscribeEvents() {
+        eventStream =
+                Uni.createFrom()
+                        .deferred(this::streamEvents)
+                        .onFailure()
+                        .invoke(t -> logger.warnv(t, "{0} events stream failed", getRealm()))
+                        .onFailure()
+                        .retry()
+                        .withBackOff(Duration.ofSeconds(1), Duration.ofSeconds(30))
+                        .indefinitely()
+                        .repeat()
+                        .withDelay(Duration.ofSeconds(1))
+                        .indefinitely()
+                        .subscribe()
+                        .with(
+                                r ->
+                                        logger.debugv(
+                                                "{0} events stream closed, reconnecting",
+                                                getRealm()),
+                                t -> logger.errorv(t, "{0} events stream failed", getRealm()));
+    }
+
+    private Uni<HttpResponse<Void>> streamEvents() {
+        String filters;
+        try {
+            filters =
+                    mapper.writeValueAsString(
+                            Map.of(
+                                    "type", List.of("container"),
+                                    "label", List.of(DISCOVERY_LABEL)));
+        } catch (JsonProcessingException e) {
+            return Uni.createFrom().failure(e);
+        }
+        // the stream is opened from a point in time before the query, so the engine replays any
+        // events which occur between the query and the stream being connected rather than those
+        // being missed. Events which the query already reflects are handled idempotently. The
+        // timestamp has a resolution of seconds, so back off by one to avoid truncating past
+        // events in the same second
+        String since = Long.toString(Instant.now().getEpochSecond() - 1);
+        // events may have been missed while the stream was not connected
+        queryContainers();
+        JsonParser parser = JsonParser.newParser().objectValueMode();
+        parser.handler(event -> onContainerEvent(event.objectValue()));
+        parser.exceptionHandler(
+                t -> logger.warnv(t, "{0} events stream contained invalid JSON", getRealm()));
+        logger.debugv("Subscribing to {0} events stream", getRealm());
+        return webClient
+                .request(
+                        HttpMethod.GET,
+                        domainSocket(getSocket()),
+                        80,
+                        "localhost",
+                        URI.create(getEventsURL()).toString())
+                .addQueryParam("filters", filters)
+                .addQueryParam("since", since)
+                .as(BodyCodec.jsonStream(parser))
+                .send();
+    }
+
+    private void onContainerEvent(JsonObject event) {
+        String action = event.getString("Action", event.getString("status"));
+        JsonObject actor = event.getJsonObject("Actor");
+        String id = actor != null ? actor.getString("ID") : event.getString("id");
+        if (action == null || id == null) {
+            return;
+        }
+        switch (action) {
+            case "start":
+                logger.debugv("{0} container {1} started", getRealm(), id);
+                doContainerListRequest(
+                        Map.of("id", List.of(id)),
+                        observed -> inTransaction(() -> handleStartedContainers(observed)));
+                break;
+            case "die":
+            // fall-through
+            case "died":
+                logger.debugv("{0} container {1} died", getRealm(), id);
+                URI connectUrl = containers.remove(id);
+                if (connectUrl != null) {
+                    inTransaction(() -> handleStoppedContainer(connectUrl));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Query the full list of discoverable containers and reconcile it with the database. */
+    void queryContainers() {
+        doContainerListRequest(
+                Map.of(), current -> inTransaction(() -> handleObservedContainers(current)));
+    }
+
+    private void inTransaction(Runnable task) {
+        Infrastructure.getDefaultWorkerPool()
+                .execute(() -> QuarkusTransaction.requiringNew().run(task));
+    }
+
+    private void handleObservedContainers(List<ContainerSpec> current) {
+        Map<URI, ContainerSpec> containerRefMap = new HashMap<>();
+        Map<String, URI> observedIds = new HashMap<>();
+
+        Set<Target> persistedTargets =
+                Target.findByRealm(getRealm()).stream().collect(Collectors.toSet());
+        Set<Target> observedTargets =
+                current.stream()
+                        .map(
+                                (desc) -> {
+                                    Target t = toTarget(desc);
+                                    if (Objects.nonNull(t)) {
+                                        containerRefMap.put(t.connectUrl, desc);
+                                        observedIds.put(desc.Id(), t.connectUrl);
+                                    }
+                                    return t;
+                                })
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet());
+
+        containers.keySet().retainAll(observedIds.keySet());
+        containers.putAll(observedIds);
+
+        Target.Compare diff = Target.compare(persistedTargets).to(observedTargets);
+        diff.added()
+                .forEach(
+                        (t) ->
+                                notify(
+                                        ContainerDiscoveryEvent.from(
+                                                containerRefMap.get(t.connectUrl),
+                                                t,
+                                                EventKind.FOUND)));
+
+        diff.removed()
+                .forEach((t) -> notify(ContainerDiscoveryEvent.from(null, t, EventKind.LOST)));
+    }
+
+    private void handleStartedContainers(List<ContainerSpec> started) {
+        for (ContainerSpec desc : started) {
+            Target t = toTarget(desc);
+            if (t == null) {
+                continue;
+            }
+            containers.put(desc.Id(), t.connectUrl);
+            if (Target.find("connectUrl", t.connectUrl).count() == 0) {
+                notify(ContainerDiscoveryEvent.from(desc, t, EventKind.FOUND));
+            }
+        }
+    }
+
+    private void handleStoppedContainer(URI connectUrl) {
+        Target.<Target>find("connectUrl", connectUrl)
+                .firstResultOptional()
+                .filter(t -> getRealm().equals(t.annotations.cryostat().get("REALM")))
+                .ifPresent(t -> notify(ContainerDiscoveryEvent.from(null, t, EventKind.LOST)));
+    }
+
+    private void doContainerListRequest(
+            Map<String, List<String>> filters, Consumer<List<ContainerSpec>> successHandler) {
+        URI requestPath = URI.create(getContainersQueryURL());
+        Map<String, List<String>> allFilters = new HashMap<>(filters);
+        allFilters.put("label", List.of(DISCOVERY_LABEL));
+        try {
+            webClient
+                    .request(
+                            HttpMethod.GET,
+                            domainSocket(getSocket()),
+                            80,
+                            "localhost",
+                            requestPath.toString())
+                    .addQueryParam("filters", mapper.writeValueAsString(allFilters))
+                    .timeout(requestTimeout.toMillis())
+                    .as(BodyCodec.string())
+                    .send()
+                    .subscribe()
+                    .with(
+                            item -> {
+                                try {
+                                    successHandler.accept(
+                                            mapper.readValue(
+                                                    item.body(),
+                                                    new TypeReference<List<ContainerSpec>>() {}));
+                                } catch (JsonProcessingException e) {
+                                    logger.error("Json processing error", e);
+                                }
+                            },
+                            failure -> {
+                                logger.errorv(failure, "{0} API request failed", getRealm());
+                            });
+        } catch (JsonProcessingException e) {
+            logger.error("Json processing error", e);
+        }
+    }
+
+    // Construct a target representation (non-persistent) of the container spec
+    private Target toTarget(ContainerSpec desc) {
+        URI connectUrl;
+        String hostname;
+        int jmxPort;
+        try {
+            JMXServiceURL serviceUrl;
+            URI rmiTarget;
+            if (desc.Labels.containsKey(JMX_URL_LABEL)) {
+                serviceUrl = new JMXServiceURL(desc.Labels.get(JMX_URL_LABEL));
+                connectUrl = URI.create(serviceUrl.toString());
+                try {
+                    rmiTarget = uriUtil.getRmiTarget(serviceUrl);
+                    hostname = rmiTarget.getHost();
+                    jmxPort = rmiTarget.getPort();
+                } catch (IllegalArgumentException e) {
+                    hostname = serviceUrl.getHost();
+                    jmxPort = serviceUrl.getPort();
+                }
+            } else {
+                jmxPort = Integer.parseInt(desc.Labels.get(JMX_PORT_LABEL));
+                hostname = desc.Labels.get(JMX_HOST_LABEL);
+                if (hostname == null) {
+                    try {
+                        hostname =
+                                doContainerInspectRequest(desc)
+                                        .get(2, TimeUnit.SECONDS)
+                                        .Config
+                                        .Hostname;
+                    } catch (InterruptedException | TimeoutException | ExecutionException e) {
+                        logger.warnv(e, "Invalid {0} target observed", getRealm());
+                        return null;
+                    }
+                }
+            }
+            serviceUrl = connectionToolkit.createServiceURL(hostname, jmxPort);
+            connectUrl = URI.create(serviceUrl.toString());
+        } catch (MalformedURLException | URISyntaxException e) {
+            logger.warnv(e, "Invalid {0} target observed", getRealm());
+            return null;
+        }
+
+        Target target = new Target();
+        target.activeRecordings = new ArrayList<>();
+        target.connectUrl = connectUrl;
+        target.alias = Optional.ofNullable(desc.Names.get(0)).orElse(desc.Id);
+        target.labels = desc.Labels;
+        target.annotations =
+                new Annotations(
+                        null,
+                        Map.of(
+                                "REALM", // AnnotationKey.REALM,
+                                getRealm(),
+                                "HOST", // AnnotationKey.HOST,
+                                hostname,
+                                "PORT", // "AnnotationKey.PORT,
+                                Integer.toString(jmxPort)));
+
+        return target;
+    }
+
+    private CompletableFuture<ContainerDetails> doContainerInspectRequest(ContainerSpec container) {
+        CompletableFuture<ContainerDetails> result = new CompletableFuture<>();
+        URI requestPath = URI.create(String.format(getContainerQueryURL(), container.Id()));
+        webClient
+                .request(
+                        HttpMethod.GET,
+                        domainSocket(getSocket()),
+                        80,
+                        "localhost",
+                        requestPath.toString())
+                .timeout(requestTimeout.toMillis())
+                .as(BodyCodec.string())
+                .send()
+                .subscribe()
+                .with(
+                        item -> {
+                            try {
+                                result.complete(
+                                        mapper.readValue(item.body(), ContainerDetails.class));
+                            } catch (JsonProcessingException e) {
+                                logger.error("Json processing error", e);
+                                result.completeExceptionally(e);
+                            }
+                        },
+                        failure -> {
+                            logger.errorv(failure, "{0} API request failed", getRealm());
+                            result.completeExceptionally(failure);
+                        });
+        return result;
+    }
+
+    private void notify(ContainerDiscoveryEvent evt) {
+        bus.publish(notificationAddress(), evt);
+    }
+
     protected abstract String getSocket();
 
     protected abstract String getRealm();
@@ -331,6 +675,8 @@ public abstract class ContainerDiscovery {
 
     protected abstract String getContainerQueryURL();
 
+    protected abstract String getEventsURL();
+
     protected abstract boolean enabled();
 
     protected abstract String notificationAddress();
@@ -363,231 +709,22 @@ public abstract class ContainerDiscovery {
         }
     }
 
+    /** Periodic full query of the container engine, as a safety net for missed events. */
     @DisallowConcurrentExecution
     static class ContainersQueryJob implements Job {
 
-        @ConfigProperty(name = ConfigProperties.CONTAINERS_REQUEST_TIMEOUT)
-        Duration requestTimeout;
-
-        @Inject WebClient webClient;
-        @Inject JFRConnectionToolkit connectionToolkit;
-        @Inject ObjectMapper mapper;
-        @Inject EventBus bus;
-        @Inject URIUtil uriUtil;
+        @Inject @Any Instance<ContainerDiscovery> discoveries;
         @Inject Logger logger;
 
-        private JobExecutionContext context;
-
         @Override
         public void execute(JobExecutionContext context) throws JobExecutionException {
-            this.context = context;
-            queryContainers();
-        }
-
-        private void queryContainers() {
-            doContainerListRequest(
-                    current -> {
-                        Infrastructure.getDefaultWorkerPool()
-                                .execute(
-                                        () ->
-                                                QuarkusTransaction.requiringNew()
-                                                        .run(
-                                                                () ->
-                                                                        handleObservedContainers(
-                                                                                current)));
-                    });
-        }
-
-        private void handleObservedContainers(List<ContainerSpec> current) {
-            Map<URI, ContainerSpec> containerRefMap = new HashMap<>();
-
-            Set<Target> persistedTargets =
-                    Target.findByRealm(getRealm()).stream().collect(Collectors.toSet());
-            Set<Target> observedTargets =
-                    current.stream()
-                            .map(
-                                    (desc) -> {
-                                        Target t = toTarget(desc);
-                                        if (Objects.nonNull(t)) {
-                                            containerRefMap.put(t.connectUrl, desc);
-                                        }
-                                        return t;
-                                    })
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toSet());
-
-            Target.compare(persistedTargets)
-                    .to(observedTargets)
-                    .added()
-                    .forEach(
-                            (t) ->
-                                    notify(
-                                            ContainerDiscoveryEvent.from(
-                                                    containerRefMap.get(t.connectUrl),
-                                                    t,
-                                                    EventKind.FOUND)));
-
-            Target.compare(persistedTargets)
-                    .to(observedTargets)
-                    .removed()
-                    .forEach((t) -> notify(ContainerDiscoveryEvent.from(null, t, EventKind.LOST)));
-        }
-
-        private void doContainerListRequest(Consumer<List<ContainerSpec>> successHandler) {
-            URI requestPath = URI.create(getContainersQueryURL());
-            try {
-                webClient
-                        .request(
-                                HttpMethod.GET,
-                                domainSocket(getSocket()),
-                                80,
-                                "localhost",
-                                requestPath.toString())
-                        .addQueryParam(
-                                "filters",
-                                mapper.writeValueAsString(
-                                        Map.of("label", List.of(DISCOVERY_LABEL))))
-                        .timeout(requestTimeout.toMillis())
-                        .as(BodyCodec.string())
-                        .send()
-                        .subscribe()
-                        .with(
-                                item -> {
-                                    try {
-                                        successHandler.accept(
-                                                mapper.readValue(
-                                                        item.body(),
-                                                        new TypeReference<
-                                                                List<ContainerSpec>>() {}));
-                                    } catch (JsonProcessingException e) {
-                                        logger.error("Json processing error", e);
-                                    }
-                                },
-                                failure -> {
-                                    logger.errorv(failure, "{0} API request failed", getRealm());
-                                });
-            } catch (JsonProcessingException e) {
-                logger.error("Json processing error", e);
-            }
-        }
-
-        // Construct a target representation (non-persistent) of the container spec
-        private Target toTarget(ContainerSpec desc) {
-            URI connectUrl;
-            String hostname;
-            int jmxPort;
-            try {
-                JMXServiceURL serviceUrl;
-                URI rmiTarget;
-                if (desc.Labels.containsKey(JMX_URL_LABEL)) {
-                    serviceUrl = new JMXServiceURL(desc.Labels.get(JMX_URL_LABEL));
-                    connectUrl = URI.create(serviceUrl.toString());
-                    try {
-                        rmiTarget = uriUtil.getRmiTarget(serviceUrl);
-                        hostname = rmiTarget.getHost();
-                        jmxPort = rmiTarget.getPort();
-                    } catch (IllegalArgumentException e) {
-                        hostname = serviceUrl.getHost();
-                        jmxPort = serviceUrl.getPort();
-                    }
-                } else {
-                    jmxPort = Integer.parseInt(desc.Labels.get(JMX_PORT_LABEL));
-                    hostname = desc.Labels.get(JMX_HOST_LABEL);
-                    if (hostname == null) {
-                        try {
-                            hostname =
-                                    doContainerInspectRequest(desc)
-                                            .get(2, TimeUnit.SECONDS)
-                                            .Config
-                                            .Hostname;
-                        } catch (InterruptedException | TimeoutException | ExecutionException e) {
-                            logger.warnv(e, "Invalid {0} target observed", getRealm());
-                            return null;
-                        }
-                    }
-                }
-                serviceUrl = connectionToolkit.createServiceURL(hostname, jmxPort);
-                connectUrl = URI.create(serviceUrl.toString());
-            } catch (MalformedURLException | URISyntaxException e) {
-                logger.warnv(e, "Invalid {0} target observed", getRealm());
-                return null;
-            }
-
-            Target target = new Target();
-            target.activeRecordings = new ArrayList<>();
-            target.connectUrl = connectUrl;
-            target.alias = Optional.ofNullable(desc.Names.get(0)).orElse(desc.Id);
-            target.labels = desc.Labels;
-            target.annotations =
-                    new Annotations(
-                            null,
-                            Map.of(
-                                    "REALM", // AnnotationKey.REALM,
-                                    getRealm(),
-                                    "HOST", // AnnotationKey.HOST,
-                                    hostname,
-                                    "PORT", // "AnnotationKey.PORT,
-                                    Integer.toString(jmxPort)));
-
-            return target;
-        }
-
-        private CompletableFuture<ContainerDetails> doContainerInspectRequest(
-                ContainerSpec container) {
-            CompletableFuture<ContainerDetails> result = new CompletableFuture<>();
-            URI requestPath = URI.create(getContainerQueryURL(container));
-            webClient
-                    .request(
-                            HttpMethod.GET,
-                            domainSocket(getSocket()),
-                            80,
-                            "localhost",
-                            requestPath.toString())
-                    .timeout(requestTimeout.toMillis())
-                    .as(BodyCodec.string())
-                    .send()
-                    .subscribe()
-                    .with(
-                            item -> {
-                                try {
-                                    result.complete(
-                                            mapper.readValue(item.body(), ContainerDetails.class));
-                                } catch (JsonProcessingException e) {
-                                    logger.error("Json processing error", e);
-                                    result.completeExceptionally(e);
-                                }
-                            },
-                            failure -> {
-                                logger.errorv(failure, "{0} API request failed", getRealm());
-                                result.completeExceptionally(failure);
-                            });
-            return result;
-        }
-
-        private void notify(ContainerDiscoveryEvent evt) {
-            bus.publish(notificationAddress(), evt);
-        }
-
-        private String getRealm() {
-            return this.context.getMergedJobDataMap().getString(JOB_DATA_KEY_REALM);
-        }
-
-        private String getSocket() {
-            return this.context.getMergedJobDataMap().getString(JOB_DATA_KEY_SOCKET_ADDRESS);
-        }
-
-        private String getContainersQueryURL() {
-            return this.context.getMergedJobDataMap().getString(JOB_DATA_KEY_CONTAINERS_QUERY_URL);
-        }
-
-        private String getContainerQueryURL(ContainerSpec spec) {
-            return String.format(
-                    this.context.getMergedJobDataMap().getString(JOB_DATA_KEY_CONTAINER_QUERY_URL),
-                    spec.Id());
-        }
-
-        private String notificationAddress() {
-            return this.context.getMergedJobDataMap().getString(JOB_DATA_KEY_NOTIFICATION_ADDRESS);
+            String realm = context.getMergedJobDataMap().getString(JOB_DATA_KEY_REALM);
+            discoveries.stream()
+                    .filter(d -> realm.equals(d.getRealm()))
+                    .findFirst()
+                    .ifPresentOrElse(
+                            ContainerDiscovery::queryContainers,
+                            () -> logger.warnv("No container discovery for realm {0}", realm));
         }
     }
 }
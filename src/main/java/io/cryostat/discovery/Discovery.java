@@ -23,11 +23,9 @@ import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
-import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -67,7 +65,6 @@ import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.LockModeType;
-import jakarta.persistence.NoResultException;
 import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
@@ -84,15 +81,21 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
 import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.SchemaType;
+import org.eclipse.microprofile.openapi.annotations.headers.Header;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.RestForm;
@@ -100,19 +103,8 @@ import org.jboss.resteasy.reactive.RestHeader;
 import org.jboss.resteasy.reactive.RestPath;
 import org.jboss.resteasy.reactive.RestQuery;
 import org.jboss.resteasy.reactive.RestResponse;
-import org.quartz.DisallowConcurrentExecution;
-import org.quartz.Job;
-import org.quartz.JobBuilder;
-import org.quartz.JobDataMap;
-import org.quartz.JobDetail;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
-import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.TriggerBuilder;
-import org.quartz.impl.matchers.GroupMatcher;
 
 @Path("")
 public class Discovery {
@@ -121,17 +113,10 @@ public class Discovery {
 
     static final String X_FORWARDED_FOR = "X-Forwarded-For";
 
-    private static final String JOB_PERIODIC = "discovery.periodic";
-    private static final String PLUGIN_ID_MAP_KEY = "pluginId";
-    private static final String REFRESH_MAP_KEY = "refresh";
-
     public static final String DISCOVERY_PLUGIN_LABEL_PREFIX = "discovery.cryostat.io/";
     public static final String DISCOVERY_PLUGIN_ID_LABEL_KEY =
             DISCOVERY_PLUGIN_LABEL_PREFIX + "plugin-id";
 
-    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_PERIOD)
-    Duration discoveryPingPeriod;
-
     @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_FAILURES)
     int maxConsecutiveFailures;
 
@@ -150,6 +135,8 @@ public class Discovery {
     @Inject PluginCallbackFactory callbackFactory;
     @Inject PluginCleanupHelper cleanupHelper;
     @Inject EntityManager entityManager;
+    @Inject DiscoveryTreeSnapshot treeSnapshot;
+    @Inject PluginPingService pingService;
 
     void onStop(@Observes ShutdownEvent evt) throws SchedulerException {
         scheduler.shutdown();
@@ -158,13 +145,43 @@ public class Discovery {
     @GET
     @Path("/api/v4/discovery")
     @RolesAllowed("read")
-    @Operation(summary = "Retrieve the entire discovery tree.")
-    public DiscoveryNode get(
+    @Operation(
+            summary = "Retrieve the entire discovery tree.",
+            description =
+                    """
+                    Retrieve the entire discovery tree. Unless realms are merged, the response carries an ETag, and
+                    requests with a matching If-None-Match header receive a 304 Not Modified response instead.
+                    """)
+    @APIResponse(
+            responseCode = "200",
+            description = "OK",
+            headers =
+                    @Header(
+                            name = "ETag",
+                            description = "Version of the discovery tree, unless realms are merged",
+                            schema = @Schema(type = SchemaType.STRING)),
+            content =
+                    @Content(
+                            mediaType = MediaType.APPLICATION_JSON,
+                            schema = @Schema(implementation = DiscoveryNode.class)))
+    @APIResponse(
+            responseCode = "304",
+            description = "Not Modified",
+            headers = @Header(name = "ETag", schema = @Schema(type = SchemaType.STRING)))
+    public Response get(
+            @Context Request request,
             @QueryParam("mergeRealms") @DefaultValue("false") boolean mergeRealms) {
-        if (!mergeRealms) {
-            return DiscoveryNode.getUniverse();
+        if (mergeRealms) {
+            return Response.ok(mergeRealms(), MediaType.APPLICATION_JSON).build();
+        }
+        var snapshot = treeSnapshot.get();
+        var notModified = request.evaluatePreconditions(snapshot.etag());
+        if (notModified != null) {
+            return notModified.build();
         }
-        return mergeRealms();
+        return Response.ok(snapshot.json(), MediaType.APPLICATION_JSON)
+                .tag(snapshot.etag())
+                .build();
     }
 
     @GET
@@ -240,8 +257,7 @@ public class Discovery {
                     additionally require the id and token fields, which are supplied in the response to the original
                     registration.
                     """)
-    public PluginRegistration register(@Context RoutingContext ctx, JsonObject body)
-            throws SchedulerException {
+    public PluginRegistration register(@Context RoutingContext ctx, JsonObject body) {
         String pluginId = body.getString("id");
         String priorToken = body.getString("token");
         String realmName = body.getString("realm");
@@ -283,12 +299,16 @@ public class Discovery {
             plugin =
                     QuarkusTransaction.joiningExisting()
                             .call(
-                                    () ->
-                                            findOrCreatePlugin(
-                                                    callback.callbackUri(),
-                                                    callback.unauthCallback(),
-                                                    realmName,
-                                                    null));
+                                    () -> {
+                                        DiscoveryPlugin p =
+                                                findOrCreatePlugin(
+                                                        callback.callbackUri(),
+                                                        callback.unauthCallback(),
+                                                        realmName,
+                                                        null);
+                                        p.refreshOnPing = true;
+                                        return p;
+                                    });
 
             try {
                 locations = jwtFactory.getPluginLocations(plugin);
@@ -296,7 +316,7 @@ public class Discovery {
                 throw new BadRequestException(e);
             }
 
-            schedulePluginJob(plugin, true);
+            pingService.schedule(plugin.id, plugin.refreshOnPing);
         }
 
         String token;
@@ -333,8 +353,8 @@ public class Discovery {
                     general Discovery Plugin registration and publication endpoints remain available for other
                     Discovery Plugin implementations.
                     """)
-    public PluginRegistration registerAgent(@Context RoutingContext ctx, AgentRegistration body)
-            throws SchedulerException {
+    public PluginRegistration registerAgent(
+            @Context RoutingContext ctx, AgentRegistration body) {
         if (body == null) {
             throw new BadRequestException("body is required");
         }
@@ -367,6 +387,7 @@ public class Discovery {
                                                     credential,
                                                     prePingResult);
                                     replaceCredential(p, credential);
+                                    p.refreshOnPing = false;
                                     return p;
                                 });
 
@@ -377,7 +398,7 @@ public class Discovery {
             throw new BadRequestException(e);
         }
 
-        schedulePluginJob(plugin, false);
+        pingService.schedule(plugin.id, plugin.refreshOnPing);
 
         String token;
         try {
@@ -664,8 +685,7 @@ public class Discovery {
     public void deregister(
             @Context RoutingContext ctx,
             @RestPath UUID id,
-            @RestHeader("Cryostat-Discovery-Authentication") String token)
-            throws SchedulerException {
+            @RestHeader("Cryostat-Discovery-Authentication") String token) {
         DiscoveryPlugin plugin = DiscoveryPlugin.findById(id);
         if (plugin == null) {
             logger.debugv("Could not find registered plugin with ID {0}", id);
@@ -689,15 +709,7 @@ public class Discovery {
             throw new BadRequestException(e);
         }
 
-        Set<JobKey> jobKeys = new HashSet<>();
-        jobKeys.addAll(scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_PERIODIC)));
-        for (var key : jobKeys) {
-            if (!Objects.equals(plugin.id.toString(), key.getName())) {
-                continue;
-            }
-            scheduler.deleteJob(key);
-        }
-
+        pingService.forget(plugin.id);
         plugin.delete();
     }
 
@@ -1042,37 +1054,6 @@ public class Discovery {
         return credential;
     }
 
-    private void schedulePluginJob(DiscoveryPlugin plugin, boolean refresh)
-            throws SchedulerException {
-        JobKey jobKey = getPeriodicJobKey(plugin);
-        if (scheduler.checkExists(jobKey)) {
-            JobDetail jobDetail = scheduler.getJobDetail(jobKey);
-            jobDetail.getJobDataMap().put(REFRESH_MAP_KEY, refresh);
-            scheduler.addJob(jobDetail, true, true);
-            return;
-        }
-
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, plugin.id);
-        dataMap.put(REFRESH_MAP_KEY, refresh);
-        JobDetail jobDetail =
-                JobBuilder.newJob(RefreshPluginJob.class)
-                        .withIdentity(plugin.id.toString(), JOB_PERIODIC)
-                        .usingJobData(dataMap)
-                        .build();
-        var trigger =
-                TriggerBuilder.newTrigger()
-                        .withIdentity(jobDetail.getKey().getName(), jobDetail.getKey().getGroup())
-                        .startAt(Date.from(Instant.now().plus(discoveryPingPeriod)))
-                        .withSchedule(
-                                SimpleScheduleBuilder.simpleSchedule()
-                                        .repeatForever()
-                                        .withIntervalInSeconds(
-                                                (int) discoveryPingPeriod.toSeconds()))
-                        .build();
-        scheduler.scheduleJob(jobDetail, trigger);
-    }
-
     private Map<String, String> getEnvMap() {
         // TODO implement more generic env map passing by some platform detection
         // strategy or generalized config properties
@@ -1243,178 +1224,6 @@ public class Discovery {
         UNREACHABLE
     }
 
-    /**
-     * Check that discovery plugins are still alive/reachable and prompt them to regenerate expiring
-     * tokens. Plugins are issued short-lived tokens at registration time. Cryostat periodically
-     * pings plugins to ensure they are still alive/reachable and to prompt them to request a fresh
-     * token if their token will be expiring soon.
-     */
-    @DisallowConcurrentExecution
-    static class RefreshPluginJob implements Job {
-        @Inject Logger logger;
-
-        @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_FAILURES)
-        int maxConsecutiveFailures;
-
-        @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_PERIOD)
-        Duration basePingPeriod;
-
-        @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_BACKOFF_MULTIPLIER)
-        int maxBackoffMultiplier;
-
-        @Inject PluginCallbackFactory callbackFactory;
-
-        @Inject PluginCleanupHelper cleanupHelper;
-
-        @Override
-        public void execute(JobExecutionContext context) throws JobExecutionException {
-            boolean refresh = context.getMergedJobDataMap().getBoolean(REFRESH_MAP_KEY);
-            UUID pluginId = (UUID) context.getMergedJobDataMap().get(PLUGIN_ID_MAP_KEY);
-            if (pluginId == null) {
-                var ex =
-                        new JobExecutionException(
-                                new NullPointerException("pluginId cannot be null"));
-                ex.setUnscheduleFiringTrigger(true);
-                throw ex;
-            }
-
-            try {
-                QuarkusTransaction.requiringNew()
-                        .run(
-                                () -> {
-                                    var p = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
-
-                                    if (p == null) {
-                                        throw new NoResultException(
-                                                "Plugin not found: " + pluginId);
-                                    }
-
-                                    if (p.nextPingAt != null
-                                            && Instant.now().isBefore(p.nextPingAt)) {
-                                        logger.debugv(
-                                                "Skipping ping due to backoff: {0} @ {1}",
-                                                p.realm.name, p.callback);
-                                        return;
-                                    }
-
-                                    PluginCallback cb;
-                                    try {
-                                        cb = callbackFactory.create(p);
-                                    } catch (URISyntaxException use) {
-                                        throw new IllegalStateException(use);
-                                    }
-                                    if (refresh) {
-                                        cb.refresh();
-                                        logger.debugv(
-                                                "Refreshed discovery plugin: {0} @ {1}",
-                                                p.realm.name, p.callback);
-                                    } else {
-                                        cb.ping();
-                                        logger.debugv(
-                                                "Retained discovery plugin: {0} @ {1}",
-                                                p.realm.name, p.callback);
-                                    }
-
-                                    p.consecutiveFailures = 0;
-                                    p.lastSuccessfulPing = Instant.now();
-                                    p.backoffMultiplier = 1;
-                                    p.nextPingAt = null;
-                                    p.persist();
-
-                                    logger.debugv(
-                                            "Plugin ping successful - lastSuccessfulPing: {0},"
-                                                    + " consecutiveFailures reset to 0,"
-                                                    + " backoffMultiplier reset to 1: {1} @"
-                                                    + " {2}",
-                                            p.lastSuccessfulPing, p.realm.name, p.callback);
-                                });
-            } catch (Exception e) {
-                logger.warnv(e, "Plugin ping failed");
-                var ex = new JobExecutionException(e);
-
-                boolean noSuchPlugin = ExceptionUtils.indexOfType(e, NoResultException.class) >= 0;
-                boolean unknownHost =
-                        ExceptionUtils.indexOfType(e, UnknownHostException.class) >= 0;
-                boolean illegalState =
-                        ExceptionUtils.indexOfType(e, IllegalStateException.class) >= 0;
-                if (noSuchPlugin || unknownHost || illegalState) {
-                    logger.warnv(
-                            "Unscheduled job for unknown discovery plugin: {0}",
-                            context.getMergedJobDataMap().get(PLUGIN_ID_MAP_KEY));
-                    if (noSuchPlugin) {
-                        QuarkusTransaction.joiningExisting()
-                                .run(() -> cleanupHelper.cleanupPluginNodes(pluginId));
-                    }
-                    ex.setUnscheduleFiringTrigger(true);
-                }
-
-                var f =
-                        QuarkusTransaction.joiningExisting()
-                                .call(
-                                        () -> {
-                                            var p =
-                                                    DiscoveryPlugin.<DiscoveryPlugin>findById(
-                                                            pluginId);
-                                            if (p == null) {
-                                                cleanupHelper.cleanupPluginNodes(pluginId);
-                                                ex.setUnscheduleFiringTrigger(true);
-                                                return true;
-                                            }
-                                            p.consecutiveFailures++;
-                                            p.lastFailedPing = Instant.now();
-                                            p.backoffMultiplier =
-                                                    Math.min(
-                                                            p.backoffMultiplier * 2,
-                                                            maxBackoffMultiplier);
-                                            Duration backoffPeriod =
-                                                    basePingPeriod.multipliedBy(
-                                                            p.backoffMultiplier);
-                                            p.nextPingAt = Instant.now().plus(backoffPeriod);
-                                            p.persist();
-
-                                            logger.debugv(
-                                                    "Plugin ping failed - lastFailedPing: {0},"
-                                                            + " consecutiveFailures: {1}/{2},"
-                                                            + " backoffMultiplier: {3}, nextPingAt:"
-                                                            + " {4}: {5} @ {6}",
-                                                    p.lastFailedPing,
-                                                    p.consecutiveFailures,
-                                                    maxConsecutiveFailures,
-                                                    p.backoffMultiplier,
-                                                    p.nextPingAt,
-                                                    p.realm.name,
-                                                    p.callback);
-
-                                            boolean failed =
-                                                    p.consecutiveFailures >= maxConsecutiveFailures;
-                                            if (failed) {
-                                                logger.warnv(
-                                                        "Pruning discovery plugin after {0}"
-                                                                + " consecutive failures: {1} @"
-                                                                + " {2}",
-                                                        p.consecutiveFailures,
-                                                        p.realm.name,
-                                                        p.callback);
-                                                p.delete();
-                                            } else {
-                                                logger.warnv(
-                                                        "Plugin ping failed ({0}/{1}), backing"
-                                                                + " off for {2}: {3} @ {4}",
-                                                        p.consecutiveFailures,
-                                                        maxConsecutiveFailures,
-                                                        backoffPeriod,
-                                                        p.realm.name,
-                                                        p.callback);
-                                            }
-                                            return failed;
-                                        });
-                if (f) {
-                    throw ex;
-                }
-            }
-        }
-    }
-
     static String requireNonBlank(String in, String name) {
         if (StringUtils.isBlank(in)) {
             throw new IllegalArgumentException(
@@ -1423,26 +1232,6 @@ public class Discovery {
         return in;
     }
 
-    /**
-     * Create a JobKey for a plugin's periodic refresh job.
-     *
-     * @param plugin The plugin to create a JobKey for
-     * @return JobKey for the plugin's periodic refresh job
-     */
-    static JobKey getPeriodicJobKey(DiscoveryPlugin plugin) {
-        return getPeriodicJobKey(plugin.id);
-    }
-
-    /**
-     * Create a JobKey for a plugin's periodic refresh job using the plugin ID.
-     *
-     * @param pluginId The plugin ID to create a JobKey for
-     * @return JobKey for the plugin's periodic refresh job
-     */
-    static JobKey getPeriodicJobKey(UUID pluginId) {
-        return JobKey.jobKey(pluginId.toString(), JOB_PERIODIC);
-    }
-
     private InetAddress getRemoteAddress(RoutingContext ctx) {
         InetAddress addr = null;
         if (ctx.request() != null && ctx.request().remoteAddress() != null) {
@@ -38,6 +38,7 @@ import io.quarkus.panache.common.Parameters;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import jakarta.annotation.Nullable;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
@@ -254,6 +255,7 @@ public class DiscoveryNode extends PanacheEntity {
 
         @Inject Logger logger;
         @Inject EventBus bus;
+        @Inject Event<DiscoveryTreeSnapshot.NodeChanged> changed;
 
         @PrePersist
         void prePersist(DiscoveryNode node) {
@@ -266,13 +268,19 @@ public class DiscoveryNode extends PanacheEntity {
         }
 
         @PostPersist
-        void postPersist(DiscoveryNode node) {}
+        void postPersist(DiscoveryNode node) {
+            changed.fire(new DiscoveryTreeSnapshot.NodeChanged(node.id));
+        }
 
         @PostUpdate
-        void postUpdate(DiscoveryNode node) {}
+        void postUpdate(DiscoveryNode node) {
+            changed.fire(new DiscoveryTreeSnapshot.NodeChanged(node.id));
+        }
 
         @PostRemove
-        void postRemove(DiscoveryNode node) {}
+        void postRemove(DiscoveryNode node) {
+            changed.fire(new DiscoveryTreeSnapshot.NodeChanged(node.id));
+        }
     }
 
     public static class Views {
@@ -144,6 +144,14 @@ public class DiscoveryPlugin extends PanacheEntityBase {
     @JsonIgnore
     public Instant nextPingAt;
 
+    /**
+     * Whether periodic pings should prompt the plugin to refresh its registration, rather than just
+     * checking that it is reachable.
+     */
+    @Column(nullable = false)
+    @JsonIgnore
+    public boolean refreshOnPing = true;
+
     public static Optional<DiscoveryPlugin> findByCallbackAndRealmName(
             URI callback, String realmName) {
         return DiscoveryPlugin.<DiscoveryPlugin>find(
@@ -0,0 +1,281 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.cryostat.targets.events.TargetEvents;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.core.EntityTag;
+import org.jboss.logging.Logger;
+
+/**
+ * Serialized, immutable snapshot of the whole discovery tree as served by {@code GET
+ * /api/v4/discovery}. Serializing {@link DiscoveryNode#getUniverse()} directly walks the lazy
+ * {@code children} collections and issues a query per node. Instead, the tree structure is loaded
+ * with a single recursive query and each node's own fields, including its target, are cached as
+ * JSON. Discovery node and target changes mark the affected nodes stale once their transaction
+ * commits, and the next request reloads only those nodes. While nothing has changed the cached
+ * snapshot is served without any database access, along with an entity tag derived from its
+ * content.
+ */
+@ApplicationScoped
+public class DiscoveryTreeSnapshot {
+
+    private static final String TREE_QUERY =
+            """
+            WITH RECURSIVE tree(id, parentNode) AS (
+                SELECT id, parentNode FROM DiscoveryNode WHERE nodeType = :universe
+                UNION ALL
+                SELECT c.id, c.parentNode FROM DiscoveryNode c JOIN tree p ON c.parentNode = p.id
+            )
+            SELECT id, parentNode FROM tree
+            """;
+
+    @Inject ObjectMapper mapper;
+    @Inject EntityManager em;
+    @Inject Logger logger;
+
+    // incremented after marking nodes or targets stale, so that a snapshot built from an older
+    // version is known to be out of date
+    private final AtomicLong version = new AtomicLong();
+    private final Set<Long> staleNodes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> staleTargets = ConcurrentHashMap.newKeySet();
+
+    // guarded by this. Each node's own fields, without its children
+    private final Map<Long, ObjectNode> flatNodes = new HashMap<>();
+    // guarded by this. Target ID to the ID of the node holding it
+    private final Map<Long, Long> targetNodes = new HashMap<>();
+
+    private ObjectMapper flatMapper;
+    private volatile Snapshot current;
+
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    record Snapshot(long version, byte[] json, EntityTag etag) {}
+
+    /** Fired by the {@link DiscoveryNode} entity listener when a node is persisted or removed. */
+    record NodeChanged(long id) {}
+
+    @PostConstruct
+    void init() {
+        flatMapper = mapper.copy();
+        flatMapper.setConfig(
+                flatMapper.getSerializationConfig().withView(DiscoveryNode.Views.Flat.class));
+    }
+
+    Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.version() == version.get()) {
+            return snapshot;
+        }
+        return rebuild();
+    }
+
+    /**
+     * Discard the snapshot and all cached nodes. Only needed if the discovery tables were modified
+     * other than through JPA, such as by database migrations, since those changes do not produce
+     * entity lifecycle events.
+     */
+    public synchronized void invalidate() {
+        flatNodes.clear();
+        targetNodes.clear();
+        current = null;
+    }
+
+    void onNodeChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) NodeChanged event) {
+        staleNodes.add(event.id());
+        version.incrementAndGet();
+    }
+
+    void onTargetCreated(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetCreated event) {
+        staleTarget(event.getEntityId());
+    }
+
+    void onTargetUpdated(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetUpdated event) {
+        staleTarget(event.getEntityId());
+    }
+
+    void onTargetDeleted(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetDeleted event) {
+        staleTarget(event.getEntityId());
+    }
+
+    private void staleTarget(long targetId) {
+        staleTargets.add(targetId);
+        version.incrementAndGet();
+    }
+
+    private synchronized Snapshot rebuild() {
+        long v = version.get();
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.version() == v) {
+            return snapshot;
+        }
+        Set<Long> stale = drain(staleNodes);
+        for (Long targetId : drain(staleTargets)) {
+            Long nodeId = targetNodes.remove(targetId);
+            if (nodeId != null) {
+                stale.add(nodeId);
+            }
+        }
+        try {
+            byte[] json = QuarkusTransaction.joiningExisting().call(() -> load(stale));
+            snapshot = new Snapshot(v, json, etag(json));
+        } catch (RuntimeException e) {
+            // start over from scratch next time rather than risk serving stale nodes
+            flatNodes.clear();
+            targetNodes.clear();
+            throw e;
+        }
+        current = snapshot;
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] load(Set<Long> stale) throws JsonProcessingException {
+        List<Object[]> rows =
+                em.createNativeQuery(TREE_QUERY)
+                        .setParameter("universe", NodeType.BaseNodeType.UNIVERSE.getKind())
+                        .getResultList();
+        Long root = null;
+        Map<Long, List<Long>> children = new HashMap<>();
+        for (Object[] row : rows) {
+            long id = ((Number) row[0]).longValue();
+            if (row[1] == null) {
+                root = id;
+            } else {
+                children.computeIfAbsent(((Number) row[1]).longValue(), k -> new ArrayList<>())
+                        .add(id);
+            }
+        }
+        if (root == null) {
+            throw new IllegalStateException("Discovery tree has no root node");
+        }
+        Set<Long> ids = new HashSet<>(rows.size());
+        ids.add(root);
+        children.values().forEach(ids::addAll);
+
+        flatNodes.keySet().retainAll(ids);
+        targetNodes.values().retainAll(ids);
+        flatNodes.keySet().removeAll(stale);
+        targetNodes.values().removeAll(stale);
+        Set<Long> missing = new HashSet<>(ids);
+        missing.removeAll(flatNodes.keySet());
+        if (!missing.isEmpty()) {
+            List<DiscoveryNode> nodes;
+            if (missing.size() == ids.size()) {
+                nodes =
+                        em.createQuery(
+                                        "SELECT n FROM DiscoveryNode n LEFT JOIN FETCH n.target",
+                                        DiscoveryNode.class)
+                                .getResultList();
+            } else {
+                nodes =
+                        em.createQuery(
+                                        "SELECT n FROM DiscoveryNode n LEFT JOIN FETCH n.target"
+                                                + " WHERE n.id IN :ids",
+                                        DiscoveryNode.class)
+                                .setParameter("ids", missing)
+                                .getResultList();
+            }
+            for (DiscoveryNode node : nodes) {
+                if (!missing.contains(node.id)) {
+                    continue;
+                }
+                flatNodes.put(node.id, flatMapper.valueToTree(node));
+                if (node.target != null) {
+                    targetNodes.put(node.target.id, node.id);
+                }
+            }
+            logger.debugv(
+                    "Loaded {0} of {1} discovery nodes for tree snapshot",
+                    missing.size(),
+                    ids.size());
+        }
+        return mapper.writeValueAsBytes(assemble(root, children));
+    }
+
+    private ObjectNode assemble(long root, Map<Long, List<Long>> children) {
+        ObjectNode tree = flatNodes.get(root).deepCopy();
+        Deque<Map.Entry<Long, ObjectNode>> pending = new ArrayDeque<>();
+        pending.push(Map.entry(root, tree));
+        while (!pending.isEmpty()) {
+            var entry = pending.pop();
+            ArrayNode array = entry.getValue().putArray("children");
+            List<Long> ids = children.getOrDefault(entry.getKey(), List.of());
+            Iterator<Long> it = ids.stream().sorted().iterator();
+            while (it.hasNext()) {
+                long id = it.next();
+                ObjectNode flat = flatNodes.get(id);
+                if (flat == null) {
+                    // removed between the structure and node queries. The removal will mark the
+                    // snapshot stale again
+                    continue;
+                }
+                ObjectNode child = flat.deepCopy();
+                array.add(child);
+                pending.push(Map.entry(id, child));
+            }
+        }
+        return tree;
+    }
+
+    private static Set<Long> drain(Set<Long> set) {
+        Set<Long> drained = new HashSet<>();
+        Iterator<Long> it = set.iterator();
+        while (it.hasNext()) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    private static EntityTag etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return new EntityTag(HexFormat.of().formatHex(digest, 0, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Buffers elements by key and hands them to a sink in batches. The first element offered for an
+ * idle key opens a window, and everything offered for that key until the window closes is
+ * delivered together, up to a maximum batch size. Batches for the same key are delivered one at a
+ * time and in the order their elements were offered, while batches for different keys may be
+ * delivered in parallel on the given executor.
+ */
+final class KeyedBatcher<K, E> {
+
+    private final Duration window;
+    private final int maxSize;
+    private final Executor executor;
+    private final BiConsumer<K, List<E>> sink;
+    private final Map<K, Batch<E>> batches = new ConcurrentHashMap<>();
+
+    KeyedBatcher(Duration window, int maxSize, Executor executor, BiConsumer<K, List<E>> sink) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.window = window;
+        this.maxSize = maxSize;
+        this.executor = executor;
+        this.sink = sink;
+    }
+
+    void offer(K key, E element) {
+        Batch<E> batch = batches.computeIfAbsent(key, k -> new Batch<>());
+        synchronized (batch) {
+            batch.pending.add(element);
+            if (batch.scheduled || batch.running) {
+                return;
+            }
+            batch.scheduled = true;
+        }
+        schedule(key, batch, window);
+    }
+
+    private void schedule(K key, Batch<E> batch, Duration delay) {
+        CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS, executor)
+                .execute(() -> drain(key, batch));
+    }
+
+    private void drain(K key, Batch<E> batch) {
+        List<E> elements;
+        synchronized (batch) {
+            batch.scheduled = false;
+            List<E> head = batch.pending.subList(0, Math.min(maxSize, batch.pending.size()));
+            elements = new ArrayList<>(head);
+            head.clear();
+            batch.running = true;
+        }
+        try {
+            if (!elements.isEmpty()) {
+                sink.accept(key, elements);
+            }
+        } finally {
+            boolean more;
+            synchronized (batch) {
+                batch.running = false;
+                more = !batch.pending.isEmpty() && !batch.scheduled;
+                if (more) {
+                    batch.scheduled = true;
+                }
+            }
+            if (more) {
+                // anything left over has already waited at least one window
+                schedule(key, batch, Duration.ZERO);
+            }
+        }
+    }
+
+    private static final class Batch<E> {
+        final List<E> pending = new ArrayList<>();
+        boolean scheduled;
+        boolean running;
+    }
+}
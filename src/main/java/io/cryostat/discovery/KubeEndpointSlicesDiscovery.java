@@ -29,6 +29,10 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -54,11 +58,17 @@ import io.fabric8.kubernetes.api.model.discovery.v1.EndpointSlice;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
 import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.panache.common.Parameters;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.vertx.ConsumeEvent;
 import io.vertx.mutiny.core.eventbus.EventBus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
@@ -98,7 +108,8 @@ import org.quartz.TriggerBuilder;
 public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<EndpointSlice> {
 
     private static final String NAMESPACE_QUERY_ADDR = "NS_QUERY_ENDPOINT_SLICE";
-    private static final String ENDPOINT_SLICE_DISCOVERY_ADDR = "ENDPOINT_SLICE_DISC";
+    private static final String ENDPOINT_SLICE_DELTA_ADDR = "ENDPOINT_SLICE_DELTA";
+    private static final String RECONCILE_METER = "cryostat.discovery.kubernetes.reconcile";
     private static final JobKey RESYNC_JOB_KEY =
             new JobKey("force-resync", "kube-endpoints-discovery");
 
@@ -118,14 +129,12 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                     + "  SELECT 1 FROM Target t WHERE t.discoveryNode = n.id"
                     + ")";
 
-    // SQL query to find existing DiscoveryNode entities by name/nodeType within a particular
-    // namespace
-    private static final String FIND_NAMESPACED_NODE_SQL =
+    // SQL query to find all existing DiscoveryNode entities within a particular namespace
+    private static final String FIND_NAMESPACED_NODES_SQL =
             """
-            SELECT n.id FROM DiscoveryNode n %n\
-            WHERE n.name = :name AND %n\
-            n.nodeType = :nodeType AND %n\
-            n.labels->>'%s' = :namespace\
+            SELECT n.id, n.nodeType, n.name FROM DiscoveryNode n %n\
+            WHERE n.labels->>'%s' = :namespace %n\
+            ORDER BY n.id\
             """
                     .formatted(DISCOVERY_NAMESPACE_LABEL_KEY);
 
@@ -139,12 +148,16 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
 
     @Inject KubernetesClient client;
 
+    @Inject KubeOwnerCache ownerCache;
+
     @Inject Scheduler scheduler;
 
     @Inject EventBus bus;
 
     @Inject EntityManager entityManager;
 
+    @Inject MeterRegistry meterRegistry;
+
     @ConfigProperty(name = "cryostat.discovery.kubernetes.enabled")
     boolean enabled;
 
@@ -166,10 +179,31 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     @ConfigProperty(name = "cryostat.discovery.kubernetes.force-resync.enabled")
     boolean forceResyncEnabled;
 
+    @ConfigProperty(name = "cryostat.discovery.kubernetes.batch.window")
+    Duration batchWindow;
+
+    @ConfigProperty(name = "cryostat.discovery.kubernetes.batch.max-size")
+    int batchMaxSize;
+
+    @ConfigProperty(name = "cryostat.discovery.kubernetes.batch.parallelism")
+    int batchParallelism;
+
+    private ExecutorService batchExecutor;
+
+    private KeyedBatcher<String, EndpointDiscoveryEvent> endpointEvents;
+
     private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
 
     private volatile boolean shuttingDown;
 
+    // last applied resourceVersion of each EndpointSlice, keyed by namespace/name
+    private final Map<String, String> appliedVersions = new ConcurrentHashMap<>();
+
+    // namespaces which have been fully reconciled at least once since startup
+    private final Set<String> reconciledNamespaces = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean informersHealthy;
+
     private final LazyInitializer<HashMap<String, SharedIndexInformer<EndpointSlice>>> nsInformers =
             new LazyInitializer<HashMap<String, SharedIndexInformer<EndpointSlice>>>() {
                 @Override
@@ -228,8 +262,24 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                 }
             };
 
+    @PostConstruct
+    void init() {
+        batchExecutor = Executors.newFixedThreadPool(batchParallelism);
+        endpointEvents =
+                new KeyedBatcher<>(
+                        batchWindow, batchMaxSize, batchExecutor, this::applyEndpointEventBatch);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
     void onStart(@Observes StartupEvent evt) {
         shuttingDown = false;
+        informersHealthy = false;
+        appliedVersions.clear();
+        reconciledNamespaces.clear();
 
         if (!enabled()) {
             return;
@@ -242,13 +292,20 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
 
         logger.debugv("Starting {0} client", REALM);
         safeGetInformers();
+        ownerCache.start(
+                kubeConfig.watchAllNamespaces()
+                        ? List.of(KubeConfig.ALL_NAMESPACES)
+                        : kubeConfig.getWatchNamespaces(),
+                informerResyncPeriod);
         if (forceResyncEnabled) {
             // TODO we should not need to force manual re-syncs this way - the Informer is already
             // supposed to resync itself. However, this has been observed to fail before and
             // Watchers/Informers lose connection to the k8s API server and never regain it, so
             // discovery gets stuck at that point in time until the Cryostat container is restarted.
-            // This resync keeps things running and limping along even if the Informer fails -
-            // updates will be delayed, but they will still happen.
+            // This job checks the Informers' health and falls back to full namespace resyncs while
+            // they are not watching, which keeps things running and limping along even if the
+            // Informer fails - updates will be delayed, but they will still happen. While the
+            // Informers are healthy, changes are applied incrementally as they are observed.
             Callable<Collection<String>> resyncNamespaces;
             if (kubeConfig.watchAllNamespaces()) {
                 resyncNamespaces =
@@ -317,6 +374,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                                         "Closed EndpointSlice SharedInformer for namespace \"{0}\"",
                                         ns);
                             });
+            ownerCache.stop();
         } finally {
             writeLock.unlock();
         }
@@ -377,7 +435,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         logger.debugv(
                 "EndpointSlice {0} created in namespace {1}",
                 slice.getMetadata().getName(), slice.getMetadata().getNamespace());
-        notify(NamespaceQueryEvent.from(slice.getMetadata().getNamespace()));
+        notifyChanged(null, slice);
     }
 
     @Override
@@ -389,7 +447,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         logger.debugv(
                 "EndpointSlice {0} modified in namespace {1}",
                 newSlice.getMetadata().getName(), newSlice.getMetadata().getNamespace());
-        notify(NamespaceQueryEvent.from(newSlice.getMetadata().getNamespace()));
+        notifyChanged(oldSlice, newSlice);
     }
 
     @Override
@@ -403,8 +461,73 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                 endpoints.getMetadata().getName(), endpoints.getMetadata().getNamespace());
         if (deletedFinalStateUnknown) {
             logger.warnv("Deleted final state unknown: {0}", endpoints);
+            // we may have missed intermediate states, so don't trust a delta
+            appliedVersions.remove(sliceKey(endpoints));
+            notify(NamespaceQueryEvent.from(endpoints.getMetadata().getNamespace()));
+            return;
+        }
+        notifyChanged(endpoints, null);
+    }
+
+    /**
+     * Publish the change to a single EndpointSlice for incremental reconciliation. Informer resyncs
+     * redeliver slices which have not changed, so these are skipped by resourceVersion. The first
+     * change seen in a namespace after startup triggers a full reconciliation of that namespace
+     * instead, so that targets which disappeared while Cryostat was not watching are also pruned.
+     *
+     * @param previous the previously observed state of the slice, or null if it was created
+     * @param current the current state of the slice, or null if it was deleted
+     */
+    private void notifyChanged(EndpointSlice previous, EndpointSlice current) {
+        EndpointSlice slice = current != null ? current : previous;
+        String namespace = slice.getMetadata().getNamespace();
+        String key = sliceKey(slice);
+        if (current == null) {
+            appliedVersions.remove(key);
+        } else {
+            String version = current.getMetadata().getResourceVersion();
+            String applied = appliedVersions.put(key, String.valueOf(version));
+            if (version != null && version.equals(applied)) {
+                logger.tracev("EndpointSlice {0} unchanged at resourceVersion {1}", key, version);
+                return;
+            }
+        }
+        if (reconciledNamespaces.add(namespace)) {
+            notify(NamespaceQueryEvent.from(namespace));
+        } else {
+            notify(new EndpointSliceDeltaEvent(namespace, previous, current));
+        }
+    }
+
+    private static String sliceKey(EndpointSlice slice) {
+        return Cache.namespaceKeyFunc(
+                slice.getMetadata().getNamespace(), slice.getMetadata().getName());
+    }
+
+    /**
+     * Check the health of the EndpointSlice Informers, and force a full resync of the given
+     * namespaces if any of them are not watching, or if they have just recovered, since changes
+     * may have been missed in the meantime. The first check after startup always resyncs.
+     */
+    void resyncIfDegraded(Collection<String> namespaces) {
+        boolean healthy =
+                safeGetInformers().values().stream()
+                        .allMatch(i -> i.isRunning() && i.isWatching() && i.hasSynced());
+        boolean wasHealthy = informersHealthy;
+        informersHealthy = healthy;
+        if (healthy && wasHealthy) {
+            logger.tracev("EndpointSlice Informers healthy, skipping resync of {0}", namespaces);
+            return;
         }
-        notify(NamespaceQueryEvent.from(endpoints.getMetadata().getNamespace()));
+        if (healthy) {
+            logger.debugv(
+                    "EndpointSlice Informers watching, resyncing namespaces: {0}", namespaces);
+        } else {
+            logger.warnv(
+                    "EndpointSlice Informers not watching, resyncing namespaces: {0}", namespaces);
+        }
+        reconciledNamespaces.addAll(namespaces);
+        notify(NamespaceQueryEvent.from(namespaces));
     }
 
     private Map<String, SharedIndexInformer<EndpointSlice>> safeGetInformers() {
@@ -430,6 +553,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
 
     private void syncNamespaceTargets(NamespaceQueryEvent evt) {
         for (var namespace : evt.namespaces) {
+            long start = System.nanoTime();
             try {
                 Set<Target> persistedTargets = queryPersistedTargets(namespace);
 
@@ -494,46 +618,198 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             } catch (Exception e) {
                 logger.errorv(
                         e, "Failed to synchronize EndpointSlices in namespace {0}", namespace);
+            } finally {
+                recordReconciliation("full", start);
+            }
+        }
+    }
+
+    @ConsumeEvent(value = ENDPOINT_SLICE_DELTA_ADDR, blocking = true, ordered = true)
+    @Transactional(TxType.REQUIRES_NEW)
+    public void handleDeltaEvent(EndpointSliceDeltaEvent evt) {
+        if (!withDiscoveryEventHandler(() -> reconcileSlice(evt))) {
+            logger.tracev("Ignoring EndpointSlice delta event during shutdown: {0}", evt);
+        }
+    }
+
+    /**
+     * Apply the change to a single EndpointSlice. Only the targets exposed by the previous and
+     * current states of the slice are compared against the database, rather than every target in
+     * the namespace.
+     */
+    private void reconcileSlice(EndpointSliceDeltaEvent evt) {
+        String namespace = evt.namespace();
+        EndpointSlice slice = evt.current() != null ? evt.current() : evt.previous();
+        long start = System.nanoTime();
+        try {
+            Map<String, TargetTuple> previous = observedTargets(evt.previous());
+            Map<String, TargetTuple> current = observedTargets(evt.current());
+
+            Set<String> removedUrls = new HashSet<>(previous.keySet());
+            removedUrls.removeAll(current.keySet());
+            if (!removedUrls.isEmpty()) {
+                // another slice, ex. for a second Service selecting the same Pod, may still expose
+                // the same target
+                observedSlices(namespace)
+                        .filter(s -> !sliceKey(s).equals(sliceKey(slice)))
+                        .map(this::observedTargets)
+                        .forEach(m -> removedUrls.removeAll(m.keySet()));
+            }
+
+            Set<URI> candidates = new HashSet<>();
+            current.keySet().forEach(u -> candidates.add(URI.create(u)));
+            removedUrls.forEach(u -> candidates.add(URI.create(u)));
+            Map<String, Target> persisted = new HashMap<>();
+            if (!candidates.isEmpty()) {
+                // scoped to this realm's targets in this namespace, as in queryPersistedTargets,
+                // since another realm may have discovered a target with the same URL
+                Target.<Target>list(
+                                "connectUrl in ?1 and discoveryNode.nodeType = ?2",
+                                candidates,
+                                KubeDiscoveryNodeType.ENDPOINT_SLICE.getKind())
+                        .stream()
+                        .filter(
+                                t ->
+                                        namespace.equals(
+                                                t.discoveryNode.labels.get(
+                                                        DISCOVERY_NAMESPACE_LABEL_KEY)))
+                        .forEach(t -> persisted.put(t.connectUrl.toString(), t));
+            }
+
+            List<Target> removedTargets =
+                    removedUrls.stream()
+                            .map(persisted::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList());
+            List<TargetTuple> addedTuples =
+                    current.entrySet().stream()
+                            .filter(e -> !persisted.containsKey(e.getKey()))
+                            .map(Map.Entry::getValue)
+                            .collect(Collectors.toList());
+
+            logger.debugv(
+                    "EndpointSlice {0}: {1} removed targets, {2} added targets",
+                    sliceKey(slice), removedTargets.size(), addedTuples.size());
+
+            removedTargets.forEach(
+                    (t) -> {
+                        logger.debugv("Publishing LOST event for target: {0}", t.connectUrl);
+                        notify(EndpointDiscoveryEvent.from(namespace, t, null, EventKind.LOST));
+                    });
+
+            if (!addedTuples.isEmpty()) {
+                Map<NodeKey, Long> existingNodeIds = findExistingNodeIds(namespace);
+                for (TargetTuple tuple : addedTuples) {
+                    Pair<TargetDTO, DiscoveryNodeDTO> dto = toTargetDTO(tuple, existingNodeIds);
+                    if (dto == null) {
+                        continue;
+                    }
+                    logger.debugv(
+                            "Publishing FOUND event for target: {0}", dto.getLeft().connectUrl());
+                    notify(
+                            EndpointDiscoveryEvent.from(
+                                    namespace,
+                                    null,
+                                    null,
+                                    EventKind.FOUND,
+                                    dto.getLeft(),
+                                    dto.getRight()));
+                }
+            }
+        } catch (Exception e) {
+            logger.errorv(e, "Failed to reconcile EndpointSlice {0}", sliceKey(slice));
+            // allow the next informer resync to retry this slice
+            appliedVersions.remove(sliceKey(slice));
+        } finally {
+            recordReconciliation("incremental", start);
+        }
+    }
+
+    /** Returns the targets exposed by the given EndpointSlice, keyed by connect URL. */
+    private Map<String, TargetTuple> observedTargets(EndpointSlice slice) {
+        Map<String, TargetTuple> result = new HashMap<>();
+        if (slice == null) {
+            return result;
+        }
+        for (TargetTuple tuple : getTargetTuplesFrom(slice)) {
+            Target t = tuple.toTarget();
+            if (t != null) {
+                result.put(t.connectUrl.toString(), tuple);
+            }
+        }
+        return result;
+    }
+
+    // not tagged by namespace, which would create a timer per namespace when watching all of them
+    private void recordReconciliation(String mode, long startNanos) {
+        Timer.builder(RECONCILE_METER)
+                .description("Time taken to reconcile discovered Kubernetes targets")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Apply a batch of discovery events for a single namespace in a new transaction. If the batch
+     * fails as a whole, its events are retried one transaction at a time so that a single bad
+     * event does not cause the rest of the batch to be lost.
+     */
+    private void applyEndpointEventBatch(String namespace, List<EndpointDiscoveryEvent> events) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> handleEndpointEvents(namespace, events));
+            return;
+        } catch (Exception e) {
+            if (events.size() == 1) {
+                logger.errorv(
+                        e, "Failed to apply EndpointSlice discovery event {0}", events.get(0));
+                return;
+            }
+            logger.warnv(
+                    e,
+                    "Failed to apply batch of {0} EndpointSlice discovery events in namespace {1},"
+                            + " retrying individually",
+                    events.size(),
+                    namespace);
+        }
+        for (EndpointDiscoveryEvent evt : events) {
+            try {
+                QuarkusTransaction.requiringNew()
+                        .run(() -> handleEndpointEvents(namespace, List.of(evt)));
+            } catch (Exception e) {
+                logger.errorv(e, "Failed to apply EndpointSlice discovery event {0}", evt);
             }
         }
     }
 
-    @ConsumeEvent(value = ENDPOINT_SLICE_DISCOVERY_ADDR, blocking = true, ordered = true)
     @Transactional(TxType.REQUIRED)
-    public void handleEndpointEvent(EndpointDiscoveryEvent evt) {
-        if (!withDiscoveryEventHandler(() -> applyEndpointDiscoveryEvent(evt))) {
-            logger.tracev("Ignoring EndpointSlice discovery event during shutdown: {0}", evt);
+    public void handleEndpointEvents(String namespace, List<EndpointDiscoveryEvent> events) {
+        if (!withDiscoveryEventHandler(() -> applyEndpointDiscoveryEvents(namespace, events))) {
+            logger.tracev(
+                    "Ignoring {0} EndpointSlice discovery events for namespace {1} during"
+                            + " shutdown",
+                    events.size(),
+                    namespace);
         }
     }
 
-    private void applyEndpointDiscoveryEvent(EndpointDiscoveryEvent evt) {
-        String namespace = evt.namespace;
-        DiscoveryNode realm = DiscoveryNode.getRealm(REALM).orElseThrow();
-        realm = entityManager.find(DiscoveryNode.class, realm.id, LockModeType.PESSIMISTIC_WRITE);
-        DiscoveryNode lockedRealm = realm;
-        DiscoveryNode nsNode =
-                DiscoveryNode.getChild(lockedRealm, n -> n.name.equals(namespace))
-                        .orElseGet(
-                                () -> {
-                                    DiscoveryNode created =
-                                            DiscoveryNode.environment(
-                                                    namespace, KubeDiscoveryNodeType.NAMESPACE);
-                                    created.parent = lockedRealm;
-                                    created.persist();
-                                    return created;
-                                });
-
-        if (evt.eventKind == EventKind.FOUND) {
-            if (evt.targetDto != null && evt.hierarchyRoot != null) {
-                logger.debugv("Persisting target from DTO: {0}", evt.targetDto.connectUrl());
-                persistOwnerChainFromDTO(nsNode, evt.targetDto, evt.hierarchyRoot);
+    private void applyEndpointDiscoveryEvents(
+            String namespace, List<EndpointDiscoveryEvent> events) {
+        DiscoveryNode nsNode = lockNamespaceNode(namespace);
+        DiscoveryNode realm = nsNode.parent;
+
+        for (EndpointDiscoveryEvent evt : events) {
+            if (evt.eventKind == EventKind.FOUND) {
+                if (evt.targetDto != null && evt.hierarchyRoot != null) {
+                    logger.debugv("Persisting target from DTO: {0}", evt.targetDto.connectUrl());
+                    persistOwnerChainFromDTO(nsNode, evt.targetDto, evt.hierarchyRoot);
+                } else {
+                    logger.warnv(
+                            "FOUND event missing DTOs for target: {0}",
+                            evt.target != null ? evt.target.connectUrl : "null");
+                }
             } else {
-                logger.warnv(
-                        "FOUND event missing DTOs for target: {0}",
-                        evt.target != null ? evt.target.connectUrl : "null");
+                pruneOwnerChain(nsNode, evt.target);
             }
-        } else {
-            pruneOwnerChain(nsNode, evt.target);
         }
 
         if (!nsNode.hasChildren()) {
@@ -543,7 +819,40 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             realm.children.add(nsNode);
             nsNode.parent = realm;
         }
-        realm.persist();
+    }
+
+    /**
+     * Find or create the node for the given namespace and take a pessimistic write lock on it, so
+     * that batches for different namespaces can be persisted in parallel. The realm node is only
+     * locked when the namespace node does not exist yet, to avoid creating it twice.
+     */
+    private DiscoveryNode lockNamespaceNode(String namespace) {
+        DiscoveryNode realm = DiscoveryNode.getRealm(REALM).orElseThrow();
+        Optional<DiscoveryNode> nsNode = findNamespaceNode(realm, namespace);
+        if (nsNode.isEmpty()) {
+            entityManager.lock(realm, LockModeType.PESSIMISTIC_WRITE);
+            nsNode = findNamespaceNode(realm, namespace);
+        }
+        if (nsNode.isPresent()) {
+            DiscoveryNode node = nsNode.get();
+            entityManager.refresh(node, LockModeType.PESSIMISTIC_WRITE);
+            return node;
+        }
+        DiscoveryNode created =
+                DiscoveryNode.environment(namespace, KubeDiscoveryNodeType.NAMESPACE);
+        created.parent = realm;
+        created.persist();
+        realm.children.add(created);
+        return created;
+    }
+
+    private Optional<DiscoveryNode> findNamespaceNode(DiscoveryNode realm, String namespace) {
+        return DiscoveryNode.<DiscoveryNode>find(
+                        "parent = ?1 and name = ?2 and nodeType = ?3",
+                        realm,
+                        namespace,
+                        KubeDiscoveryNodeType.NAMESPACE.getKind())
+                .firstResultOptional();
     }
 
     private void notify(NamespaceQueryEvent evt) {
@@ -554,12 +863,20 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         bus.publish(NAMESPACE_QUERY_ADDR, evt);
     }
 
+    private void notify(EndpointSliceDeltaEvent evt) {
+        if (shuttingDown) {
+            logger.tracev("Ignoring EndpointSlice delta event during shutdown: {0}", evt);
+            return;
+        }
+        bus.publish(ENDPOINT_SLICE_DELTA_ADDR, evt);
+    }
+
     private void notify(EndpointDiscoveryEvent evt) {
         if (shuttingDown) {
             logger.tracev("Ignoring EndpointSlice discovery event during shutdown: {0}", evt);
             return;
         }
-        bus.publish(ENDPOINT_SLICE_DISCOVERY_ADDR, evt);
+        endpointEvents.offer(evt.namespace, evt);
     }
 
     List<TargetTuple> getTargetTuplesFrom(EndpointSlice slice) {
@@ -629,10 +946,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                             if (nodeType == null) {
                                 return null;
                             }
-                            return nodeType.getQueryFunction()
-                                    .apply(client)
-                                    .apply(ref.getNamespace())
-                                    .apply(ref.getName());
+                            return ownerCache.get(nodeType, ref.getNamespace(), ref.getName());
                         });
 
         return new TargetTuple(ref, obj, transformedAddr, port, endpoint.getConditions());
@@ -686,57 +1000,68 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     private Map<TargetDTO, DiscoveryNodeDTO> buildInMemoryTreeForNamespaceDTO(String namespace) {
         Map<TargetDTO, DiscoveryNodeDTO> result = new HashMap<>();
 
-        Stream<EndpointSlice> endpoints;
-        if (kubeConfig.watchAllNamespaces()) {
-            endpoints =
-                    safeGetInformers().get(KubeConfig.ALL_NAMESPACES).getStore().list().stream()
-                            .filter(
-                                    ep ->
-                                            Objects.equals(
-                                                    ep.getMetadata().getNamespace(), namespace));
-        } else {
-            var informer = safeGetInformers().get(namespace);
-            if (informer == null) {
-                logger.warnv("No informer found for namespace: {0}", namespace);
-                return result;
-            }
-            endpoints = informer.getStore().list().stream();
-        }
+        Map<NodeKey, Long> existingNodeIds = findExistingNodeIds(namespace);
 
-        endpoints
+        observedSlices(namespace)
                 .map(this::getTargetTuplesFrom)
                 .flatMap(List::stream)
                 .filter((tuple) -> Objects.nonNull(tuple.objRef))
-                .forEach(
-                        (tuple) -> {
-                            Target t = tuple.toTarget();
-                            if (t != null) {
-                                DiscoveryNodeDTO hierarchyRoot =
-                                        buildOwnershipLineageForTargetDTO(tuple);
-                                TargetDTO targetDTO =
-                                        new TargetDTO(
-                                                t.connectUrl.toString(),
-                                                t.alias,
-                                                new HashMap<>(t.labels),
-                                                t.annotations,
-                                                hierarchyRoot);
-                                result.put(targetDTO, hierarchyRoot);
-                            }
-                        });
+                .map((tuple) -> toTargetDTO(tuple, existingNodeIds))
+                .filter(Objects::nonNull)
+                .forEach((dto) -> result.put(dto.getLeft(), dto.getRight()));
 
         return result;
     }
 
+    /** Returns the EndpointSlices in the given namespace, as currently held by the Informer. */
+    private Stream<EndpointSlice> observedSlices(String namespace) {
+        if (kubeConfig.watchAllNamespaces()) {
+            return safeGetInformers().get(KubeConfig.ALL_NAMESPACES).getStore().list().stream()
+                    .filter(ep -> Objects.equals(ep.getMetadata().getNamespace(), namespace));
+        }
+        var informer = safeGetInformers().get(namespace);
+        if (informer == null) {
+            logger.warnv("No informer found for namespace: {0}", namespace);
+            return Stream.empty();
+        }
+        return informer.getStore().list().stream();
+    }
+
+    /**
+     * Build the TargetDTO and ownership lineage for a single observed target.
+     *
+     * @return Pair of TargetDTO and the root of its ownership hierarchy, or null if the tuple
+     *     cannot be converted to a Target
+     */
+    private Pair<TargetDTO, DiscoveryNodeDTO> toTargetDTO(
+            TargetTuple tuple, Map<NodeKey, Long> existingNodeIds) {
+        Target t = tuple.toTarget();
+        if (t == null) {
+            return null;
+        }
+        DiscoveryNodeDTO hierarchyRoot = buildOwnershipLineageForTargetDTO(tuple, existingNodeIds);
+        TargetDTO targetDTO =
+                new TargetDTO(
+                        t.connectUrl.toString(),
+                        t.alias,
+                        new HashMap<>(t.labels),
+                        t.annotations,
+                        hierarchyRoot);
+        return Pair.of(targetDTO, hierarchyRoot);
+    }
+
     /**
      * Builds the complete ownership lineage for a target using DTOs, from the leaf node
      * (EndpointSlice) through Pod, ReplicaSet, Deployment, up to the Namespace. This method
      * constructs the entire tree in memory without creating Hibernate entities.
      *
      * @param tuple The TargetTuple containing target information and Kubernetes references
+     * @param existingNodeIds Index of the nodes already persisted in the target's namespace
      * @return The root DiscoveryNodeDTO of the ownership hierarchy (typically a Namespace or the
      *     highest owner)
      */
-    private DiscoveryNodeDTO buildOwnershipLineageForTargetDTO(TargetTuple tuple) {
+    private DiscoveryNodeDTO buildOwnershipLineageForTargetDTO(
+            TargetTuple tuple, Map<NodeKey, Long> existingNodeIds) {
         String targetKind = tuple.objRef.getKind();
         KubeDiscoveryNodeType targetType = KubeDiscoveryNodeType.fromKubernetesKind(targetKind);
 
@@ -747,7 +1072,8 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                     queryForNodeDTO(
                             tuple.objRef.getNamespace(),
                             tuple.objRef.getName(),
-                            tuple.objRef.getKind());
+                            tuple.objRef.getKind(),
+                            existingNodeIds);
 
             if (pod != null) {
                 DiscoveryNodeDTO podNode = pod.getRight();
@@ -763,7 +1089,8 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                                 podNode.existingId());
 
                 DiscoveryNodeDTO rootNode =
-                        buildOwnershipHierarchyDTO(pod.getLeft(), updatedPodNode);
+                        buildOwnershipHierarchyDTO(
+                                pod.getLeft(), updatedPodNode, existingNodeIds);
                 return rootNode;
             }
         }
@@ -795,24 +1122,24 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     }
 
     /**
-     * Queries Kubernetes API for a node and creates a DiscoveryNodeDTO. Checks if the node exists
-     * in the database and marks the DTO accordingly.
+     * Looks up a Kubernetes object and creates a DiscoveryNodeDTO. Checks if the node exists in
+     * the database and marks the DTO accordingly.
      *
      * @param namespace Kubernetes namespace
      * @param name Resource name
      * @param kind Resource kind
+     * @param existingNodeIds Index of the nodes already persisted in the namespace
      * @return Pair of Kubernetes object and DiscoveryNodeDTO, or null if not found
      */
     private Pair<HasMetadata, DiscoveryNodeDTO> queryForNodeDTO(
-            String namespace, String name, String kind) {
+            String namespace, String name, String kind, Map<NodeKey, Long> existingNodeIds) {
 
         KubeDiscoveryNodeType nodeType = KubeDiscoveryNodeType.fromKubernetesKind(kind);
         if (nodeType == null) {
             return null;
         }
 
-        HasMetadata kubeObj =
-                nodeType.getQueryFunction().apply(client).apply(namespace).apply(name);
+        HasMetadata kubeObj = ownerCache.get(nodeType, namespace, name);
 
         Map<String, String> labels = new HashMap<>();
         if (kubeObj != null && kubeObj.getMetadata().getLabels() != null) {
@@ -820,7 +1147,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         }
         labels.put(DISCOVERY_NAMESPACE_LABEL_KEY, namespace);
 
-        Long existingId = findExistingNodeId(namespace, name, nodeType.getKind());
+        Long existingId = existingNodeIds.get(new NodeKey(nodeType.getKind(), name));
 
         DiscoveryNodeDTO nodeDTO =
                 new DiscoveryNodeDTO(
@@ -837,10 +1164,11 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
      *
      * @param kubeObj The Kubernetes object to start from
      * @param node The DiscoveryNodeDTO representing the Kubernetes object
+     * @param existingNodeIds Index of the nodes already persisted in the namespace
      * @return The root DiscoveryNodeDTO of the ownership chain (the topmost owner)
      */
     private DiscoveryNodeDTO buildOwnershipHierarchyDTO(
-            HasMetadata kubeObj, DiscoveryNodeDTO node) {
+            HasMetadata kubeObj, DiscoveryNodeDTO node, Map<NodeKey, Long> existingNodeIds) {
         Pair<HasMetadata, DiscoveryNodeDTO> current = Pair.of(kubeObj, node);
 
         while (true) {
@@ -853,7 +1181,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                 break;
             }
 
-            Pair<HasMetadata, DiscoveryNodeDTO> owner = getOwnerNodeDTO(current);
+            Pair<HasMetadata, DiscoveryNodeDTO> owner = getOwnerNodeDTO(current, existingNodeIds);
             if (owner == null) {
                 break;
             }
@@ -882,14 +1210,15 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     }
 
     /**
-     * Gets the owner node for a given child node by querying Kubernetes API. Creates a
-     * DiscoveryNodeDTO and checks if it exists in the database.
+     * Gets the owner node for a given child node from the owner cache. Creates a DiscoveryNodeDTO
+     * and checks if it exists in the database.
      *
      * @param child Pair of Kubernetes object and its DiscoveryNodeDTO
+     * @param existingNodeIds Index of the nodes already persisted in the namespace
      * @return Pair of owner Kubernetes object and its DiscoveryNodeDTO, or null if no owner
      */
     private Pair<HasMetadata, DiscoveryNodeDTO> getOwnerNodeDTO(
-            Pair<HasMetadata, DiscoveryNodeDTO> child) {
+            Pair<HasMetadata, DiscoveryNodeDTO> child, Map<NodeKey, Long> existingNodeIds) {
         HasMetadata childRef = child.getLeft();
         if (childRef == null) {
             return null;
@@ -904,7 +1233,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
                         .filter(o -> KubeDiscoveryNodeType.fromKubernetesKind(o.getKind()) != null)
                         .findFirst()
                         .orElse(owners.get(0));
-        return queryForNodeDTO(namespace, owner.getName(), owner.getKind());
+        return queryForNodeDTO(namespace, owner.getName(), owner.getKind(), existingNodeIds);
     }
 
     /**
@@ -930,8 +1259,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         }
 
         leafNode.labels.putIfAbsent(DISCOVERY_NAMESPACE_LABEL_KEY, namespace);
-        HasMetadata kubeObj =
-                nodeType.getQueryFunction().apply(client).apply(namespace).apply(leafNode.name);
+        HasMetadata kubeObj = ownerCache.get(nodeType, namespace, leafNode.name);
 
         if (kubeObj == null) {
             return leafNode;
@@ -1250,8 +1578,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             return null;
         }
 
-        HasMetadata kubeObj =
-                nodeType.getQueryFunction().apply(client).apply(namespace).apply(name);
+        HasMetadata kubeObj = ownerCache.get(nodeType, namespace, name);
 
         DiscoveryNode node = new DiscoveryNode();
         node.name = name;
@@ -1287,8 +1614,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             return null;
         }
 
-        HasMetadata kubeObj =
-                nodeType.getQueryFunction().apply(client).apply(namespace).apply(name);
+        HasMetadata kubeObj = ownerCache.get(nodeType, namespace, name);
 
         if (kubeObj == null) {
             logger.debugv(
@@ -1384,35 +1710,32 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     }
 
     /**
-     * Queries the database to find an existing DiscoveryNode by composite ID. A DiscoveryNode is
-     * uniquely identified by: name + nodeType + namespace label.
+     * Queries the database for all of the existing DiscoveryNodes in a namespace, indexed by their
+     * composite ID. A DiscoveryNode is uniquely identified by: name + nodeType + namespace label.
+     * Loading the whole namespace at once means that building the ownership lineage of every
+     * target in the namespace costs a single query, rather than one query per owner hop.
      *
      * @param namespace The namespace from the discovery.cryostat.io/namespace label
-     * @param name The node name
-     * @param nodeType The node type (e.g., "Pod", "Deployment")
-     * @return The node ID if found, null otherwise
+     * @return Map of (nodeType, name) to node ID. If more than one node matches, the oldest wins
      */
-    private Long findExistingNodeId(String namespace, String name, String nodeType) {
+    @SuppressWarnings("unchecked")
+    private Map<NodeKey, Long> findExistingNodeIds(String namespace) {
+        Map<NodeKey, Long> ids = new HashMap<>();
         try {
-            Object result =
+            List<Object[]> rows =
                     entityManager
-                            .createNativeQuery(FIND_NAMESPACED_NODE_SQL)
-                            .setParameter("name", name)
-                            .setParameter("nodeType", nodeType)
+                            .createNativeQuery(FIND_NAMESPACED_NODES_SQL)
                             .setParameter("namespace", namespace)
-                            .getResultStream()
-                            .findFirst()
-                            .orElse(null);
-            return result != null ? ((Number) result).longValue() : null;
+                            .getResultList();
+            for (Object[] row : rows) {
+                ids.putIfAbsent(
+                        new NodeKey((String) row[1], (String) row[2]),
+                        ((Number) row[0]).longValue());
+            }
         } catch (Exception e) {
-            logger.errorv(
-                    e,
-                    "Error finding existing node: name={0}, type={1}, namespace={2}",
-                    name,
-                    nodeType,
-                    namespace);
-            return null;
+            logger.errorv(e, "Error finding existing nodes in namespace {0}", namespace);
         }
+        return ids;
     }
 
     /**
@@ -1644,7 +1967,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
     @DisallowConcurrentExecution
     static class EndpointsResyncJob implements Job {
         @Inject Logger logger;
-        @Inject EventBus bus;
+        @Inject KubeEndpointSlicesDiscovery discovery;
 
         @SuppressWarnings("unchecked")
         @Override
@@ -1652,8 +1975,7 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             try {
                 Collection<String> namespaces =
                         (Collection<String>) context.getMergedJobDataMap().get("namespaces");
-                logger.debugv("Resyncing namespaces: {0}", namespaces);
-                bus.publish(NAMESPACE_QUERY_ADDR, NamespaceQueryEvent.from(namespaces));
+                discovery.resyncIfDegraded(namespaces);
             } catch (Exception e) {
                 logger.warn(e);
             }
@@ -1732,6 +2054,9 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
         }
     }
 
+    static record EndpointSliceDeltaEvent(
+            String namespace, EndpointSlice previous, EndpointSlice current) {}
+
     static record EndpointDiscoveryEvent(
             String namespace,
             Target target,
@@ -1767,6 +2092,9 @@ public class KubeEndpointSlicesDiscovery implements ResourceEventHandler<Endpoin
             Target.Annotations annotations,
             DiscoveryNodeDTO discoveryNode) {}
 
+    /** Composite key of a DiscoveryNode within a namespace. */
+    record NodeKey(String nodeType, String name) {}
+
     /**
      * Represents a DiscoveryNode before it becomes a Hibernate entity. Used to build the discovery
      * tree in memory without creating entities. The existingId holds the database ID if this node
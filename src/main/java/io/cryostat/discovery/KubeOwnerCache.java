@@ -0,0 +1,211 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.cryostat.discovery.KubeEndpointSlicesDiscovery.KubeConfig;
+import io.cryostat.discovery.KubeEndpointSlicesDiscovery.KubeDiscoveryNodeType;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.Informable;
+import io.fabric8.kubernetes.client.dsl.MixedOperation;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Cache;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Local cache of the Kubernetes objects which can appear in a discovered target's ownership lineage
+ * (Pod → ReplicaSet → Deployment and so on). Each owner kind is watched by a SharedInformer, so
+ * that chasing owner references is a lookup in the informer's indexed store rather than a GET
+ * request to the API server per hop. Informers are started lazily, the first time an object of
+ * their kind is looked up in their namespace, so only the kinds which discovered targets are
+ * actually owned by are watched. Lookups for kinds which are not informed, whose informer failed to
+ * start or has not yet synced, or for objects the informer has not yet observed, fall back to
+ * querying the API server directly. Informers require list and watch permissions on the informed
+ * kinds, and can be disabled entirely so that only get permissions are needed.
+ */
+@ApplicationScoped
+class KubeOwnerCache {
+
+    static final Set<KubeDiscoveryNodeType> INFORMED_KINDS =
+            EnumSet.of(
+                    KubeDiscoveryNodeType.POD,
+                    KubeDiscoveryNodeType.REPLICASET,
+                    KubeDiscoveryNodeType.REPLICATIONCONTROLLER,
+                    KubeDiscoveryNodeType.DEPLOYMENT,
+                    KubeDiscoveryNodeType.STATEFULSET,
+                    KubeDiscoveryNodeType.DAEMONSET);
+
+    @Inject Logger logger;
+    @Inject KubernetesClient client;
+
+    @ConfigProperty(name = "cryostat.discovery.kubernetes.owner-informers.enabled")
+    boolean enabled;
+
+    // an empty value marks an informer which failed to start, so that it is not retried on every
+    // lookup
+    private final Map<InformerKey, Optional<SharedIndexInformer<? extends HasMetadata>>>
+            informers = new ConcurrentHashMap<>();
+    private Set<String> namespaces = Set.of();
+    private Duration resyncPeriod;
+
+    /**
+     * Allow informers to be started for each owner kind as lookups require them.
+     *
+     * @param namespaces the namespaces to watch, or a single {@link KubeConfig#ALL_NAMESPACES}
+     * @param resyncPeriod the informer resync period
+     */
+    synchronized void start(Collection<String> namespaces, Duration resyncPeriod) {
+        if (!enabled) {
+            logger.debug("Owner informers are disabled, lookups will query the API server");
+            return;
+        }
+        this.namespaces = Set.copyOf(namespaces);
+        this.resyncPeriod = resyncPeriod;
+    }
+
+    synchronized void stop() {
+        namespaces = Set.of();
+        informers.forEach(
+                (key, informer) ->
+                        informer.ifPresent(
+                                i -> {
+                                    i.close();
+                                    logger.debugv(
+                                            "Closed {0} SharedInformer for namespace \"{1}\"",
+                                            key.kind(), key.namespace());
+                                }));
+        informers.clear();
+    }
+
+    /**
+     * Look up a Kubernetes object, preferring the informer store over the API server.
+     *
+     * @return the object, or null if it does not exist
+     */
+    HasMetadata get(KubeDiscoveryNodeType kind, String namespace, String name) {
+        SharedIndexInformer<? extends HasMetadata> informer = informer(kind, namespace);
+        if (informer != null && informer.hasSynced()) {
+            HasMetadata obj = informer.getStore().getByKey(Cache.namespaceKeyFunc(namespace, name));
+            if (obj != null) {
+                return obj;
+            }
+            // the object may be newer than the informer's last watch event, so it is still worth
+            // asking the API server about
+            logger.tracev("{0} {1}/{2} not found in informer store", kind, namespace, name);
+        }
+        return kind.getQueryFunction().apply(client).apply(namespace).apply(name);
+    }
+
+    private SharedIndexInformer<? extends HasMetadata> informer(
+            KubeDiscoveryNodeType kind, String namespace) {
+        if (!enabled || !INFORMED_KINDS.contains(kind)) {
+            return null;
+        }
+        var informer = informers.get(new InformerKey(kind, namespace));
+        if (informer == null) {
+            informer = informers.get(new InformerKey(kind, KubeConfig.ALL_NAMESPACES));
+        }
+        if (informer != null) {
+            return informer.orElse(null);
+        }
+        synchronized (this) {
+            String scope;
+            if (namespaces.contains(KubeConfig.ALL_NAMESPACES)) {
+                scope = KubeConfig.ALL_NAMESPACES;
+            } else if (namespaces.contains(namespace)) {
+                scope = namespace;
+            } else {
+                // stopped, or not a watched namespace
+                return null;
+            }
+            return informers
+                    .computeIfAbsent(new InformerKey(kind, scope), this::startInformer)
+                    .orElse(null);
+        }
+    }
+
+    private Optional<SharedIndexInformer<? extends HasMetadata>> startInformer(InformerKey key) {
+        try {
+            var informer = inform(key.kind(), key.namespace(), resyncPeriod);
+            logger.debugv(
+                    "Started {0} SharedInformer for namespace \"{1}\" with resync period {2}",
+                    key.kind(), key.namespace(), resyncPeriod);
+            return Optional.of(informer);
+        } catch (Exception e) {
+            logger.warnv(
+                    e,
+                    "Failed to start {0} SharedInformer for namespace \"{1}\", lookups will query"
+                            + " the API server",
+                    key.kind(),
+                    key.namespace());
+            return Optional.empty();
+        }
+    }
+
+    private SharedIndexInformer<? extends HasMetadata> inform(
+            KubeDiscoveryNodeType kind, String namespace, Duration resyncPeriod) {
+        MixedOperation<? extends HasMetadata, ?, ?> resources = resources(kind);
+        Informable<? extends HasMetadata> scope;
+        if (KubeConfig.ALL_NAMESPACES.equals(namespace)) {
+            scope = resources.inAnyNamespace();
+        } else {
+            scope = resources.inNamespace(namespace);
+        }
+        return scope.runnableInformer(resyncPeriod.toMillis())
+                .exceptionHandler(
+                        (started, t) -> {
+                            logger.warn(t);
+                            // keep retrying a broken watch, but fail fast if the informer cannot
+                            // start at all (ex. RBAC does not permit list/watch) so that lookups
+                            // fall back to the API server
+                            return started;
+                        })
+                .run();
+    }
+
+    private MixedOperation<? extends HasMetadata, ?, ?> resources(KubeDiscoveryNodeType kind) {
+        switch (kind) {
+            case POD:
+                return client.pods();
+            case REPLICASET:
+                return client.apps().replicaSets();
+            case REPLICATIONCONTROLLER:
+                return client.replicationControllers();
+            case DEPLOYMENT:
+                return client.apps().deployments();
+            case STATEFULSET:
+                return client.apps().statefulSets();
+            case DAEMONSET:
+                return client.apps().daemonSets();
+            default:
+                throw new IllegalArgumentException(kind.getKind());
+        }
+    }
+
+    private record InformerKey(KubeDiscoveryNodeType kind, String namespace) {}
+}
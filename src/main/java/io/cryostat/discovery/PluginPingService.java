@@ -0,0 +1,504 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.discovery.DiscoveryPlugin.PluginCallback;
+import io.cryostat.discovery.DiscoveryPlugin.PluginCleanupHelper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.NoResultException;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Hibernate;
+import org.jboss.logging.Logger;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.matchers.GroupMatcher;
+
+/**
+ * Check that discovery plugins are still alive/reachable and prompt them to regenerate expiring
+ * tokens. Plugins are issued short-lived tokens at registration time. Cryostat periodically pings
+ * plugins to ensure they are still alive/reachable and to prompt them to request a fresh token if
+ * their token will be expiring soon. Plugins which fail too many consecutive pings are pruned.
+ *
+ * <p>Rather than scheduling a persistent job per plugin, a single sweeper tracks when each plugin
+ * is next due for a ping. Each plugin's interval is jittered so that plugins registered together
+ * do not stay in lockstep. Due pings are performed on virtual threads, with the number in flight
+ * bounded by an {@link AimdLimiter}: the limit grows while pings complete quickly and
+ * successfully, and is cut back when pings fail or slow down. After a restart all known plugins
+ * are pinged shortly after the startup grace period, so that stale registrations are pruned as
+ * quickly as the plugins' responses allow.
+ */
+@ApplicationScoped
+public class PluginPingService {
+
+    static final String METER_PREFIX = "cryostat.discovery.plugins.pings";
+    // group of the per-plugin Quartz jobs used by previous versions
+    private static final String LEGACY_JOB_GROUP = "discovery.periodic";
+
+    @Inject Logger logger;
+    @Inject Scheduler scheduler;
+    @Inject MeterRegistry meterRegistry;
+    @Inject PluginCallbackFactory callbackFactory;
+    @Inject PluginCleanupHelper cleanupHelper;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_PERIOD)
+    Duration period;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_JITTER)
+    Duration jitter;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD)
+    Duration startupGracePeriod;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_CONCURRENCY_INITIAL)
+    int initialConcurrency;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_CONCURRENCY_MIN)
+    int minConcurrency;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_CONCURRENCY_MAX)
+    int maxConcurrency;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_LATENCY_TARGET)
+    Duration latencyTarget;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_FAILURES)
+    int maxConsecutiveFailures;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_BACKOFF_MULTIPLIER)
+    int maxBackoffMultiplier;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD_MS)
+    Optional<Long> legacyStartupGracePeriodMs;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_WORKER_POOL_SIZE)
+    Optional<Integer> legacyWorkerPoolSize;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_DELAY_MS)
+    Optional<Long> legacyDelayMs;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_TIMEOUT_MS)
+    Optional<Long> legacyTimeoutMs;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // plugin ID -> when the plugin is next due for a ping, and whether to request a refresh
+    private final ConcurrentMap<UUID, Schedule> due = new ConcurrentHashMap<>();
+
+    private AimdLimiter limiter;
+    private Timer succeededLatency;
+    private Timer failedLatency;
+    private Map<Outcome, Counter> outcomes;
+
+    enum Outcome {
+        SUCCESS,
+        SKIPPED,
+        FAILED,
+        REMOVED,
+        ;
+    }
+
+    private record Schedule(long at, boolean refresh) {}
+
+    /** A plugin's callback, along with the plugin's details for logging. */
+    private record Callback(PluginCallback cb, String realm, URI callback) {}
+
+    @PostConstruct
+    void init() {
+        applyLegacyConfig();
+        this.limiter =
+                new AimdLimiter(initialConcurrency, minConcurrency, maxConcurrency, latencyTarget);
+        this.succeededLatency =
+                Timer.builder(METER_PREFIX + ".latency")
+                        .description("Discovery plugin ping latency")
+                        .tag("result", "success")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        this.failedLatency =
+                Timer.builder(METER_PREFIX + ".latency")
+                        .description("Discovery plugin ping latency")
+                        .tag("result", "failure")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        this.outcomes = new ConcurrentHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(
+                    outcome,
+                    Counter.builder(METER_PREFIX)
+                            .description("Discovery plugin pings")
+                            .tag("outcome", outcome.name().toLowerCase())
+                            .register(meterRegistry));
+        }
+        Gauge.builder(METER_PREFIX + ".concurrency", limiter, AimdLimiter::getLimit)
+                .description("Discovery plugin ping concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".in-flight", limiter, AimdLimiter::getInFlight)
+                .description("Discovery plugin pings in flight")
+                .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".plugins", due, Map::size)
+                .description("Discovery plugins tracked for periodic pings")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Honour the properties used by previous versions, which paced pings with a fixed pool of
+     * workers and fixed delays. The startup grace period maps directly onto its replacement, and
+     * the worker pool size becomes the initial concurrency limit. The delay and timeout have no
+     * equivalent, as pings are paced by the concurrency limit instead.
+     */
+    private void applyLegacyConfig() {
+        legacyStartupGracePeriodMs.ifPresent(
+                ms -> {
+                    logger.warnv(
+                            "{0} is deprecated, use {1} instead",
+                            ConfigProperties.DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD_MS,
+                            ConfigProperties.DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD);
+                    this.startupGracePeriod = Duration.ofMillis(ms);
+                });
+        legacyWorkerPoolSize.ifPresent(
+                size -> {
+                    logger.warnv(
+                            "{0} is deprecated, use {1} instead",
+                            ConfigProperties.DISCOVERY_PLUGINS_PING_WORKER_POOL_SIZE,
+                            ConfigProperties.DISCOVERY_PLUGINS_PING_CONCURRENCY_INITIAL);
+                    this.initialConcurrency = Math.clamp(size, minConcurrency, maxConcurrency);
+                });
+        legacyDelayMs.ifPresent(
+                ms ->
+                        logger.warnv(
+                                "{0} is deprecated and ignored, pings are paced by {1}",
+                                ConfigProperties.DISCOVERY_PLUGINS_PING_DELAY_MS,
+                                ConfigProperties.DISCOVERY_PLUGINS_PING_LATENCY_TARGET));
+        legacyTimeoutMs.ifPresent(
+                ms ->
+                        logger.warnv(
+                                "{0} is deprecated and ignored, pings are paced by {1}",
+                                ConfigProperties.DISCOVERY_PLUGINS_PING_TIMEOUT_MS,
+                                ConfigProperties.DISCOVERY_PLUGINS_PING_LATENCY_TARGET));
+    }
+
+    void onStart(@Observes StartupEvent evt) {
+        try {
+            var legacy = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(LEGACY_JOB_GROUP));
+            if (!legacy.isEmpty()) {
+                logger.debugv("Removing {0} legacy per-plugin ping jobs", legacy.size());
+                scheduler.deleteJobs(new ArrayList<>(legacy));
+            }
+        } catch (SchedulerException e) {
+            logger.warn(e);
+        }
+        // plugin ID -> whether pings should prompt the plugin to refresh
+        Map<UUID, Boolean> plugins =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () ->
+                                        DiscoveryPlugin.<DiscoveryPlugin>find("builtin", false)
+                                                .list()
+                                                .stream()
+                                                .collect(
+                                                        Collectors.toMap(
+                                                                p -> p.id,
+                                                                p -> p.refreshOnPing)));
+        // give plugins a chance to re-register after a restart before they are pinged, then ping
+        // them all so that stale plugins are pruned quickly. The limiter spaces the pings out.
+        long start = System.currentTimeMillis() + startupGracePeriod.toMillis();
+        long spread = Math.max(1, jitter.toMillis());
+        plugins.forEach(
+                (id, refresh) ->
+                        due.putIfAbsent(
+                                id,
+                                new Schedule(
+                                        start + ThreadLocalRandom.current().nextLong(spread),
+                                        refresh)));
+        logger.debugv(
+                "Scheduled {0} discovery plugins for ping after {1} grace period",
+                plugins.size(), startupGracePeriod);
+    }
+
+    void onStop(@Observes ShutdownEvent evt) {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Track a plugin for periodic pings. A plugin which is already tracked keeps its next ping
+     * time.
+     *
+     * @param pluginId the plugin to ping
+     * @param refresh whether pings should prompt the plugin to refresh, rather than just checking
+     *     that it is reachable
+     */
+    void schedule(UUID pluginId, boolean refresh) {
+        due.compute(
+                pluginId,
+                (id, s) ->
+                        new Schedule(
+                                s == null ? next(System.currentTimeMillis()) : s.at(), refresh));
+    }
+
+    void forget(UUID pluginId) {
+        due.remove(pluginId);
+    }
+
+    @Scheduled(
+            every = "${" + ConfigProperties.DISCOVERY_PLUGINS_PING_SWEEP_PERIOD + "}",
+            delayed = "1s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    /** Ping all plugins which are due, blocking until all pings are complete. */
+    void sweep(long now) {
+        List<Future<?>> pings = new ArrayList<>();
+        due.forEach(
+                (id, s) -> {
+                    if (s.at() > now) {
+                        return;
+                    }
+                    // reschedule up front, so that a failing plugin waits for its next interval
+                    if (due.replace(id, s, new Schedule(next(now), s.refresh()))) {
+                        pings.add(executor.submit(() -> limitedPing(id, s.refresh())));
+                    }
+                });
+        for (Future<?> ping : pings) {
+            try {
+                ping.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pings.forEach(f -> f.cancel(true));
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                logger.warn(e.getCause());
+            }
+        }
+    }
+
+    private void limitedPing(UUID pluginId, boolean refresh) throws InterruptedException {
+        long start = limiter.acquire();
+        Outcome outcome = Outcome.FAILED;
+        try {
+            outcome = ping(pluginId, refresh);
+        } finally {
+            switch (outcome) {
+                case SUCCESS:
+                    limiter.release(start, true);
+                    break;
+                case SKIPPED:
+                    limiter.cancel();
+                    break;
+                case REMOVED:
+                    // a plugin which was already deleted is not contacted at all, and one which
+                    // has now been pruned was already counted against the limit by its earlier
+                    // failures
+                    forget(pluginId);
+                    limiter.cancel();
+                    break;
+                default:
+                    limiter.release(start, false);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Ping a discovery plugin and record the outcome on the plugin. Pings of plugins which are
+     * backing off after previous failures are skipped. The plugin is loaded and the outcome is
+     * recorded in separate short transactions, so that no database connection is held while
+     * waiting for the plugin to respond.
+     *
+     * @return the outcome. {@link Outcome#REMOVED} indicates that the plugin no longer exists,
+     *     either because it was already deleted or because it has now been pruned after too many
+     *     consecutive failures.
+     */
+    Outcome ping(UUID pluginId, boolean refresh) {
+        Outcome outcome;
+        try {
+            Optional<Callback> callback =
+                    QuarkusTransaction.requiringNew().call(() -> loadCallback(pluginId));
+            if (callback.isEmpty()) {
+                outcome = Outcome.SKIPPED;
+            } else {
+                invoke(callback.get(), refresh);
+                outcome = QuarkusTransaction.requiringNew().call(() -> onPingSuccess(pluginId));
+            }
+        } catch (Exception e) {
+            logger.warnv(e, "Plugin ping failed");
+            outcome = onPingFailure(pluginId, e);
+        }
+        outcomes.get(outcome).increment();
+        return outcome;
+    }
+
+    private Optional<Callback> loadCallback(UUID pluginId) {
+        var p = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
+
+        if (p == null) {
+            throw new NoResultException("Plugin not found: " + pluginId);
+        }
+
+        if (p.nextPingAt != null && Instant.now().isBefore(p.nextPingAt)) {
+            logger.debugv("Skipping ping due to backoff: {0} @ {1}", p.realm.name, p.callback);
+            return Optional.empty();
+        }
+
+        // the callback reads the plugin's credential when it is invoked, after this transaction
+        Hibernate.initialize(p.credential);
+        try {
+            return Optional.of(
+                    new Callback(callbackFactory.create(p), p.realm.name, p.callback));
+        } catch (URISyntaxException use) {
+            throw new IllegalStateException(use);
+        }
+    }
+
+    private void invoke(Callback callback, boolean refresh) {
+        long start = System.nanoTime();
+        try {
+            if (refresh) {
+                callback.cb().refresh();
+                logger.debugv(
+                        "Refreshed discovery plugin: {0} @ {1}",
+                        callback.realm(), callback.callback());
+            } else {
+                callback.cb().ping();
+                logger.debugv(
+                        "Retained discovery plugin: {0} @ {1}",
+                        callback.realm(), callback.callback());
+            }
+        } catch (RuntimeException e) {
+            failedLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        succeededLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Outcome onPingSuccess(UUID pluginId) {
+        var p = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
+        if (p == null) {
+            // deleted while the ping was in flight
+            cleanupHelper.cleanupPluginNodes(pluginId);
+            return Outcome.REMOVED;
+        }
+        p.consecutiveFailures = 0;
+        p.lastSuccessfulPing = Instant.now();
+        p.backoffMultiplier = 1;
+        p.nextPingAt = null;
+        p.persist();
+
+        logger.debugv(
+                "Plugin ping successful - lastSuccessfulPing: {0}, consecutiveFailures reset to 0,"
+                        + " backoffMultiplier reset to 1: {1} @ {2}",
+                p.lastSuccessfulPing, p.realm.name, p.callback);
+        return Outcome.SUCCESS;
+    }
+
+    private Outcome onPingFailure(UUID pluginId, Exception e) {
+        boolean noSuchPlugin = ExceptionUtils.indexOfType(e, NoResultException.class) >= 0;
+        if (noSuchPlugin) {
+            logger.warnv("Unscheduled pings for unknown discovery plugin: {0}", pluginId);
+            QuarkusTransaction.requiringNew().run(() -> cleanupHelper.cleanupPluginNodes(pluginId));
+            return Outcome.REMOVED;
+        }
+
+        return QuarkusTransaction.requiringNew()
+                .call(
+                        () -> {
+                            var p = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
+                            if (p == null) {
+                                cleanupHelper.cleanupPluginNodes(pluginId);
+                                return Outcome.REMOVED;
+                            }
+                            p.consecutiveFailures++;
+                            p.lastFailedPing = Instant.now();
+                            p.backoffMultiplier =
+                                    Math.min(p.backoffMultiplier * 2, maxBackoffMultiplier);
+                            Duration backoffPeriod = period.multipliedBy(p.backoffMultiplier);
+                            p.nextPingAt = Instant.now().plus(backoffPeriod);
+                            p.persist();
+
+                            logger.debugv(
+                                    "Plugin ping failed - lastFailedPing: {0},"
+                                            + " consecutiveFailures: {1}/{2},"
+                                            + " backoffMultiplier: {3}, nextPingAt:"
+                                            + " {4}: {5} @ {6}",
+                                    p.lastFailedPing,
+                                    p.consecutiveFailures,
+                                    maxConsecutiveFailures,
+                                    p.backoffMultiplier,
+                                    p.nextPingAt,
+                                    p.realm.name,
+                                    p.callback);
+
+                            if (p.consecutiveFailures >= maxConsecutiveFailures) {
+                                logger.warnv(
+                                        "Pruning discovery plugin after {0} consecutive failures:"
+                                                + " {1} @ {2}",
+                                        p.consecutiveFailures, p.realm.name, p.callback);
+                                p.delete();
+                                return Outcome.REMOVED;
+                            }
+                            logger.warnv(
+                                    "Plugin ping failed ({0}/{1}), backing off for {2}: {3} @ {4}",
+                                    p.consecutiveFailures,
+                                    maxConsecutiveFailures,
+                                    backoffPeriod,
+                                    p.realm.name,
+                                    p.callback);
+                            return Outcome.FAILED;
+                        });
+    }
+
+    private long next(long now) {
+        long base = period.toMillis();
+        long j = jitter.toMillis();
+        if (j > 0) {
+            base += ThreadLocalRandom.current().nextLong(-j, j + 1);
+        }
+        return now + Math.max(1000, base);
+    }
+}
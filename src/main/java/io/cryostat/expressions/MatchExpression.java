@@ -107,15 +107,17 @@ public class MatchExpression extends PanacheEntity {
 
         public MatchedExpression match(MatchExpression expr, Collection<Target> targets)
                 throws ScriptException {
-            Set<Target> matches =
-                    new HashSet<>(Optional.ofNullable(targets).orElseGet(() -> Set.of()));
-            var it = matches.iterator();
-            while (it.hasNext()) {
-                if (!evaluator.applies(expr, it.next())) {
-                    it.remove();
+            var evaluation =
+                    evaluator.evaluate(
+                            expr,
+                            new HashSet<>(Optional.ofNullable(targets).orElseGet(() -> Set.of())));
+            for (Exception e : evaluation.failures().values()) {
+                if (e instanceof ScriptException se) {
+                    throw se;
                 }
+                throw new IllegalStateException(e);
             }
-            return new MatchedExpression(expr, matches);
+            return new MatchedExpression(expr, new HashSet<>(evaluation.matched()));
         }
 
         public MatchedExpression match(MatchExpression expr) throws ScriptException {
@@ -16,14 +16,23 @@
 package io.cryostat.expressions;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletionException;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
+import io.cryostat.ConfigProperties;
 import io.cryostat.events.SerializableEventTypeInfo;
 import io.cryostat.expressions.MatchExpression.ExpressionEvent;
 import io.cryostat.targets.Target;
@@ -31,20 +40,24 @@ import io.cryostat.targets.Target.Annotations;
 import io.cryostat.targets.Target.TargetDiscovery;
 import io.cryostat.targets.TargetConnectionManager;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import io.quarkus.cache.CacheManager;
-import io.quarkus.cache.CacheResult;
-import io.quarkus.cache.CompositeCacheKey;
 import io.quarkus.logging.Log;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.vertx.ConsumeEvent;
 import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jdk.jfr.Category;
 import jdk.jfr.Event;
 import jdk.jfr.Label;
 import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.projectnessie.cel.EnvOption;
 import org.projectnessie.cel.Library;
@@ -57,22 +70,56 @@ import org.projectnessie.cel.tools.ScriptCreateException;
 import org.projectnessie.cel.tools.ScriptException;
 import org.projectnessie.cel.tools.ScriptHost;
 
+/**
+ * Evaluates {@link MatchExpression}s against {@link Target}s. Two levels of caching are used: the
+ * compiled CEL program for each distinct expression text is cached so that parsing, type-checking
+ * and planning only happen once per expression, and the boolean result of each (expression,
+ * target) evaluation is cached in the {@link MatchExpressionResultCache}. Evaluating one expression
+ * against many targets should go through {@link #evaluate(MatchExpression, Collection)}, which
+ * compiles the program once and evaluates it against the targets in parallel chunks.
+ */
 @ApplicationScoped
 public class MatchExpressionEvaluator {
 
-    private static final String CACHE_NAME = "matchexpressions";
-
     @Inject ScriptHost scriptHost;
     @Inject Logger logger;
-    @Inject CacheManager cacheManager;
+    @Inject MatchExpressionResultCache results;
     @Inject TargetConnectionManager connectionManager;
 
+    @ConfigProperty(name = ConfigProperties.EXPRESSIONS_PROGRAM_CACHE_MAX_SIZE)
+    long programCacheMaxSize;
+
+    @ConfigProperty(name = ConfigProperties.EXPRESSIONS_ACTIVATION_CACHE_MAX_SIZE)
+    long activationCacheMaxSize;
+
+    @ConfigProperty(name = ConfigProperties.EXPRESSIONS_BATCH_CHUNK_SIZE)
+    int batchChunkSize;
+
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Cache<String, Script> programs;
+    // target ID -> evaluation activation for that target. Invalidated along with the target's
+    // cached results whenever the target is discovered, modified or lost
+    private Cache<Long, Map<String, Object>> activations;
+
+    @PostConstruct
+    void init() {
+        this.programs = Caffeine.newBuilder().maximumSize(programCacheMaxSize).build();
+        this.activations =
+                Caffeine.newBuilder().maximumSize(activationCacheMaxSize).recordStats().build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
     @ConsumeEvent(value = MatchExpression.EXPRESSION_ADDRESS, blocking = true)
     void onMessage(ExpressionEvent event) {
         switch (event.category()) {
             case CREATED:
                 break;
             case DELETED:
+                programs.invalidate(event.expression().script);
                 invalidate(event.expression().script);
                 break;
             case UPDATED:
@@ -102,7 +149,7 @@ public class MatchExpressionEvaluator {
     }
 
     Script createScript(String matchExpression) throws ScriptCreateException {
-        ScriptCreation evt = new ScriptCreation();
+        ScriptCreation evt = new ScriptCreation(matchExpression);
         try {
             evt.begin();
             return scriptHost
@@ -122,50 +169,80 @@ public class MatchExpressionEvaluator {
         }
     }
 
-    @CacheResult(cacheName = CACHE_NAME)
-    boolean load(String matchExpression, Target target) throws ScriptException {
+    /**
+     * Retrieve the compiled program for the given expression, compiling and caching it if this
+     * expression has not been seen before. Compilation failures are not cached.
+     */
+    private CompiledProgram compile(String matchExpression) throws ScriptCreateException {
         Objects.requireNonNull(matchExpression);
-        Objects.requireNonNull(target);
-        Script script = createScript(matchExpression);
-        return script.execute(Boolean.class, Map.of("target", SimplifiedTarget.from(target)));
+        Script script = programs.getIfPresent(matchExpression);
+        if (script != null) {
+            return new CompiledProgram(script, true, 0);
+        }
+        long start = System.nanoTime();
+        script = createScript(matchExpression);
+        long elapsed = System.nanoTime() - start;
+        // another thread may have raced to compile the same expression. Either program is
+        // equivalent, but prefer the one that other callers will also see
+        Script prev = programs.asMap().putIfAbsent(matchExpression, script);
+        return new CompiledProgram(prev != null ? prev : script, false, elapsed);
+    }
+
+    private static boolean execute(Script script, Map<String, Object> activation)
+            throws ScriptException {
+        return script.execute(Boolean.class, activation);
+    }
+
+    /**
+     * Retrieve the evaluation activation for the target, reusing the one built for a previous
+     * evaluation against the same target if it has not changed since. Targets which have not been
+     * persisted are not cached.
+     */
+    private Map<String, Object> activation(Target target) {
+        if (target.id == null) {
+            return activationOf(target);
+        }
+        return activations.get(target.id, id -> activationOf(target));
+    }
+
+    private static Map<String, Object> activationOf(Target target) {
+        return Map.of("target", SimplifiedTarget.from(target));
+    }
+
+    CacheStats activationStats() {
+        return activations.stats();
     }
 
     void invalidate(String matchExpression) {
-        var cache = cacheManager.getCache(CACHE_NAME).orElseThrow();
-        // 0-index is important here. the argument order of the load() method determines the
-        // composite key order
-        cache.invalidateIf(
-                        k ->
-                                Objects.equals(
-                                        (String) ((CompositeCacheKey) k).getKeyElements()[0],
-                                        matchExpression))
-                .subscribe()
-                .with((v) -> {}, logger::warn);
+        results.invalidate(matchExpression);
     }
 
     void invalidate(Target target) {
-        var cache = cacheManager.getCache(CACHE_NAME).orElseThrow();
-        // 0-index is important here. the argument order of the load() method determines the
-        // composite key order
-        cache.invalidateIf(
-                        k ->
-                                Objects.equals(
-                                        (Target) ((CompositeCacheKey) k).getKeyElements()[1],
-                                        target))
-                .subscribe()
-                .with((v) -> {}, logger::warn);
+        results.invalidate(target);
+        if (target != null && target.id != null) {
+            activations.invalidate(target.id);
+        }
     }
 
     public boolean applies(MatchExpression matchExpression, Target target) throws ScriptException {
+        Objects.requireNonNull(matchExpression);
+        Objects.requireNonNull(target);
         MatchExpressionApplies evt = new MatchExpressionApplies(matchExpression);
         try {
             evt.begin();
-            return load(matchExpression.script, target);
-        } catch (CompletionException e) {
-            if (e.getCause() instanceof ScriptException) {
-                throw (ScriptException) e.getCause();
+            Optional<Boolean> cached = results.get(matchExpression.script, target);
+            if (cached.isPresent()) {
+                evt.resultCached = true;
+                return cached.get();
             }
-            throw e;
+            CompiledProgram program = compile(matchExpression.script);
+            evt.programCached = program.cached();
+            evt.compileDuration = program.compileNanos();
+            long start = System.nanoTime();
+            boolean result = execute(program.script(), activation(target));
+            evt.evaluationDuration = System.nanoTime() - start;
+            results.put(matchExpression.script, target, result);
+            return result;
         } finally {
             evt.end();
             if (evt.shouldCommit()) {
@@ -174,6 +251,110 @@ public class MatchExpressionEvaluator {
         }
     }
 
+    /**
+     * Evaluate a single expression against a snapshot of many targets. The expression is compiled
+     * at most once, and the targets are split into chunks which are evaluated concurrently, each
+     * chunk on its own virtual thread. Results which are already cached are reused and newly
+     * computed results are added to the cache. A failure to compile the expression is thrown
+     * directly, while failures to evaluate it against individual targets are collected into the
+     * returned {@link BatchEvaluation} so that one misbehaving target does not prevent the rest
+     * from being matched.
+     */
+    public BatchEvaluation evaluate(MatchExpression matchExpression, Collection<Target> targets)
+            throws ScriptException {
+        Objects.requireNonNull(matchExpression);
+        Objects.requireNonNull(targets);
+        MatchExpressionBatchEvaluation evt = new MatchExpressionBatchEvaluation(matchExpression);
+        try {
+            evt.begin();
+            CompiledProgram program = compile(matchExpression.script);
+            evt.programCached = program.cached();
+            evt.compileDuration = program.compileNanos();
+
+            List<Target> snapshot = List.copyOf(targets);
+            int chunkSize = Math.max(1, batchChunkSize);
+            // each chunk writes into its own disjoint range of these arrays, so no further
+            // synchronization is needed between chunks
+            boolean[] matched = new boolean[snapshot.size()];
+            Exception[] failures = new Exception[snapshot.size()];
+            LongAdder evaluationNanos = new LongAdder();
+            LongAdder cacheHits = new LongAdder();
+            List<Runnable> chunks = new ArrayList<>();
+            for (int from = 0; from < snapshot.size(); from += chunkSize) {
+                int start = from;
+                int end = Math.min(snapshot.size(), from + chunkSize);
+                chunks.add(
+                        () -> {
+                            for (int i = start; i < end; i++) {
+                                Target target = snapshot.get(i);
+                                Optional<Boolean> cached =
+                                        results.get(matchExpression.script, target);
+                                if (cached.isPresent()) {
+                                    cacheHits.increment();
+                                    matched[i] = cached.get();
+                                    continue;
+                                }
+                                long t0 = System.nanoTime();
+                                try {
+                                    matched[i] = execute(program.script(), activation(target));
+                                    results.put(matchExpression.script, target, matched[i]);
+                                } catch (Exception e) {
+                                    failures[i] = e;
+                                } finally {
+                                    evaluationNanos.add(System.nanoTime() - t0);
+                                }
+                            }
+                        });
+            }
+            runChunks(chunks);
+
+            List<Target> matches = new ArrayList<>();
+            Map<Target, Exception> errors = new LinkedHashMap<>();
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (failures[i] != null) {
+                    errors.put(snapshot.get(i), failures[i]);
+                } else if (matched[i]) {
+                    matches.add(snapshot.get(i));
+                }
+            }
+
+            evt.targets = snapshot.size();
+            evt.chunks = chunks.size();
+            evt.matched = matches.size();
+            evt.failed = errors.size();
+            evt.resultCacheHits = cacheHits.sum();
+            evt.evaluationDuration = evaluationNanos.sum();
+            return new BatchEvaluation(matchExpression, matches, errors);
+        } finally {
+            evt.end();
+            if (evt.shouldCommit()) {
+                evt.commit();
+            }
+        }
+    }
+
+    private void runChunks(List<Runnable> chunks) {
+        if (chunks.size() <= 1) {
+            chunks.forEach(Runnable::run);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        for (Runnable chunk : chunks) {
+            futures.add(batchExecutor.submit(chunk));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }
+    }
+
     public List<Target> getMatchedTargets(MatchExpression matchExpression) {
         List<Target> targets =
                 QuarkusTransaction.joiningExisting()
@@ -184,32 +365,25 @@ public class MatchExpressionEvaluator {
                                     allTargets.forEach(this::eagerLoadAssociations);
                                     return allTargets;
                                 });
-        List<Target> matched =
-                targets.parallelStream()
-                        .filter(
-                                target -> {
-                                    try {
-                                        return applies(matchExpression, target);
-                                    } catch (ScriptException e) {
-                                        logger.warnv(
-                                                e,
-                                                "Script error evaluating expression for target {0}"
-                                                        + " ({1}): {2}",
-                                                target.id,
-                                                target.connectUrl,
-                                                matchExpression);
-                                        return false;
-                                    } catch (Exception e) {
-                                        logger.warnv(
-                                                e,
-                                                "Unexpected error evaluating expression for target"
-                                                        + " {0} ({1})",
-                                                target.id,
-                                                target.connectUrl);
-                                        return false;
-                                    }
-                                })
-                        .collect(Collectors.toList());
+        List<Target> matched;
+        try {
+            BatchEvaluation evaluation = evaluate(matchExpression, targets);
+            evaluation
+                    .failures()
+                    .forEach(
+                            (target, e) ->
+                                    logger.warnv(
+                                            e,
+                                            "Error evaluating expression for target {0}"
+                                                    + " ({1}): {2}",
+                                            target.id,
+                                            target.connectUrl,
+                                            matchExpression));
+            matched = new ArrayList<>(evaluation.matched());
+        } catch (ScriptException e) {
+            logger.warnv(e, "Script error compiling expression: {0}", matchExpression);
+            return new ArrayList<>();
+        }
 
         // Deduplicate by jvmId
         var ids = new HashSet<String>();
@@ -246,15 +420,84 @@ public class MatchExpressionEvaluator {
     public static class MatchExpressionApplies extends Event {
         String matchExpression;
 
+        @Label("Result Cached")
+        boolean resultCached;
+
+        @Label("Program Cached")
+        boolean programCached;
+
+        @Label("Compile Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long compileDuration;
+
+        @Label("Evaluation Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long evaluationDuration;
+
         MatchExpressionApplies(MatchExpression matchExpression) {
             this.matchExpression = matchExpression.script;
         }
     }
 
+    @Name("io.cryostat.rules.MatchExpressionEvaluator.MatchExpressionBatchEvaluation")
+    @Label("Match Expression Batch Evaluation")
+    @Category("Cryostat")
+    @SuppressFBWarnings(value = {"URF_UNREAD_FIELD"})
+    public static class MatchExpressionBatchEvaluation extends Event {
+        String matchExpression;
+        int targets;
+        int chunks;
+        int matched;
+        int failed;
+        long resultCacheHits;
+
+        @Label("Program Cached")
+        boolean programCached;
+
+        @Label("Compile Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long compileDuration;
+
+        /** Summed across all chunks, so this may exceed the wall-clock duration of the event. */
+        @Label("Evaluation Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long evaluationDuration;
+
+        MatchExpressionBatchEvaluation(MatchExpression matchExpression) {
+            this.matchExpression = matchExpression.script;
+        }
+    }
+
     @Name("io.cryostat.rules.MatchExpressionEvaluator.ScriptCreation")
     @Label("Match Expression Script Creation")
     @Category("Cryostat")
-    public static class ScriptCreation extends Event {}
+    @SuppressFBWarnings(value = {"URF_UNREAD_FIELD"})
+    public static class ScriptCreation extends Event {
+        String matchExpression;
+
+        ScriptCreation(String matchExpression) {
+            this.matchExpression = matchExpression;
+        }
+    }
+
+    private static record CompiledProgram(Script script, boolean cached, long compileNanos) {}
+
+    /**
+     * The outcome of evaluating one expression against a batch of targets. {@code matched}
+     * preserves the order of the input targets. {@code failures} contains the targets for which
+     * evaluation raised an error, which are not included in {@code matched}.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public static record BatchEvaluation(
+            MatchExpression matchExpression,
+            List<Target> matched,
+            Map<Target, Exception> failures) {
+        public BatchEvaluation {
+            Objects.requireNonNull(matchExpression);
+            Objects.requireNonNull(matched);
+            Objects.requireNonNull(failures);
+        }
+    }
 
     /**
      * Restricted read-only view of a {@link io.cryostat.targets.Target} with only particular
@@ -0,0 +1,233 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.targets.Target;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Cache of (expression, target) evaluation results used by {@link MatchExpressionEvaluator}.
+ * Alongside the Caffeine cache itself this maintains secondary indexes from expression text and
+ * from target ID to the cache keys involving them, so that invalidating the results for an
+ * expression or a target only touches the affected entries rather than scanning the whole cache.
+ * The indexes are kept in step with the cache by a removal listener, so entries dropped by
+ * eviction are also removed from the indexes. Like the Quarkus-managed caches, this is disabled
+ * by {@code quarkus.cache.enabled=false}.
+ */
+@ApplicationScoped
+class MatchExpressionResultCache {
+
+    static final String METER_PREFIX = "cryostat.expressions.results";
+
+    @Inject MeterRegistry meterRegistry;
+
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.EXPRESSIONS_RESULT_CACHE_MAX_SIZE)
+    long maxSize;
+
+    // deprecated, from when this was a Quarkus-managed cache
+    @ConfigProperty(name = ConfigProperties.EXPRESSIONS_RESULT_CACHE_LEGACY_MAX_SIZE)
+    Optional<Long> legacyMaxSize;
+
+    @ConfigProperty(name = "quarkus.cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    private final ConcurrentMap<String, Set<Key>> keysByExpression = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Key>> keysByTarget = new ConcurrentHashMap<>();
+    private Cache<Key, Boolean> results;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter expressionInvalidations;
+    private Counter targetInvalidations;
+
+    @PostConstruct
+    void init() {
+        legacyMaxSize.ifPresent(
+                size -> {
+                    logger.warnv(
+                            "{0} is deprecated, use {1} instead",
+                            ConfigProperties.EXPRESSIONS_RESULT_CACHE_LEGACY_MAX_SIZE,
+                            ConfigProperties.EXPRESSIONS_RESULT_CACHE_MAX_SIZE);
+                    this.maxSize = size;
+                });
+        this.results =
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        // run the listener on the thread performing the removal so that the
+                        // indexes do not lag behind the cache contents
+                        .executor(Runnable::run)
+                        .removalListener(
+                                (Key key, Boolean value, RemovalCause cause) -> {
+                                    if (key != null && cause != RemovalCause.REPLACED) {
+                                        unindex(key);
+                                    }
+                                })
+                        .build();
+
+        this.hits =
+                Counter.builder(METER_PREFIX + ".gets")
+                        .description("Match expression result cache lookups")
+                        .tag("result", "hit")
+                        .register(meterRegistry);
+        this.misses =
+                Counter.builder(METER_PREFIX + ".gets")
+                        .description("Match expression result cache lookups")
+                        .tag("result", "miss")
+                        .register(meterRegistry);
+        this.expressionInvalidations =
+                Counter.builder(METER_PREFIX + ".invalidations")
+                        .description("Match expression result cache entries invalidated")
+                        .tag("reason", "expression")
+                        .register(meterRegistry);
+        this.targetInvalidations =
+                Counter.builder(METER_PREFIX + ".invalidations")
+                        .description("Match expression result cache entries invalidated")
+                        .tag("reason", "target")
+                        .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".size", this, c -> c.results.estimatedSize())
+                .description("Approximate number of cached match expression results")
+                .register(meterRegistry);
+    }
+
+    Optional<Boolean> get(String matchExpression, Target target) {
+        if (!enabled) {
+            misses.increment();
+            return Optional.empty();
+        }
+        Boolean result = results.getIfPresent(new Key(matchExpression, target));
+        if (result == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(result);
+    }
+
+    void put(String matchExpression, Target target, boolean result) {
+        if (!enabled) {
+            return;
+        }
+        Key key = new Key(matchExpression, target);
+        // index before inserting so that a concurrent removal of an older entry with the same key
+        // cannot leave the new entry unindexed. See unindex()
+        index(key);
+        results.put(key, result);
+    }
+
+    void invalidate(String matchExpression) {
+        Set<Key> keys = keysByExpression.remove(matchExpression);
+        if (keys == null) {
+            return;
+        }
+        List<Key> snapshot = List.copyOf(keys);
+        results.invalidateAll(snapshot);
+        expressionInvalidations.increment(snapshot.size());
+    }
+
+    void invalidate(Target target) {
+        if (target == null || target.id == null) {
+            return;
+        }
+        Set<Key> keys = keysByTarget.remove(target.id);
+        if (keys == null) {
+            return;
+        }
+        List<Key> snapshot = List.copyOf(keys);
+        results.invalidateAll(snapshot);
+        targetInvalidations.increment(snapshot.size());
+    }
+
+    long size() {
+        return results.estimatedSize();
+    }
+
+    private void index(Key key) {
+        add(keysByExpression, key.matchExpression(), key);
+        if (key.targetId() != null) {
+            add(keysByTarget, key.targetId(), key);
+        }
+    }
+
+    private void unindex(Key key) {
+        remove(keysByExpression, key.matchExpression(), key);
+        if (key.targetId() != null) {
+            remove(keysByTarget, key.targetId(), key);
+        }
+        // an equal key may have been put again while this removal was being processed. put()
+        // indexes before inserting, so if the key is now present it must be indexed again
+        if (results.asMap().containsKey(key)) {
+            index(key);
+        }
+    }
+
+    private static <K> void add(ConcurrentMap<K, Set<Key>> index, K k, Key key) {
+        index.compute(
+                k,
+                (ignored, keys) -> {
+                    if (keys == null) {
+                        keys = ConcurrentHashMap.newKeySet();
+                    }
+                    keys.add(key);
+                    return keys;
+                });
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Set<Key>> index, K k, Key key) {
+        index.computeIfPresent(
+                k,
+                (ignored, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+    }
+
+    /**
+     * The target is part of the key so that a result is never reused for a target whose
+     * expression-visible state has changed, while the target ID is extracted up front so that all
+     * results for any version of a target can be found through the index.
+     */
+    private static record Key(String matchExpression, Target target, Long targetId) {
+        Key {
+            Objects.requireNonNull(matchExpression);
+            Objects.requireNonNull(target);
+        }
+
+        Key(String matchExpression, Target target) {
+            this(matchExpression, target, target.id);
+        }
+    }
+}
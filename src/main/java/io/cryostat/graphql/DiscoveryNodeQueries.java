@@ -0,0 +1,157 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.discovery.DiscoveryNode;
+import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
+import io.cryostat.graphql.matchers.LabelSelectorMatcher;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+/**
+ * Translates a {@link DiscoveryNodeFilter} into a native SQL query over the discovery tree, so that
+ * filtering and pagination are done by the database rather than by loading every node and filtering
+ * in memory. Label and annotation selectors are evaluated against the JSONB columns, see {@link
+ * LabelSelectorMatcher#toSql(String, String, Map)}. Results are ordered by node ID, and the ID of
+ * the last node of a page is the cursor for the next page.
+ */
+final class DiscoveryNodeQueries {
+
+    // annotations are stored as {"platform": {...}, "cryostat": {...}}. Platform annotations take
+    // precedence, as in Target.Annotations#merged()
+    private static final String MERGED_ANNOTATIONS =
+            "(COALESCE(t.annotations -> 'cryostat', CAST('{}' AS jsonb))"
+                    + " || COALESCE(t.annotations -> 'platform', CAST('{}' AS jsonb)))";
+
+    private DiscoveryNodeQueries() {}
+
+    /** Leaf nodes of the discovery tree, i.e. those which have a target. */
+    static List<DiscoveryNode> targetNodes(
+            EntityManager em, DiscoveryNodeFilter filter, Long after, Integer first) {
+        return query(
+                em, "JOIN Target t ON t.discoveryNode = n.id", List.of(), filter, after, first);
+    }
+
+    /** Non-leaf nodes of the discovery tree, i.e. those without a target. */
+    static List<DiscoveryNode> environmentNodes(
+            EntityManager em, DiscoveryNodeFilter filter, Long after, Integer first) {
+        return query(
+                em,
+                "LEFT JOIN Target t ON t.discoveryNode = n.id",
+                List.of("t.id IS NULL"),
+                filter,
+                after,
+                first);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DiscoveryNode> query(
+            EntityManager em,
+            String join,
+            List<String> baseClauses,
+            DiscoveryNodeFilter filter,
+            Long after,
+            Integer first) {
+        if (first != null && first <= 0) {
+            return List.of();
+        }
+        List<String> clauses = new ArrayList<>(baseClauses);
+        Map<String, Object> params = new HashMap<>();
+        if (filter != null) {
+            where(filter, clauses, params);
+        }
+        if (after != null) {
+            clauses.add("n.id > :after");
+            params.put("after", after);
+        }
+        String sql =
+                "SELECT n.* FROM DiscoveryNode n "
+                        + join
+                        + (clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses))
+                        + " ORDER BY n.id";
+        Query query = em.createNativeQuery(sql, DiscoveryNode.class);
+        params.forEach(query::setParameter);
+        if (first != null) {
+            query.setMaxResults(first);
+        }
+        return query.getResultList();
+    }
+
+    private static void where(
+            DiscoveryNodeFilter filter, List<String> clauses, Map<String, Object> params) {
+        eq(clauses, params, "n.id", "id", filter.id);
+        in(clauses, params, "n.id", "ids", filter.ids);
+        eq(clauses, params, "t.id", "targetId", filter.targetId);
+        in(clauses, params, "t.id", "targetIds", filter.targetIds);
+        eq(clauses, params, "t.jvmId", "jvmId", filter.jvmId);
+        in(clauses, params, "t.jvmId", "jvmIds", filter.jvmIds);
+        eq(clauses, params, "n.name", "name", filter.name);
+        in(clauses, params, "n.name", "names", filter.names);
+        eq(clauses, params, "t.alias", "alias", filter.alias);
+        in(clauses, params, "t.alias", "aliases", filter.aliases);
+        in(clauses, params, "n.nodeType", "nodeTypes", filter.nodeTypes);
+        if (filter.labels != null) {
+            for (int i = 0; i < filter.labels.size(); i++) {
+                clauses.add(
+                        LabelSelectorMatcher.parse(filter.labels.get(i))
+                                .toSql("n.labels", "label" + i + "_", params));
+            }
+        }
+        if (filter.annotations != null) {
+            for (int i = 0; i < filter.annotations.size(); i++) {
+                clauses.add(
+                        LabelSelectorMatcher.parse(filter.annotations.get(i))
+                                .toSql(MERGED_ANNOTATIONS, "annotation" + i + "_", params));
+            }
+        }
+    }
+
+    private static void eq(
+            List<String> clauses,
+            Map<String, Object> params,
+            String column,
+            String param,
+            Object value) {
+        if (value == null) {
+            return;
+        }
+        clauses.add(String.format("%s = :%s", column, param));
+        params.put(param, value);
+    }
+
+    private static void in(
+            List<String> clauses,
+            Map<String, Object> params,
+            String column,
+            String param,
+            List<?> values) {
+        if (values == null) {
+            return;
+        }
+        if (values.isEmpty()) {
+            clauses.add("FALSE");
+            return;
+        }
+        clauses.add(String.format("%s IN (:%s)", column, param));
+        params.put(param, values);
+    }
+}
@@ -21,6 +21,8 @@ import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.RootNode.DiscoveryNodeFilter;
 
 import io.smallrye.graphql.api.Nullable;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.Query;
@@ -28,12 +30,19 @@ import org.eclipse.microprofile.graphql.Query;
 @GraphQLApi
 public class EnvironmentNodes {
 
+    @Inject EntityManager em;
+
     @Query("environmentNodes")
     @Description("Get all environment nodes in the discovery tree with optional filtering")
-    public List<DiscoveryNode> environmentNodes(@Nullable DiscoveryNodeFilter filter) {
-        return RootNode.recurseChildren(DiscoveryNode.getUniverse(), node -> node.target == null)
-                .stream()
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+    public List<DiscoveryNode> environmentNodes(
+            @Nullable DiscoveryNodeFilter filter,
+            @Nullable
+                    @Description(
+                            "Maximum number of nodes to return. Nodes are ordered by ID, so the ID"
+                                    + " of the last node returned is the cursor for the next page.")
+                    Integer first,
+            @Nullable @Description("Only return nodes with IDs greater than this cursor")
+                    Long after) {
+        return DiscoveryNodeQueries.environmentNodes(em, filter, after, first);
     }
 }
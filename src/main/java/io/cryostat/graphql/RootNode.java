@@ -24,6 +24,7 @@ import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.matchers.LabelSelectorMatcher;
 
 import io.smallrye.graphql.api.Nullable;
+import jakarta.inject.Inject;
 import org.eclipse.microprofile.graphql.Description;
 import org.eclipse.microprofile.graphql.GraphQLApi;
 import org.eclipse.microprofile.graphql.Query;
@@ -32,6 +33,8 @@ import org.eclipse.microprofile.graphql.Source;
 @GraphQLApi
 public class RootNode {
 
+    @Inject TargetBatchLoader batchLoader;
+
     @Query("rootNode")
     @Description("Get the root target discovery node")
     public DiscoveryNode getRootNode() {
@@ -46,9 +49,12 @@ public class RootNode {
         // TODO do this filtering at the database query level as much as possible. As is, this will
         // load the entire discovery tree out of the database, then perform the filtering at the
         // application level.
-        return recurseChildren(discoveryNode, n -> n.target != null).stream()
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        List<DiscoveryNode> nodes =
+                recurseChildren(discoveryNode, n -> n.target != null).stream()
+                        .filter(n -> filter == null ? true : filter.test(n))
+                        .toList();
+        batchLoader.register(nodes.stream().map(n -> n.target).toList());
+        return nodes;
     }
 
     static Set<DiscoveryNode> recurseChildren(DiscoveryNode node, Predicate<DiscoveryNode> p) {
@@ -0,0 +1,127 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.graphql;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import io.cryostat.diagnostic.Diagnostics.HeapDump;
+import io.cryostat.diagnostic.Diagnostics.ThreadDump;
+import io.cryostat.diagnostic.DiagnosticsHelper;
+import io.cryostat.recordings.ActiveRecording;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.targets.Target;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Per-request loader for the nested {@link Target} fields of GraphQL queries, in the manner of a
+ * DataLoader. Top-level queries register the targets they return, and the first time a nested field
+ * is resolved for any of them the data for all registered targets is fetched at once, so that a
+ * query selecting the archives of thousands of targets issues a constant number of backend calls
+ * rather than one per target. Targets reached some other way are loaded along with any other
+ * registered targets not yet loaded.
+ */
+@RequestScoped
+class TargetBatchLoader {
+
+    @Inject RecordingHelper recordingHelper;
+    @Inject DiagnosticsHelper diagnosticsHelper;
+
+    private final Set<Long> targetIds = new LinkedHashSet<>();
+    private final Set<String> jvmIds = new LinkedHashSet<>();
+
+    private final Batch<Long, ActiveRecording> activeRecordings =
+            new Batch<>(targetIds, ids -> recordingHelper.listActiveRecordings(ids));
+    private final Batch<String, ArchivedRecording> archivedRecordings =
+            new Batch<>(jvmIds, ids -> recordingHelper.listArchivedRecordings(ids));
+    private final Batch<String, ThreadDump> threadDumps =
+            new Batch<>(jvmIds, ids -> diagnosticsHelper.getThreadDumps(ids));
+    private final Batch<String, HeapDump> heapDumps =
+            new Batch<>(jvmIds, ids -> diagnosticsHelper.getHeapDumps(ids));
+
+    synchronized void register(Collection<Target> targets) {
+        for (Target target : targets) {
+            if (target == null) {
+                continue;
+            }
+            if (target.id != null) {
+                targetIds.add(target.id);
+            }
+            if (StringUtils.isNotBlank(target.jvmId)) {
+                jvmIds.add(target.jvmId);
+            }
+        }
+    }
+
+    List<ActiveRecording> activeRecordings(Target target) {
+        return activeRecordings.get(target.id);
+    }
+
+    List<ArchivedRecording> archivedRecordings(Target target) {
+        return archivedRecordings.get(target.jvmId);
+    }
+
+    List<ThreadDump> threadDumps(Target target) {
+        return threadDumps.get(target.jvmId);
+    }
+
+    List<HeapDump> heapDumps(Target target) {
+        return heapDumps.get(target.jvmId);
+    }
+
+    private final class Batch<K, V> {
+        private final Set<K> registered;
+        private final Function<Set<K>, Map<K, List<V>>> loader;
+        private final Map<K, List<V>> loaded = new HashMap<>();
+
+        Batch(Set<K> registered, Function<Set<K>, Map<K, List<V>>> loader) {
+            this.registered = registered;
+            this.loader = loader;
+        }
+
+        List<V> get(K key) {
+            Objects.requireNonNull(key);
+            synchronized (TargetBatchLoader.this) {
+                List<V> values = loaded.get(key);
+                if (values != null) {
+                    return values;
+                }
+                Set<K> keys = new LinkedHashSet<>();
+                keys.add(key);
+                for (K k : registered) {
+                    if (!loaded.containsKey(k)) {
+                        keys.add(k);
+                    }
+                }
+                Map<K, List<V>> result = loader.apply(keys);
+                for (K k : keys) {
+                    loaded.put(k, result.getOrDefault(k, List.of()));
+                }
+                return loaded.get(key);
+            }
+        }
+    }
+}
@@ -32,7 +32,6 @@ import io.cryostat.core.net.JFRConnection;
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.diagnostic.Diagnostics.HeapDump;
 import io.cryostat.diagnostic.Diagnostics.ThreadDump;
-import io.cryostat.diagnostic.DiagnosticsHelper;
 import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.graphql.ActiveRecordings.ActiveRecordingsFilter;
 import io.cryostat.graphql.ArchivedRecordings.ArchivedRecordingsFilter;
@@ -43,7 +42,6 @@ import io.cryostat.graphql.ThreadDumpGraphQL.ThreadDumpsFilter;
 import io.cryostat.libcryostat.net.MBeanMetrics;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
-import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.reports.AnalysisReportAggregator;
 import io.cryostat.targets.AgentClient.AsyncProfile;
 import io.cryostat.targets.Target;
@@ -73,11 +71,10 @@ import org.jboss.logging.Logger;
 @GraphQLApi
 public class TargetNodes {
 
-    @Inject RecordingHelper recordingHelper;
     @Inject TargetConnectionManager connectionManager;
     @Inject AnalysisReportAggregator reportAggregator;
-    @Inject DiagnosticsHelper diagnosticsHelper;
     @Inject AsyncProfilerHelper asyncProfilerHelper;
+    @Inject TargetBatchLoader batchLoader;
     @Inject EntityManager em;
     @Inject Logger logger;
 
@@ -90,37 +87,44 @@ public class TargetNodes {
                     @Description(
                             "Query historical targets from audit log. This is more expensive and"
                                     + " should only be used when historical data is needed.")
-                    boolean useAuditLog) {
-        List<Target> targets;
+                    boolean useAuditLog,
+            @Nullable
+                    @Description(
+                            "Maximum number of nodes to return. Nodes are ordered by ID, so the ID"
+                                    + " of the last node returned is the cursor for the next page.")
+                    Integer first,
+            @Nullable @Description("Only return nodes with IDs greater than this cursor")
+                    Long after) {
+        List<DiscoveryNode> nodes;
         if (useAuditLog) {
-            targets = queryAuditLogTargets();
+            nodes =
+                    queryAuditLogTargets().stream()
+                            // FIXME filtering by distinct JVM ID breaks clients that expect to be
+                            // able to use a different connection URL (in the node filter or for
+                            // client-side filtering) than the one we end up selecting for here.
+                            // .filter(distinctWith(t -> t.jvmId))
+                            .map(t -> t.discoveryNode)
+                            .filter(Objects::nonNull)
+                            .filter(n -> filter == null ? true : filter.test(n))
+                            .filter(n -> after == null || n.id > after)
+                            .sorted(Comparator.comparing(n -> n.id))
+                            .limit(first == null ? Long.MAX_VALUE : Math.max(0, first))
+                            .toList();
         } else {
-            // TODO do this filtering at the database query level as much as possible. As is, this
-            // will load the entire discovery tree out of the database, then perform the filtering
-            // at the application level.
-            targets = Target.<Target>findAll().stream().toList();
+            nodes = DiscoveryNodeQueries.targetNodes(em, filter, after, first);
         }
-
-        return targets.stream()
-                // FIXME filtering by distinct JVM ID breaks clients that expect to be able to use a
-                // different connection URL (in the node filter or for client-side filtering) than
-                // the one we end up selecting for here.
-                // .filter(distinctWith(t -> t.jvmId))
-                .map(t -> t.discoveryNode)
-                .filter(Objects::nonNull)
-                .filter(n -> filter == null ? true : filter.test(n))
-                .toList();
+        batchLoader.register(nodes.stream().map(n -> n.target).toList());
+        return nodes;
     }
 
     @Transactional
     @Description("Retrieve a list of active recordings currently available on the target")
     public ActiveRecordings activeRecordings(
             @Source Target target, @Nullable ActiveRecordingsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
         var recordings = new ActiveRecordings();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
+        if (StringUtils.isNotBlank(target.jvmId)) {
             recordings.data =
-                    recordingHelper.listActiveRecordings(fTarget).stream()
+                    batchLoader.activeRecordings(target).stream()
                             .filter(r -> filter == null || filter.test(r))
                             .toList();
             recordings.aggregate = RecordingAggregateInfo.fromActive(recordings.data);
@@ -131,11 +135,10 @@ public class TargetNodes {
     @Description("Retrieve a list of archived recordings belonging to the target")
     public ArchivedRecordings archivedRecordings(
             @Source Target target, @Nullable ArchivedRecordingsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
         var recordings = new ArchivedRecordings();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
+        if (StringUtils.isNotBlank(target.jvmId)) {
             recordings.data =
-                    recordingHelper.listArchivedRecordings(fTarget).stream()
+                    batchLoader.archivedRecordings(target).stream()
                             .filter(r -> filter == null || filter.test(r))
                             .toList();
             recordings.aggregate = RecordingAggregateInfo.fromArchived(recordings.data);
@@ -158,11 +161,10 @@ public class TargetNodes {
 
     @Description("Retrieve a list of thread dumps belonging to the target")
     public ThreadDumps threadDumps(@Source Target target, @Nullable ThreadDumpsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
         var threadDumps = new ThreadDumps();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
+        if (StringUtils.isNotBlank(target.jvmId)) {
             threadDumps.data =
-                    diagnosticsHelper.getThreadDumps(fTarget).stream()
+                    batchLoader.threadDumps(target).stream()
                             .filter(t -> filter == null || filter.test(t))
                             .toList();
             threadDumps.aggregate = ThreadDumpAggregateInfo.fromArchived(threadDumps.data);
@@ -172,11 +174,10 @@ public class TargetNodes {
 
     @Description("Retrieve a list of heap dumps belonging to the target")
     public HeapDumps heapDumps(@Source Target target, @Nullable HeapDumpsFilter filter) {
-        var fTarget = Target.getTargetById(target.id);
         var heapDumps = new HeapDumps();
-        if (StringUtils.isNotBlank(fTarget.jvmId)) {
+        if (StringUtils.isNotBlank(target.jvmId)) {
             heapDumps.data =
-                    diagnosticsHelper.getHeapDumps(fTarget).stream()
+                    batchLoader.heapDumps(target).stream()
                             .filter(t -> filter == null || filter.test(t))
                             .toList();
             heapDumps.aggregate = HeapDumpAggregateInfo.fromArchived(heapDumps.data);
@@ -218,9 +219,8 @@ public class TargetNodes {
     @Transactional
     @Description("Get the active and archived recordings belonging to this target")
     public Recordings recordings(@Source Target target, Context context) {
-        var fTarget = Target.getTargetById(target.id);
         var recordings = new Recordings();
-        if (StringUtils.isBlank(fTarget.jvmId)) {
+        if (StringUtils.isBlank(target.jvmId)) {
             return recordings;
         }
         var dfe = context.unwrap(DataFetchingEnvironment.class);
@@ -229,13 +229,13 @@ public class TargetNodes {
 
         if (requestedFields.contains("active")) {
             recordings.active = new ActiveRecordings();
-            recordings.active.data = recordingHelper.listActiveRecordings(fTarget);
+            recordings.active.data = batchLoader.activeRecordings(target);
             recordings.active.aggregate = RecordingAggregateInfo.fromActive(recordings.active.data);
         }
 
         if (requestedFields.contains("archived")) {
             recordings.archived = new ArchivedRecordings();
-            recordings.archived.data = recordingHelper.listArchivedRecordings(fTarget);
+            recordings.archived.data = batchLoader.archivedRecordings(target);
             recordings.archived.aggregate =
                     RecordingAggregateInfo.fromArchived(recordings.archived.data);
         }
@@ -15,6 +15,7 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -41,6 +42,21 @@ public class EqualityMatcher implements LabelMatcher {
         return operator.with(value).test(s);
     }
 
+    @Override
+    public String toSql(String column, String prefix, Map<String, Object> params) {
+        params.put(prefix + "k", key);
+        params.put(prefix + "v", value);
+        // containment rather than key extraction, so that a GIN index on the column can be used
+        String contains =
+                String.format("%s @> jsonb_build_object(:%sk, :%sv)", column, prefix, prefix);
+        switch (operator) {
+            case NOT_EQUAL:
+                return String.format("NOT (%s)", contains);
+            default:
+                return contains;
+        }
+    }
+
     public enum Operator {
         EQUAL("=", arg -> v -> Objects.equals(arg, v)),
         DOUBLE_EQUAL("==", arg -> v -> Objects.equals(arg, v)),
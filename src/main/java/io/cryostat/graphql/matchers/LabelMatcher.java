@@ -15,8 +15,16 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.Map;
 import java.util.function.Predicate;
 
 interface LabelMatcher extends Predicate<String> {
     String getKey();
+
+    /**
+     * Translate this matcher into a SQL predicate over a JSONB column holding a flat string-valued
+     * object, equivalent to {@link #test(Object)} on that object's value for {@link #getKey()}.
+     * Bind parameters are added to {@code params} with names derived from {@code prefix}.
+     */
+    String toSql(String column, String prefix, Map<String, Object> params);
 }
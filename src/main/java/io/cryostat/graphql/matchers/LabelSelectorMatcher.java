@@ -62,6 +62,22 @@ public class LabelSelectorMatcher implements Predicate<Map<String, String>> {
         return this.matchers.stream().allMatch(m -> m.test(labels.get(m.getKey())));
     }
 
+    /**
+     * Translate this selector into a SQL predicate over a JSONB column holding a flat
+     * string-valued object, such as a discovery node's labels. Bind parameters are added to {@code
+     * params} with names beginning with {@code prefix}, which must be unique within the query.
+     */
+    public String toSql(String column, String prefix, Map<String, Object> params) {
+        if (matchers.isEmpty()) {
+            return "TRUE";
+        }
+        List<String> clauses = new ArrayList<>(matchers.size());
+        for (int i = 0; i < matchers.size(); i++) {
+            clauses.add(matchers.get(i).toSql(column, prefix + i + "_", params));
+        }
+        return "(" + String.join(" AND ", clauses) + ")";
+    }
+
     public static LabelSelectorMatcher parse(String clause) throws IllegalArgumentException {
         Collection<Function<String, LabelMatcher>> parsers =
                 Arrays.asList(
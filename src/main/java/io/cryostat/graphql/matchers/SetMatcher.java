@@ -17,6 +17,8 @@ package io.cryostat.graphql.matchers;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -47,6 +49,32 @@ public class SetMatcher implements LabelMatcher {
         return operator.with(values).test(s);
     }
 
+    @Override
+    public String toSql(String column, String prefix, Map<String, Object> params) {
+        params.put(prefix + "k", key);
+        String value = String.format("(%s ->> :%sk)", column, prefix);
+        switch (operator) {
+            case IN:
+                if (values.isEmpty()) {
+                    return "FALSE";
+                }
+                params.put(prefix + "v", List.copyOf(values));
+                return String.format("%s IN (:%sv)", value, prefix);
+            case NOT_IN:
+                if (values.isEmpty()) {
+                    return "TRUE";
+                }
+                params.put(prefix + "v", List.copyOf(values));
+                return String.format("(%s IS NULL OR %s NOT IN (:%sv))", value, value, prefix);
+            case EXISTS:
+                return String.format("%s IS NOT NULL", value);
+            case DOES_NOT_EXIST:
+                return String.format("%s IS NULL", value);
+            default:
+                throw new IllegalStateException(operator.name());
+        }
+    }
+
     public enum Operator {
         IN("In", args -> v -> contains(args, v)),
         NOT_IN("NotIn", args -> v -> !contains(args, v)),
@@ -40,11 +40,14 @@ import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
 import jakarta.persistence.PostPersist;
 import jakarta.persistence.PostRemove;
 import jakarta.persistence.PostUpdate;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
@@ -63,15 +66,25 @@ import org.jboss.logging.Logger;
 @Audited
 @Entity
 @EntityListeners(ActiveRecording.Listener.class)
+@NamedQueries({
+    @NamedQuery(
+            name = "ActiveRecording.idsByTarget",
+            query = "SELECT r.id FROM ActiveRecording r WHERE r.target.id = ?1")
+})
 @Table(
         uniqueConstraints = {
             // remoteId is the unique ID assigned by the JVM to its own recordings, so these IDs are
             // unique but only within the scope of each JVM. Since they are just sequential numeric
             // IDs, they will not be unique across different JVMs.
-            @UniqueConstraint(columnNames = {"target_id", "remoteId"})
+            @UniqueConstraint(
+                    name = ActiveRecording.TARGET_REMOTE_ID_CONSTRAINT,
+                    columnNames = {"target_id", "remoteId"})
         })
 public class ActiveRecording extends PanacheEntity {
 
+    /** The name of the unique constraint on (target_id, remoteId), as created by migration. */
+    public static final String TARGET_REMOTE_ID_CONSTRAINT = "UKr8nr64n7i34ipp019xrbbbyeh";
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "target_id")
     @NotNull
@@ -96,6 +109,12 @@ public class ActiveRecording extends PanacheEntity {
      */
     @JsonIgnore public boolean external;
 
+    /**
+     * Optimistic locking version. Synchronization with the recordings present on the Target does
+     * not lock the Target, so concurrent modifications of the same recording are detected by this.
+     */
+    @JsonIgnore @Version public long version;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @NotNull
     public Metadata metadata;
@@ -38,6 +38,7 @@ import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
 public class ActiveRecordingsDownload {
 
     @Inject RecordingHelper recordingHelper;
+    @Inject RecordingStreamMetrics streamMetrics;
     @Inject Logger logger;
 
     @Inject
@@ -63,7 +64,11 @@ public class ActiveRecordingsDownload {
                         HttpHeaders.CONTENT_DISPOSITION,
                         String.format("attachment; filename=\"%s.jfr\"", recording.name))
                 .header(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime())
-                .entity(recordingHelper.getActiveInputStream(recording))
+                .entity(
+                        streamMetrics.meter(
+                                recordingHelper.getActiveInputStream(recording),
+                                RecordingStreamMetrics.Source.ACTIVE,
+                                RecordingStreamMetrics.Operation.DOWNLOAD))
                 .build();
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+import io.cryostat.reports.AnalysisReportAggregator;
+import io.cryostat.reports.ReportsService;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.apache.commons.io.input.TeeInputStream;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Lets a single read of a remote recording stream feed more than one consumer while it is being
+ * archived. The stream is teed into a local temporary file as it is uploaded to storage. Once the
+ * upload is complete, the local copy is used to generate the automated analysis report for
+ * recordings labelled for automatic analysis, so that the report is already cached by the time the
+ * {@link AnalysisReportAggregator} asks for it, and is then handed over to the JFR analytics cache
+ * as an {@link ArchivedRecordingCopy} event. Without this, each of those consumers would download
+ * the recording from storage again.
+ */
+@ApplicationScoped
+class ArchiveFanOut {
+
+    @Inject ReportsService reportsService;
+    @Inject Event<ArchivedRecordingCopy> copies;
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_FAN_OUT_ANALYTICS_ENABLED)
+    boolean analyticsPrefetch;
+
+    /**
+     * Begin a fan-out for a recording about to be archived, if any consumer other than storage
+     * wants its contents.
+     *
+     * @return a {@link Tee} wrapping the source stream, or empty if the recording should simply be
+     *     uploaded
+     */
+    Optional<Tee> begin(String jvmId, String filename, Metadata metadata, InputStream source)
+            throws IOException {
+        boolean autoanalyze =
+                Boolean.parseBoolean(
+                        metadata.labels().get(AnalysisReportAggregator.AUTOANALYZE_LABEL));
+        if (!autoanalyze && !analyticsPrefetch) {
+            return Optional.empty();
+        }
+        Path copy = Files.createTempFile("archive-", ".jfr");
+        try {
+            var stream = new TeeInputStream(source, Files.newOutputStream(copy), true);
+            return Optional.of(new Tee(jvmId, filename, autoanalyze, copy, stream));
+        } catch (IOException e) {
+            delete(copy);
+            throw e;
+        }
+    }
+
+    /**
+     * Feed the completed local copy to the remaining consumers. This returns immediately, the
+     * report is generated in the background and the copy is deleted once it is no longer needed.
+     */
+    void complete(Tee tee) {
+        try {
+            // flushes and closes the local copy
+            tee.stream().close();
+        } catch (IOException e) {
+            logger.warn(e);
+            delete(tee.copy());
+            return;
+        }
+        if (!tee.autoanalyze()) {
+            handOff(tee);
+            return;
+        }
+        reportsService
+                .reportForCopy(tee.jvmId(), tee.filename(), tee.copy())
+                .subscribe()
+                .with(
+                        report -> handOff(tee),
+                        t -> {
+                            logger.warnv(
+                                    t,
+                                    "Failed to analyze archived recording {0}/{1} from local copy",
+                                    tee.jvmId(),
+                                    tee.filename());
+                            handOff(tee);
+                        });
+    }
+
+    /** Discard the local copy after a failed archive operation. */
+    void abort(Tee tee) {
+        try {
+            tee.stream().close();
+        } catch (IOException e) {
+            logger.debug(e);
+        }
+        delete(tee.copy());
+    }
+
+    private void handOff(Tee tee) {
+        if (!analyticsPrefetch) {
+            delete(tee.copy());
+            return;
+        }
+        try {
+            // observers take ownership of the file
+            copies.fire(new ArchivedRecordingCopy(tee.jvmId(), tee.filename(), tee.copy()));
+        } catch (Exception e) {
+            logger.warn(e);
+            delete(tee.copy());
+        }
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warnv(e, "Failed to delete temporary archive copy {0}", path);
+        }
+    }
+
+    record Tee(
+            String jvmId, String filename, boolean autoanalyze, Path copy, InputStream stream) {}
+}
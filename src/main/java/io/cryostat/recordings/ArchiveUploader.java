@@ -0,0 +1,479 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.cryostat.ConfigProperties;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Uploads Flight Recording streams of unknown length to the archives bucket using S3 multipart
+ * uploads. The source stream is read into fixed-size heap buffers drawn from a pool shared by all
+ * concurrent archive operations, and each filled buffer is uploaded as a part on its own virtual
+ * thread while reading continues into the next buffer. The size of the pool bounds the total
+ * memory used by archiving, no matter how many recordings are being archived at once: when the
+ * pool is exhausted, readers wait for an in-flight part to complete and return its buffer. Pooled
+ * buffers are dropped once no archive operation is using them, so an idle uploader holds no part
+ * memory. Part uploads which fail with a retryable error are retried from the buffer which is
+ * still held, so an upload resumes from the last completed part rather than starting over.
+ * Streams which fit in a single part are uploaded with one plain PUT.
+ */
+@ApplicationScoped
+class ArchiveUploader {
+
+    // S3 rejects multipart uploads with any part other than the last smaller than this
+    static final long MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    @Inject S3Client storage;
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_UPLOAD_PART_SIZE)
+    MemorySize partSize;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_UPLOAD_BUFFERS)
+    Optional<Integer> maxBuffers;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_UPLOAD_BUFFER_TIMEOUT)
+    Duration bufferTimeout;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_UPLOAD_CONCURRENT_PARTS)
+    int maxConcurrentParts;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_UPLOAD_PART_RETRIES)
+    int partRetries;
+
+    private final ExecutorService partUploader = Executors.newVirtualThreadPerTaskExecutor();
+    BufferPool buffers;
+
+    @PostConstruct
+    void init() {
+        long size = partSize.asLongValue();
+        if (size < MIN_PART_SIZE) {
+            logger.warnv(
+                    "{0}={1} is below the minimum S3 multipart upload part size, using {2} bytes",
+                    ConfigProperties.ARCHIVES_UPLOAD_PART_SIZE, size, MIN_PART_SIZE);
+            size = MIN_PART_SIZE;
+        }
+        init(size);
+    }
+
+    /** Initialize with the given part size as-is, ie. for testing against smaller parts. */
+    void init(long partBytes) {
+        // one buffer per in-flight part, plus the one the source is being read into
+        int capacity = maxBuffers.orElse(Math.max(1, maxConcurrentParts) + 1);
+        this.buffers = new BufferPool(partBytes, capacity, bufferTimeout);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        partUploader.shutdownNow();
+    }
+
+    /**
+     * Upload the contents of the stream as the object described by the given request. The stream
+     * is read to EOF but not closed.
+     *
+     * @return the total number of bytes uploaded
+     */
+    long upload(PutObjectRequest request, InputStream stream)
+            throws IOException, InterruptedException {
+        ArchiveUpload evt = new ArchiveUpload(request.key());
+        AtomicInteger retries = new AtomicInteger();
+        evt.begin();
+        try {
+            ReadableByteChannel source = Channels.newChannel(stream);
+            ByteBuffer first = buffers.acquire();
+            try {
+                fill(source, first);
+            } catch (IOException e) {
+                buffers.release(first);
+                throw e;
+            }
+            if (first.limit() < first.capacity()) {
+                // the whole stream fit into one part, so skip the multipart protocol
+                try {
+                    retrying(
+                            request.key(),
+                            1,
+                            retries,
+                            () ->
+                                    storage.putObject(
+                                            request,
+                                            RequestBody.fromContentProvider(
+                                                    provider(first),
+                                                    first.limit(),
+                                                    request.contentType())));
+                    evt.parts = 1;
+                    evt.bytes = first.limit();
+                    return first.limit();
+                } finally {
+                    buffers.release(first);
+                }
+            }
+            MultipartUpload upload = new MultipartUpload(request, retries);
+            long total = upload.run(source, first);
+            evt.parts = upload.parts.size();
+            evt.bytes = total;
+            return total;
+        } finally {
+            evt.retries = retries.get();
+            evt.end();
+            if (evt.shouldCommit()) {
+                evt.commit();
+            }
+        }
+    }
+
+    private class MultipartUpload {
+        private final PutObjectRequest request;
+        private final AtomicInteger retries;
+        private final Semaphore inFlight = new Semaphore(Math.max(1, maxConcurrentParts));
+        private final List<Future<CompletedPart>> parts = new ArrayList<>();
+        private volatile boolean failed;
+        private String uploadId;
+
+        MultipartUpload(PutObjectRequest request, AtomicInteger retries) {
+            this.request = request;
+            this.retries = retries;
+        }
+
+        /**
+         * Upload the already-filled first buffer and then the remainder of the source. Ownership
+         * of the first buffer is taken by this method.
+         */
+        long run(ReadableByteChannel source, ByteBuffer first)
+                throws IOException, InterruptedException {
+            try {
+                uploadId =
+                        storage.createMultipartUpload(
+                                        CreateMultipartUploadRequest.builder()
+                                                .bucket(request.bucket())
+                                                .key(request.key())
+                                                .contentType(request.contentType())
+                                                .contentDisposition(request.contentDisposition())
+                                                .tagging(request.tagging())
+                                                .metadata(request.metadata())
+                                                .build())
+                                .uploadId();
+            } catch (RuntimeException e) {
+                buffers.release(first);
+                throw e;
+            }
+
+            try {
+                long total = 0;
+                int partNumber = 1;
+                ByteBuffer buffer = first;
+                while (true) {
+                    int length = buffer.limit();
+                    total += length;
+                    submit(partNumber++, buffer);
+                    if (length < buffer.capacity()) {
+                        // short read means we reached EOF
+                        break;
+                    }
+                    buffer = buffers.acquire();
+                    try {
+                        fill(source, buffer);
+                    } catch (IOException e) {
+                        buffers.release(buffer);
+                        throw e;
+                    }
+                    if (buffer.limit() == 0) {
+                        buffers.release(buffer);
+                        break;
+                    }
+                }
+
+                List<CompletedPart> completed = new ArrayList<>(parts.size());
+                for (Future<CompletedPart> part : parts) {
+                    completed.add(part.get());
+                }
+                retrying(
+                        request.key(),
+                        0,
+                        retries,
+                        () ->
+                                storage.completeMultipartUpload(
+                                        CompleteMultipartUploadRequest.builder()
+                                                .bucket(request.bucket())
+                                                .key(request.key())
+                                                .uploadId(uploadId)
+                                                .multipartUpload(
+                                                        CompletedMultipartUpload.builder()
+                                                                .parts(completed)
+                                                                .build())
+                                                .build()));
+                return total;
+            } catch (ExecutionException e) {
+                abort();
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new IOException(e.getCause());
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        private void submit(int partNumber, ByteBuffer buffer) throws InterruptedException {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                buffers.release(buffer);
+                throw e;
+            }
+            parts.add(
+                    partUploader.submit(
+                            () -> {
+                                try {
+                                    if (failed) {
+                                        throw new IOException("Multipart upload was aborted");
+                                    }
+                                    return uploadPart(partNumber, buffer);
+                                } catch (Exception e) {
+                                    failed = true;
+                                    throw e;
+                                } finally {
+                                    buffers.release(buffer);
+                                    inFlight.release();
+                                }
+                            }));
+        }
+
+        private CompletedPart uploadPart(int partNumber, ByteBuffer buffer)
+                throws InterruptedException {
+            UploadPartRequest req =
+                    UploadPartRequest.builder()
+                            .bucket(request.bucket())
+                            .key(request.key())
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .build();
+            var resp =
+                    retrying(
+                            request.key(),
+                            partNumber,
+                            retries,
+                            () ->
+                                    storage.uploadPart(
+                                            req,
+                                            RequestBody.fromContentProvider(
+                                                    provider(buffer),
+                                                    buffer.limit(),
+                                                    request.contentType())));
+            return CompletedPart.builder().partNumber(partNumber).eTag(resp.eTag()).build();
+        }
+
+        private void abort() {
+            failed = true;
+            // wait for parts which are still uploading to finish or fail, so that their buffers
+            // are returned to the pool and nothing is uploaded after the abort
+            for (Future<CompletedPart> part : parts) {
+                try {
+                    part.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    // already reported
+                }
+            }
+            try {
+                storage.abortMultipartUpload(
+                        AbortMultipartUploadRequest.builder()
+                                .bucket(request.bucket())
+                                .key(request.key())
+                                .uploadId(uploadId)
+                                .build());
+            } catch (SdkException e) {
+                logger.warnv(e, "Failed to abort multipart upload of \"{0}\"", request.key());
+            }
+        }
+    }
+
+    private <T> T retrying(String key, int partNumber, AtomicInteger retries, SdkCall<T> call)
+            throws InterruptedException {
+        int attempt = 0;
+        while (true) {
+            try {
+                return call.execute();
+            } catch (SdkException e) {
+                // the client has already applied its own retry policy to this call, so this only
+                // covers failures which outlast it, and never ones which will fail again the same
+                if (!isRetryable(e) || attempt++ >= partRetries) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                logger.warnv(
+                        e,
+                        "Archive upload of \"{0}\" part {1} failed, retrying ({2}/{3})",
+                        key,
+                        partNumber,
+                        attempt,
+                        partRetries);
+                Thread.sleep(Duration.ofMillis(250L << Math.min(attempt, 6)));
+            }
+        }
+    }
+
+    static boolean isRetryable(SdkException e) {
+        if (e.retryable()) {
+            return true;
+        }
+        if (e instanceof SdkServiceException se) {
+            return se.statusCode() >= 500 || se.isThrottlingException();
+        }
+        // client-side failures are only worth retrying if the connection was the problem
+        return ExceptionUtils.indexOfType(e, IOException.class) >= 0;
+    }
+
+    /** Fill the buffer from the source until it is full or EOF, and flip it for reading. */
+    private static void fill(ReadableByteChannel source, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    private static ContentStreamProvider provider(ByteBuffer buffer) {
+        // each (re)try gets an independent stream over the filled region, so the buffer itself is
+        // never copied
+        return () -> new ByteArrayInputStream(buffer.array(), 0, buffer.limit());
+    }
+
+    @FunctionalInterface
+    private interface SdkCall<T> {
+        T execute();
+    }
+
+    /**
+     * Fixed-capacity pool of heap buffers. Buffers are allocated lazily up to the capacity and
+     * recycled while any are in use, then dropped when the last one is released so that they can
+     * be garbage collected. {@link #acquire()} blocks while all buffers are in use, up to the
+     * timeout.
+     */
+    static class BufferPool {
+        private final int bufferSize;
+        private final Duration timeout;
+        private final Semaphore permits;
+        private final AtomicInteger leased = new AtomicInteger();
+        private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+        BufferPool(long bufferSize, int capacity, Duration timeout) {
+            if (bufferSize < 1 || bufferSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid buffer size %d", bufferSize));
+            }
+            this.bufferSize = (int) bufferSize;
+            this.timeout = timeout;
+            this.permits = new Semaphore(Math.max(1, capacity), true);
+        }
+
+        ByteBuffer acquire() throws IOException, InterruptedException {
+            if (!permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException(
+                        String.format(
+                                "Timed out after %s waiting for an archive upload buffer",
+                                timeout));
+            }
+            leased.incrementAndGet();
+            ByteBuffer buffer = free.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(bufferSize);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        void release(ByteBuffer buffer) {
+            if (leased.decrementAndGet() > 0) {
+                free.offer(buffer);
+            } else {
+                free.clear();
+            }
+            permits.release();
+        }
+
+        int idle() {
+            return free.size();
+        }
+    }
+
+    @Name("io.cryostat.recordings.ArchiveUploader.ArchiveUpload")
+    @Label("Archive Upload")
+    @Category("Cryostat")
+    @SuppressFBWarnings(value = {"URF_UNREAD_FIELD"})
+    public static class ArchiveUpload extends Event {
+        String key;
+        int parts;
+        int retries;
+
+        @DataAmount long bytes;
+
+        ArchiveUpload(String key) {
+            this.key = key;
+        }
+    }
+}
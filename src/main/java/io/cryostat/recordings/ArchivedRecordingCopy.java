@@ -0,0 +1,26 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.nio.file.Path;
+
+/**
+ * Fired when a local copy of a newly archived recording's contents is available. The observer
+ * takes ownership of the file and is responsible for deleting it.
+ *
+ * @see ArchiveFanOut
+ */
+public record ArchivedRecordingCopy(String jvmId, String filename, Path file) {}
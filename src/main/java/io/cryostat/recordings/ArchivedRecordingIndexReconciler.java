@@ -0,0 +1,200 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Periodically pages through the archives bucket and repairs any drift between the bucket contents
+ * and the {@link ArchivedRecordingInfo} catalog. Objects missing from the catalog are added (this
+ * includes any archives written by Cryostat versions predating the catalog), entries whose size or
+ * modification time no longer match the bucket are refreshed, and entries for objects which no
+ * longer exist are removed. Metadata is only fetched from storage for objects which are new to the
+ * catalog, so a steady-state reconciliation costs one list request per page of objects.
+ */
+@ApplicationScoped
+class ArchivedRecordingIndexReconciler {
+
+    @Inject S3Client storage;
+    @Inject RecordingHelper recordingHelper;
+    @Inject Logger logger;
+
+    @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
+    String archiveBucket;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVES_INDEX_RECONCILE_ENABLED)
+    boolean enabled;
+
+    @Scheduled(
+            every = "${" + ConfigProperties.ARCHIVES_INDEX_RECONCILE_PERIOD + "}",
+            delayed = "${" + ConfigProperties.ARCHIVES_INDEX_RECONCILE_DELAY + "}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            logger.warn("Archived recording catalog reconciliation failed", e);
+        }
+    }
+
+    ReconciliationResult reconcile() {
+        long started = System.currentTimeMillis();
+        Map<String, IndexEntry> known = new HashMap<>();
+        QuarkusTransaction.requiringNew()
+                .run(
+                        () ->
+                                ArchivedRecordingInfo.findAll()
+                                        .project(IndexEntry.class)
+                                        .stream()
+                                        .forEach(e -> known.put(e.key(), e)));
+
+        var seen = new HashSet<String>();
+        int added = 0;
+        int refreshed = 0;
+        for (ListObjectsV2Response page :
+                storage.listObjectsV2Paginator(
+                        ListObjectsV2Request.builder().bucket(archiveBucket).build())) {
+            var stale = new ArrayList<S3Object>();
+            for (S3Object object : page.contents()) {
+                String key = object.key().strip();
+                String[] parts = key.split("/");
+                if (parts.length != 2) {
+                    logger.debugv("Ignoring unexpected archives object key \"{0}\"", key);
+                    continue;
+                }
+                seen.add(key);
+                IndexEntry entry = known.get(key);
+                if (entry == null
+                        || entry.fileSize() != object.size()
+                        || entry.archivedTime() != object.lastModified().getEpochSecond()) {
+                    stale.add(object);
+                }
+            }
+            for (S3Object object : stale) {
+                IndexEntry entry = known.get(object.key().strip());
+                if (entry == null || entry.archivedTime() == 0) {
+                    added++;
+                } else {
+                    refreshed++;
+                }
+                index(object, Optional.ofNullable(entry));
+            }
+        }
+
+        List<IndexEntry> removed =
+                known.values().stream()
+                        .filter(e -> !seen.contains(e.key()))
+                        // do not race with archives which were created while we were listing
+                        .filter(e -> e.createdAt() < started)
+                        .toList();
+        if (!removed.isEmpty()) {
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    removed.forEach(
+                                            e ->
+                                                    ArchivedRecordingInfo.delete(
+                                                            "jvmId = ?1 and filename = ?2",
+                                                            e.jvmId(),
+                                                            e.filename())));
+        }
+
+        var result =
+                new ReconciliationResult(
+                        seen.size(),
+                        added,
+                        refreshed,
+                        removed.size(),
+                        System.currentTimeMillis() - started);
+        if (result.added() + result.refreshed() + result.removed() > 0) {
+            logger.infov("Archived recording catalog reconciled: {0}", result);
+        } else {
+            logger.debugv("Archived recording catalog reconciled: {0}", result);
+        }
+        return result;
+    }
+
+    private void index(S3Object object, Optional<IndexEntry> entry) {
+        String[] parts = object.key().strip().split("/");
+        String jvmId = parts[0];
+        String filename = parts[1];
+        try {
+            // entries backfilled by the catalog migration have not yet had their metadata copied
+            // from storage. Otherwise, metadata updates always go through the catalog, so only
+            // the object size and modification time can have drifted.
+            boolean needsMetadata = entry.map(e -> e.archivedTime() == 0).orElse(true);
+            Metadata metadata;
+            if (needsMetadata) {
+                metadata =
+                        recordingHelper
+                                .getArchivedRecordingMetadata(object.key().strip())
+                                .orElseGet(Metadata::empty);
+            } else {
+                metadata =
+                        QuarkusTransaction.requiringNew()
+                                .call(
+                                        () ->
+                                                ArchivedRecordingInfo.findByKey(jvmId, filename)
+                                                        .map(i -> new Metadata(i.metadata))
+                                                        .orElseGet(Metadata::empty));
+            }
+            QuarkusTransaction.requiringNew()
+                    .run(
+                            () ->
+                                    recordingHelper.indexArchivedRecording(
+                                            jvmId,
+                                            filename,
+                                            null,
+                                            metadata,
+                                            object.size(),
+                                            object.lastModified().getEpochSecond()));
+        } catch (Exception e) {
+            logger.warnv(e, "Failed to index archived recording \"{0}\"", object.key());
+        }
+    }
+
+    public record IndexEntry(
+            String jvmId, String filename, long fileSize, long archivedTime, Long createdAt) {
+        String key() {
+            return RecordingHelper.archivedRecordingKey(jvmId, filename);
+        }
+    }
+
+    record ReconciliationResult(
+            int objects, int added, int refreshed, int removed, long elapsedMillis) {}
+}
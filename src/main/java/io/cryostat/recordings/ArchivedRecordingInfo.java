@@ -15,22 +15,57 @@
  */
 package io.cryostat.recordings;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Query;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.envers.Audited;
+import org.hibernate.type.SqlTypes;
 
+/**
+ * Catalog entry for an archived recording stored in the archives bucket. The catalog is kept up to
+ * date as recordings are archived, uploaded, relabelled and deleted, so that listing and querying
+ * archives is a database query rather than a listing of the bucket plus one metadata request per
+ * object. {@link ArchivedRecordingIndexReconciler} periodically pages through the bucket to repair
+ * any drift between the catalog and the actual bucket contents.
+ */
 @Entity
 @Audited
 @Table(
         name = "ArchivedRecording",
-        uniqueConstraints = {@UniqueConstraint(columnNames = {"jvmId", "filename"})})
+        uniqueConstraints = {@UniqueConstraint(columnNames = {"jvmId", "filename"})},
+        indexes = {
+            @Index(columnList = "jvmId, archivedTime"),
+            @Index(columnList = "archivedTime")
+        })
 public class ArchivedRecordingInfo extends PanacheEntity {
 
+    // don't use the application-wide instance. That one serializes maps as key-value pair lists for
+    // historical API reasons, but the label containment query needs the same document shape as the
+    // JSON column.
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     @NotBlank public String jvmId;
 
     @NotBlank public String filename;
@@ -39,6 +74,19 @@ public class ArchivedRecordingInfo extends PanacheEntity {
 
     @NotNull public Long createdAt;
 
+    /** Size of the archived object in bytes, as reported by object storage. */
+    @PositiveOrZero public long fileSize;
+
+    /**
+     * Last-modified time of the archived object in object storage, in epoch seconds. Zero if the
+     * entry predates the catalog and has not yet been reconciled.
+     */
+    @PositiveOrZero public long archivedTime;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @NotNull
+    public Metadata metadata = Metadata.empty();
+
     public static ArchivedRecordingInfo of(String jvmId, String filename, Long activeRecordingId) {
         ArchivedRecordingInfo recording = new ArchivedRecordingInfo();
         recording.jvmId = jvmId;
@@ -47,4 +95,121 @@ public class ArchivedRecordingInfo extends PanacheEntity {
         recording.createdAt = System.currentTimeMillis();
         return recording;
     }
+
+    public static Optional<ArchivedRecordingInfo> findByKey(String jvmId, String filename) {
+        return find("jvmId = ?1 and filename = ?2", jvmId, filename).firstResultOptional();
+    }
+
+    public static List<ArchivedRecordingInfo> findByJvmId(String jvmId) {
+        return list("jvmId = ?1 order by archivedTime desc, id desc", jvmId);
+    }
+
+    public static List<ArchivedRecordingInfo> findByJvmIds(Collection<String> jvmIds) {
+        if (jvmIds.isEmpty()) {
+            return List.of();
+        }
+        return list("jvmId in ?1 order by archivedTime desc, id desc", jvmIds);
+    }
+
+    public static List<ArchivedRecordingInfo> listAllOrdered() {
+        return list("order by archivedTime desc, id desc");
+    }
+
+    /**
+     * Query the catalog for entries matching all of the non-null criteria, most recently archived
+     * first. Label criteria are evaluated as a JSONB containment check so that they are served by
+     * the GIN index on the metadata column.
+     */
+    @SuppressWarnings("unchecked")
+    public static SearchResult search(Criteria criteria) {
+        Objects.requireNonNull(criteria);
+        var clauses = new ArrayList<String>();
+        var params = new HashMap<String, Object>();
+        if (StringUtils.isNotBlank(criteria.jvmId())) {
+            clauses.add("jvmId = :jvmId");
+            params.put("jvmId", criteria.jvmId());
+        }
+        if (criteria.labels() != null && !criteria.labels().isEmpty()) {
+            try {
+                clauses.add("metadata @> CAST(:labels AS jsonb)");
+                params.put(
+                        "labels",
+                        MAPPER.writeValueAsString(new Metadata(Map.copyOf(criteria.labels()))));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        if (criteria.minSize() != null) {
+            clauses.add("fileSize >= :minSize");
+            params.put("minSize", criteria.minSize());
+        }
+        if (criteria.maxSize() != null) {
+            clauses.add("fileSize <= :maxSize");
+            params.put("maxSize", criteria.maxSize());
+        }
+        if (criteria.archivedAfter() != null) {
+            clauses.add("archivedTime >= :archivedAfter");
+            params.put("archivedAfter", criteria.archivedAfter());
+        }
+        if (criteria.archivedBefore() != null) {
+            clauses.add("archivedTime <= :archivedBefore");
+            params.put("archivedBefore", criteria.archivedBefore());
+        }
+        String where = clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses);
+
+        var em = getEntityManager();
+        Query count = em.createNativeQuery("SELECT COUNT(*) FROM ArchivedRecording" + where);
+        Query data =
+                em.createNativeQuery(
+                        "SELECT * FROM ArchivedRecording"
+                                + where
+                                + " ORDER BY archivedTime DESC, id DESC",
+                        ArchivedRecordingInfo.class);
+        params.forEach(
+                (k, v) -> {
+                    count.setParameter(k, v);
+                    data.setParameter(k, v);
+                });
+        long total = ((Number) count.getSingleResult()).longValue();
+        data.setFirstResult(criteria.page() * criteria.pageSize());
+        data.setMaxResults(criteria.pageSize());
+        return new SearchResult(data.getResultList(), total);
+    }
+
+    /**
+     * Archived recording catalog search criteria. Null values are ignored. {@code archivedAfter}
+     * and {@code archivedBefore} are inclusive bounds in epoch seconds.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public record Criteria(
+            String jvmId,
+            Map<String, String> labels,
+            Long minSize,
+            Long maxSize,
+            Long archivedAfter,
+            Long archivedBefore,
+            int page,
+            int pageSize) {
+        public Criteria {
+            if (page < 0) {
+                throw new IllegalArgumentException("Page number must be >= 0");
+            }
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("Page size must be > 0");
+            }
+            if (minSize != null && maxSize != null && maxSize < minSize) {
+                throw new IllegalArgumentException("Maximum size must be >= minimum size");
+            }
+            if (archivedAfter != null && archivedBefore != null && archivedBefore < archivedAfter) {
+                throw new IllegalArgumentException("End time must be >= start time");
+            }
+        }
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public record SearchResult(List<ArchivedRecordingInfo> entries, long totalCount) {
+        public SearchResult {
+            Objects.requireNonNull(entries);
+        }
+    }
 }
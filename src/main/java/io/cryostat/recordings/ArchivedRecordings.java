@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -35,6 +36,7 @@ import io.cryostat.StorageBuckets;
 import io.cryostat.libcryostat.sys.Clock;
 import io.cryostat.recordings.ActiveRecordings.Metadata;
 import io.cryostat.recordings.LongRunningRequestGenerator.GrafanaArchiveUploadRequest;
+import io.cryostat.recordings.RecordingHelper.ArchivedRecordingPage;
 import io.cryostat.targets.Target;
 import io.cryostat.util.HttpMimeType;
 
@@ -46,7 +48,9 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.mutiny.core.eventbus.EventBus;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
@@ -65,7 +69,6 @@ import org.jboss.resteasy.reactive.RestResponse;
 import org.jboss.resteasy.reactive.RestResponse.ResponseBuilder;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
@@ -78,6 +81,7 @@ public class ArchivedRecordings {
     @Inject StorageBuckets storageBuckets;
     @Inject S3Presigner presigner;
     @Inject RecordingHelper recordingHelper;
+    @Inject RecordingStreamMetrics streamMetrics;
     @Inject Logger logger;
 
     @ConfigProperty(name = ConfigProperties.AWS_BUCKET_NAME_ARCHIVES)
@@ -103,6 +107,70 @@ public class ArchivedRecordings {
         return recordingHelper.listArchivedRecordings();
     }
 
+    @GET
+    @Blocking
+    @Path("/api/beta/recordings")
+    @RolesAllowed("read")
+    @Operation(
+            summary = "Search archived recordings",
+            description =
+                    """
+                    Search the archived recordings catalog by target JVM ID, labels, file size and archival time.
+                    Results are ordered by archival time, most recent first, and are paginated.
+                    """)
+    public ArchivedRecordingPage search(
+            @Parameter(required = false) @RestQuery String jvmId,
+            @Parameter(
+                            required = false,
+                            description =
+                                    """
+                                    label constraints in the form 'key=value'. Only archived recordings with all of
+                                    the specified labels are returned.
+                                    """)
+                    @RestQuery("label")
+                    List<String> labels,
+            @Parameter(required = false, description = "minimum file size in bytes") @RestQuery
+                    Long minSize,
+            @Parameter(required = false, description = "maximum file size in bytes") @RestQuery
+                    Long maxSize,
+            @Parameter(required = false, description = "earliest archival time, epoch seconds")
+                    @RestQuery
+                    Long startTime,
+            @Parameter(required = false, description = "latest archival time, epoch seconds")
+                    @RestQuery
+                    Long endTime,
+            @RestQuery @DefaultValue("0") int page,
+            @RestQuery @DefaultValue("50") int pageSize) {
+        if (pageSize > 1000) {
+            throw new BadRequestException("Page size must be <= 1000");
+        }
+        var labelMap = new HashMap<String, String>();
+        if (labels != null) {
+            for (String label : labels) {
+                int idx = label.indexOf('=');
+                if (idx <= 0) {
+                    throw new BadRequestException(
+                            String.format("Invalid label constraint \"%s\"", label));
+                }
+                labelMap.put(label.substring(0, idx), label.substring(idx + 1));
+            }
+        }
+        try {
+            return recordingHelper.queryArchivedRecordings(
+                    new ArchivedRecordingInfo.Criteria(
+                            jvmId,
+                            labelMap,
+                            minSize,
+                            maxSize,
+                            startTime,
+                            endTime,
+                            page,
+                            pageSize));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
     @POST
     @Blocking
     @Path("/api/v4/recordings")
@@ -176,33 +244,17 @@ public class ArchivedRecordings {
         logger.tracev(
                 "recording:{0}, labels:{1}, maxFiles:{2}", recording.fileName(), labels, maxFiles);
         if (max < Integer.MAX_VALUE) {
-            var objs = new ArrayList<S3Object>(recordingHelper.listArchivedRecordingObjects(id));
+            // the archived recording catalog already orders these by archival time, most recent
+            // first
             var toRemove =
-                    objs.stream()
-                            .filter(
-                                    obj -> {
-                                        String filename = obj.key().strip().split("/")[1];
-                                        return recordingHelper
-                                                .getArchivedRecordingMetadata(id, filename)
-                                                .map(
-                                                        m ->
-                                                                "SCHEDULED"
-                                                                        .equals(
-                                                                                m.labels()
-                                                                                        .get(
-                                                                                                "pushType")))
-                                                .orElse(false);
-                                    })
-                            .sorted((a, b) -> b.lastModified().compareTo(a.lastModified()))
+                    recordingHelper.listArchivedRecordings(id).stream()
+                            .filter(r -> "SCHEDULED".equals(r.metadata().labels().get("pushType")))
                             .skip(max - 1)
-                            .map(S3Object::key)
-                            .map(s -> s.split("/"))
-                            .map(a -> Pair.of(a[0], a[1]))
                             .toList();
             toRemove.forEach(
-                    p -> {
+                    r -> {
                         try {
-                            recordingHelper.deleteArchivedRecording(p.getKey(), p.getValue());
+                            recordingHelper.deleteArchivedRecording(r.jvmId(), r.name());
                         } catch (IOException ioe) {
                             logger.error(ioe);
                         }
@@ -255,28 +307,7 @@ public class ArchivedRecordings {
     @RolesAllowed("read")
     @Operation(summary = "List archived recordings belonging to the specified target")
     public List<ArchivedRecording> agentGet(@Parameter(required = true) @RestPath String jvmId) {
-        var result = new ArrayList<ArchivedRecording>();
-        recordingHelper
-                .listArchivedRecordingObjects(jvmId)
-                .forEach(
-                        item -> {
-                            String objectName = item.key().strip();
-                            String filename = objectName.split("/")[1];
-                            Metadata metadata =
-                                    recordingHelper
-                                            .getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
-                            result.add(
-                                    new ArchivedRecording(
-                                            jvmId,
-                                            filename,
-                                            recordingHelper.downloadUrl(jvmId, filename),
-                                            recordingHelper.reportUrl(jvmId, filename),
-                                            metadata,
-                                            item.size(),
-                                            item.lastModified().getEpochSecond()));
-                        });
-        return result;
+        return recordingHelper.listArchivedRecordings(jvmId);
     }
 
     @DELETE
@@ -298,9 +329,7 @@ public class ArchivedRecordings {
         } else {
             jvmId = Target.getTargetByConnectUrl(URI.create(connectUrl)).jvmId;
         }
-        if (!recordingHelper.listArchivedRecordingObjects(jvmId).stream()
-                .map(item -> item.key().strip().split("/")[1])
-                .anyMatch(fn -> Objects.equals(fn, filename))) {
+        if (recordingHelper.getArchivedRecordingInfo(jvmId, filename).isEmpty()) {
             throw new NotFoundException();
         }
         recordingHelper.deleteArchivedRecording(jvmId, filename);
@@ -344,40 +373,7 @@ public class ArchivedRecordings {
     @RolesAllowed("read")
     @Operation(summary = "List all archived recordings grouped by target")
     public Collection<ArchivedRecordingDirectory> listFsArchives() {
-        var map = new HashMap<String, ArchivedRecordingDirectory>();
-        recordingHelper
-                .listArchivedRecordingObjects()
-                .forEach(
-                        item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String jvmId = parts[0];
-                            String filename = parts[1];
-
-                            Metadata metadata =
-                                    recordingHelper
-                                            .getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
-
-                            String connectUrl =
-                                    metadata.labels().computeIfAbsent("connectUrl", k -> jvmId);
-                            var dir =
-                                    map.computeIfAbsent(
-                                            jvmId,
-                                            id ->
-                                                    new ArchivedRecordingDirectory(
-                                                            connectUrl, id, new ArrayList<>()));
-                            dir.recordings.add(
-                                    new ArchivedRecording(
-                                            jvmId,
-                                            filename,
-                                            recordingHelper.downloadUrl(jvmId, filename),
-                                            recordingHelper.reportUrl(jvmId, filename),
-                                            metadata,
-                                            item.size(),
-                                            item.lastModified().getEpochSecond()));
-                        });
-        return map.values();
+        return toDirectories(recordingHelper.listArchivedRecordings());
     }
 
     @GET
@@ -386,36 +382,21 @@ public class ArchivedRecordings {
     @RolesAllowed("read")
     @Operation(summary = "List all archived recordings belonging to the specified target")
     public Collection<ArchivedRecordingDirectory> listFsArchives(@RestPath String jvmId) {
-        var map = new HashMap<String, ArchivedRecordingDirectory>();
-        recordingHelper
-                .listArchivedRecordingObjects(jvmId)
-                .forEach(
-                        item -> {
-                            String filename = item.key().strip().replace(jvmId + "/", "");
-
-                            Metadata metadata =
-                                    recordingHelper
-                                            .getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
+        return toDirectories(recordingHelper.listArchivedRecordings(jvmId));
+    }
 
-                            String connectUrl =
-                                    metadata.labels().computeIfAbsent("connectUrl", k -> jvmId);
-                            var dir =
-                                    map.computeIfAbsent(
-                                            jvmId,
-                                            id ->
-                                                    new ArchivedRecordingDirectory(
-                                                            connectUrl, id, new ArrayList<>()));
-                            dir.recordings.add(
-                                    new ArchivedRecording(
-                                            jvmId,
-                                            filename,
-                                            recordingHelper.downloadUrl(jvmId, filename),
-                                            recordingHelper.reportUrl(jvmId, filename),
-                                            metadata,
-                                            item.size(),
-                                            item.lastModified().getEpochSecond()));
-                        });
+    private Collection<ArchivedRecordingDirectory> toDirectories(
+            List<ArchivedRecording> recordings) {
+        var map = new LinkedHashMap<String, ArchivedRecordingDirectory>();
+        for (var recording : recordings) {
+            String connectUrl =
+                    recording.metadata().labels().getOrDefault("connectUrl", recording.jvmId());
+            map.computeIfAbsent(
+                            recording.jvmId(),
+                            id -> new ArchivedRecordingDirectory(connectUrl, id, new ArrayList<>()))
+                    .recordings
+                    .add(recording);
+        }
         return map.values();
     }
 
@@ -483,7 +464,11 @@ public class ArchivedRecordings {
                             HttpHeaders.CONTENT_DISPOSITION,
                             String.format("attachment; filename=\"%s\"", contentName))
                     .header(HttpHeaders.CONTENT_TYPE, HttpMimeType.OCTET_STREAM.mime())
-                    .entity(recordingHelper.getArchivedRecordingStream(encodedKey))
+                    .entity(
+                            streamMetrics.meter(
+                                    recordingHelper.getArchivedRecordingStream(encodedKey),
+                                    RecordingStreamMetrics.Source.ARCHIVED,
+                                    RecordingStreamMetrics.Operation.DOWNLOAD))
                     .build();
         }
 
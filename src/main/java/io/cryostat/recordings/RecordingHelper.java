@@ -30,22 +30,26 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.openjdk.jmc.common.unit.IConstrainedMap;
 import org.openjdk.jmc.common.unit.QuantityConversionException;
@@ -79,6 +83,7 @@ import io.cryostat.util.HttpMimeType;
 import io.cryostat.ws.MessagingServer;
 import io.cryostat.ws.Notification;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.StartupEvent;
 import io.smallrye.common.annotation.Identifier;
@@ -90,6 +95,7 @@ import jakarta.enterprise.event.Event;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
@@ -102,11 +108,14 @@ import jakarta.ws.rs.core.Response;
 import jdk.jfr.RecordingState;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.validator.routines.UrlValidator;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
 import org.eclipse.microprofile.rest.client.inject.RestClient;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.reactive.PartFilename;
 import org.jboss.resteasy.reactive.PartType;
@@ -125,7 +134,6 @@ import org.quartz.SchedulerException;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
 import org.quartz.plugins.interrupt.JobInterruptMonitorPlugin;
-import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
@@ -144,7 +152,6 @@ import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
-import software.amazon.awssdk.transfer.s3.model.UploadRequest;
 
 /**
  * Utility class for all things relating to Flight Recording operations. This class is used to
@@ -162,6 +169,7 @@ import software.amazon.awssdk.transfer.s3.model.UploadRequest;
 @ApplicationScoped
 public class RecordingHelper {
 
+    private static final int MAX_SYNC_ATTEMPTS = 3;
     private static final Pattern TEMPLATE_PATTERN =
             Pattern.compile("^template=([\\w]+)(?:,type=([\\w]+))?$");
     public static final String DATASOURCE_FILENAME = "cryostat-analysis.jfr";
@@ -172,7 +180,8 @@ public class RecordingHelper {
 
     @Inject S3Client storage;
     @Inject S3TransferManager transferManager;
-    final ExecutorService partUploader = Executors.newVirtualThreadPerTaskExecutor();
+    @Inject ArchiveUploader archiveUploader;
+    @Inject ArchiveFanOut fanOut;
 
     @Inject @RestClient DatasourceClient datasourceClient;
     @Inject StorageBuckets buckets;
@@ -180,6 +189,7 @@ public class RecordingHelper {
     @Inject Clock clock;
     @Inject TargetConnectionManager connectionManager;
     @Inject RemoteRecordingInputStreamFactory remoteRecordingStreamFactory;
+    @Inject RecordingStreamMetrics streamMetrics;
     @Inject RecordingOptionsBuilderFactory recordingOptionsBuilderFactory;
     @Inject EventOptionsBuilder.Factory eventOptionsBuilderFactory;
     @Inject TargetTemplateService.Factory targetTemplateServiceFactory;
@@ -223,6 +233,10 @@ public class RecordingHelper {
 
     CompletableFuture<URL> grafanaDatasourceURL = new CompletableFuture<>();
 
+    // target ID -> in-flight retrieval of that target's recordings
+    private final Map<Long, CompletableFuture<RecordingsFetch>> descriptorFetches =
+            new ConcurrentHashMap<>();
+
     void onStart(@Observes StartupEvent evt) {
         buckets.createIfNecessary(archiveBucket);
 
@@ -268,6 +282,24 @@ public class RecordingHelper {
                 .call(() -> Target.<Target>find("id", target.id).singleResult().activeRecordings);
     }
 
+    /**
+     * List the active recordings of several targets with a single query.
+     *
+     * @return the active recordings of each target by target ID. Targets without any active
+     *     recordings are absent
+     */
+    public Map<Long, List<ActiveRecording>> listActiveRecordings(Collection<Long> targetIds) {
+        if (targetIds.isEmpty()) {
+            return Map.of();
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ActiveRecording.<ActiveRecording>list("target.id in ?1", targetIds)
+                                        .stream()
+                                        .collect(Collectors.groupingBy(r -> r.target.id)));
+    }
+
     public Optional<ActiveRecording> getActiveRecording(
             Target target, Predicate<ActiveRecording> fn) {
         return listActiveRecordings(target).stream().filter(fn).findFirst();
@@ -277,25 +309,126 @@ public class RecordingHelper {
         return getActiveRecording(target, r -> r.remoteId == remoteId);
     }
 
+    /**
+     * Synchronize the target's active recordings with the recordings present on the target. The
+     * target is contacted before any database work is done, so this should be called outside of any
+     * transaction in order not to hold a database connection for the duration of the remote call.
+     * Concurrent synchronizations of the same target share a single retrieval of its recordings.
+     */
     public List<ActiveRecording> syncActiveRecordings(Target target) {
-        return QuarkusTransaction.joiningExisting().call(() -> listActiveRecordingsImpl(target));
+        RecordingsFetch fetch = fetchRecordings(target);
+        return syncActiveRecordings(target, fetch.knownIds(), fetch.descriptors());
+    }
+
+    /**
+     * Retrieve the IDs of the target's active recordings which are currently known in the
+     * database. This should be called before retrieving the target's recording descriptors for
+     * {@link #syncActiveRecordings(Target, Set, List)}.
+     */
+    public Set<Long> knownRecordingIds(long targetId) {
+        if (QuarkusTransaction.isActive()) {
+            return queryRecordingIds(targetId);
+        }
+        return QuarkusTransaction.requiringNew().call(() -> queryRecordingIds(targetId));
+    }
+
+    /**
+     * Synchronize the target's active recordings with recording descriptors which have already
+     * been retrieved from the target, without connecting to it again. Only the recordings in
+     * knownIds, which must have been retrieved by {@link #knownRecordingIds(long)} before the
+     * descriptors were, are removed if they are missing from the descriptors. Any other recording
+     * may have been created after the descriptors were retrieved rather than having been removed
+     * from the target. The target is not locked while merging, and concurrent modifications of its
+     * recordings are instead detected by their versions. If there is no transaction already active
+     * then the merge is performed in a new transaction and is retried if it conflicts with a
+     * concurrent modification, otherwise the conflict surfaces when the existing transaction
+     * commits.
+     */
+    public List<ActiveRecording> syncActiveRecordings(
+            Target target, Set<Long> knownIds, List<IRecordingDescriptor> descriptors) {
+        long targetId = target.id;
+        if (QuarkusTransaction.isActive()) {
+            return mergeActiveRecordings(targetId, knownIds, descriptors);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return QuarkusTransaction.requiringNew()
+                        .call(() -> mergeActiveRecordings(targetId, knownIds, descriptors));
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_SYNC_ATTEMPTS || !isConcurrentModification(e)) {
+                    throw e;
+                }
+                logger.debugv(
+                        "Concurrent modification of recordings on target {0}, retrying sync"
+                                + " (attempt {1})",
+                        targetId, attempt);
+            }
+        }
     }
 
-    private List<ActiveRecording> listActiveRecordingsImpl(Target target) {
-        // Acquire pessimistic lock on target to prevent concurrent recording operations
-        target =
-                Target.<Target>find("id", target.id)
-                        .withLock(jakarta.persistence.LockModeType.PESSIMISTIC_WRITE)
-                        .singleResult();
+    private Set<Long> queryRecordingIds(long targetId) {
+        return new HashSet<>(
+                ActiveRecording.find("#ActiveRecording.idsByTarget", targetId)
+                        .project(Long.class)
+                        .list());
+    }
+
+    private RecordingsFetch fetchRecordings(Target target) {
+        var fetch = new CompletableFuture<RecordingsFetch>();
+        var inFlight = descriptorFetches.putIfAbsent(target.id, fetch);
+        if (inFlight != null) {
+            // the in-flight fetch's known IDs were retrieved before its descriptors, so they are
+            // equally valid for this sync
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+        }
+        try {
+            Set<Long> knownIds = knownRecordingIds(target.id);
+            List<IRecordingDescriptor> descriptors =
+                    connectionManager.executeConnectedTask(
+                            target, conn -> conn.getService().getAvailableRecordings());
+            var result = new RecordingsFetch(knownIds, descriptors);
+            fetch.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            descriptorFetches.remove(target.id, fetch);
+        }
+    }
+
+    private static boolean isConcurrentModification(Throwable t) {
+        if (ExceptionUtils.indexOfType(t, OptimisticLockException.class) >= 0
+                || ExceptionUtils.indexOfType(t, StaleStateException.class) >= 0) {
+            return true;
+        }
+        // concurrent syncs both inserting the same newly discovered recording. Any other
+        // constraint violation is not resolved by retrying
+        int idx = ExceptionUtils.indexOfType(t, ConstraintViolationException.class);
+        if (idx < 0) {
+            return false;
+        }
+        var cve = (ConstraintViolationException) ExceptionUtils.getThrowableList(t).get(idx);
+        return StringUtils.equalsIgnoreCase(
+                cve.getConstraintName(), ActiveRecording.TARGET_REMOTE_ID_CONSTRAINT);
+    }
+
+    private List<ActiveRecording> mergeActiveRecordings(
+            long targetId, Set<Long> knownIds, List<IRecordingDescriptor> descriptors) {
+        Target target = Target.<Target>find("id", targetId).singleResult();
         try {
             var previousRecordings = target.activeRecordings;
             var previousIds =
                     new HashSet<>(previousRecordings.stream().map(r -> r.remoteId).toList());
             var previousNames =
                     new HashSet<>(previousRecordings.stream().map(r -> r.name).toList());
-            List<IRecordingDescriptor> descriptors =
-                    connectionManager.executeConnectedTask(
-                            target, conn -> conn.getService().getAvailableRecordings());
 
             var remoteIds =
                     new HashSet<>(descriptors.stream().map(IRecordingDescriptor::getId).toList());
@@ -304,7 +437,7 @@ public class RecordingHelper {
             var it = target.activeRecordings.iterator();
             while (it.hasNext()) {
                 var r = it.next();
-                if (!remoteIds.contains(r.remoteId)) {
+                if (knownIds.contains(r.id) && !remoteIds.contains(r.remoteId)) {
                     logger.warnv(
                             "Orphaned recording detected: id={0} remoteId={1} name={2} on target"
                                     + " {3}, removing from database",
@@ -929,63 +1062,123 @@ public class RecordingHelper {
     }
 
     public List<ArchivedRecording> listArchivedRecordings() {
-        return listArchivedRecordingObjects().stream()
-                .map(
-                        item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String jvmId = parts[0];
-                            String filename = parts[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, filename)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    jvmId,
-                                    filename,
-                                    downloadUrl(jvmId, filename),
-                                    reportUrl(jvmId, filename),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .toList();
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ArchivedRecordingInfo.listAllOrdered().stream()
+                                        .map(this::toExternalForm)
+                                        .toList());
     }
 
+    /**
+     * List the objects in the archives bucket directly, following continuation tokens so that
+     * buckets with more than one page of objects are not silently truncated. Prefer {@link
+     * #listArchivedRecordings(String)}, which is served by the archived recording catalog, unless
+     * the actual bucket contents are required.
+     */
     public List<S3Object> listArchivedRecordingObjects(String jvmId) {
         var builder = ListObjectsV2Request.builder().bucket(archiveBucket);
         if (StringUtils.isNotBlank(jvmId)) {
-            builder = builder.prefix(jvmId);
+            builder = builder.prefix(jvmId + "/");
         }
-        return storage.listObjectsV2(builder.build()).contents();
+        var objects = new ArrayList<S3Object>();
+        storage.listObjectsV2Paginator(builder.build()).contents().forEach(objects::add);
+        return objects;
     }
 
     public List<ArchivedRecording> listArchivedRecordings(String jvmId) {
-        return listArchivedRecordingObjects(jvmId).stream()
-                .map(
-                        item -> {
-                            String path = item.key().strip();
-                            String[] parts = path.split("/");
-                            String effectiveJvmId = parts[0];
-                            String filename = parts[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(effectiveJvmId, filename)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    effectiveJvmId,
-                                    filename,
-                                    downloadUrl(effectiveJvmId, filename),
-                                    reportUrl(effectiveJvmId, filename),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .toList();
+        if (StringUtils.isBlank(jvmId)) {
+            return listArchivedRecordings();
+        }
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ArchivedRecordingInfo.findByJvmId(jvmId).stream()
+                                        .map(this::toExternalForm)
+                                        .toList());
+    }
+
+    /**
+     * List the archived recordings of several JVMs with a single catalog query.
+     *
+     * @return the archived recordings of each JVM by JVM ID, most recently archived first. JVMs
+     *     without any archived recordings are absent
+     */
+    public Map<String, List<ArchivedRecording>> listArchivedRecordings(Collection<String> jvmIds) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ArchivedRecordingInfo.findByJvmIds(jvmIds).stream()
+                                        .map(this::toExternalForm)
+                                        .collect(
+                                                Collectors.groupingBy(
+                                                        ArchivedRecording::jvmId,
+                                                        LinkedHashMap::new,
+                                                        Collectors.toList())));
     }
 
     public List<ArchivedRecording> listArchivedRecordings(Target target) {
         return listArchivedRecordings(target.jvmId);
     }
 
+    public ArchivedRecordingPage queryArchivedRecordings(ArchivedRecordingInfo.Criteria criteria) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            var result = ArchivedRecordingInfo.search(criteria);
+                            return new ArchivedRecordingPage(
+                                    result.entries().stream().map(this::toExternalForm).toList(),
+                                    result.totalCount(),
+                                    criteria.page(),
+                                    criteria.pageSize());
+                        });
+    }
+
+    public ArchivedRecording toExternalForm(ArchivedRecordingInfo info) {
+        return new ArchivedRecording(
+                info.jvmId,
+                info.filename,
+                downloadUrl(info.jvmId, info.filename),
+                reportUrl(info.jvmId, info.filename),
+                info.metadata == null ? Metadata.empty() : new Metadata(info.metadata),
+                info.fileSize,
+                info.archivedTime);
+    }
+
+    /**
+     * Create or update the catalog entry for an archived recording. This must be called whenever
+     * an object is written to the archives bucket so that the catalog reflects the bucket
+     * contents.
+     */
+    ArchivedRecordingInfo indexArchivedRecording(
+            String jvmId,
+            String filename,
+            Long activeRecordingId,
+            Metadata metadata,
+            long size,
+            long archivedTime) {
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () -> {
+                            var info =
+                                    ArchivedRecordingInfo.findByKey(jvmId, filename)
+                                            .orElseGet(
+                                                    () ->
+                                                            ArchivedRecordingInfo.of(
+                                                                    jvmId,
+                                                                    filename,
+                                                                    activeRecordingId));
+                            if (activeRecordingId != null) {
+                                info.activeRecordingId = activeRecordingId;
+                            }
+                            info.metadata = new Metadata(metadata);
+                            info.fileSize = size;
+                            info.archivedTime = archivedTime;
+                            info.persist();
+                            return info;
+                        });
+    }
+
     public ArchivedRecording archiveRecording(ActiveRecording recording) throws Exception {
         // AWS object key name guidelines advise characters to avoid (% so we should not pass url
         // encoded characters)
@@ -997,7 +1190,17 @@ public class RecordingHelper {
         String filename =
                 String.format("%s_%s_%s.jfr", transformedAlias, recording.name, timestamp);
         String key = archivedRecordingKey(recording.target.jvmId, filename);
-        try (var stream = getActiveInputStream(recording, uploadFailedTimeout)) {
+        Metadata metadata = createActiveRecordingMetadata(recording);
+        Optional<ArchiveFanOut.Tee> tee = Optional.empty();
+        try (var source =
+                streamMetrics.meter(
+                        getActiveInputStream(recording, uploadFailedTimeout),
+                        RecordingStreamMetrics.Source.ACTIVE,
+                        RecordingStreamMetrics.Operation.ARCHIVE)) {
+            // a single read of the remote stream also feeds report generation and the analytics
+            // cache, if either wants the recording
+            tee = fanOut.begin(recording.target.jvmId, filename, metadata, source);
+            InputStream stream = tee.map(ArchiveFanOut.Tee::stream).orElse(source);
             PutObjectRequest.Builder builder =
                     PutObjectRequest.builder()
                             .bucket(archiveBucket)
@@ -1007,41 +1210,41 @@ public class RecordingHelper {
                                     String.format("attachment; filename=\"%s\"", filename));
             switch (storageMode()) {
                 case TAGGING:
-                    builder = builder.tagging(createActiveRecordingTagging(recording));
+                    builder = builder.tagging(createMetadataTagging(metadata));
                     break;
                 case METADATA:
-                    builder = builder.metadata(createActiveRecordingMetadata(recording).labels());
+                    builder = builder.metadata(metadata.labels());
                     break;
                 case BUCKET:
-                    metadataService
-                            .get()
-                            .create(
-                                    recording.target.jvmId,
-                                    filename,
-                                    createActiveRecordingMetadata(recording));
+                    metadataService.get().create(recording.target.jvmId, filename, metadata);
                     break;
                 default:
                     throw new IllegalStateException();
             }
-            transferManager
-                    .upload(
-                            UploadRequest.builder()
-                                    .putObjectRequest(builder.build())
-                                    .requestBody(
-                                            AsyncRequestBody.fromInputStream(
-                                                    stream, null, partUploader))
-                                    .build())
-                    .completionFuture()
-                    .join();
+            archiveUploader.upload(builder.build(), stream);
+        } catch (Exception e) {
+            tee.ifPresent(fanOut::abort);
+            throw e;
         }
-        QuarkusTransaction.joiningExisting()
-                .run(
-                        () ->
-                                ArchivedRecordingInfo.of(
-                                                recording.target.jvmId, filename, recording.id)
-                                        .persist());
-        ArchivedRecording archivedRecording =
-                getArchivedRecordingInfo(recording.target.jvmId, filename).orElseThrow();
+        ArchivedRecording archivedRecording;
+        try {
+            var head = assertArchivedRecordingExists(recording.target.jvmId, filename);
+            archivedRecording =
+                    toExternalForm(
+                            indexArchivedRecording(
+                                    recording.target.jvmId,
+                                    filename,
+                                    recording.id,
+                                    metadata,
+                                    head.contentLength(),
+                                    head.lastModified().getEpochSecond()));
+        } catch (Exception e) {
+            tee.ifPresent(fanOut::abort);
+            throw e;
+        }
+        // start generating the report before announcing the new archive, so that listeners which
+        // request it share this generation rather than downloading the recording again
+        tee.ifPresent(fanOut::complete);
 
         var event =
                 new ArchivedRecordingNotification(
@@ -1057,33 +1260,24 @@ public class RecordingHelper {
     }
 
     public Optional<ArchivedRecording> getArchivedRecordingInfo(String jvmId, String filename) {
-        return listArchivedRecordingObjects(jvmId).stream()
-                .filter(
-                        item -> {
-                            String objectName = item.key().strip();
-                            String f = objectName.split("/")[1];
-                            return Objects.equals(filename, f);
-                        })
-                .map(
-                        item -> {
-                            String objectName = item.key().strip();
-                            String f = objectName.split("/")[1];
-                            Metadata metadata =
-                                    getArchivedRecordingMetadata(jvmId, f)
-                                            .orElseGet(Metadata::empty);
-                            return new ArchivedRecording(
-                                    jvmId,
-                                    filename,
-                                    downloadUrl(jvmId, f),
-                                    reportUrl(jvmId, f),
-                                    metadata,
-                                    item.size(),
-                                    item.lastModified().getEpochSecond());
-                        })
-                .findFirst();
+        return QuarkusTransaction.joiningExisting()
+                .call(
+                        () ->
+                                ArchivedRecordingInfo.findByKey(jvmId, filename)
+                                        .map(this::toExternalForm));
     }
 
     public Optional<Metadata> getArchivedRecordingMetadata(String jvmId, String filename) {
+        Optional<Metadata> indexed =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () ->
+                                        ArchivedRecordingInfo.findByKey(jvmId, filename)
+                                                .filter(info -> info.archivedTime > 0)
+                                                .map(info -> new Metadata(info.metadata)));
+        if (indexed.isPresent()) {
+            return indexed;
+        }
         return getArchivedRecordingMetadata(archivedRecordingKey(jvmId, filename));
     }
 
@@ -1302,10 +1496,6 @@ public class RecordingHelper {
         return metadata;
     }
 
-    Tagging createActiveRecordingTagging(ActiveRecording recording) {
-        return createMetadataTagging(createActiveRecordingMetadata(recording));
-    }
-
     // Metadata
     Tagging createMetadataTagging(Metadata metadata) {
         // TODO attach other metadata than labels somehow. Prefixed keys to create partitioning?
@@ -1424,23 +1614,17 @@ public class RecordingHelper {
                 .completionFuture()
                 .join();
 
-        String finalFilename = filename;
-        QuarkusTransaction.joiningExisting()
-                .run(
-                        () ->
-                                ArchivedRecordingInfo.of(jvmId, finalFilename, activeRecordingId)
-                                        .persist());
+        ArchivedRecording archivedRecording =
+                toExternalForm(
+                        indexArchivedRecording(
+                                jvmId,
+                                filename,
+                                activeRecordingId,
+                                resolvedMetadata,
+                                recording.size(),
+                                clock.now().getEpochSecond()));
 
         var target = Target.getTargetByJvmId(jvmId);
-        ArchivedRecording archivedRecording =
-                new ArchivedRecording(
-                        jvmId,
-                        filename,
-                        downloadUrl(jvmId, filename),
-                        reportUrl(jvmId, filename),
-                        resolvedMetadata,
-                        recording.size(),
-                        clock.now().getEpochSecond());
         var event =
                 new ArchivedRecordingNotification(
                         ActiveRecordings.RecordingEventCategory.ARCHIVED_CREATED,
@@ -1500,14 +1684,14 @@ public class RecordingHelper {
         Instant lastModified = response.lastModified();
 
         ArchivedRecording updatedRecording =
-                new ArchivedRecording(
-                        jvmId,
-                        filename,
-                        downloadUrl(jvmId, filename),
-                        reportUrl(jvmId, filename),
-                        updatedMetadata,
-                        size,
-                        lastModified.getEpochSecond());
+                toExternalForm(
+                        indexArchivedRecording(
+                                jvmId,
+                                filename,
+                                null,
+                                updatedMetadata,
+                                size,
+                                lastModified.getEpochSecond()));
 
         notifyArchiveMetadataUpdate(jvmId, updatedRecording);
         return updatedRecording;
@@ -1601,6 +1785,20 @@ public class RecordingHelper {
         return URI.create(presigner.presignGetObject(presignRequest).url().toString()).normalize();
     }
 
+    /**
+     * A target's recording descriptors, along with the IDs of its active recordings which were
+     * known before the descriptors were retrieved.
+     */
+    private record RecordingsFetch(Set<Long> knownIds, List<IRecordingDescriptor> descriptors) {}
+
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public record ArchivedRecordingPage(
+            List<ArchivedRecording> recordings, long totalCount, int page, int pageSize) {
+        public ArchivedRecordingPage {
+            Objects.requireNonNull(recordings);
+        }
+    }
+
     public record RecordingOptions(
             String name,
             Optional<Boolean> toDisk,
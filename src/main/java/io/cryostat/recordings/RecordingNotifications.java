@@ -21,6 +21,7 @@ import java.util.Optional;
 
 import io.cryostat.recordings.ActiveRecordings.LinkedRecordingDescriptor;
 import io.cryostat.targets.Target;
+import io.cryostat.ws.notifications.JvmScopedPayload;
 
 public final class RecordingNotifications {
 
@@ -33,7 +34,8 @@ public final class RecordingNotifications {
             Objects.requireNonNull(payload);
         }
 
-        public record Payload(String target, LinkedRecordingDescriptor recording, String jvmId) {
+        public record Payload(String target, LinkedRecordingDescriptor recording, String jvmId)
+                implements JvmScopedPayload {
             public Payload {
                 Objects.requireNonNull(target);
                 Objects.requireNonNull(recording);
@@ -56,7 +58,8 @@ public final class RecordingNotifications {
         }
 
         public record Payload(
-                String target, String jvmId, ArchivedRecordings.ArchivedRecording recording) {
+                        String target, String jvmId, ArchivedRecordings.ArchivedRecording recording)
+                implements JvmScopedPayload {
             public Payload {
                 Objects.requireNonNull(recording);
             }
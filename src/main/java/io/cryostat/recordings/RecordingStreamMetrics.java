@@ -0,0 +1,85 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Objects;
+
+import io.cryostat.ProgressInputStream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Records byte throughput for Flight Recording data streamed through Cryostat. Each metered stream
+ * increments a byte counter as it is read, and is tracked by a long task timer for as long as it
+ * remains open, so both transfer rates and the number and age of in-progress transfers are
+ * observable.
+ */
+@ApplicationScoped
+public class RecordingStreamMetrics {
+
+    static final String BYTES_METER = "cryostat.recordings.stream.bytes";
+    static final String ACTIVE_METER = "cryostat.recordings.stream.active";
+
+    @Inject MeterRegistry meterRegistry;
+
+    public InputStream meter(InputStream stream, Source source, Operation operation) {
+        Objects.requireNonNull(stream);
+        // tagged only by bounded dimensions: a per-target tag would register meters for every
+        // target ever streamed from, which would never be removed from the registry
+        Tags tags = Tags.of("source", source.tag(), "operation", operation.tag());
+        Counter bytes =
+                Counter.builder(BYTES_METER)
+                        .description("Flight Recording bytes streamed")
+                        .baseUnit("bytes")
+                        .tags(tags)
+                        .register(meterRegistry);
+        LongTaskTimer.Sample sample =
+                LongTaskTimer.builder(ACTIVE_METER)
+                        .description("Flight Recording streams currently open")
+                        .tags(tags)
+                        .register(meterRegistry)
+                        .start();
+        return new ProgressInputStream(stream, n -> bytes.increment(n), sample::stop);
+    }
+
+    public enum Source {
+        ACTIVE,
+        ARCHIVED,
+        ;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Operation {
+        DOWNLOAD,
+        ARCHIVE,
+        REPORT,
+        ;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
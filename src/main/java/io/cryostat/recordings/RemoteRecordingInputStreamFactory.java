@@ -30,9 +30,10 @@ import jakarta.inject.Inject;
 
 /**
  * Creates {@link java.io.InputStream}s that pipe Flight Recording data from a remote target JVM.
- * This class ensures that the cached target connection is continuously marked as in use, so that
- * the {@link io.cryostat.target.TargetConnectionManager} does not prematurely evict and close the
- * connection while streaming is still underway.
+ * Each stream holds a {@link TargetConnectionManager.ConnectionLease} for its whole lifetime, so
+ * that the {@link io.cryostat.target.TargetConnectionManager} does not prematurely evict and close
+ * the connection while streaming is still underway. The lease is released when the stream is
+ * closed.
  */
 @ApplicationScoped
 public class RemoteRecordingInputStreamFactory {
@@ -54,7 +55,7 @@ public class RemoteRecordingInputStreamFactory {
     public ProgressInputStream openDirect(
             JFRConnection conn, Target target, IRecordingDescriptor desc) throws Exception {
         InputStream bareStream = conn.getService().openStream(desc, false);
-        return new ProgressInputStream(
-                bareStream, n -> connectionManager.markConnectionInUse(target));
+        TargetConnectionManager.ConnectionLease lease = connectionManager.lease(target);
+        return new ProgressInputStream(bareStream, n -> lease.touch(), lease::close);
     }
 }
@@ -0,0 +1,469 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlOrderBy;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.dialect.CalciteSqlDialect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.util.Litmus;
+
+/**
+ * Decomposes an aggregate query over a single JFR event table so that it can be evaluated
+ * independently over each chunk of a recording and the partial results merged afterward. Filters
+ * and grouping are pushed down into the per-chunk query unchanged, and each aggregate function is
+ * replaced by partial aggregates which can be combined: {@code COUNT}, {@code SUM}, {@code MIN} and
+ * {@code MAX} are their own partials, while {@code AVG} is computed from a partial {@code SUM} and
+ * {@code COUNT}.
+ *
+ * <p>Only queries of the form {@code SELECT <group keys and aggregates> FROM <table> [WHERE ...]
+ * [GROUP BY ...]} are decomposed. A query using anything else, such as joins, subqueries, {@code
+ * DISTINCT}, {@code HAVING}, window functions or ordering of grouped results, is not, and should be
+ * executed as-is against the whole recording.
+ */
+final class ChunkAggregation {
+
+    enum Function {
+        COUNT,
+        SUM,
+        MIN,
+        MAX,
+        AVG,
+    }
+
+    /**
+     * An output column, which is either the group key at {@code keyIndex} or the aggregate {@code
+     * function} computed from the partial columns starting at {@code partialIndex}.
+     */
+    private record Column(int keyIndex, Function function, int partialIndex) {}
+
+    /** Access to the current row of a per-chunk result, with 1-based column indices. */
+    interface Row {
+        String getString(int column) throws SQLException;
+
+        Object getObject(int column) throws SQLException;
+    }
+
+    private final String chunkQuery;
+    private final int keyCount;
+    private final int partialCount;
+    private final List<Column> columns;
+
+    private ChunkAggregation(
+            String chunkQuery, int keyCount, int partialCount, List<Column> columns) {
+        this.chunkQuery = chunkQuery;
+        this.keyCount = keyCount;
+        this.partialCount = partialCount;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the decomposed aggregation, or empty if the query cannot be evaluated chunk by chunk
+     */
+    static Optional<ChunkAggregation> plan(String sql) {
+        SqlNode node;
+        try {
+            node = SqlParser.create(sql).parseQuery();
+        } catch (SqlParseException e) {
+            return Optional.empty();
+        }
+        boolean ordered = false;
+        if (node instanceof SqlOrderBy orderBy) {
+            if (orderBy.offset != null || !isPositiveLiteral(orderBy.fetch)) {
+                return Optional.empty();
+            }
+            ordered = true;
+            node = orderBy.query;
+        }
+        if (!(node instanceof SqlSelect select)) {
+            return Optional.empty();
+        }
+        if (select.isDistinct()
+                || select.getHaving() != null
+                || !isEmpty(select.getWindowList())
+                || !isEmpty(select.getOrderList())
+                || select.getFetch() != null
+                || select.getOffset() != null
+                || !isTable(select.getFrom())
+                || containsQuery(select.getWhere())) {
+            return Optional.empty();
+        }
+
+        List<SqlNode> keys =
+                select.getGroup() == null ? List.of() : select.getGroup().getList();
+        // ordering and limits only leave a single row result unchanged
+        if (ordered && !keys.isEmpty()) {
+            return Optional.empty();
+        }
+        for (SqlNode key : keys) {
+            if (key == null
+                    || key.getKind() == SqlKind.GROUPING_SETS
+                    || key.getKind() == SqlKind.ROLLUP
+                    || key.getKind() == SqlKind.CUBE
+                    || containsQuery(key)) {
+                return Optional.empty();
+            }
+        }
+
+        List<String> partials = new ArrayList<>();
+        for (SqlNode key : keys) {
+            partials.add(unparse(key));
+        }
+        List<Column> columns = new ArrayList<>();
+        boolean aggregated = false;
+        for (SqlNode item : select.getSelectList()) {
+            SqlNode expr = item;
+            if (item.getKind() == SqlKind.AS) {
+                expr = ((SqlCall) item).operand(0);
+            }
+            Optional<Function> function = aggregateFunction(expr);
+            if (function.isPresent()) {
+                SqlCall call = (SqlCall) expr;
+                String args =
+                        call.getOperandList().stream()
+                                .map(ChunkAggregation::unparse)
+                                .collect(Collectors.joining(", "));
+                columns.add(new Column(-1, function.get(), partials.size()));
+                switch (function.get()) {
+                    case AVG:
+                        partials.add(String.format("SUM(%s)", args));
+                        partials.add(String.format("COUNT(%s)", args));
+                        break;
+                    default:
+                        partials.add(String.format("%s(%s)", function.get().name(), args));
+                        break;
+                }
+                aggregated = true;
+                continue;
+            }
+            int keyIndex = -1;
+            for (int i = 0; i < keys.size(); i++) {
+                if (expr.equalsDeep(keys.get(i), Litmus.IGNORE)) {
+                    keyIndex = i;
+                    break;
+                }
+            }
+            if (keyIndex < 0) {
+                return Optional.empty();
+            }
+            columns.add(new Column(keyIndex, null, -1));
+        }
+        if (!aggregated) {
+            return Optional.empty();
+        }
+
+        StringBuilder chunkQuery = new StringBuilder("SELECT ");
+        chunkQuery.append(String.join(", ", partials));
+        chunkQuery.append(" FROM ").append(unparse(select.getFrom()));
+        if (select.getWhere() != null) {
+            chunkQuery.append(" WHERE ").append(unparse(select.getWhere()));
+        }
+        if (!keys.isEmpty()) {
+            chunkQuery
+                    .append(" GROUP BY ")
+                    .append(
+                            keys.stream()
+                                    .map(ChunkAggregation::unparse)
+                                    .collect(Collectors.joining(", ")));
+        }
+        return Optional.of(
+                new ChunkAggregation(
+                        chunkQuery.toString(), keys.size(), partials.size(), columns));
+    }
+
+    /** The query to evaluate against each chunk. */
+    String chunkQuery() {
+        return chunkQuery;
+    }
+
+    /** Create an empty set of merged partial results. */
+    Partials newPartials() {
+        return new Partials();
+    }
+
+    private static Optional<Function> aggregateFunction(SqlNode expr) {
+        if (!(expr instanceof SqlCall call) || call.getFunctionQuantifier() != null) {
+            return Optional.empty();
+        }
+        Function function;
+        switch (call.getKind()) {
+            case COUNT:
+                function = Function.COUNT;
+                break;
+            case SUM:
+                function = Function.SUM;
+                break;
+            case MIN:
+                function = Function.MIN;
+                break;
+            case MAX:
+                function = Function.MAX;
+                break;
+            case AVG:
+                function = Function.AVG;
+                break;
+            default:
+                return Optional.empty();
+        }
+        if (call.getOperandList().size() != 1
+                || call.getOperandList().stream().anyMatch(ChunkAggregation::containsQuery)) {
+            return Optional.empty();
+        }
+        return Optional.of(function);
+    }
+
+    private static boolean isTable(SqlNode from) {
+        if (from instanceof SqlIdentifier) {
+            return true;
+        }
+        return from != null
+                && from.getKind() == SqlKind.AS
+                && ((SqlCall) from).operand(0) instanceof SqlIdentifier;
+    }
+
+    private static boolean containsQuery(SqlNode node) {
+        if (node == null) {
+            return false;
+        }
+        if (node instanceof SqlSelect || node instanceof SqlOrderBy) {
+            return true;
+        }
+        if (node instanceof SqlNodeList list) {
+            return list.getList().stream().anyMatch(ChunkAggregation::containsQuery);
+        }
+        if (node instanceof SqlCall call) {
+            return call.getKind() == SqlKind.OVER
+                    || call.getOperandList().stream().anyMatch(ChunkAggregation::containsQuery);
+        }
+        return false;
+    }
+
+    private static boolean isEmpty(SqlNodeList list) {
+        return list == null || list.isEmpty();
+    }
+
+    private static boolean isPositiveLiteral(SqlNode fetch) {
+        if (fetch == null) {
+            return true;
+        }
+        return fetch instanceof SqlLiteral literal
+                && literal.getValue() instanceof BigDecimal value
+                && value.signum() > 0;
+    }
+
+    private static String unparse(SqlNode node) {
+        return node.toSqlString(CalciteSqlDialect.DEFAULT).getSql();
+    }
+
+    /** Partial aggregate results merged across chunks, grouped by their key column values. */
+    final class Partials {
+        private final Map<List<String>, Object[]> groups = new LinkedHashMap<>();
+
+        /** Merge one row of a chunk's result. */
+        void accumulate(Row row) throws SQLException {
+            List<String> key = new ArrayList<>(keyCount);
+            for (int i = 1; i <= keyCount; i++) {
+                key.add(row.getString(i));
+            }
+            Object[] merged = groups.computeIfAbsent(key, k -> new Object[partialCount]);
+            for (Column column : columns) {
+                if (column.function() == null) {
+                    continue;
+                }
+                int idx = column.partialIndex();
+                switch (column.function()) {
+                    case COUNT:
+                    case SUM:
+                        merged[idx] = add(merged[idx], row.getObject(idx + 1));
+                        break;
+                    case AVG:
+                        merged[idx] = add(merged[idx], row.getObject(idx + 1));
+                        merged[idx + 1] = add(merged[idx + 1], row.getObject(idx + 2));
+                        break;
+                    case MIN:
+                        merged[idx] = extreme(merged[idx], row, idx + 1, true);
+                        break;
+                    case MAX:
+                        merged[idx] = extreme(merged[idx], row, idx + 1, false);
+                        break;
+                    default:
+                        throw new IllegalStateException(column.function().name());
+                }
+            }
+        }
+
+        /** Merge another set of partial results into this one. */
+        void merge(Partials other) {
+            other.groups.forEach(
+                    (key, values) -> {
+                        Object[] merged = groups.get(key);
+                        if (merged == null) {
+                            groups.put(key, values);
+                            return;
+                        }
+                        for (Column column : columns) {
+                            if (column.function() == null) {
+                                continue;
+                            }
+                            int idx = column.partialIndex();
+                            switch (column.function()) {
+                                case AVG:
+                                    merged[idx + 1] = add(merged[idx + 1], values[idx + 1]);
+                                    merged[idx] = add(merged[idx], values[idx]);
+                                    break;
+                                case MIN:
+                                    merged[idx] = pick(merged[idx], values[idx], true);
+                                    break;
+                                case MAX:
+                                    merged[idx] = pick(merged[idx], values[idx], false);
+                                    break;
+                                default:
+                                    merged[idx] = add(merged[idx], values[idx]);
+                                    break;
+                            }
+                        }
+                    });
+        }
+
+        /** Render the final result rows. */
+        List<List<String>> rows() {
+            if (groups.isEmpty() && keyCount == 0) {
+                // an ungrouped aggregate always produces exactly one row
+                groups.put(List.of(), new Object[partialCount]);
+            }
+            List<List<String>> rows = new ArrayList<>(groups.size());
+            groups.forEach(
+                    (key, values) -> {
+                        List<String> row = new ArrayList<>(columns.size());
+                        for (Column column : columns) {
+                            if (column.function() == null) {
+                                row.add(key.get(column.keyIndex()));
+                                continue;
+                            }
+                            int idx = column.partialIndex();
+                            switch (column.function()) {
+                                case COUNT:
+                                    row.add(
+                                            values[idx] == null
+                                                    ? "0"
+                                                    : String.valueOf(values[idx]));
+                                    break;
+                                case SUM:
+                                    row.add(values[idx] == null ? null : values[idx].toString());
+                                    break;
+                                case AVG:
+                                    row.add(average(values[idx], values[idx + 1]));
+                                    break;
+                                default:
+                                    row.add(
+                                            values[idx] == null
+                                                    ? null
+                                                    : ((Extreme) values[idx]).text());
+                                    break;
+                            }
+                        }
+                        rows.add(row);
+                    });
+            return rows;
+        }
+    }
+
+    /** A minimum or maximum value along with its rendering in the chunk result it came from. */
+    private record Extreme(Comparable<Object> value, String text) {}
+
+    @SuppressWarnings("unchecked")
+    private static Object extreme(Object current, Row row, int column, boolean min)
+            throws SQLException {
+        Object value = row.getObject(column);
+        if (value == null) {
+            return current;
+        }
+        return pick(current, new Extreme((Comparable<Object>) value, row.getString(column)), min);
+    }
+
+    private static Object pick(Object a, Object b, boolean min) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        int cmp = ((Extreme) a).value().compareTo(((Extreme) b).value());
+        return (min ? cmp <= 0 : cmp >= 0) ? a : b;
+    }
+
+    private static Object add(Object a, Object b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (isIntegral(a) && isIntegral(b)) {
+            return Math.addExact(((Number) a).longValue(), ((Number) b).longValue());
+        }
+        if (a instanceof BigDecimal || b instanceof BigDecimal) {
+            return decimal(a).add(decimal(b));
+        }
+        return ((Number) a).doubleValue() + ((Number) b).doubleValue();
+    }
+
+    private static String average(Object sum, Object count) {
+        if (sum == null || count == null || ((Number) count).longValue() == 0) {
+            return null;
+        }
+        long n = ((Number) count).longValue();
+        if (isIntegral(sum)) {
+            // matches the integer result type of AVG over integer columns
+            return String.valueOf(((Number) sum).longValue() / n);
+        }
+        if (sum instanceof BigDecimal d) {
+            return d.divide(BigDecimal.valueOf(n), d.scale(), RoundingMode.DOWN).toString();
+        }
+        return String.valueOf(((Number) sum).doubleValue() / n);
+    }
+
+    private static boolean isIntegral(Object o) {
+        return o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte;
+    }
+
+    private static BigDecimal decimal(Object o) {
+        if (o instanceof BigDecimal d) {
+            return d;
+        }
+        if (isIntegral(o)) {
+            return BigDecimal.valueOf(((Number) o).longValue());
+        }
+        return BigDecimal.valueOf(((Number) o).doubleValue());
+    }
+}
@@ -16,83 +16,37 @@
 
 package io.cryostat.recordings.analysis;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.Optional;
 
-import io.cryostat.ConfigProperties;
-import io.cryostat.recordings.RecordingHelper;
-
-import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
-import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.RemovalCause;
-import com.github.benmanes.caffeine.cache.Scheduler;
-import com.github.benmanes.caffeine.cache.Weigher;
-import io.quarkus.runtime.StartupEvent;
 import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.annotation.security.RolesAllowed;
-import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.FormParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PathParam;
-import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
 import org.apache.commons.lang3.StringUtils;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
-import org.moditect.jfranalytics.JfrSchema;
-import org.moditect.jfranalytics.JfrSchemaFactory;
 
 @jakarta.ws.rs.Path("")
 public class JfrAnalytics {
 
-    private static final long BYTES_PER_MB = 1024 * 1024;
     private static final String TABLES_COMMAND = "tables";
     private static final String COLUMNS_COMMAND = "columns ";
 
-    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_MAX_WEIGHT)
-    long maxCacheWeight;
-
-    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_TTL)
-    Duration cacheTtl;
-
-    @Inject RecordingHelper recordings;
+    @Inject JfrFileStore fileStore;
+    @Inject JfrQueryEngine queryEngine;
     @Inject Logger logger;
 
-    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
-    private final JavaTypeFactoryImpl typeFactory = new JavaTypeFactoryImpl();
-    private AsyncLoadingCache<RecordingKey, Path> jfrFileCache;
-
-    void onStart(@Observes StartupEvent evt) {
-        this.jfrFileCache =
-                Caffeine.newBuilder()
-                        .executor(executor)
-                        .scheduler(Scheduler.systemScheduler())
-                        .maximumWeight(maxCacheWeight)
-                        .weigher(new FileSizeWeigher())
-                        .expireAfterAccess(cacheTtl)
-                        .removalListener(this::onCacheRemoval)
-                        .buildAsync(new JfrFileLoader());
-    }
-
     @jakarta.ws.rs.Path("/api/beta/recording_analytics/{jvmId}/{filename}")
     @POST
     @Blocking
@@ -107,234 +61,145 @@ public class JfrAnalytics {
         RecordingKey key = new RecordingKey(jvmId, filename);
 
         return Uni.createFrom()
-                .completionStage(jfrFileCache.get(key))
+                .completionStage(fileStore.acquire(key))
                 .onItem()
                 .transform(
-                        jfrFile -> {
-                            try {
-                                return executeQueryOnFile(jfrFile, query);
-                            } catch (SQLException e) {
-                                logger.errorv(
-                                        e,
-                                        "SQL query execution failed. Query: {0}, Error Code: {1},"
-                                                + " SQL State: {2}, Message: {3}",
-                                        query,
-                                        e.getErrorCode(),
-                                        e.getSQLState(),
-                                        e.getMessage());
-                                throw new BadRequestException(
-                                        String.format(
-                                                "Failed to execute query on JFR file. SQL State:"
-                                                        + " %s, Error Code: %d, Message: %s",
-                                                e.getSQLState(), e.getErrorCode(), e.getMessage()),
-                                        e);
+                        handle -> {
+                            try (handle) {
+                                Optional<List<List<String>>> result =
+                                        executeCommand(handle.path(), query);
+                                if (result.isPresent()) {
+                                    return result.get();
+                                }
+                                try (var cursor = queryEngine.query(handle.path(), query)) {
+                                    return cursor.drain();
+                                }
                             } catch (Exception e) {
-                                logger.errorv(
-                                        e,
-                                        "Unexpected error executing query. Query: {0}, Exception"
-                                                + " Type: {1}, Message: {2}",
-                                        query,
-                                        e.getClass().getName(),
-                                        e.getMessage());
-                                throw new BadRequestException(
-                                        String.format(
-                                                "Failed to execute query on JFR file: %s",
-                                                e.getMessage()),
-                                        e);
+                                throw queryFailure(query, e);
                             }
                         });
     }
 
-    private List<List<String>> executeQueryOnFile(Path jfrFile, String query) throws SQLException {
+    /**
+     * Equivalent to {@link #executeQuery(String, String, String)}, but the result rows are
+     * streamed to the client as a chunked JSON array as they are read, rather than first being
+     * collected in memory.
+     */
+    @jakarta.ws.rs.Path("/api/beta/recording_analytics/{jvmId}/{filename}/stream")
+    @POST
+    @Blocking
+    @RolesAllowed("read")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Multi<List<String>> streamQuery(
+            @PathParam("jvmId") String jvmId,
+            @PathParam("filename") String filename,
+            @FormParam("query") String query) {
+        if (StringUtils.isBlank(query)) {
+            throw new BadRequestException();
+        }
+        RecordingKey key = new RecordingKey(jvmId, filename);
+
+        return Uni.createFrom()
+                .completionStage(fileStore.acquire(key))
+                .onItem()
+                .transformToMulti(
+                        handle -> {
+                            try {
+                                Optional<List<List<String>>> result =
+                                        executeCommand(handle.path(), query);
+                                if (result.isPresent()) {
+                                    handle.close();
+                                    return Multi.createFrom().iterable(result.get());
+                                }
+                                var cursor = queryEngine.query(handle.path(), query);
+                                return Multi.createFrom()
+                                        .iterable(() -> cursor)
+                                        .onTermination()
+                                        .invoke(
+                                                () -> {
+                                                    cursor.close();
+                                                    handle.close();
+                                                });
+                            } catch (Exception e) {
+                                handle.close();
+                                throw queryFailure(query, e);
+                            }
+                        })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    private BadRequestException queryFailure(String query, Exception e) {
+        if (e instanceof SQLException sqle) {
+            logger.errorv(
+                    sqle,
+                    "SQL query execution failed. Query: {0}, Error Code: {1}, SQL State: {2},"
+                            + " Message: {3}",
+                    query,
+                    sqle.getErrorCode(),
+                    sqle.getSQLState(),
+                    sqle.getMessage());
+            return new BadRequestException(
+                    String.format(
+                            "Failed to execute query on JFR file. SQL State: %s, Error Code: %d,"
+                                    + " Message: %s",
+                            sqle.getSQLState(), sqle.getErrorCode(), sqle.getMessage()),
+                    sqle);
+        }
+        logger.errorv(
+                e,
+                "Unexpected error executing query. Query: {0}, Exception Type: {1}, Message: {2}",
+                query,
+                e.getClass().getName(),
+                e.getMessage());
+        return new BadRequestException(
+                String.format("Failed to execute query on JFR file: %s", e.getMessage()), e);
+    }
+
+    /**
+     * Handle the {@code tables} and {@code columns} metadata commands.
+     *
+     * @return the command result, or empty if the query is not a command and should be executed
+     *     as SQL
+     */
+    private Optional<List<List<String>>> executeCommand(Path jfrFile, String query)
+            throws SQLException {
         String normalizedQuery = normalizeQuery(query);
 
         if (normalizedQuery.equals(TABLES_COMMAND)) {
-            return handleTablesQuery(jfrFile);
+            return Optional.of(handleTablesQuery(jfrFile));
         }
 
         if (normalizedQuery.startsWith(COLUMNS_COMMAND)) {
-            return handleColumnsQuery(jfrFile, query);
+            return Optional.of(handleColumnsQuery(jfrFile, query));
         }
 
-        return executeSqlQuery(jfrFile, query);
+        return Optional.empty();
     }
 
     private String normalizeQuery(String query) {
         return query.strip().toLowerCase();
     }
 
-    private List<List<String>> handleTablesQuery(Path jfrFile) {
-        JfrSchema schema = new JfrSchema(jfrFile);
-        return List.of(new ArrayList<>(schema.getTableNames()));
+    private List<List<String>> handleTablesQuery(Path jfrFile) throws SQLException {
+        return List.of(queryEngine.tableNames(jfrFile));
     }
 
-    private List<List<String>> handleColumnsQuery(Path jfrFile, String query) {
+    private List<List<String>> handleColumnsQuery(Path jfrFile, String query)
+            throws SQLException {
         String[] parts = query.strip().split("\\s+");
         if (parts.length < 2) {
             throw new IllegalArgumentException("Invalid columns query format");
         }
 
-        JfrSchema schema = new JfrSchema(jfrFile);
         List<List<String>> result = new ArrayList<>();
 
         for (int i = 1; i < parts.length; i++) {
             String tableName = parts[i].replaceAll("['\"]", "");
-            var table = schema.getTable(tableName);
-            if (table == null) {
-                throw new IllegalArgumentException("Table not found: " + tableName);
-            }
-            result.add(new ArrayList<>(table.getRowType(typeFactory).getFieldNames()));
+            result.add(queryEngine.columnNames(jfrFile, tableName));
         }
 
         return result;
     }
 
-    private List<List<String>> executeSqlQuery(Path jfrFile, String query) throws SQLException {
-        Properties properties = new Properties();
-        properties.put("model", JfrSchemaFactory.getInlineModel(jfrFile));
-
-        try (Connection connection = DriverManager.getConnection("jdbc:calcite:", properties);
-                PreparedStatement statement = connection.prepareStatement(query);
-                ResultSet rs = statement.executeQuery()) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            List<List<String>> result = new ArrayList<>();
-
-            while (rs.next()) {
-                List<String> row = new ArrayList<>(columnCount);
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getString(i));
-                }
-                result.add(row);
-            }
-
-            return result;
-        }
-    }
-
-    private void onCacheRemoval(RecordingKey key, Path tempFile, RemovalCause cause) {
-        if (tempFile != null) {
-            executor.execute(() -> deleteWithRetry(key, tempFile, cause, 0));
-        }
-    }
-
-    private void deleteWithRetry(RecordingKey key, Path tempFile, RemovalCause cause, int attempt) {
-        int maxRetries = 3;
-        try {
-            Files.deleteIfExists(tempFile);
-            logger.debugv(
-                    "Deleted temp file {0} for {1}/{2} due to {3}",
-                    tempFile, key.jvmId(), key.filename(), cause);
-        } catch (IOException e) {
-            if (attempt < maxRetries) {
-                long delayMs = (long) Math.pow(2, attempt) * 100;
-                logger.warnv(
-                        "Failed to delete temp file {0} for {1}/{2}, retrying in {3}ms (attempt"
-                                + " {4}/{5})",
-                        tempFile, key.jvmId(), key.filename(), delayMs, attempt + 1, maxRetries);
-                try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    logger.warnv("Interrupted while waiting to retry deletion of {0}", tempFile);
-                    return;
-                }
-                deleteWithRetry(key, tempFile, cause, attempt + 1);
-            } else {
-                logger.errorv(
-                        e,
-                        "Failed to delete temp file {0} for {1}/{2} after {3} attempts. File may"
-                                + " remain on disk.",
-                        tempFile,
-                        key.jvmId(),
-                        key.filename(),
-                        maxRetries);
-            }
-        }
-    }
-
     record RecordingKey(String jvmId, String filename) {}
-
-    /**
-     * Loads JFR files from storage into temporary files for analysis.
-     *
-     * <p>Note: This loader performs blocking I/O operations (Files.createTempFile, Files.copy,
-     * Files.size) within the async context. These operations are executed on virtual threads via
-     * the provided executor to minimize performance impact under high load.
-     */
-    class JfrFileLoader implements AsyncCacheLoader<RecordingKey, Path> {
-        @Override
-        public CompletableFuture<Path> asyncLoad(RecordingKey key, Executor executor) {
-            return CompletableFuture.supplyAsync(
-                    () -> {
-                        Path tempFile = null;
-                        try {
-                            logger.debugv(
-                                    "Loading JFR file from S3: {0}/{1}",
-                                    key.jvmId(), key.filename());
-
-                            tempFile =
-                                    Files.createTempFile(
-                                            String.format(
-                                                    "analytics-%s-%s", key.jvmId(), key.filename()),
-                                            ".jfr");
-
-                            try (InputStream inputStream =
-                                    recordings.getArchivedRecordingStream(
-                                            key.jvmId(), key.filename())) {
-                                Files.copy(
-                                        inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
-                            }
-
-                            logger.debugv(
-                                    "Cached JFR file {0}/{1} to {2} ({3} MB)",
-                                    key.jvmId(),
-                                    key.filename(),
-                                    tempFile,
-                                    Files.size(tempFile) / BYTES_PER_MB);
-
-                            return tempFile;
-                        } catch (IOException e) {
-                            if (tempFile != null) {
-                                try {
-                                    Files.deleteIfExists(tempFile);
-                                } catch (IOException e2) {
-                                    logger.debug(e2);
-                                }
-                            }
-                            throw new RuntimeException(
-                                    "Failed to download and cache JFR file: "
-                                            + key.jvmId()
-                                            + "/"
-                                            + key.filename(),
-                                    e);
-                        }
-                    },
-                    executor);
-        }
-    }
-
-    /**
-     * Weighs cached JFR files by their size in megabytes for cache eviction policy.
-     *
-     * <p>Note: This weigher performs blocking I/O (Files.size) to determine file size. The
-     * operation is executed on virtual threads to minimize performance impact.
-     */
-    static class FileSizeWeigher implements Weigher<RecordingKey, Path> {
-
-        private final Logger logger = Logger.getLogger(getClass());
-
-        @Override
-        public int weigh(RecordingKey key, Path tempFile) {
-            try {
-                long sizeInBytes = Files.size(tempFile);
-                long sizeInMB = sizeInBytes / BYTES_PER_MB;
-                return (int) Math.min(Math.max(1, sizeInMB), Integer.MAX_VALUE);
-            } catch (IOException e) {
-                logger.error(e);
-                return 1;
-            }
-        }
-    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilities for splitting JFR files at chunk boundaries. A JFR file is a sequence of self-contained
+ * chunks, each beginning with a header holding the magic bytes {@code FLR\0}, the format version
+ * and the total size of the chunk, so each chunk is itself a valid JFR file which can be parsed
+ * independently of the others.
+ */
+final class JfrChunks {
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', 0};
+    // magic (4), major version (2), minor version (2), chunk size (8)
+    private static final int HEADER_PREFIX_SIZE = 16;
+
+    private JfrChunks() {}
+
+    /** A chunk's position within its JFR file. */
+    record Chunk(long offset, long size) {}
+
+    /** Locate the chunks of the given JFR file by walking the chunk headers. */
+    static List<Chunk> locate(Path jfrFile) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(jfrFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_PREFIX_SIZE);
+            while (offset < fileSize) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    if (channel.read(header, offset + header.position()) < 0) {
+                        throw new IOException(
+                                String.format("Truncated JFR chunk header at offset %d", offset));
+                    }
+                }
+                header.flip();
+                for (byte b : MAGIC) {
+                    if (header.get() != b) {
+                        throw new IOException(
+                                String.format("Invalid JFR chunk magic at offset %d", offset));
+                    }
+                }
+                header.getShort(); // major version
+                header.getShort(); // minor version
+                long size = header.getLong();
+                if (size < HEADER_PREFIX_SIZE || offset + size > fileSize) {
+                    throw new IOException(
+                            String.format(
+                                    "Invalid JFR chunk size %d at offset %d of %d",
+                                    size, offset, fileSize));
+                }
+                chunks.add(new Chunk(offset, size));
+                offset += size;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Write each chunk of the given JFR file out to its own file in the target directory.
+     *
+     * @return the chunk files, in recording order
+     */
+    static List<Path> split(Path jfrFile, List<Chunk> chunks, Path targetDir) throws IOException {
+        Files.createDirectories(targetDir);
+        List<Path> files = new ArrayList<>(chunks.size());
+        try (FileChannel source = FileChannel.open(jfrFile, StandardOpenOption.READ)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = chunks.get(i);
+                Path file = targetDir.resolve(String.format("%06d.jfr", i));
+                try (FileChannel target =
+                        FileChannel.open(
+                                file,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE)) {
+                    long written = 0;
+                    while (written < chunk.size()) {
+                        written +=
+                                source.transferTo(
+                                        chunk.offset() + written,
+                                        chunk.size() - written,
+                                        target);
+                    }
+                }
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.recordings.ActiveRecordings;
+import io.cryostat.recordings.ArchivedRecordingCopy;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.analysis.JfrAnalytics.RecordingKey;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.vertx.ConsumeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Size-bounded on-disk cache of archived JFR files for {@link JfrAnalytics}. Recording contents are
+ * stored once per SHA-256 content hash as plain, uncompressed files under the cache directory, so
+ * that several archived recording keys with identical content share a single file and the JFR
+ * parser can map the files directly. Entries are evicted in least-recently-used order once the
+ * total size of the stored files exceeds the configured limit, or once they have not been accessed
+ * for the configured TTL. Files which are being read by a query are not deleted until the reader
+ * releases them. Files derived from cached recordings, such as the per-chunk files used for
+ * parallel queries, are reserved against the same size limit.
+ *
+ * <p>The mapping of recording keys to content hashes, along with last access times, is persisted
+ * to an index file in the cache directory. The index is reloaded on startup so that the analytics
+ * working set does not need to be downloaded from storage again after a restart, provided the
+ * cache directory is on a persistent volume. Restored entries keep their least-recently-used order
+ * but have their access times reset, so that the TTL counts from the restart rather than expiring
+ * everything which was not used in the minutes before the previous instance stopped.
+ */
+@ApplicationScoped
+class JfrFileStore {
+
+    static final String METER_PREFIX = "cryostat.jfr-analytics.cache";
+
+    private static final long BYTES_PER_MB = 1024 * 1024;
+    private static final String INDEX_FILE = "index.json";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String STAGING_DIR = "staging";
+    private static final String BLOB_SUFFIX = ".jfr";
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_DIR)
+    Path directory;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_MAX_WEIGHT)
+    long maxCacheWeight;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_TTL)
+    Duration cacheTtl;
+
+    @Inject RecordingHelper recordings;
+    @Inject ObjectMapper mapper;
+    @Inject MeterRegistry meterRegistry;
+    @Inject Logger logger;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Object indexWriteLock = new Object();
+    // access-ordered, so iteration visits the least recently used entries first
+    private final LinkedHashMap<RecordingKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Blob> blobs = new HashMap<>();
+    private final ConcurrentMap<RecordingKey, CompletableFuture<Void>> loading =
+            new ConcurrentHashMap<>();
+    private long totalBytes;
+    // space held by files derived from cached recordings, see reserve()
+    private long reservedBytes;
+    private boolean dirty;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter dedupes;
+    private Counter sizeEvictions;
+    private Counter expiryEvictions;
+    private Counter invalidations;
+
+    @PostConstruct
+    void init() throws IOException {
+        hits = getsCounter("hit");
+        misses = getsCounter("miss");
+        dedupes =
+                Counter.builder(METER_PREFIX + ".dedupes")
+                        .description("JFR files found to already be cached under another key")
+                        .register(meterRegistry);
+        sizeEvictions = evictionsCounter("size");
+        expiryEvictions = evictionsCounter("expired");
+        invalidations = evictionsCounter("invalidated");
+        Gauge.builder(METER_PREFIX + ".bytes", this, JfrFileStore::bytes)
+                .description("Total size of cached JFR files and files derived from them")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".max-bytes", this, JfrFileStore::maxBytes)
+                .description("Configured maximum total size of cached JFR files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".entries", this, JfrFileStore::entryCount)
+                .description("Archived recordings present in the JFR file cache")
+                .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".files", this, JfrFileStore::fileCount)
+                .description("Distinct JFR files present in the JFR file cache")
+                .register(meterRegistry);
+
+        Files.createDirectories(directory.resolve(BLOBS_DIR));
+        Path staging = directory.resolve(STAGING_DIR);
+        if (Files.isDirectory(staging)) {
+            // partial downloads left behind by an unclean shutdown
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging)) {
+                for (Path p : stream) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+        Files.createDirectories(staging);
+        loadIndex();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        writeIndex(false);
+    }
+
+    /**
+     * Obtain a handle to the cached file for the given archived recording, downloading it from
+     * storage first if it is not already cached. The file will not be deleted before the handle is
+     * closed.
+     */
+    CompletableFuture<Handle> acquire(RecordingKey key) {
+        Handle handle = pin(key);
+        if (handle != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(handle);
+        }
+        misses.increment();
+        return load(key).thenCompose(v -> retryPin(key));
+    }
+
+    private CompletableFuture<Handle> retryPin(RecordingKey key) {
+        Handle handle = pin(key);
+        if (handle != null) {
+            return CompletableFuture.completedFuture(handle);
+        }
+        // evicted by other insertions before this caller could pin it
+        return load(key).thenCompose(v -> retryPin(key));
+    }
+
+    /**
+     * Take ownership of a local copy of an archived recording's contents, so that it does not
+     * need to be downloaded from storage on first use.
+     */
+    void onArchivedRecordingCopy(@Observes ArchivedRecordingCopy copy) {
+        RecordingKey key = new RecordingKey(copy.jvmId(), copy.filename());
+        executor.execute(
+                () -> {
+                    Path staged = stagingFile();
+                    try {
+                        Files.move(copy.file(), staged, StandardCopyOption.REPLACE_EXISTING);
+                        String hash;
+                        try (var in = Files.newInputStream(staged)) {
+                            hash = hash(in, null);
+                        }
+                        insert(key, hash, staged);
+                    } catch (Exception e) {
+                        logger.warnv(e, "Failed to adopt archived recording copy {0}", key);
+                        deleteQuietly(copy.file());
+                        deleteQuietly(staged);
+                    }
+                });
+    }
+
+    @ConsumeEvent(value = ActiveRecordings.ARCHIVED_RECORDING_DELETED, blocking = true)
+    void onArchivedRecordingDeleted(ArchivedRecording recording) {
+        invalidate(new RecordingKey(recording.jvmId(), recording.name()));
+    }
+
+    /** Remove the given archived recording from the cache. */
+    void invalidate(RecordingKey key) {
+        synchronized (this) {
+            Entry entry = entries.remove(key);
+            if (entry == null) {
+                return;
+            }
+            invalidations.increment();
+            unreference(entry.hash());
+            dirty = true;
+        }
+        writeIndex(true);
+    }
+
+    /**
+     * Count files derived from a cached recording against the cache size limit, evicting least
+     * recently used entries to make room for them if needed. The reservation must be returned with
+     * {@link #unreserve(long)} once the derived files are deleted.
+     *
+     * @return true if the space was reserved, or false if the cache cannot make room
+     */
+    boolean reserve(long bytes) {
+        if (bytes > maxBytes()) {
+            return false;
+        }
+        synchronized (this) {
+            int before = entries.size();
+            reservedBytes += bytes;
+            evict(null);
+            if (totalBytes + reservedBytes > maxBytes()) {
+                reservedBytes -= bytes;
+                return false;
+            }
+            if (entries.size() == before) {
+                return true;
+            }
+            dirty = true;
+        }
+        writeIndex(true);
+        return true;
+    }
+
+    synchronized void unreserve(long bytes) {
+        reservedBytes -= bytes;
+    }
+
+    private CompletableFuture<Void> load(RecordingKey key) {
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        CompletableFuture<Void> existing = loading.putIfAbsent(key, f);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(
+                () -> {
+                    try {
+                        download(key);
+                        f.complete(null);
+                    } catch (Throwable t) {
+                        f.completeExceptionally(t);
+                    } finally {
+                        loading.remove(key, f);
+                    }
+                });
+        return f;
+    }
+
+    private void download(RecordingKey key) {
+        Path staged = stagingFile();
+        try {
+            logger.debugv("Loading JFR file from S3: {0}/{1}", key.jvmId(), key.filename());
+            String hash;
+            try (InputStream in =
+                    recordings.getArchivedRecordingStream(key.jvmId(), key.filename())) {
+                hash = hash(in, staged);
+            }
+            insert(key, hash, staged);
+        } catch (IOException e) {
+            deleteQuietly(staged);
+            throw new RuntimeException(
+                    "Failed to download and cache JFR file: " + key.jvmId() + "/" + key.filename(),
+                    e);
+        } catch (RuntimeException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+    }
+
+    private void insert(RecordingKey key, String hash, Path staged) throws IOException {
+        synchronized (this) {
+            Blob blob = blobs.get(hash);
+            if (blob != null) {
+                dedupes.increment();
+                Files.deleteIfExists(staged);
+            } else {
+                Path target = blobPath(hash);
+                Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+                blob = new Blob(hash, target, Files.size(target));
+                blobs.put(hash, blob);
+                totalBytes += blob.size;
+            }
+            blob.refs++;
+            Entry previous = entries.put(key, new Entry(hash, System.currentTimeMillis()));
+            if (previous != null) {
+                unreference(previous.hash());
+            }
+            logger.debugv(
+                    "Cached JFR file {0}/{1} as {2} ({3} MB)",
+                    key.jvmId(), key.filename(), blob.path, blob.size / BYTES_PER_MB);
+            evict(key);
+            dirty = true;
+        }
+        writeIndex(true);
+    }
+
+    private synchronized Handle pin(RecordingKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (isExpired(entry, now)) {
+            entries.remove(key);
+            expiryEvictions.increment();
+            unreference(entry.hash());
+            dirty = true;
+            return null;
+        }
+        entries.put(key, new Entry(entry.hash(), now));
+        dirty = true;
+        Blob blob = blobs.get(entry.hash());
+        blob.readers++;
+        return new Handle(blob);
+    }
+
+    private synchronized void release(Blob blob) {
+        blob.readers--;
+        maybeDelete(blob);
+    }
+
+    private void unreference(String hash) {
+        Blob blob = blobs.get(hash);
+        if (blob == null) {
+            return;
+        }
+        blob.refs--;
+        maybeDelete(blob);
+    }
+
+    private void maybeDelete(Blob blob) {
+        if (blob.refs > 0 || blob.readers > 0) {
+            return;
+        }
+        blobs.remove(blob.hash);
+        totalBytes -= blob.size;
+        deleteQuietly(blob.path);
+    }
+
+    /**
+     * Drop expired entries, then least recently used entries until the cache fits within its size
+     * limit. Entries whose files are currently being read, and the entry for {@code keep}, are
+     * retained.
+     */
+    private void evict(RecordingKey keep) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<RecordingKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            var e = it.next();
+            boolean expired = isExpired(e.getValue(), now);
+            if (!expired && totalBytes + reservedBytes <= maxBytes()) {
+                continue;
+            }
+            if (e.getKey().equals(keep) || blobs.get(e.getValue().hash()).readers > 0) {
+                continue;
+            }
+            it.remove();
+            (expired ? expiryEvictions : sizeEvictions).increment();
+            unreference(e.getValue().hash());
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return cacheTtl.isPositive() && now - entry.lastAccess() > cacheTtl.toMillis();
+    }
+
+    private void loadIndex() {
+        Path index = directory.resolve(INDEX_FILE);
+        List<IndexEntry> persisted = List.of();
+        if (Files.isRegularFile(index)) {
+            try {
+                persisted =
+                        mapper.readValue(index.toFile(), new TypeReference<List<IndexEntry>>() {});
+            } catch (IOException e) {
+                logger.warnv(e, "Discarding unreadable JFR file cache index {0}", index);
+            }
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            persisted.stream()
+                    .sorted(Comparator.comparingLong(IndexEntry::lastAccess))
+                    .forEach(
+                            ie -> {
+                                Blob blob = blobs.get(ie.hash());
+                                if (blob == null) {
+                                    Path p = blobPath(ie.hash());
+                                    try {
+                                        blob = new Blob(ie.hash(), p, Files.size(p));
+                                    } catch (IOException e) {
+                                        logger.debugv(
+                                                "Dropping JFR file cache entry {0}/{1}: {2}",
+                                                ie.jvmId(), ie.filename(), e.getMessage());
+                                        return;
+                                    }
+                                    blobs.put(ie.hash(), blob);
+                                    totalBytes += blob.size;
+                                }
+                                blob.refs++;
+                                // inserted in access order, so only the TTL restarts
+                                entries.put(
+                                        new RecordingKey(ie.jvmId(), ie.filename()),
+                                        new Entry(ie.hash(), now));
+                            });
+            removeOrphans();
+            evict(null);
+            logger.infov(
+                    "Restored {0} JFR file cache entries ({1} MB)",
+                    entries.size(), totalBytes / BYTES_PER_MB);
+            dirty = true;
+        }
+        writeIndex(true);
+    }
+
+    private void removeOrphans() {
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory.resolve(BLOBS_DIR), "*" + BLOB_SUFFIX)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                String hash = name.substring(0, name.length() - BLOB_SUFFIX.length());
+                if (!blobs.containsKey(hash)) {
+                    deleteQuietly(p);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    /**
+     * Persist the index. Access time updates alone only mark the index as dirty and are written
+     * along with the next structural change, or at shutdown.
+     */
+    private void writeIndex(boolean onlyIfDirty) {
+        synchronized (indexWriteLock) {
+            List<IndexEntry> snapshot;
+            synchronized (this) {
+                if (onlyIfDirty && !dirty) {
+                    return;
+                }
+                snapshot = new ArrayList<>(entries.size());
+                entries.forEach(
+                        (k, v) ->
+                                snapshot.add(
+                                        new IndexEntry(
+                                                k.jvmId(),
+                                                k.filename(),
+                                                v.hash(),
+                                                v.lastAccess())));
+                dirty = false;
+            }
+            Path index = directory.resolve(INDEX_FILE);
+            Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+            try {
+                mapper.writeValue(tmp.toFile(), snapshot);
+                Files.move(
+                        tmp,
+                        index,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                logger.warnv(e, "Failed to write JFR file cache index {0}", index);
+                synchronized (this) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the SHA-256 hash of the stream contents, optionally copying them to the given file
+     * at the same time.
+     */
+    private static String hash(InputStream in, Path copyTo) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (var digesting = new DigestInputStream(in, digest)) {
+            if (copyTo != null) {
+                Files.copy(digesting, copyTo, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                digesting.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Path stagingFile() {
+        return directory.resolve(STAGING_DIR).resolve(UUID.randomUUID() + BLOB_SUFFIX);
+    }
+
+    private Path blobPath(String hash) {
+        return directory.resolve(BLOBS_DIR).resolve(hash + BLOB_SUFFIX);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warnv(e, "Failed to delete cached JFR file {0}", path);
+        }
+    }
+
+    private long maxBytes() {
+        return maxCacheWeight * BYTES_PER_MB;
+    }
+
+    synchronized long bytes() {
+        return totalBytes + reservedBytes;
+    }
+
+    synchronized int entryCount() {
+        return entries.size();
+    }
+
+    synchronized int fileCount() {
+        return blobs.size();
+    }
+
+    private Counter getsCounter(String result) {
+        return Counter.builder(METER_PREFIX + ".gets")
+                .description("JFR file cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter evictionsCounter(String reason) {
+        return Counter.builder(METER_PREFIX + ".evictions")
+                .description("JFR file cache entries removed")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /** A pinned reference to a cached JFR file. */
+    final class Handle implements AutoCloseable {
+        private final Blob blob;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Handle(Blob blob) {
+            this.blob = blob;
+        }
+
+        Path path() {
+            return blob.path;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(blob);
+            }
+        }
+    }
+
+    private static final class Blob {
+        final String hash;
+        final Path path;
+        final long size;
+        // number of recording keys referring to this content
+        int refs;
+        // number of open handles
+        int readers;
+
+        Blob(String hash, Path path, long size) {
+            this.hash = hash;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    private record Entry(String hash, long lastAccess) {}
+
+    record IndexEntry(String jvmId, String filename, String hash, long lastAccess) {}
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import io.cryostat.ConfigProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Table;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.moditect.jfranalytics.JfrSchemaFactory;
+
+/**
+ * Executes SQL queries against cached JFR files. Building the Calcite model for a recording parses
+ * its event type metadata, and preparing a statement plans and compiles the query, so both are
+ * reused across requests: each recording file has a small pool of Calcite connections, and each
+ * connection keeps a bounded cache of prepared statements keyed by query text. Dashboards which
+ * repeatedly poll the same queries against a recording therefore only pay those costs once.
+ *
+ * <p>Calcite scans a JFR file sequentially on a single thread. For large recordings made up of
+ * several chunks, aggregate queries which can be decomposed by {@link ChunkAggregation} are instead
+ * evaluated against each chunk in parallel and the partial results merged. The recording is split
+ * into one file per chunk on first use, and those files live as long as the recording's cached
+ * connections. Since this duplicates the recording on disk, the space for the chunk files is
+ * reserved from the {@link JfrFileStore} budget beforehand, and the whole recording is queried
+ * instead if the store cannot make room.
+ */
+@ApplicationScoped
+class JfrQueryEngine {
+
+    static final String SCHEMA_NAME = "JFR";
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_SCHEMA_CACHE_MAX_SIZE)
+    long maxSessions;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_PLAN_CACHE_MAX_SIZE)
+    int maxStatements;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_TTL)
+    Duration cacheTtl;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_CACHE_DIR)
+    Path cacheDirectory;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_PARALLEL_ENABLED)
+    boolean parallelEnabled;
+
+    @ConfigProperty(name = ConfigProperties.JFR_ANALYTICS_PARALLEL_MIN_SIZE)
+    MemorySize parallelMinSize;
+
+    @Inject JfrFileStore fileStore;
+    @Inject Logger logger;
+
+    private final JavaTypeFactoryImpl typeFactory = new JavaTypeFactoryImpl();
+    private final ExecutorService chunkScanners = Executors.newVirtualThreadPerTaskExecutor();
+    private Cache<Path, Session> sessions;
+
+    @PostConstruct
+    void init() {
+        var builder =
+                Caffeine.newBuilder()
+                        .maximumSize(maxSessions)
+                        .executor(Runnable::run)
+                        .removalListener((Path k, Session v, RemovalCause c) -> v.close());
+        if (cacheTtl.isPositive()) {
+            builder = builder.expireAfterAccess(cacheTtl);
+        }
+        this.sessions = builder.build();
+        // chunk files left behind by a previous instance
+        deleteRecursively(chunksDirectory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        chunkScanners.shutdownNow();
+        sessions.invalidateAll();
+    }
+
+    List<String> tableNames(Path jfrFile) throws SQLException {
+        return withSchema(jfrFile, schema -> new ArrayList<>(schema.getTableNames()));
+    }
+
+    List<String> columnNames(Path jfrFile, String tableName) throws SQLException {
+        return withSchema(
+                jfrFile,
+                schema -> {
+                    Table table = schema.getTable(tableName);
+                    if (table == null) {
+                        throw new IllegalArgumentException("Table not found: " + tableName);
+                    }
+                    return new ArrayList<>(table.getRowType(typeFactory).getFieldNames());
+                });
+    }
+
+    /**
+     * Execute a query against the given JFR file. The returned cursor must be closed once the
+     * caller is done with it, which returns the underlying connection to its pool.
+     */
+    Cursor query(Path jfrFile, String sql) throws SQLException {
+        Session session = session(jfrFile);
+        if (parallelEnabled) {
+            Optional<ChunkAggregation> aggregation = ChunkAggregation.plan(sql);
+            if (aggregation.isPresent()) {
+                Optional<List<List<String>>> result = queryChunks(session, aggregation.get());
+                if (result.isPresent()) {
+                    return Cursor.of(result.get());
+                }
+            }
+        }
+        PooledConnection connection = session.borrow();
+        ResultSet rs;
+        try {
+            rs = connection.prepare(sql).executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            session.giveBack(connection);
+            throw e;
+        }
+        return new ResultSetCursor(session, connection, rs);
+    }
+
+    /**
+     * Evaluate the aggregation over each chunk of the recording in parallel.
+     *
+     * @return the merged result, or empty if the recording is too small or has only one chunk, or
+     *     if any chunk could not be queried, in which case the whole recording should be queried
+     */
+    private Optional<List<List<String>>> queryChunks(Session session, ChunkAggregation aggregation)
+            throws SQLException {
+        Optional<List<Session>> chunks = session.acquireChunks();
+        if (chunks.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            List<Callable<ChunkAggregation.Partials>> tasks = new ArrayList<>();
+            for (Session chunk : chunks.get()) {
+                tasks.add(() -> scanChunk(chunk, aggregation));
+            }
+            ChunkAggregation.Partials merged = aggregation.newPartials();
+            for (Future<ChunkAggregation.Partials> f : chunkScanners.invokeAll(tasks)) {
+                merged.merge(f.get());
+            }
+            logger.debugv(
+                    "Evaluated {0} across {1} chunks of {2}",
+                    aggregation.chunkQuery(), chunks.get().size(), session.jfrFile);
+            return Optional.of(merged.rows());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqle) {
+                // a chunk may not contain every event type, so its tables may not exist even
+                // though the query is valid for the whole recording
+                logger.debugv(
+                        sqle,
+                        "Failed to evaluate {0} per chunk of {1}, querying the whole recording",
+                        aggregation.chunkQuery(),
+                        session.jfrFile);
+                return Optional.empty();
+            }
+            throw new SQLException(e.getCause());
+        } finally {
+            session.releaseChunks();
+        }
+    }
+
+    private ChunkAggregation.Partials scanChunk(Session session, ChunkAggregation aggregation)
+            throws SQLException {
+        PooledConnection connection = session.borrow();
+        try (ResultSet rs = connection.prepare(aggregation.chunkQuery()).executeQuery()) {
+            ChunkAggregation.Partials partials = aggregation.newPartials();
+            ChunkAggregation.Row row =
+                    new ChunkAggregation.Row() {
+                        @Override
+                        public String getString(int column) throws SQLException {
+                            return rs.getString(column);
+                        }
+
+                        @Override
+                        public Object getObject(int column) throws SQLException {
+                            return rs.getObject(column);
+                        }
+                    };
+            while (rs.next()) {
+                partials.accumulate(row);
+            }
+            return partials;
+        } finally {
+            session.giveBack(connection);
+        }
+    }
+
+    private <T> T withSchema(Path jfrFile, SchemaFunction<T> fn) throws SQLException {
+        Session session = session(jfrFile);
+        PooledConnection connection = session.borrow();
+        try {
+            return fn.apply(
+                    connection
+                            .connection
+                            .unwrap(CalciteConnection.class)
+                            .getRootSchema()
+                            .getSubSchema(SCHEMA_NAME));
+        } finally {
+            session.giveBack(connection);
+        }
+    }
+
+    private Session session(Path jfrFile) {
+        return sessions.get(jfrFile, Session::new);
+    }
+
+    private Path chunksDirectory() {
+        return cacheDirectory.resolve("chunks");
+    }
+
+    private void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .forEach(
+                            p -> {
+                                try {
+                                    Files.deleteIfExists(p);
+                                } catch (IOException e) {
+                                    logger.warnv(e, "Failed to delete {0}", p);
+                                }
+                            });
+        } catch (IOException e) {
+            logger.warn(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SchemaFunction<T> {
+        T apply(SchemaPlus schema) throws SQLException;
+    }
+
+    /** Pool of Calcite connections modelling a single JFR file. */
+    private class Session implements AutoCloseable {
+        private final Path jfrFile;
+        private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Path chunksDirectory;
+        // completed once the split has been attempted, guarded by this
+        private CompletableFuture<Optional<List<Session>>> chunks;
+        private int chunkScans;
+        private long reservedBytes;
+
+        Session(Path jfrFile) {
+            this.jfrFile = jfrFile;
+            this.chunksDirectory =
+                    chunksDirectory().resolve(jfrFile.getFileName().toString() + ".d");
+        }
+
+        PooledConnection borrow() throws SQLException {
+            PooledConnection connection = idle.pollFirst();
+            if (connection != null) {
+                return connection;
+            }
+            logger.debugv("Opening JFR analytics connection for {0}", jfrFile);
+            Properties properties = new Properties();
+            properties.put("model", JfrSchemaFactory.getInlineModel(jfrFile));
+            return new PooledConnection(DriverManager.getConnection("jdbc:calcite:", properties));
+        }
+
+        void giveBack(PooledConnection connection) {
+            if (closed.get() || idle.size() >= MAX_IDLE_CONNECTIONS) {
+                connection.close();
+                return;
+            }
+            idle.offerFirst(connection);
+            if (closed.get() && idle.remove(connection)) {
+                // raced with close()
+                connection.close();
+            }
+        }
+
+        /**
+         * Split the recording into per-chunk files if that has not already been done, and prevent
+         * them from being deleted until {@link #releaseChunks()} is called. The split is performed
+         * outside of this session's monitor, and concurrent callers wait for the first caller's
+         * split rather than repeating it.
+         *
+         * @return sessions for each chunk file, or empty if the recording should not be scanned in
+         *     parallel
+         */
+        Optional<List<Session>> acquireChunks() {
+            CompletableFuture<Optional<List<Session>>> f;
+            boolean leader = false;
+            synchronized (this) {
+                if (closed.get()) {
+                    return Optional.empty();
+                }
+                if (chunks == null) {
+                    chunks = new CompletableFuture<>();
+                    leader = true;
+                }
+                f = chunks;
+                // held across the split too, so that close() leaves the chunk files to the last
+                // scan to finish
+                chunkScans++;
+            }
+            if (leader) {
+                f.complete(split());
+            }
+            Optional<List<Session>> result = f.join();
+            if (result.isEmpty()) {
+                releaseChunks();
+            }
+            return result;
+        }
+
+        private Optional<List<Session>> split() {
+            long reserved = 0;
+            try {
+                long size = Files.size(jfrFile);
+                if (size < parallelMinSize.asLongValue()) {
+                    return Optional.empty();
+                }
+                var located = JfrChunks.locate(jfrFile);
+                if (located.size() < 2) {
+                    return Optional.empty();
+                }
+                if (!fileStore.reserve(size)) {
+                    logger.debugv("No room in the JFR file cache to split {0}", jfrFile);
+                    return Optional.empty();
+                }
+                reserved = size;
+                List<Session> sessions =
+                        JfrChunks.split(jfrFile, located, chunksDirectory).stream()
+                                .map(Session::new)
+                                .toList();
+                synchronized (this) {
+                    reservedBytes = reserved;
+                }
+                logger.debugv("Split {0} into {1} chunks", jfrFile, located.size());
+                return Optional.of(sessions);
+            } catch (IOException e) {
+                logger.warnv(e, "Failed to split {0} into chunks", jfrFile);
+                deleteRecursively(chunksDirectory);
+                fileStore.unreserve(reserved);
+                return Optional.empty();
+            }
+        }
+
+        synchronized void releaseChunks() {
+            chunkScans--;
+            if (closed.get() && chunkScans == 0) {
+                deleteChunks();
+            }
+        }
+
+        private void deleteChunks() {
+            if (chunks != null) {
+                chunks.getNow(Optional.empty()).ifPresent(c -> c.forEach(Session::close));
+                deleteRecursively(chunksDirectory);
+                fileStore.unreserve(reservedBytes);
+                reservedBytes = 0;
+            }
+            chunks = CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                connection.close();
+            }
+            synchronized (this) {
+                if (chunkScans == 0) {
+                    deleteChunks();
+                }
+            }
+        }
+    }
+
+    /** A Calcite connection along with its prepared statement cache. */
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements =
+                    new LinkedHashMap<>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, PreparedStatement> eldest) {
+                            if (size() <= maxStatements) {
+                                return false;
+                            }
+                            closeQuietly(eldest.getValue());
+                            return true;
+                        }
+                    };
+        }
+
+        // only ever used by the thread which has borrowed this connection
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void close() {
+            statements.values().forEach(this::closeQuietly);
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn(e);
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug(e);
+            }
+        }
+    }
+
+    /** Rows of a query result, rendered as strings. */
+    interface Cursor extends Iterator<List<String>>, AutoCloseable {
+        @Override
+        void close();
+
+        default List<List<String>> drain() {
+            List<List<String>> result = new ArrayList<>();
+            forEachRemaining(result::add);
+            return result;
+        }
+
+        static Cursor of(List<List<String>> rows) {
+            Iterator<List<String>> it = rows.iterator();
+            return new Cursor() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public List<String> next() {
+                    return it.next();
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+    }
+
+    /**
+     * Lazily iterates the rows of a query result. Rows are read from the underlying result set
+     * only as they are consumed.
+     */
+    private class ResultSetCursor implements Cursor {
+        private final Session session;
+        private final PooledConnection connection;
+        private final ResultSet rs;
+        private final int columnCount;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Boolean hasNext;
+
+        private ResultSetCursor(Session session, PooledConnection connection, ResultSet rs)
+                throws SQLException {
+            this.session = session;
+            this.connection = connection;
+            this.rs = rs;
+            try {
+                this.columnCount = rs.getMetaData().getColumnCount();
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = rs.next();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public List<String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            try {
+                List<String> row = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    row.add(rs.getString(i));
+                }
+                return row;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                logger.debug(e);
+            }
+            session.giveBack(connection);
+        }
+    }
+}
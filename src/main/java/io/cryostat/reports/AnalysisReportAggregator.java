@@ -277,7 +277,7 @@ public class AnalysisReportAggregator {
         return Uni.createFrom().future(f);
     }
 
-    private String stringify(Entry entry) {
+    String stringify(Entry entry) {
         var sb = new StringBuilder();
         entry.report()
                 .forEach(
@@ -15,6 +15,7 @@
  */
 package io.cryostat.reports;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 import io.cryostat.ConfigProperties;
@@ -38,7 +39,8 @@ import org.jboss.logging.Logger;
 /**
  * Tiered caching layer for automated analysis reports. Holds report results in an in-memory cache
  * for a short duration to improve report retrieval performance, since report generation can be
- * quite expensive while the resulting reports themselves are not particularly large.
+ * quite expensive while the resulting reports themselves are not particularly large. The complete
+ * report is always cached, and any rule filter is applied to the cached report when it is read.
  */
 @Priority(10)
 @Decorator
@@ -64,6 +66,7 @@ class MemoryCachingReportsService implements ReportsService {
 
     @Inject @Delegate @Any ReportsService delegate;
 
+    @Inject ReportRuleFilter ruleFilter;
     @Inject Logger logger;
 
     @Override
@@ -74,12 +77,14 @@ class MemoryCachingReportsService implements ReportsService {
         }
         String key = ReportsService.key(recording);
         logger.tracev("reportFor {0}", key);
-        return activeCache.getAsync(
-                key,
-                k -> {
-                    logger.tracev("reportFor {0} cache miss", k);
-                    return delegate.reportFor(recording, filter);
-                });
+        return activeCache
+                .<String, Map<String, AnalysisResult>>getAsync(
+                        key,
+                        k -> {
+                            logger.tracev("reportFor {0} cache miss", k);
+                            return delegate.reportFor(recording);
+                        })
+                .map(report -> ruleFilter.apply(report, filter));
     }
 
     @Override
@@ -91,11 +96,30 @@ class MemoryCachingReportsService implements ReportsService {
         }
         String key = RecordingHelper.archivedRecordingKey(jvmId, filename);
         logger.tracev("reportFor {0}", key);
+        return archivedCache
+                .<String, Map<String, AnalysisResult>>getAsync(
+                        key,
+                        k -> {
+                            logger.tracev("reportFor {0} cache miss", k);
+                            return delegate.reportFor(jvmId, filename);
+                        })
+                .map(report -> ruleFilter.apply(report, filter));
+    }
+
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForCopy(
+            String jvmId, String filename, Path copy) {
+        if (!quarkusCache || !memoryCache) {
+            logger.trace("cache disabled, delegating...");
+            return delegate.reportForCopy(jvmId, filename, copy);
+        }
+        String key = RecordingHelper.archivedRecordingKey(jvmId, filename);
+        logger.tracev("reportForCopy {0}", key);
         return archivedCache.getAsync(
                 key,
                 k -> {
-                    logger.tracev("reportFor {0} cache miss", k);
-                    return delegate.reportFor(jvmId, filename, filter);
+                    logger.tracev("reportForCopy {0} cache miss", k);
+                    return delegate.reportForCopy(jvmId, filename, copy);
                 });
     }
 
@@ -0,0 +1,82 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.util.RuleFilterParser;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Apply report rule filters to already-generated reports. The caching tiers always generate and
+ * store the complete report for a recording, and requests with filters are served by selecting the
+ * matching rules' results out of that complete report, so that requests with different filters
+ * share a single report generation.
+ */
+@ApplicationScoped
+class ReportRuleFilter {
+
+    // filters are user input, so bound the number of parsed filters retained
+    private static final int MAX_RETAINED_FILTERS = 256;
+
+    @Inject RuleFilterParser ruleFilterParser;
+
+    // filter -> IDs of the rules it selects
+    private final Map<String, Set<String>> selections = new ConcurrentHashMap<>();
+
+    /**
+     * @param report the complete report
+     * @param filter the rule filter, or null or blank to select all rules
+     * @return the results in the report for the rules which the filter selects
+     */
+    Map<String, AnalysisResult> apply(Map<String, AnalysisResult> report, String filter) {
+        if (report == null || StringUtils.isBlank(filter)) {
+            return report;
+        }
+        Set<String> ruleIds = selections.get(filter);
+        if (ruleIds == null) {
+            ruleIds = select(filter);
+            if (selections.size() < MAX_RETAINED_FILTERS) {
+                selections.put(filter, ruleIds);
+            }
+        }
+        Map<String, AnalysisResult> filtered = new HashMap<>();
+        for (var entry : report.entrySet()) {
+            if (ruleIds.contains(entry.getKey())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    private Set<String> select(String filter) {
+        return RuleRegistry.getRules().stream()
+                .filter(ruleFilterParser.parse(filter))
+                .map(IRule::getId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -123,7 +123,7 @@ public class Reports {
         if (reportsService.keyExists(pair.getKey(), pair.getValue())) {
             return Response.ok(
                             reportsService
-                                    .reportFor(pair.getKey(), pair.getValue())
+                                    .reportFor(pair.getKey(), pair.getValue(), filter)
                                     .await()
                                     .atMost(connectionFailedTimeout),
                             MediaType.APPLICATION_JSON)
@@ -270,7 +270,7 @@ public class Reports {
         if (reportsService.keyExists(recording)) {
             return Response.ok(
                             reportsService
-                                    .reportFor(recording)
+                                    .reportFor(recording, filter)
                                     .await()
                                     .atMost(connectionFailedTimeout),
                             MediaType.APPLICATION_JSON)
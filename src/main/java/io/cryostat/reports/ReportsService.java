@@ -15,6 +15,7 @@
  */
 package io.cryostat.reports;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
@@ -31,6 +32,13 @@ public interface ReportsService {
 
     Uni<Map<String, AnalysisResult>> reportFor(String jvmId, String filename);
 
+    /**
+     * Generate the report for a newly archived recording from a local copy of its contents, rather
+     * than retrieving it again from storage. The caller retains ownership of the local copy, which
+     * must not be deleted until the returned {@link Uni} completes.
+     */
+    Uni<Map<String, AnalysisResult>> reportForCopy(String jvmId, String filename, Path copy);
+
     static String key(ActiveRecording recording) {
         return String.format("%s/%d", recording.target.jvmId, recording.id);
     }
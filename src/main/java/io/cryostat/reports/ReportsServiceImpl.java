@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +32,7 @@ import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
 import io.cryostat.core.util.RuleFilterParser;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.RecordingStreamMetrics;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.smallrye.mutiny.Uni;
@@ -79,6 +82,7 @@ class ReportsServiceImpl implements ReportsService {
 
     @Inject ObjectMapper mapper;
     @Inject RecordingHelper helper;
+    @Inject RecordingStreamMetrics streamMetrics;
     @Inject InterruptibleReportGenerator reportGenerator;
     @Inject RuleFilterParser ruleFilterParser;
     @Inject @RestClient ReportSidecarService sidecar;
@@ -89,7 +93,11 @@ class ReportsServiceImpl implements ReportsService {
     public Uni<Map<String, AnalysisResult>> reportFor(ActiveRecording recording, String filter) {
         InputStream stream;
         try {
-            stream = helper.getActiveInputStream(recording, uploadFailedTimeout);
+            stream =
+                    streamMetrics.meter(
+                            helper.getActiveInputStream(recording, uploadFailedTimeout),
+                            RecordingStreamMetrics.Source.ACTIVE,
+                            RecordingStreamMetrics.Operation.REPORT);
         } catch (Exception e) {
             throw new ReportGenerationException(e);
         }
@@ -111,7 +119,7 @@ class ReportsServiceImpl implements ReportsService {
             String jvmId, String filename, String filter) {
         try {
             if (!useSidecar()) {
-                InputStream stream = helper.getArchivedRecordingStream(jvmId, filename);
+                InputStream stream = openArchivedStream(jvmId, filename);
                 logger.tracev("inprocess reportFor archived recording {0} {1}", jvmId, filename);
                 return process(stream, filter).eventually(safeClose(stream));
             } else if (usePresignedSidecar()) {
@@ -120,7 +128,7 @@ class ReportsServiceImpl implements ReportsService {
                 var uri = getPresignedPath(jvmId, filename);
                 return sidecar.generatePresigned(uri.toString(), filter);
             } else {
-                InputStream stream = helper.getArchivedRecordingStream(jvmId, filename);
+                InputStream stream = openArchivedStream(jvmId, filename);
                 logger.tracev("sidecar reportFor archived recording {0} {1}", jvmId, filename);
                 return fireRequest(stream, filter).eventually(safeClose(stream));
             }
@@ -132,6 +140,33 @@ class ReportsServiceImpl implements ReportsService {
         }
     }
 
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForCopy(
+            String jvmId, String filename, Path copy) {
+        InputStream stream;
+        try {
+            stream = Files.newInputStream(copy);
+        } catch (IOException e) {
+            throw new ReportGenerationException(e);
+        }
+        if (!useSidecar()) {
+            logger.tracev("inprocess reportFor archived recording copy {0} {1}", jvmId, filename);
+            return process(stream, null).eventually(safeClose(stream));
+        } else {
+            // even if presigned transfers are enabled, the local copy is cheaper to send than it
+            // is for the sidecar to download the recording back out of storage
+            logger.tracev("sidecar reportFor archived recording copy {0} {1}", jvmId, filename);
+            return fireRequest(stream, null).eventually(safeClose(stream));
+        }
+    }
+
+    private InputStream openArchivedStream(String jvmId, String filename) {
+        return streamMetrics.meter(
+                helper.getArchivedRecordingStream(jvmId, filename),
+                RecordingStreamMetrics.Source.ARCHIVED,
+                RecordingStreamMetrics.Operation.REPORT);
+    }
+
     @Override
     public Uni<Map<String, AnalysisResult>> reportFor(ActiveRecording recording) {
         return reportFor(recording, null);
@@ -42,6 +42,7 @@ class StorageCachingReportsListener {
     String bucket;
 
     @Inject S3Client storage;
+    @Inject StoredReportIndex index;
 
     @Inject Logger logger;
 
@@ -55,9 +56,14 @@ class StorageCachingReportsListener {
                         jvmId -> {
                             var key = RecordingHelper.archivedRecordingKey(jvmId, recording.name());
                             logger.tracev("Picked up deletion of archived recording: {0}", key);
-                            var req = DeleteObjectRequest.builder().bucket(bucket).key(key).build();
+                            var req =
+                                    DeleteObjectRequest.builder()
+                                            .bucket(bucket)
+                                            .key(StoredReportIndex.objectKey(key))
+                                            .build();
                             try {
                                 storage.deleteObject(req);
+                                index.remove(jvmId, key);
                             } catch (S3Exception e) {
                                 logger.warn(e);
                             }
@@ -17,6 +17,7 @@ package io.cryostat.reports;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
@@ -45,7 +46,6 @@ import org.jboss.logging.Logger;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
@@ -59,7 +59,10 @@ import software.amazon.awssdk.transfer.s3.model.UploadRequest;
  * themselves are not particularly large files and storing them should be cheap (much cheaper than
  * storing the input recording file). If in-memory report caching is disabled, or a report has
  * dropped out of that cache due to TTL, then retrieving the report file from S3 object storage is
- * still much cheaper than, and preferable to, regenerating the report again.
+ * still much cheaper than, and preferable to, regenerating the report again. As with the in-memory
+ * cache, the complete report is always stored, and any rule filter is applied when it is read.
+ * Whether a report is stored is answered by the {@link StoredReportIndex} rather than by checking
+ * storage for each report.
  */
 @Priority(20)
 @Decorator
@@ -75,15 +78,14 @@ class StorageCachingReportsService implements ReportsService {
     @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_EXPIRY_DURATION)
     Duration expiry;
 
-    @ConfigProperty(name = ConfigProperties.CONNECTIONS_FAILED_TIMEOUT)
-    Duration connectionFailedTimeout;
-
     @Inject S3Client storage;
     @Inject S3TransferManager transferManager;
     @Inject ObjectMapper mapper;
 
     @Inject @Delegate @Any ReportsService delegate;
 
+    @Inject StoredReportIndex index;
+    @Inject ReportRuleFilter ruleFilter;
     @Inject Logger logger;
 
     @Override
@@ -102,37 +104,45 @@ class StorageCachingReportsService implements ReportsService {
         }
         var key = RecordingHelper.archivedRecordingKey(jvmId, filename);
         logger.tracev("reportFor {0}", key);
-        return checkStorage(key)
+        return Uni.createFrom()
+                .item(() -> index.contains(jvmId, key))
                 .onItem()
                 .transformToUni(
                         found -> {
                             if (found) {
-                                return getStorage(key);
+                                return getStorage(key)
+                                        .onFailure(NoSuchKeyException.class)
+                                        .recoverWithUni(
+                                                () -> {
+                                                    // the index was stale, so generate it again
+                                                    index.remove(jvmId, key);
+                                                    return putStorage(
+                                                            jvmId,
+                                                            key,
+                                                            delegate.reportFor(jvmId, filename));
+                                                });
                             } else {
-                                return putStorage(key, delegate.reportFor(jvmId, filename, filter));
+                                return putStorage(jvmId, key, delegate.reportFor(jvmId, filename));
                             }
-                        });
+                        })
+                .map(report -> ruleFilter.apply(report, filter));
     }
 
-    private Uni<Boolean> checkStorage(String key) {
-        return Uni.createFrom()
-                .item(
-                        () -> {
-                            var req =
-                                    HeadObjectRequest.builder()
-                                            .bucket(bucket)
-                                            .key(suffixKey(key))
-                                            .build();
-                            try {
-                                return storage.headObject(req).sdkHttpResponse().isSuccessful();
-                            } catch (NoSuchKeyException nske) {
-                                return false;
-                            }
-                        });
+    @Override
+    public Uni<Map<String, AnalysisResult>> reportForCopy(
+            String jvmId, String filename, Path copy) {
+        if (!enabled) {
+            logger.trace("cache disabled, delegating...");
+            return delegate.reportForCopy(jvmId, filename, copy);
+        }
+        var key = RecordingHelper.archivedRecordingKey(jvmId, filename);
+        logger.tracev("reportForCopy {0}", key);
+        // the recording has only just been archived, so there is no stored report to check for
+        return putStorage(jvmId, key, delegate.reportForCopy(jvmId, filename, copy));
     }
 
     private Uni<Map<String, AnalysisResult>> putStorage(
-            String key, Uni<Map<String, AnalysisResult>> payload) {
+            String jvmId, String key, Uni<Map<String, AnalysisResult>> payload) {
         return payload.emitOn(Infrastructure.getDefaultExecutor())
                 .onItem()
                 .invoke(
@@ -142,7 +152,7 @@ class StorageCachingReportsService implements ReportsService {
                                 var req =
                                         PutObjectRequest.builder()
                                                 .bucket(bucket)
-                                                .key(suffixKey(key))
+                                                .key(StoredReportIndex.objectKey(key))
                                                 .contentType(HttpMimeType.JSON.mime())
                                                 .expires(Instant.now().plus(expiry))
                                                 .build();
@@ -164,6 +174,7 @@ class StorageCachingReportsService implements ReportsService {
                                             String.format("Bad S3 report storage response: %d", sc),
                                             null);
                                 }
+                                index.add(jvmId, key);
                             } catch (JsonProcessingException jpe) {
                                 throw new CompletionException(jpe);
                             }
@@ -177,7 +188,7 @@ class StorageCachingReportsService implements ReportsService {
                             var req =
                                     GetObjectRequest.builder()
                                             .bucket(bucket)
-                                            .key(suffixKey(key))
+                                            .key(StoredReportIndex.objectKey(key))
                                             .build();
                             try (var res = new BufferedInputStream(storage.getObject(req))) {
                                 return mapper.readValue(
@@ -201,16 +212,12 @@ class StorageCachingReportsService implements ReportsService {
     @Override
     public boolean keyExists(ActiveRecording recording) {
         String key = ReportsService.key(recording);
-        return enabled && checkStorage(key).await().atMost(connectionFailedTimeout);
+        return enabled && index.contains(recording.target.jvmId, key);
     }
 
     @Override
     public boolean keyExists(String jvmId, String filename) {
         String key = RecordingHelper.archivedRecordingKey(jvmId, filename);
-        return enabled && checkStorage(key).await().atMost(connectionFailedTimeout);
-    }
-
-    private String suffixKey(String key) {
-        return String.format("%s.report.json", key);
+        return enabled && index.contains(jvmId, key);
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.cryostat.ConfigProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+
+/**
+ * Short-lived index of the automated analysis reports held in the reports storage bucket. Rather
+ * than checking for each report individually, the first lookup for a JVM lists that JVM's prefix
+ * in the bucket once, and further lookups for the same JVM are answered from that listing until it
+ * expires. Both the presence and the absence of a report are answered this way, so rendering a
+ * target with many archived recordings costs a single bucket listing rather than one request per
+ * recording. Reports stored or deleted by this instance are applied to the index directly, and
+ * changes made by other instances are picked up when the listing expires.
+ */
+@ApplicationScoped
+class StoredReportIndex {
+
+    private static final String REPORT_SUFFIX = ".report.json";
+    private static final int MAX_INDEXED_JVMS = 1024;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_STORAGE_CACHE_NAME)
+    String bucket;
+
+    @ConfigProperty(name = ConfigProperties.ARCHIVED_REPORTS_STORAGE_CACHE_INDEX_TTL)
+    Duration ttl;
+
+    @Inject S3Client storage;
+    @Inject Logger logger;
+
+    // jvmId -> keys of the reports stored under that jvmId's prefix
+    private Cache<String, Set<String>> listings;
+
+    @PostConstruct
+    void init() {
+        this.listings =
+                Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(MAX_INDEXED_JVMS).build();
+    }
+
+    /**
+     * @param key the report key, ie. {@link ReportsService#key} or {@link
+     *     io.cryostat.recordings.RecordingHelper#archivedRecordingKey}
+     * @return the name of the storage object holding the report for the key
+     */
+    static String objectKey(String key) {
+        return key + REPORT_SUFFIX;
+    }
+
+    /**
+     * @return whether a report is stored for the key. If the bucket cannot be listed then the
+     *     report is treated as absent and the result is not retained.
+     */
+    boolean contains(String jvmId, String key) {
+        try {
+            return listings.get(jvmId, this::list).contains(key);
+        } catch (SdkException e) {
+            logger.warnv(e, "Failed to list stored reports for {0}", jvmId);
+            return false;
+        }
+    }
+
+    /** Record that a report has been stored for the key. */
+    void add(String jvmId, String key) {
+        // computing on the mapping waits for a listing of this JVM which is already in progress,
+        // which may not include the new report, so that the change is applied to it as well
+        listings.asMap()
+                .computeIfPresent(
+                        jvmId,
+                        (k, keys) -> {
+                            keys.add(key);
+                            return keys;
+                        });
+    }
+
+    /** Record that the report for the key has been deleted, or was found to be missing. */
+    void remove(String jvmId, String key) {
+        listings.asMap()
+                .computeIfPresent(
+                        jvmId,
+                        (k, keys) -> {
+                            keys.remove(key);
+                            return keys;
+                        });
+    }
+
+    private Set<String> list(String jvmId) {
+        logger.tracev("Listing stored reports for {0}", jvmId);
+        var req = ListObjectsV2Request.builder().bucket(bucket).prefix(jvmId + "/").build();
+        Set<String> keys = ConcurrentHashMap.newKeySet();
+        storage.listObjectsV2Paginator(req)
+                .contents()
+                .forEach(
+                        o -> {
+                            if (o.key().endsWith(REPORT_SUFFIX)) {
+                                keys.add(
+                                        o.key()
+                                                .substring(
+                                                        0,
+                                                        o.key().length() - REPORT_SUFFIX.length()));
+                            }
+                        });
+        return keys;
+    }
+}
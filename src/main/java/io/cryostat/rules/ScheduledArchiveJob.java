@@ -21,15 +21,13 @@ import java.util.Objects;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.recordings.ActiveRecording;
-import io.cryostat.recordings.ActiveRecordings.Metadata;
+import io.cryostat.recordings.ArchivedRecordings.ArchivedRecording;
 import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.targets.Target;
 
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.inject.Inject;
 import jakarta.persistence.NoResultException;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.hibernate.ObjectDeletedException;
 import org.jboss.logging.Logger;
@@ -41,7 +39,6 @@ import org.quartz.SimpleScheduleBuilder;
 import org.quartz.SimpleTrigger;
 import org.quartz.TriggerBuilder;
 import software.amazon.awssdk.services.s3.model.S3Exception;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
  * Perform recording archival by pulling data stream from a target and copying it into a file in S3
@@ -69,16 +66,14 @@ class ScheduledArchiveJob implements Job {
         int retryCount = ctx.getMergedJobDataMap().getIntValue("retryCount");
 
         try {
-            List<S3Object> previousRecordings = previousRecordings(jvmId, ruleName);
+            List<ArchivedRecording> previousRecordings = previousRecordings(jvmId, ruleName);
             // minus 1 because we will continue to add one more after pruning
             if (previousRecordings.size() >= preservedArchives - 1) {
-                List<S3Object> toPrune =
+                List<ArchivedRecording> toPrune =
                         previousRecordings.subList(
                                 preservedArchives - 1, previousRecordings.size());
-                for (var obj : toPrune) {
-                    String path = obj.key().strip();
-                    String[] parts = path.split("/");
-                    String filename = parts[1];
+                for (var archive : toPrune) {
+                    String filename = archive.name();
                     QuarkusTransaction.joiningExisting()
                             .call(
                                     () -> {
@@ -200,19 +195,14 @@ class ScheduledArchiveJob implements Job {
         throw ex;
     }
 
-    List<S3Object> previousRecordings(String jvmId, String ruleName) {
-        return recordingHelper.listArchivedRecordingObjects(jvmId).parallelStream()
-                .sorted((a, b) -> b.lastModified().compareTo(a.lastModified()))
-                .map(r -> Pair.of(r, recordingHelper.getArchivedRecordingMetadata(r.key())))
+    List<ArchivedRecording> previousRecordings(String jvmId, String ruleName) {
+        // the archived recording catalog already orders these by archival time, most recent first
+        return recordingHelper.listArchivedRecordings(jvmId).stream()
                 .filter(
-                        p ->
-                                p.getRight()
-                                        .map(Metadata::labels)
-                                        .map(l -> l.get(RuleExecutor.RULE_LABEL_KEY))
-                                        .filter(StringUtils::isNotBlank)
-                                        .map(l -> Objects.equals(l, ruleName))
-                                        .orElse(false))
-                .map(Pair::getLeft)
+                        r ->
+                                Objects.equals(
+                                        r.metadata().labels().get(RuleExecutor.RULE_LABEL_KEY),
+                                        ruleName))
                 .toList();
     }
 }
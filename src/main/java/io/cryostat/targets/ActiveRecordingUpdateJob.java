@@ -18,10 +18,10 @@ package io.cryostat.targets;
 import io.cryostat.recordings.ActiveRecording;
 import io.cryostat.recordings.RecordingHelper;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.inject.Inject;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceException;
-import jakarta.transaction.Transactional;
 import org.hibernate.ObjectDeletedException;
 import org.jboss.logging.Logger;
 import org.quartz.DisallowConcurrentExecution;
@@ -34,7 +34,7 @@ import org.quartz.JobExecutionException;
  * Cryostat) complete at the end of the expected duration.
  *
  * @see io.cryostat.targets.Target
- * @see io.cryostat.targets.TargetUpdateJob
+ * @see io.cryostat.targets.TargetUpdateService
  */
 @DisallowConcurrentExecution
 public class ActiveRecordingUpdateJob implements Job {
@@ -44,13 +44,20 @@ public class ActiveRecordingUpdateJob implements Job {
     @Inject RecordingHelper recordingHelper;
 
     @Override
-    @Transactional
     public void execute(JobExecutionContext context) throws JobExecutionException {
         long recordingId = (long) context.getMergedJobDataMap().get("recordingId");
-        ActiveRecording recording = ActiveRecording.findById(recordingId);
         Target target;
         try {
-            target = Target.getTargetById(recording.target.id);
+            // look up the target in its own short transaction, since the sync below contacts the
+            // target and must not hold a database connection while doing so
+            target =
+                    QuarkusTransaction.requiringNew()
+                            .call(
+                                    () -> {
+                                        ActiveRecording recording =
+                                                ActiveRecording.findById(recordingId);
+                                        return Target.getTargetById(recording.target.id);
+                                    });
         } catch (NoResultException | ObjectDeletedException e) {
             // target disappeared in the meantime. No big deal.
             logger.debug(e);
@@ -21,13 +21,15 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import io.cryostat.discovery.DiscoveryNode;
 import io.cryostat.recordings.ActiveRecording;
@@ -162,12 +164,15 @@ public class Target extends PanacheEntity {
         return find("jvmId", jvmId).firstResultOptional();
     }
 
+    @SuppressWarnings("unchecked")
     public static List<Target> findByRealm(String realm) {
-        List<Target> targets = findAll().list();
-
-        return targets.stream()
-                .filter((t) -> realm.equals(t.annotations.cryostat().get("REALM")))
-                .collect(Collectors.toList());
+        // served by the IDX_TARGET_REALM expression index
+        return getEntityManager()
+                .createNativeQuery(
+                        "SELECT * FROM Target WHERE annotations->'cryostat'->>'REALM' = :realm",
+                        Target.class)
+                .setParameter("realm", realm)
+                .getResultList();
     }
 
     public ActiveRecording getRecordingById(long remoteId) {
@@ -231,66 +236,109 @@ public class Target extends PanacheEntity {
         return new Compare(src);
     }
 
+    /**
+     * Diff of a previous and a current set of targets, such as a discovery mechanism's last known
+     * targets against a fresh observation. Targets are matched by connection URL: a target whose
+     * URL appears only in the current set is added, one whose URL appears only in the previous set
+     * is removed, and one whose URL appears in both but which differs in any other property is
+     * updated. The diff is computed in a single pass over both sets when {@link #to(Collection)} is
+     * called.
+     */
     public static class Compare {
-        private Collection<Target> previous, current;
+        private final Map<URI, Target> previous;
+        private final List<Target> added = new ArrayList<>();
+        private final List<Target> removed = new ArrayList<>();
+        private final List<Update> updates = new ArrayList<>();
 
         public Compare(Collection<Target> previous) {
-            this.previous = new HashSet<>(previous);
+            this.previous = new LinkedHashMap<>(previous.size());
+            for (Target t : previous) {
+                this.previous.put(t.connectUrl, t);
+            }
         }
 
         public Compare to(Collection<Target> current) {
-            this.current = new HashSet<>(current);
+            added.clear();
+            removed.clear();
+            updates.clear();
+            Map<URI, Target> unmatched = new LinkedHashMap<>(previous);
+            Set<URI> seen = new HashSet<>(current.size());
+            for (Target t : current) {
+                if (!seen.add(t.connectUrl)) {
+                    continue;
+                }
+                Target prev = unmatched.remove(t.connectUrl);
+                if (prev == null) {
+                    added.add(t);
+                    continue;
+                }
+                EnumSet<Field> changed = Field.diff(prev, t);
+                if (!changed.isEmpty()) {
+                    updates.add(new Update(prev, t, changed));
+                }
+            }
+            removed.addAll(unmatched.values());
             return this;
         }
 
         public Collection<Target> added() {
-            return removeAllUpdatedRefs(addedOrUpdatedRefs(), updated(false));
+            return Collections.unmodifiableList(added);
         }
 
         public Collection<Target> removed() {
-            return removeAllUpdatedRefs(removedOrUpdatedRefs(), updated(true));
+            return Collections.unmodifiableList(removed);
         }
 
         public Collection<Target> updated(boolean keepOld) {
-            Collection<Target> updated = new HashSet<>();
-            intersection(removedOrUpdatedRefs(), addedOrUpdatedRefs(), keepOld)
-                    .forEach((ref) -> updated.add(ref));
+            List<Target> updated = new ArrayList<>(updates.size());
+            for (Update u : updates) {
+                updated.add(keepOld ? u.previous() : u.current());
+            }
             return updated;
         }
 
-        private Collection<Target> addedOrUpdatedRefs() {
-            Collection<Target> added = new HashSet<>(current);
-            added.removeAll(previous);
-            return added;
-        }
-
-        private Collection<Target> removedOrUpdatedRefs() {
-            Collection<Target> removed = new HashSet<>(previous);
-            removed.removeAll(current);
-            return removed;
+        /**
+         * @return the targets present in both sets which differ, along with the properties which
+         *     changed
+         */
+        public Collection<Update> updates() {
+            return Collections.unmodifiableList(updates);
         }
+    }
 
-        private Collection<Target> removeAllUpdatedRefs(
-                Collection<Target> src, Collection<Target> updated) {
-            Collection<Target> tnSet = new HashSet<>(src);
-            intersection(src, updated, true).stream().forEach((ref) -> tnSet.remove(ref));
-            return tnSet;
+    /** A target present in both sets of a {@link Compare} which differs between them. */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public record Update(Target previous, Target current, Set<Field> changed) {
+        public Update {
+            Objects.requireNonNull(previous);
+            Objects.requireNonNull(current);
+            changed = Collections.unmodifiableSet(changed);
         }
+    }
 
-        private Collection<Target> intersection(
-                Collection<Target> src, Collection<Target> other, boolean keepOld) {
-            final Collection<Target> intersection = new HashSet<>();
+    /** Target properties compared by {@link Compare}, other than the connection URL. */
+    public enum Field {
+        ALIAS,
+        ANNOTATIONS,
+        JVM_ID,
+        LABELS,
+        ;
 
-            // Manual removal since Target also compares jvmId
-            for (Target srcTarget : src) {
-                for (Target otherTarget : other) {
-                    if (Objects.equals(srcTarget.connectUrl, otherTarget.connectUrl)) {
-                        intersection.add(keepOld ? srcTarget : otherTarget);
-                    }
-                }
+        static EnumSet<Field> diff(Target a, Target b) {
+            EnumSet<Field> changed = EnumSet.noneOf(Field.class);
+            if (!Objects.equals(a.alias, b.alias)) {
+                changed.add(ALIAS);
             }
-
-            return intersection;
+            if (!Objects.equals(a.annotations, b.annotations)) {
+                changed.add(ANNOTATIONS);
+            }
+            if (!Objects.equals(a.jvmId, b.jvmId)) {
+                changed.add(JVM_ID);
+            }
+            if (!Objects.equals(a.labels, b.labels)) {
+                changed.add(LABELS);
+            }
+            return changed;
         }
     }
 
@@ -27,10 +27,15 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 
 import javax.management.InstanceNotFoundException;
@@ -54,6 +59,7 @@ import io.cryostat.targets.Target.TargetDiscovery;
 import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.github.benmanes.caffeine.cache.Scheduler;
 import com.nimbusds.jose.proc.BadJOSEException;
@@ -106,7 +112,9 @@ public class TargetConnectionManager {
 
     private final ExecutorService virtualThreadPool = Executors.newVirtualThreadPerTaskExecutor();
     private final AsyncLoadingCache<URI, JFRConnection> connections;
+    private final ConcurrentMap<URI, Integer> leases = new ConcurrentHashMap<>();
 
+    private final Duration ttl;
     private final Duration failedBackoff;
     private final Duration failedTimeout;
 
@@ -128,6 +136,7 @@ public class TargetConnectionManager {
         this.matchExpressionEvaluator = matchExpressionEvaluator;
         this.credentialsFinder = credentialsFinder;
         this.agentConnectionFactory = agentConnectionFactory;
+        this.ttl = ttl;
         this.failedBackoff = failedBackoff;
         this.failedTimeout = failedTimeout;
 
@@ -141,7 +150,7 @@ public class TargetConnectionManager {
                     "TTL must be a non-negative integer in seconds, was {0} - ignoring",
                     ttl.toSeconds());
         } else if (!ttl.isZero()) {
-            cacheBuilder = cacheBuilder.expireAfterAccess(ttl);
+            cacheBuilder = cacheBuilder.expireAfter(new LeaseAwareExpiry());
         } else {
             logger.warn(
                     "TTL is set to 0 - target connections will be cached indefinitely, until closed"
@@ -292,6 +301,51 @@ public class TargetConnectionManager {
         }
     }
 
+    /**
+     * Acquire a lease on the connection to the given {@link Target}. While at least one lease is
+     * held the cached connection is pinned and will not be expired by the TTL, so long-running
+     * consumers such as recording streams do not need to repeatedly call {@link
+     * #markConnectionInUse(Target)}. Consumers should still call {@link ConnectionLease#touch()} as
+     * they make progress. This is cheap and time-throttled, and periodically refreshes the cache
+     * entry's access time on a background thread so that the connection receives a full TTL once
+     * the lease is released. The lease must be closed when the consumer is finished with the
+     * connection. Acquiring a lease does not open a connection if one is not already cached.
+     */
+    public ConnectionLease lease(Target target) {
+        URI connectUrl = target.connectUrl;
+        leases.merge(connectUrl, 1, Integer::sum);
+        setExpiry(connectUrl, Long.MAX_VALUE);
+        return new ConnectionLease(connectUrl);
+    }
+
+    private void release(URI connectUrl) {
+        Integer remaining =
+                leases.computeIfPresent(connectUrl, (k, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null) {
+            setExpiry(connectUrl, ttl.toNanos());
+        }
+    }
+
+    private boolean isLeased(URI connectUrl) {
+        return leases.containsKey(connectUrl);
+    }
+
+    private void setExpiry(URI connectUrl, long nanos) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        connections
+                .synchronous()
+                .policy()
+                .expireVariably()
+                .ifPresent(
+                        p -> {
+                            if (p.getExpiresAfter(connectUrl).isPresent()) {
+                                p.setExpiresAfter(connectUrl, nanos, TimeUnit.NANOSECONDS);
+                            }
+                        });
+    }
+
     public void clearConnections() {
         connections.synchronous().invalidateAll();
         connections.synchronous().cleanUp();
@@ -405,6 +459,76 @@ public class TargetConnectionManager {
         }
     }
 
+    /**
+     * Expire connections after a period of inactivity, equivalent to {@link
+     * Caffeine#expireAfterAccess(Duration)}, except that connections which are currently leased
+     * never expire.
+     */
+    private class LeaseAwareExpiry implements Expiry<URI, JFRConnection> {
+        private long expiry(URI key) {
+            return isLeased(key) ? Long.MAX_VALUE : ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(URI key, JFRConnection value, long currentTime) {
+            return expiry(key);
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                URI key, JFRConnection value, long currentTime, long currentDuration) {
+            return expiry(key);
+        }
+
+        @Override
+        public long expireAfterRead(
+                URI key, JFRConnection value, long currentTime, long currentDuration) {
+            return expiry(key);
+        }
+    }
+
+    /**
+     * A handle pinning a cached connection open. See {@link TargetConnectionManager#lease(Target)}.
+     */
+    public class ConnectionLease implements AutoCloseable {
+        private final URI connectUrl;
+        private final long refreshIntervalNanos;
+        private final AtomicLong lastRefresh = new AtomicLong(System.nanoTime());
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ConnectionLease(URI connectUrl) {
+            this.connectUrl = connectUrl;
+            // refresh well before the TTL would elapse, but no more than once per second
+            this.refreshIntervalNanos =
+                    Math.max(TimeUnit.SECONDS.toNanos(1), ttl.dividedBy(4).toNanos());
+        }
+
+        /**
+         * Inform the connection manager that the consumer is still making progress with this
+         * connection. This may be called very frequently, ie. after each read of a stream. Only
+         * one call per refresh interval does any work, and that work is handed off to another
+         * thread so the caller is never blocked on the connection cache.
+         */
+        public void touch() {
+            if (released.get() || ttl.isNegative() || ttl.isZero()) {
+                return;
+            }
+            long now = System.nanoTime();
+            long last = lastRefresh.get();
+            if (now - last < refreshIntervalNanos || !lastRefresh.compareAndSet(last, now)) {
+                return;
+            }
+            virtualThreadPool.execute(() -> connections.getIfPresent(connectUrl));
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(connectUrl);
+            }
+        }
+    }
+
     public interface ConnectedTask<T> {
         T execute(JFRConnection connection) throws Exception;
     }
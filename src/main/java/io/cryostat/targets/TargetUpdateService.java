@@ -15,25 +15,51 @@
  */
 package io.cryostat.targets;
 
+import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
 
 import io.cryostat.ConfigProperties;
 import io.cryostat.credentials.Credential;
 import io.cryostat.expressions.MatchExpressionEvaluator;
 import io.cryostat.recordings.ActiveRecording;
+import io.cryostat.recordings.RecordingHelper;
 import io.cryostat.targets.events.TargetEvents;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
 import io.quarkus.vertx.ConsumeEvent;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jdk.jfr.RecordingState;
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.quartz.JobBuilder;
@@ -41,40 +67,115 @@ import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
-import org.quartz.SimpleScheduleBuilder;
 import org.quartz.Trigger;
 import org.quartz.TriggerBuilder;
+import org.quartz.impl.matchers.GroupMatcher;
 
 /**
  * Watch for {@link io.cryostat.target.Target} instances to be discovered, or matching {@link
- * io.cryostat.credentials.Credential} to be added, and schedule {@link
- * io.cryostat.targets.TargetUpdateJob} jobs to compute the target JVM hash IDs.
+ * io.cryostat.credentials.Credential} to be added, and periodically connect to targets to compute
+ * their JVM hash IDs and synchronize their active recordings.
+ *
+ * <p>Rather than scheduling a persistent job per target, a single sweeper tracks when each target
+ * is next due for an update. Each sweep splits the due targets into batches which are processed
+ * concurrently on virtual threads. The remote connections within a sweep are limited to a
+ * configurable concurrency, and the results for each batch are written in a single transaction.
+ * Each target's interval is jittered so that targets discovered together do not stay in lockstep.
+ * Targets whose agents push their recording state to Cryostat are synchronized when they push, and
+ * are not polled while their pushes are recent.
  */
 @ApplicationScoped
 public class TargetUpdateService {
 
+    static final String METER_PREFIX = "cryostat.target-updates";
+    // group of the per-target Quartz jobs used by previous versions
+    private static final String LEGACY_JOB_GROUP = "target-update";
+
     @Inject Logger logger;
     @Inject Scheduler scheduler;
     @Inject MatchExpressionEvaluator matchExpressionEvaluator;
+    @Inject TargetConnectionManager connectionManager;
+    @Inject RecordingHelper recordingHelper;
+    @Inject MeterRegistry meterRegistry;
 
     @ConfigProperty(name = ConfigProperties.EXTERNAL_RECORDINGS_DELAY)
     Duration externalRecordingDelay;
 
+    @ConfigProperty(name = ConfigProperties.TARGET_UPDATES_PERIOD)
+    Duration period;
+
+    @ConfigProperty(name = ConfigProperties.TARGET_UPDATES_JITTER)
+    Duration jitter;
+
+    @ConfigProperty(name = ConfigProperties.TARGET_UPDATES_CONCURRENCY)
+    int concurrency;
+
+    @ConfigProperty(name = ConfigProperties.TARGET_UPDATES_BATCH_SIZE)
+    int batchSize;
+
+    @ConfigProperty(name = ConfigProperties.TARGET_UPDATES_PUSH_GRACE)
+    Duration pushGrace;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // target ID -> epoch millis when the target is next due for an update
+    private final ConcurrentMap<Long, Long> due = new ConcurrentHashMap<>();
+    // target ID -> epoch millis of the target's last pushed state update
+    private final ConcurrentMap<Long, Long> pushed = new ConcurrentHashMap<>();
+    // target ID -> last known connection URL, to tell which target updates need a new connection
+    private final ConcurrentMap<Long, URI> connectUrls = new ConcurrentHashMap<>();
+
+    private Counter updated;
+    private Counter failed;
+    private Counter skipped;
+
+    @PostConstruct
+    void init() {
+        this.updated =
+                Counter.builder(METER_PREFIX + ".polls")
+                        .description("Target update polls")
+                        .tag("result", "updated")
+                        .register(meterRegistry);
+        this.failed =
+                Counter.builder(METER_PREFIX + ".polls")
+                        .description("Target update polls")
+                        .tag("result", "failed")
+                        .register(meterRegistry);
+        this.skipped =
+                Counter.builder(METER_PREFIX + ".polls")
+                        .description("Target update polls")
+                        .tag("result", "pushed")
+                        .register(meterRegistry);
+        Gauge.builder(METER_PREFIX + ".targets", due, Map::size)
+                .description("Targets tracked for periodic updates")
+                .register(meterRegistry);
+    }
+
     @Transactional
     void onStart(@Observes StartupEvent evt) {
         logger.tracev("{0} started", getClass().getName());
+        try {
+            var legacy = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(LEGACY_JOB_GROUP));
+            if (!legacy.isEmpty()) {
+                logger.debugv("Removing {0} legacy per-target update jobs", legacy.size());
+                scheduler.deleteJobs(new ArrayList<>(legacy));
+            }
+        } catch (SchedulerException e) {
+            logger.warn(e);
+        }
+        // spread the first updates of all known targets across one period rather than
+        // connecting to all of them at once
+        long now = System.currentTimeMillis();
+        long spread = Math.max(1, period.toMillis());
         Target.<Target>listAll()
                 .forEach(
                         t -> {
-                            try {
-                                fireTargetUpdate(t.id);
-                            } catch (SchedulerException e) {
-                                logger.warn(e);
-                            }
+                            connectUrls.put(t.id, t.connectUrl);
+                            due.put(t.id, now + ThreadLocalRandom.current().nextLong(spread));
                         });
     }
 
     void onStop(@Observes ShutdownEvent evt) throws SchedulerException {
+        executor.shutdownNow();
         scheduler.shutdown();
     }
 
@@ -99,55 +200,237 @@ public class TargetUpdateService {
     private void updateTargetsForExpression(Credential credential) {
         for (Target target :
                 matchExpressionEvaluator.getMatchedTargets(credential.matchExpression)) {
-            try {
-                fireTargetUpdate(target.id);
-            } catch (SchedulerException se) {
-                logger.warn(se);
-            }
+            fireTargetUpdate(target.id);
         }
     }
 
+    /**
+     * An agent has pushed its recording state to Cryostat, ie. by a Smart Trigger sync. Update the
+     * target now, and stop polling it while it continues to push.
+     */
+    @ConsumeEvent(blocking = true)
+    void onStatePushed(Target target) {
+        if (target.id == null) {
+            return;
+        }
+        pushed.put(target.id, System.currentTimeMillis());
+        update(List.of(target.id));
+    }
+
     void onTargetCreated(
             @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetCreated event) {
-        try {
-            fireTargetUpdate(event.getEntityId());
-        } catch (SchedulerException e) {
-            logger.warn(e);
-        }
+        connectUrls.put(event.getEntityId(), event.getSnapshot().connectUrl());
+        fireTargetUpdate(event.getEntityId());
     }
 
+    /**
+     * Only update the target early if it is now reached at a different URL, or still has no JVM
+     * ID. Other changes, such as to labels or annotations or this service's own write of the JVM
+     * ID, do not affect what a connection would retrieve. Changes to matching credentials are
+     * handled by the credential event observers.
+     */
     void onTargetUpdated(
             @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetUpdated event) {
-        try {
+        TargetEvents.TargetSnapshot snapshot = event.getSnapshot();
+        URI previous = connectUrls.put(event.getEntityId(), snapshot.connectUrl());
+        if (!snapshot.connectUrl().equals(previous) || StringUtils.isBlank(snapshot.jvmId())) {
             fireTargetUpdate(event.getEntityId());
-        } catch (SchedulerException e) {
-            logger.warn(e);
         }
     }
 
-    void fireTargetUpdate(long targetId) throws SchedulerException {
-        JobKey key = new JobKey(Long.toString(targetId), "target-update");
-        JobDetail job =
-                JobBuilder.newJob(TargetUpdateJob.class)
-                        .withIdentity(key)
-                        .usingJobData("targetId", targetId)
-                        .build();
-        Trigger trigger =
-                TriggerBuilder.newTrigger()
-                        .withIdentity(job.getKey().getName(), job.getKey().getGroup())
-                        // TODO make configurable
-                        .startAt(Date.from(Instant.now().plusSeconds(1)))
-                        .withSchedule(
-                                SimpleScheduleBuilder.simpleSchedule()
-                                        // TODO make configurable
-                                        .withIntervalInSeconds(120)
-                                        .repeatForever()
-                                        .withMisfireHandlingInstructionNextWithExistingCount())
-                        .build();
-        if (scheduler.checkExists(trigger.getKey())) {
+    void onTargetDeleted(
+            @Observes(during = TransactionPhase.AFTER_SUCCESS) TargetEvents.TargetDeleted event) {
+        forget(event.getEntityId());
+    }
+
+    /** Make the target due for an update on the next sweep. */
+    void fireTargetUpdate(long targetId) {
+        long soon = System.currentTimeMillis() + 1000;
+        due.merge(targetId, soon, Math::min);
+    }
+
+    @Scheduled(
+            every = "${" + ConfigProperties.TARGET_UPDATES_SWEEP_PERIOD + "}",
+            delayed = "1s",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    void sweep(long now) {
+        List<Long> ids = new ArrayList<>();
+        due.forEach(
+                (id, at) -> {
+                    if (at > now) {
+                        return;
+                    }
+                    // reschedule up front, so that a failing target waits for its next interval
+                    due.replace(id, at, next(now));
+                    Long pushedAt = pushed.get(id);
+                    if (pushedAt != null && now - pushedAt < pushGrace.toMillis()) {
+                        skipped.increment();
+                        return;
+                    }
+                    ids.add(id);
+                });
+        if (!ids.isEmpty()) {
+            ids.sort(null);
+            update(ids);
+        }
+    }
+
+    /** Update the given targets in batches, blocking until all batches are complete. */
+    void update(List<Long> ids) {
+        Semaphore connections = new Semaphore(Math.max(1, concurrency));
+        int size = Math.max(1, batchSize);
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += size) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + size));
+            batches.add(executor.submit(() -> updateBatch(batch, connections)));
+        }
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batches.forEach(f -> f.cancel(true));
+                throw new CompletionException(e);
+            } catch (ExecutionException e) {
+                logger.warn(e.getCause());
+            }
+        }
+    }
+
+    private void updateBatch(Collection<Long> ids, Semaphore connections) {
+        // the recordings known for each target are retrieved before the targets are probed, so
+        // that recordings created in the meantime are not mistaken for ones removed from the target
+        Map<Long, Set<Long>> knownRecordingIds = new HashMap<>();
+        List<Target> targets =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    List<Target> list = Target.<Target>list("id in ?1", ids);
+                                    list.forEach(
+                                            t ->
+                                                    knownRecordingIds.put(
+                                                            t.id,
+                                                            recordingHelper.knownRecordingIds(
+                                                                    t.id)));
+                                    return list;
+                                });
+        if (targets.size() < ids.size()) {
+            ids.stream()
+                    .filter(id -> targets.stream().noneMatch(t -> id.equals(t.id)))
+                    .forEach(this::forget);
+        }
+
+        List<Future<Probe>> pending = new ArrayList<>(targets.size());
+        for (Target target : targets) {
+            pending.add(
+                    executor.submit(
+                            () -> {
+                                connections.acquire();
+                                try {
+                                    return probe(target, knownRecordingIds.get(target.id));
+                                } finally {
+                                    connections.release();
+                                }
+                            }));
+        }
+        List<Probe> probes = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                probes.add(pending.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.forEach(f -> f.cancel(true));
+                return;
+            } catch (ExecutionException e) {
+                failed.increment();
+                Target target = targets.get(i);
+                logger.debugv(
+                        e.getCause(),
+                        "Failed to update target {0} ({1})",
+                        target.connectUrl,
+                        target.alias);
+            }
+        }
+        if (probes.isEmpty()) {
             return;
         }
-        scheduler.scheduleJob(job, trigger);
+
+        List<ActiveRecording> recordings;
+        try {
+            recordings = QuarkusTransaction.requiringNew().call(() -> write(probes));
+            updated.increment(probes.size());
+        } catch (Exception e) {
+            // one bad target should not lose the whole batch, so retry each individually
+            logger.debugv(
+                    e, "Batched target update failed, retrying {0} individually", probes.size());
+            recordings = new ArrayList<>();
+            for (Probe probe : probes) {
+                try {
+                    recordings.addAll(
+                            QuarkusTransaction.requiringNew().call(() -> write(List.of(probe))));
+                    updated.increment();
+                } catch (Exception ex) {
+                    failed.increment();
+                    logger.warnv(ex, "Failed to update target {0}", probe.targetId());
+                }
+            }
+        }
+        recordings.forEach(this::fireActiveRecordingUpdate);
+    }
+
+    /** Retrieve the target's state over a single connection, outside of any transaction. */
+    private Probe probe(Target target, Set<Long> knownRecordingIds) {
+        boolean needsJvmId = StringUtils.isBlank(target.jvmId);
+        return connectionManager.executeConnectedTask(
+                target,
+                conn ->
+                        new Probe(
+                                target.id,
+                                needsJvmId
+                                        ? Optional.of(conn.getJvmIdentifier().getHash())
+                                        : Optional.empty(),
+                                knownRecordingIds,
+                                conn.getService().getAvailableRecordings()));
+    }
+
+    private List<ActiveRecording> write(List<Probe> probes) {
+        List<ActiveRecording> recordings = new ArrayList<>();
+        for (Probe probe : probes) {
+            Target target = Target.findById(probe.targetId());
+            if (target == null) {
+                forget(probe.targetId());
+                continue;
+            }
+            if (probe.jvmId().isPresent() && StringUtils.isBlank(target.jvmId)) {
+                target.jvmId = probe.jvmId().get();
+                logger.debugv(
+                        "Updated JVM ID for target {0} ({1}) = {2}",
+                        target.connectUrl, target.alias, target.jvmId);
+            }
+            recordings.addAll(
+                    recordingHelper.syncActiveRecordings(
+                            target, probe.knownRecordingIds(), probe.recordings()));
+        }
+        return recordings;
+    }
+
+    private long next(long now) {
+        long base = period.toMillis();
+        long j = jitter.toMillis();
+        if (j > 0) {
+            base += ThreadLocalRandom.current().nextLong(-j, j + 1);
+        }
+        return now + Math.max(1000, base);
+    }
+
+    private void forget(long targetId) {
+        due.remove(targetId);
+        pushed.remove(targetId);
+        connectUrls.remove(targetId);
     }
 
     void fireActiveRecordingUpdate(ActiveRecording recording) {
@@ -189,4 +472,10 @@ public class TargetUpdateService {
             logger.error(se);
         }
     }
+
+    private record Probe(
+            long targetId,
+            Optional<String> jvmId,
+            Set<Long> knownRecordingIds,
+            List<IRecordingDescriptor> recordings) {}
 }
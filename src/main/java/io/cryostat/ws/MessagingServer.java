@@ -18,14 +18,32 @@ package io.cryostat.ws;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import io.cryostat.ConfigProperties;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.events.TargetNotificationObserver;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.scheduler.Scheduled;
 import io.quarkus.vertx.ConsumeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.websocket.OnClose;
@@ -34,6 +52,7 @@ import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerEndpoint;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 /**
@@ -45,6 +64,13 @@ import org.jboss.logging.Logger;
  * response may initially be a Job UUID which will later be included in a WebSocket notification
  * indicating job completion.
  *
+ * <p>Each notification is serialized once and queued separately for each client, see {@link
+ * SessionChannel}, so that a slow client neither holds up other clients nor accumulates an
+ * unbounded backlog. Clients which connect with the query parameter {@code batch=true} receive
+ * frames containing JSON arrays of notifications rather than a single notification per frame.
+ * Clients may also send a {@link NotificationSubscription} message at any time to receive only the
+ * notification categories and targets they are interested in.
+ *
  * @see io.cryostat.recordings.LongRunningRequestGenerator
  * @see io.cryostat.reports.Reports
  */
@@ -52,28 +78,117 @@ import org.jboss.logging.Logger;
 @ServerEndpoint("/api/notifications")
 public class MessagingServer {
 
-    private static final String CLIENT_ACTIVITY_CATEGORY = "WsClientActivity";
+    static final String METER_PREFIX = "cryostat.websocket";
+    static final String BATCH_PARAMETER = "batch";
     private static final ByteBuffer PING_MSG =
             ByteBuffer.wrap("ping".getBytes(StandardCharsets.UTF_8));
 
     @Inject ObjectMapper mapper;
     @Inject Logger logger;
-    private final Set<Session> sessions = new CopyOnWriteArraySet<>();
+    @Inject MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = ConfigProperties.WEBSOCKET_QUEUE_MAX_SIZE)
+    int maxQueueSize;
+
+    @ConfigProperty(name = ConfigProperties.WEBSOCKET_BATCH_MAX_SIZE)
+    int maxBatchSize;
+
+    @ConfigProperty(name = ConfigProperties.WEBSOCKET_COALESCE_WINDOW)
+    Duration coalesceWindow;
+
+    private final ConcurrentMap<String, SessionChannel> channels = new ConcurrentHashMap<>();
+    // labels by JVM ID, for evaluating subscriptions with label filters
+    private final ConcurrentMap<String, Map<String, String>> targetLabels =
+            new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private SessionChannel.Meters meters;
+
+    @PostConstruct
+    void init() {
+        Counter sent =
+                Counter.builder(METER_PREFIX + ".notifications")
+                        .description("Notifications delivered to WebSocket clients")
+                        .tag("result", "sent")
+                        .register(meterRegistry);
+        Counter coalesced =
+                Counter.builder(METER_PREFIX + ".notifications")
+                        .description("Notifications delivered to WebSocket clients")
+                        .tag("result", "coalesced")
+                        .register(meterRegistry);
+        Counter dropped =
+                Counter.builder(METER_PREFIX + ".notifications")
+                        .description("Notifications delivered to WebSocket clients")
+                        .tag("result", "dropped")
+                        .register(meterRegistry);
+        Counter frames =
+                Counter.builder(METER_PREFIX + ".frames")
+                        .description("Notification frames sent to WebSocket clients")
+                        .register(meterRegistry);
+        Timer lag =
+                Timer.builder(METER_PREFIX + ".notifications.lag")
+                        .description(
+                                "Time from a notification being queued for a WebSocket client to"
+                                        + " its delivery")
+                        .register(meterRegistry);
+        this.meters = new SessionChannel.Meters(sent, frames, coalesced, dropped, lag);
+        Gauge.builder(
+                        METER_PREFIX + ".sessions.queued",
+                        channels,
+                        c -> c.values().stream().mapToInt(SessionChannel::queued).sum())
+                .description("Notifications queued for all WebSocket clients")
+                .register(meterRegistry);
+        Gauge.builder(
+                        METER_PREFIX + ".sessions.max-lag",
+                        channels,
+                        c ->
+                                c.values().stream()
+                                        .mapToLong(SessionChannel::lagNanos)
+                                        .max()
+                                        .orElse(0)
+                                        / 1e9)
+                .description("Age in seconds of the oldest notification queued for any client")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
 
     @OnOpen
     public void onOpen(Session session) throws InterruptedException {
         logger.debugv("Adding session {0}", session.getId());
-        sessions.add(session);
-        broadcast(new Notification(CLIENT_ACTIVITY_CATEGORY, Map.of(session.getId(), "connected")));
+        boolean batching =
+                Optional.ofNullable(session.getRequestParameterMap())
+                        .map(params -> params.get(BATCH_PARAMETER))
+                        .filter(values -> values.contains("true"))
+                        .isPresent();
+        channels.put(
+                session.getId(),
+                new SessionChannel(
+                        session,
+                        batching,
+                        maxQueueSize,
+                        maxBatchSize,
+                        coalesceWindow,
+                        timer,
+                        meters,
+                        logger));
+        broadcast(
+                new Notification(
+                        NotificationPolicy.CLIENT_ACTIVITY_CATEGORY,
+                        Map.of(session.getId(), "connected")));
     }
 
     @OnClose
     public void onClose(Session session) throws InterruptedException {
         logger.debugv("Removing session {0}", session.getId());
-        sessions.remove(session);
+        remove(session);
         broadcast(
                 new Notification(
-                        CLIENT_ACTIVITY_CATEGORY, Map.of(session.getId(), "disconnected")));
+                        NotificationPolicy.CLIENT_ACTIVITY_CATEGORY,
+                        Map.of(session.getId(), "disconnected")));
     }
 
     @OnError
@@ -85,19 +200,62 @@ public class MessagingServer {
         } catch (IOException ioe) {
             logger.error("Unable to close session", ioe);
         }
-        sessions.remove(session);
+        remove(session);
         broadcast(
                 new Notification(
-                        CLIENT_ACTIVITY_CATEGORY, Map.of(session.getId(), "disconnected")));
+                        NotificationPolicy.CLIENT_ACTIVITY_CATEGORY,
+                        Map.of(session.getId(), "disconnected")));
     }
 
     @OnMessage
     public void onMessage(Session session, String message) {
         logger.debugv("{0} message: \"{1}\"", session.getId(), message);
+        SessionChannel channel = channels.get(session.getId());
+        if (channel == null) {
+            return;
+        }
+        NotificationSubscription.parse(mapper, message)
+                .ifPresentOrElse(
+                        subscription -> {
+                            channel.subscribe(subscription);
+                            logger.debugv(
+                                    "{0} subscribed: {1}", session.getId(), channel.subscription());
+                        },
+                        () ->
+                                logger.debugv(
+                                        "{0} sent a message which is not a subscription",
+                                        session.getId()));
     }
 
     @ConsumeEvent(blocking = true, ordered = true)
     void broadcast(Notification notification) {
+        NotificationPolicy.discovery(notification).ifPresent(this::trackLabels);
+
+        // filters are evaluated before serializing, once per distinct subscription rather than once
+        // per session, and the notification is not serialized at all if nobody wants it
+        Optional<String> jvmId = Optional.empty();
+        boolean jvmIdResolved = false;
+        Map<NotificationSubscription, Boolean> decisions = new HashMap<>();
+        List<SessionChannel> recipients = new ArrayList<>(channels.size());
+        for (SessionChannel channel : channels.values()) {
+            NotificationSubscription subscription = channel.subscription();
+            Boolean matches = decisions.get(subscription);
+            if (matches == null) {
+                if (!jvmIdResolved && subscription.filtersTargets()) {
+                    jvmId = NotificationPolicy.jvmId(notification);
+                    jvmIdResolved = true;
+                }
+                matches = subscription.matches(notification.category(), jvmId, this::labelsOf);
+                decisions.put(subscription, matches);
+            }
+            if (matches) {
+                recipients.add(channel);
+            }
+        }
+        if (recipients.isEmpty()) {
+            return;
+        }
+
         var map =
                 Map.of(
                         "meta",
@@ -112,27 +270,72 @@ public class MessagingServer {
             return;
         }
         logger.debugv("Broadcasting: {0}", json);
-        sessions.forEach(
-                s ->
-                        s.getAsyncRemote()
-                                .sendText(
-                                        json,
-                                        h -> {
-                                            if (!h.isOK()) {
-                                                logger.warn(h.getException());
-                                            }
-                                        }));
+        var outbound =
+                new SessionChannel.Outbound(
+                        NotificationPolicy.coalesceKey(notification),
+                        NotificationPolicy.droppable(notification),
+                        json);
+        recipients.forEach(c -> c.offer(outbound));
     }
 
     @Scheduled(every = "${cryostat.websocket.ping-period:20s}")
     void pingClients() {
-        sessions.forEach(
-                session -> {
-                    try {
-                        session.getBasicRemote().sendPing(PING_MSG);
-                    } catch (IOException e) {
-                        logger.debug(e);
-                    }
-                });
+        channels.values().stream()
+                .map(SessionChannel::session)
+                .forEach(
+                        session -> {
+                            try {
+                                session.getBasicRemote().sendPing(PING_MSG);
+                            } catch (IOException e) {
+                                logger.debug(e);
+                            }
+                        });
+    }
+
+    List<SessionChannel> channels() {
+        return List.copyOf(channels.values());
+    }
+
+    private void trackLabels(TargetNotificationObserver.TargetDiscovery event) {
+        if (event.jvmId() == null) {
+            return;
+        }
+        switch (event.kind()) {
+            case LOST:
+                targetLabels.remove(event.jvmId());
+                break;
+            default:
+                if (event.serviceRef() != null) {
+                    targetLabels.put(event.jvmId(), event.serviceRef().labels());
+                }
+                break;
+        }
+    }
+
+    private Map<String, String> labelsOf(String jvmId) {
+        Map<String, String> labels = targetLabels.get(jvmId);
+        if (labels != null) {
+            return labels;
+        }
+        // the target was discovered before this server instance saw its discovery notification
+        labels =
+                QuarkusTransaction.joiningExisting()
+                        .call(
+                                () ->
+                                        Target.getTargetByJvmId(jvmId)
+                                                .map(t -> Map.copyOf(t.labels))
+                                                .orElse(null));
+        if (labels == null) {
+            return Map.of();
+        }
+        targetLabels.putIfAbsent(jvmId, labels);
+        return labels;
+    }
+
+    private void remove(Session session) {
+        SessionChannel channel = channels.remove(session.getId());
+        if (channel != null) {
+            channel.close();
+        }
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import java.util.Map;
+import java.util.Optional;
+
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.events.TargetNotificationObserver;
+import io.cryostat.ws.notifications.JvmScopedPayload;
+
+/**
+ * Per-category delivery policy for notifications queued for a client. Notifications with a coalesce
+ * key supersede any queued notification with the same key which has not been sent yet, so that a
+ * slow client only receives the latest state. Droppable notifications are the first to be discarded
+ * when a client's queue is full.
+ */
+final class NotificationPolicy {
+
+    static final String CLIENT_ACTIVITY_CATEGORY = "WsClientActivity";
+
+    private NotificationPolicy() {}
+
+    /** The JVM ID of the target this notification concerns, if any. */
+    static Optional<String> jvmId(Notification notification) {
+        Object message = notification.message();
+        if (message instanceof TargetNotificationObserver.NotificationPayload payload) {
+            return Optional.ofNullable(payload.event().jvmId());
+        }
+        if (message instanceof Map<?, ?> map) {
+            return map.get("jvmId") instanceof String jvmId ? Optional.of(jvmId) : Optional.empty();
+        }
+        if (message instanceof JvmScopedPayload payload) {
+            return Optional.ofNullable(payload.jvmId());
+        }
+        return Optional.empty();
+    }
+
+    /** The target discovery event carried by this notification, if it is one. */
+    static Optional<TargetNotificationObserver.TargetDiscovery> discovery(
+            Notification notification) {
+        if (Target.TARGET_JVM_DISCOVERY.equals(notification.category())
+                && notification.message()
+                        instanceof TargetNotificationObserver.NotificationPayload payload) {
+            return Optional.of(payload.event());
+        }
+        return Optional.empty();
+    }
+
+    static Optional<String> coalesceKey(Notification notification) {
+        switch (notification.category()) {
+            case Target.TARGET_JVM_DISCOVERY:
+                if (notification.message()
+                        instanceof TargetNotificationObserver.NotificationPayload payload) {
+                    var event = payload.event();
+                    // a FOUND followed by a MODIFIED must still reach the client as a FOUND, so
+                    // only events of the same kind collapse. LOST events are always delivered
+                    if (event.kind() == EventKind.LOST || event.serviceRef() == null) {
+                        return Optional.empty();
+                    }
+                    // keyed by the target rather than its JVM ID, since distinct targets (ex. an
+                    // agent URL and a JMX URL) may refer to the same JVM
+                    return Optional.of(
+                            String.format(
+                                    "%s/%s/%d",
+                                    notification.category(),
+                                    event.kind(),
+                                    event.serviceRef().id()));
+                }
+                return Optional.empty();
+            case CLIENT_ACTIVITY_CATEGORY:
+                if (notification.message() instanceof Map<?, ?> activity && activity.size() == 1) {
+                    return Optional.of(
+                            String.format(
+                                    "%s/%s",
+                                    notification.category(), activity.keySet().iterator().next()));
+                }
+                return Optional.empty();
+            default:
+                return Optional.empty();
+        }
+    }
+
+    static boolean droppable(Notification notification) {
+        switch (notification.category()) {
+            case CLIENT_ACTIVITY_CATEGORY:
+                return true;
+            case Target.TARGET_JVM_DISCOVERY:
+                return notification.message()
+                                instanceof TargetNotificationObserver.NotificationPayload payload
+                        && payload.event().kind() == EventKind.MODIFIED;
+            default:
+                return false;
+        }
+    }
+}
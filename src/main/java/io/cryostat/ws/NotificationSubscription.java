@@ -0,0 +1,164 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Filter sent by a WebSocket client to limit which notifications it receives. Each field is
+ * optional, and an empty field does not filter at all, so the empty subscription {@code {}}
+ * receives everything, as clients did before subscriptions existed. The target filters only apply
+ * to notifications about a specific target, which are delivered if its JVM ID is one of {@code
+ * jvmIds} and its labels include every entry of {@code labels}. Notifications which do not concern
+ * any particular target, such as template uploads, are filtered by category only.
+ *
+ * <p>Example: {@code {"categories": ["ActiveRecordingCreated"], "labels": {"app": "petclinic"}}}
+ */
+public record NotificationSubscription(
+        Set<String> categories, Set<String> jvmIds, Map<String, String> labels) {
+
+    public static final NotificationSubscription ALL =
+            new NotificationSubscription(Set.of(), Set.of(), Map.of());
+
+    public NotificationSubscription {
+        categories = categories != null ? Set.copyOf(categories) : Set.of();
+        jvmIds = jvmIds != null ? Set.copyOf(jvmIds) : Set.of();
+        labels = labels != null ? Map.copyOf(labels) : Map.of();
+    }
+
+    /**
+     * Parse a subscription message sent by a client. Only a JSON object with the subscription's
+     * fields is accepted, so that unrelated client messages are not mistaken for subscriptions.
+     *
+     * @return the subscription, or empty if the message is not a well-formed subscription
+     */
+    static Optional<NotificationSubscription> parse(ObjectMapper mapper, String message) {
+        JsonNode node;
+        try {
+            node = mapper.readTree(message);
+        } catch (JsonProcessingException e) {
+            return Optional.empty();
+        }
+        if (node == null || !node.isObject()) {
+            return Optional.empty();
+        }
+        Set<String> categories = new HashSet<>();
+        Set<String> jvmIds = new HashSet<>();
+        Map<String, String> labels = new HashMap<>();
+        var fields = node.fields();
+        while (fields.hasNext()) {
+            var field = fields.next();
+            JsonNode value = field.getValue();
+            boolean valid;
+            switch (field.getKey()) {
+                case "categories":
+                    valid = readStrings(value, categories);
+                    break;
+                case "jvmIds":
+                    valid = readStrings(value, jvmIds);
+                    break;
+                case "labels":
+                    valid = readLabels(value, labels);
+                    break;
+                default:
+                    valid = false;
+                    break;
+            }
+            if (!valid) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new NotificationSubscription(categories, jvmIds, labels));
+    }
+
+    private static boolean readStrings(JsonNode node, Set<String> into) {
+        if (node.isNull()) {
+            return true;
+        }
+        if (!node.isArray()) {
+            return false;
+        }
+        for (JsonNode element : node) {
+            if (!element.isTextual()) {
+                return false;
+            }
+            into.add(element.textValue());
+        }
+        return true;
+    }
+
+    private static boolean readLabels(JsonNode node, Map<String, String> into) {
+        if (node.isNull()) {
+            return true;
+        }
+        if (!node.isObject()) {
+            return false;
+        }
+        var entries = node.fields();
+        while (entries.hasNext()) {
+            var entry = entries.next();
+            if (!entry.getValue().isTextual()) {
+                return false;
+            }
+            into.put(entry.getKey(), entry.getValue().textValue());
+        }
+        return true;
+    }
+
+    boolean filtersTargets() {
+        return !jvmIds.isEmpty() || !labels.isEmpty();
+    }
+
+    /**
+     * @param category the notification category
+     * @param jvmId the JVM ID of the target the notification concerns, if any
+     * @param labelsOf resolves the current labels of a target by JVM ID. Only called if this
+     *     subscription filters by label
+     */
+    boolean matches(
+            String category,
+            Optional<String> jvmId,
+            Function<String, Map<String, String>> labelsOf) {
+        if (!categories.isEmpty() && !categories.contains(category)) {
+            return false;
+        }
+        if (!filtersTargets() || jvmId.isEmpty()) {
+            return true;
+        }
+        if (!jvmIds.isEmpty() && !jvmIds.contains(jvmId.get())) {
+            return false;
+        }
+        if (labels.isEmpty()) {
+            return true;
+        }
+        Map<String, String> targetLabels = labelsOf.apply(jvmId.get());
+        for (var e : labels.entrySet()) {
+            if (!e.getValue().equals(targetLabels.get(e.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import jakarta.websocket.Session;
+import org.jboss.logging.Logger;
+
+/**
+ * Bounded outbound notification queue for a single WebSocket session. At most one frame is in
+ * flight to the client at a time, and notifications which arrive meanwhile are queued, coalesced
+ * according to their {@link NotificationPolicy}, and sent once the previous frame completes. If
+ * the queue is full, the oldest droppable notification is discarded, or the oldest notification if
+ * none are droppable. Sessions which opted in to batching receive all queued notifications, up to
+ * a limit, as a single frame containing a JSON array rather than one frame per notification.
+ */
+final class SessionChannel {
+
+    record Outbound(Optional<String> coalesceKey, boolean droppable, String json) {}
+
+    record Meters(Counter sent, Counter frames, Counter coalesced, Counter dropped, Timer lag) {}
+
+    private record Queued(Outbound outbound, long enqueuedNanos) {}
+
+    private final Session session;
+    private final boolean batching;
+    private final int maxQueueSize;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final ScheduledExecutorService timer;
+    private final Meters meters;
+    private final Logger logger;
+
+    // insertion ordered. Coalescible notifications are keyed by their coalesce key, others by a
+    // unique sequence number
+    private final LinkedHashMap<Object, Queued> queue = new LinkedHashMap<>();
+    private long sequence;
+    private boolean sending;
+    private boolean flushScheduled;
+    private boolean closed;
+    private volatile NotificationSubscription subscription = NotificationSubscription.ALL;
+
+    SessionChannel(
+            Session session,
+            boolean batching,
+            int maxQueueSize,
+            int maxBatchSize,
+            Duration window,
+            ScheduledExecutorService timer,
+            Meters meters,
+            Logger logger) {
+        this.session = session;
+        this.batching = batching;
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.window = window;
+        this.timer = timer;
+        this.meters = meters;
+        this.logger = logger;
+    }
+
+    Session session() {
+        return session;
+    }
+
+    NotificationSubscription subscription() {
+        return subscription;
+    }
+
+    void subscribe(NotificationSubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    void offer(Outbound outbound) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            Object key;
+            if (outbound.coalesceKey().isPresent()) {
+                key = outbound.coalesceKey().get();
+                // re-inserting moves the notification to the back of the queue, behind anything
+                // which was queued after the notification it supersedes
+                if (queue.remove(key) != null) {
+                    meters.coalesced().increment();
+                }
+            } else {
+                key = sequence++;
+            }
+            while (queue.size() >= maxQueueSize) {
+                evict();
+            }
+            queue.put(key, new Queued(outbound, now));
+            if (sending || flushScheduled) {
+                return;
+            }
+            if (!window.isZero() && !window.isNegative()) {
+                // linger briefly so that bursts are coalesced and batched before the first send
+                flushScheduled = true;
+                timer.schedule(this::scheduledFlush, window.toNanos(), TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+        flush();
+    }
+
+    /** Number of notifications waiting to be sent. */
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    /** How long the oldest queued notification has been waiting, in nanoseconds. */
+    synchronized long lagNanos() {
+        if (queue.isEmpty()) {
+            return 0;
+        }
+        return System.nanoTime() - queue.values().iterator().next().enqueuedNanos();
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    private void scheduledFlush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        flush();
+    }
+
+    private void flush() {
+        String frame;
+        List<Queued> taken = new ArrayList<>();
+        synchronized (this) {
+            if (closed || sending || queue.isEmpty()) {
+                return;
+            }
+            int limit = batching ? maxBatchSize : 1;
+            Iterator<Queued> it = queue.values().iterator();
+            while (it.hasNext() && taken.size() < limit) {
+                taken.add(it.next());
+                it.remove();
+            }
+            sending = true;
+        }
+        if (batching) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < taken.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(taken.get(i).outbound().json());
+            }
+            frame = sb.append(']').toString();
+        } else {
+            frame = taken.get(0).outbound().json();
+        }
+        try {
+            session.getAsyncRemote()
+                    .sendText(
+                            frame,
+                            result -> {
+                                if (result.isOK()) {
+                                    long now = System.nanoTime();
+                                    taken.forEach(
+                                            q ->
+                                                    meters.lag()
+                                                            .record(
+                                                                    now - q.enqueuedNanos(),
+                                                                    TimeUnit.NANOSECONDS));
+                                    meters.sent().increment(taken.size());
+                                    meters.frames().increment();
+                                } else {
+                                    logger.warn(result.getException());
+                                }
+                                synchronized (this) {
+                                    sending = false;
+                                }
+                                flush();
+                            });
+        } catch (RuntimeException e) {
+            // the session was closed or is otherwise unusable
+            logger.debug(e);
+            close();
+        }
+    }
+
+    private void evict() {
+        Iterator<Queued> it = queue.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().outbound().droppable()) {
+                it.remove();
+                meters.dropped().increment();
+                return;
+            }
+        }
+        it = queue.values().iterator();
+        it.next();
+        it.remove();
+        meters.dropped().increment();
+    }
+}
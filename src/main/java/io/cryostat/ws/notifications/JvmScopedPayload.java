@@ -0,0 +1,29 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws.notifications;
+
+/**
+ * Notification payload concerning a single target JVM. WebSocket clients may subscribe to only the
+ * notifications concerning particular JVMs, and notifications with payloads implementing this are
+ * delivered to them according to its JVM ID.
+ */
+public interface JvmScopedPayload {
+
+    /**
+     * @return the JVM ID of the target this payload concerns, or null if it is not known
+     */
+    String jvmId();
+}
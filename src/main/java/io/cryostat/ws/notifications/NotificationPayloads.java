@@ -40,7 +40,8 @@ public final class NotificationPayloads {
         }
     }
 
-    public record HeapDumpAnalysisSuccessPayload(String jobId, String jvmId, String heapDumpId) {
+    public record HeapDumpAnalysisSuccessPayload(String jobId, String jvmId, String heapDumpId)
+            implements JvmScopedPayload {
         public HeapDumpAnalysisSuccessPayload {
             Objects.requireNonNull(jobId);
             Objects.requireNonNull(jvmId);
@@ -83,7 +84,7 @@ public final class NotificationPayloads {
         }
     }
 
-    public record ReportSuccessPayload(String jobId, String jvmId) {
+    public record ReportSuccessPayload(String jobId, String jvmId) implements JvmScopedPayload {
         public ReportSuccessPayload {
             Objects.requireNonNull(jobId);
             Objects.requireNonNull(jvmId);
@@ -97,14 +98,15 @@ public final class NotificationPayloads {
         }
     }
 
-    public record ProbeTemplateAppliedPayload(String jvmId, String probeTemplate) {
+    public record ProbeTemplateAppliedPayload(String jvmId, String probeTemplate)
+            implements JvmScopedPayload {
         public ProbeTemplateAppliedPayload {
             Objects.requireNonNull(jvmId);
             Objects.requireNonNull(probeTemplate);
         }
     }
 
-    public record ProbesRemovedPayload(String jvmId, String target) {
+    public record ProbesRemovedPayload(String jvmId, String target) implements JvmScopedPayload {
         public ProbesRemovedPayload {
             Objects.requireNonNull(jvmId);
             Objects.requireNonNull(target);
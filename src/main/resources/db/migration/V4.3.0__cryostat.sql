@@ -0,0 +1,15 @@
+-- Extend the ArchivedRecording table into a catalog of archived recordings, so that listing and
+-- querying archives is served by the database rather than by listing and fetching metadata for
+-- every object in the archives bucket. Pre-existing rows are backfilled by the archive index
+-- reconciler, which recognizes them by archivedTime = 0.
+ALTER TABLE ArchivedRecording ADD COLUMN fileSize BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ArchivedRecording ADD COLUMN archivedTime BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ArchivedRecording ADD COLUMN metadata jsonb NOT NULL DEFAULT '{"labels":{}}';
+
+ALTER TABLE ArchivedRecording_AUD ADD COLUMN fileSize BIGINT;
+ALTER TABLE ArchivedRecording_AUD ADD COLUMN archivedTime BIGINT;
+ALTER TABLE ArchivedRecording_AUD ADD COLUMN metadata jsonb;
+
+CREATE INDEX IDX_ARCHIVEDRECORDING_JVMID_ARCHIVEDTIME ON ArchivedRecording (jvmId, archivedTime);
+CREATE INDEX IDX_ARCHIVEDRECORDING_ARCHIVEDTIME ON ArchivedRecording (archivedTime);
+CREATE INDEX IDX_ARCHIVEDRECORDING_METADATA ON ArchivedRecording USING GIN (metadata jsonb_path_ops);
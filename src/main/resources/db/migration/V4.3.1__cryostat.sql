@@ -0,0 +1,3 @@
+-- Discovery node label selectors in GraphQL queries are evaluated in the database as JSONB
+-- containment checks, which this index serves.
+CREATE INDEX IDX_DISCOVERYNODE_LABELS ON DiscoveryNode USING GIN (labels jsonb_path_ops);
@@ -0,0 +1,3 @@
+-- Container discovery reconciles the targets belonging to its realm by the REALM annotation, which
+-- this index serves.
+CREATE INDEX IDX_TARGET_REALM ON Target ((annotations->'cryostat'->>'REALM'));
@@ -0,0 +1,3 @@
+-- Active recording synchronization merges the recordings retrieved from a target without locking
+-- the target, and detects concurrent modifications of the same recording by this version.
+ALTER TABLE ActiveRecording ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- Whether periodic pings prompt a discovery plugin to refresh its registration, rather than just
+-- checking that it is reachable. This was previously kept only by each plugin's ping job. Existing
+-- plugins default to refreshing, as plugins registered through the generic registration endpoint
+-- did, and Agents registered through their own endpoint reset this when they next register.
+ALTER TABLE DiscoveryPlugin ADD COLUMN refreshOnPing BOOLEAN NOT NULL DEFAULT TRUE;
+ALTER TABLE DiscoveryPlugin_AUD ADD COLUMN refreshOnPing BOOLEAN;
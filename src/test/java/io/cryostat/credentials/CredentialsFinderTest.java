@@ -0,0 +1,117 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.credentials;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+
+import io.cryostat.AbstractTransactionalTestBase;
+import io.cryostat.expressions.MatchExpression;
+import io.cryostat.targets.Target;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class CredentialsFinderTest extends AbstractTransactionalTestBase {
+
+    @Inject CredentialsFinder finder;
+
+    @BeforeEach
+    void resetFinder() {
+        // the database is reset between tests without any credential events, so drop anything
+        // cached by earlier tests. An update to the lowest possible ID affects every entry
+        Credential any = new Credential();
+        any.id = 0L;
+        finder.onCredentialsUpdated(any);
+    }
+
+    @Test
+    void testFirstMatchingCredentialWins() {
+        store("target.labels['tier'] == 'backend'", "backend-user");
+        store("true", "fallback-user");
+
+        Optional<Credential> backend = finder.getCredentialsForTarget(target(2001L, "backend"));
+        Optional<Credential> frontend = finder.getCredentialsForTarget(target(2002L, "frontend"));
+
+        MatcherAssert.assertThat(
+                backend.map(c -> c.username), Matchers.equalTo(Optional.of("backend-user")));
+        MatcherAssert.assertThat(
+                frontend.map(c -> c.username), Matchers.equalTo(Optional.of("fallback-user")));
+    }
+
+    @Test
+    void testStoredCredentialReplacesCachedMiss() {
+        Target target = target(2003L, "frontend");
+        MatcherAssert.assertThat(
+                finder.getCredentialsForTarget(target), Matchers.equalTo(Optional.empty()));
+
+        Credential credential = store("target.labels['tier'] == 'frontend'", "frontend-user");
+
+        MatcherAssert.assertThat(
+                finder.getCredentialsForTarget(target).map(c -> c.id),
+                Matchers.equalTo(Optional.of(credential.id)));
+    }
+
+    @Test
+    void testDeletedCredentialIsNoLongerResolved() {
+        Credential credential = store("true", "user");
+        Target target = target(2004L, "backend");
+        MatcherAssert.assertThat(
+                finder.getCredentialsForTarget(target).map(c -> c.id),
+                Matchers.equalTo(Optional.of(credential.id)));
+
+        QuarkusTransaction.requiringNew().run(() -> Credential.deleteById(credential.id));
+        finder.onCredentialsDeleted(credential);
+
+        MatcherAssert.assertThat(
+                finder.getCredentialsForTarget(target), Matchers.equalTo(Optional.empty()));
+    }
+
+    private Credential store(String matchExpression, String username) {
+        Credential stored =
+                QuarkusTransaction.requiringNew()
+                        .call(
+                                () -> {
+                                    Credential credential = new Credential();
+                                    credential.matchExpression =
+                                            new MatchExpression(matchExpression);
+                                    credential.username = username;
+                                    credential.password = "pass";
+                                    credential.persist();
+                                    return credential;
+                                });
+        // deliver the stored event synchronously rather than waiting for the event bus
+        finder.onCredentialsStored(stored);
+        return stored;
+    }
+
+    private static Target target(long id, String tier) {
+        Target target = new Target();
+        target.id = id;
+        target.alias = "target-" + id;
+        target.connectUrl =
+                URI.create("service:jmx:rmi:///jndi/rmi://target-" + id + ":9091/jmxrmi");
+        target.labels = Map.of("tier", tier);
+        return target;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AimdLimiterTest {
+
+    @Test
+    void testSuccessesIncreaseLimitAdditively() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, Duration.ofMinutes(1));
+
+        // 2 -> 2.5 -> 2.9 -> 3.24
+        for (int i = 0; i < 3; i++) {
+            limiter.release(limiter.acquire(), true);
+        }
+        Assertions.assertEquals(3, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.release(limiter.acquire(), true);
+        }
+        Assertions.assertTrue(limiter.getLimit() <= 10);
+        Assertions.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testFailureHalvesLimitOncePerInFlightWindow() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(8, 1, 10, Duration.ofMinutes(1));
+
+        long a = limiter.acquire();
+        long b = limiter.acquire();
+        limiter.release(a, false);
+        limiter.release(b, false);
+        Assertions.assertEquals(4, limiter.getLimit());
+
+        limiter.release(limiter.acquire(), false);
+        Assertions.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void testSlowSuccessDecreasesLimit() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 10, Duration.ofNanos(1));
+
+        long start = limiter.acquire();
+        Thread.sleep(5);
+        limiter.release(start, true);
+
+        Assertions.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void testLimitNeverBelowMinimum() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(2, 2, 10, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+
+        Assertions.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void testAcquireBlocksAtLimit() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(1, 1, 1, Duration.ofMinutes(1));
+        limiter.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter =
+                Thread.ofVirtual()
+                        .start(
+                                () -> {
+                                    try {
+                                        limiter.acquire();
+                                        acquired.countDown();
+                                    } catch (InterruptedException e) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                });
+
+        Assertions.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.cancel();
+        Assertions.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        Assertions.assertEquals(1, limiter.getInFlight());
+    }
+}
@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 import java.util.UUID;
@@ -39,8 +40,6 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
-import org.quartz.JobDataMap;
-import org.quartz.JobExecutionContext;
 
 @QuarkusTest
 public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBase {
@@ -48,14 +47,17 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
     @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_MAX_FAILURES)
     int maxConsecutiveFailures;
 
-    @Inject Discovery.RefreshPluginJob refreshPluginJob;
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_STARTUP_GRACE_PERIOD)
+    Duration startupGracePeriod;
+
+    @ConfigProperty(name = ConfigProperties.DISCOVERY_PLUGINS_PING_JITTER)
+    Duration jitter;
+
+    @Inject PluginPingService pingService;
     @Inject AgentClient.Factory agentClientFactory;
 
     @InjectMock PluginCallbackFactory callbackFactory;
 
-    private static final String PLUGIN_ID_MAP_KEY = "pluginId";
-    private static final String REFRESH_MAP_KEY = "refresh";
-
     private PluginCallback mockCallback;
 
     @BeforeEach
@@ -130,18 +132,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
         // Simulate ping failures
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // First failure
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
         var updatedPlugin1 =
                 QuarkusTransaction.requiringNew()
@@ -161,11 +153,7 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
                         });
 
         // Second failure
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
         var updatedPlugin2 =
                 QuarkusTransaction.requiringNew()
@@ -211,18 +199,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         doThrow(new ProcessingException("Connection refused")).when(mockCallback).ping();
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // This failure should trigger deletion
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.REMOVED, pingService.ping(pluginId, false));
 
         var deletedPlugin = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
         assertNull(deletedPlugin, "Plugin should be deleted after max consecutive failures");
@@ -294,14 +272,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
                             plugin.persist();
                         });
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // Execute successful ping
-        refreshPluginJob.execute(context);
+        assertEquals(PluginPingService.Outcome.SUCCESS, pingService.ping(pluginId, false));
 
         DiscoveryPlugin updatedPlugin =
                 QuarkusTransaction.requiringNew()
@@ -353,19 +325,9 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         doThrow(new ProcessingException("Connection refused")).when(mockCallback).ping();
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // Execute failures up to max-1
         for (int i = 0; i < maxConsecutiveFailures - 1; i++) {
-            try {
-                refreshPluginJob.execute(context);
-            } catch (Exception e) {
-                // Expected to fail
-            }
+            assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
             // Clear backoff to allow next ping attempt
             if (i < maxConsecutiveFailures - 2) {
@@ -427,18 +389,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         doThrow(new ProcessingException("Connection refused")).when(mockCallback).ping();
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // Execute failure
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
         var updatedPlugin = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
         assertNotNull(updatedPlugin.lastFailedPing, "Last failed ping should be set");
@@ -486,18 +438,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         doThrow(new ProcessingException("Connection refused")).when(mockCallback).ping();
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // First failure - backoff should double to 2
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
         var updatedPlugin1 =
                 QuarkusTransaction.requiringNew()
@@ -517,11 +459,7 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
                         });
 
         // Second failure - backoff should double to 4
-        try {
-            refreshPluginJob.execute(context);
-        } catch (Exception e) {
-            // Expected to fail
-        }
+        assertEquals(PluginPingService.Outcome.FAILED, pingService.ping(pluginId, false));
 
         var updatedPlugin2 =
                 QuarkusTransaction.requiringNew()
@@ -588,14 +526,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         doThrow(new ProcessingException("Should not be called")).when(mockCallback).ping();
         when(callbackFactory.create(any(DiscoveryPlugin.class))).thenReturn(mockCallback);
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // Execute - should skip ping due to backoff
-        refreshPluginJob.execute(context);
+        assertEquals(PluginPingService.Outcome.SKIPPED, pingService.ping(pluginId, false));
 
         // Verify ping was never called
         verify(mockCallback, never()).ping();
@@ -675,14 +607,8 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
                             plugin.persist();
                         });
 
-        var context = mock(JobExecutionContext.class);
-        var dataMap = new JobDataMap();
-        dataMap.put(PLUGIN_ID_MAP_KEY, pluginId);
-        dataMap.put(REFRESH_MAP_KEY, false);
-        when(context.getMergedJobDataMap()).thenReturn(dataMap);
-
         // Execute successful ping
-        refreshPluginJob.execute(context);
+        assertEquals(PluginPingService.Outcome.SUCCESS, pingService.ping(pluginId, false));
 
         DiscoveryPlugin updatedPlugin =
                 QuarkusTransaction.requiringNew()
@@ -696,4 +622,76 @@ public class DiscoveryPluginGracePeriodTest extends AbstractTransactionalTestBas
         assertNull(updatedPlugin.nextPingAt, "Next ping time should be cleared");
         assertNotNull(updatedPlugin.lastSuccessfulPing, "Last successful ping should be set");
     }
+
+    @Test
+    public void testStartupRestoresRefreshMode() throws Exception {
+        var credentialId =
+                given().log()
+                        .all()
+                        .when()
+                        .formParams(
+                                Map.of(
+                                        "username",
+                                        "user",
+                                        "password",
+                                        "pass",
+                                        "matchExpression",
+                                        "target.connectUrl == 'http://localhost:8081/health'"))
+                        .contentType(ContentType.URLENC)
+                        .post("/api/v4/credentials")
+                        .then()
+                        .assertThat()
+                        .statusCode(201)
+                        .extract()
+                        .jsonPath()
+                        .getLong("id");
+
+        var callback =
+                String.format(
+                        "http://storedcredentials:%d@localhost:8081/health/liveness", credentialId);
+
+        var registration =
+                given().log()
+                        .all()
+                        .when()
+                        .body(Map.of("realm", "test_refresh_mode_realm", "callback", callback))
+                        .contentType(ContentType.JSON)
+                        .post("/api/v4/discovery")
+                        .then()
+                        .assertThat()
+                        .statusCode(200)
+                        .extract()
+                        .jsonPath();
+
+        var pluginId = UUID.fromString(registration.getString("id"));
+
+        // plugins registered through the generic endpoint are prompted to refresh
+        assertTrue(
+                QuarkusTransaction.requiringNew()
+                        .call(() -> DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId))
+                        .refreshOnPing);
+        clearInvocations(mockCallback);
+        restartPings(pluginId);
+        verify(mockCallback, timeout(5000).times(1)).refresh();
+        verify(mockCallback, never()).ping();
+
+        QuarkusTransaction.requiringNew()
+                .run(
+                        () -> {
+                            var plugin = DiscoveryPlugin.<DiscoveryPlugin>findById(pluginId);
+                            plugin.refreshOnPing = false;
+                        });
+        clearInvocations(mockCallback);
+        restartPings(pluginId);
+        verify(mockCallback, timeout(5000).times(1)).ping();
+        verify(mockCallback, never()).refresh();
+    }
+
+    /** Simulate a restart, then ping the plugin once the startup grace period has elapsed. */
+    private void restartPings(UUID pluginId) {
+        pingService.forget(pluginId);
+        pingService.onStart(null);
+        pingService.sweep(
+                System.currentTimeMillis() + startupGracePeriod.plus(jitter).toMillis() + 1);
+    }
 }
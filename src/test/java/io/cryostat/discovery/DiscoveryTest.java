@@ -102,6 +102,48 @@ public class DiscoveryTest extends AbstractTransactionalTestBase {
                 Matchers.hasItem(SELF_JMX_URL));
     }
 
+    @Test
+    void testGetUniverseNotModified() {
+        String etag =
+                given().when()
+                        .get("/api/v4/discovery")
+                        .then()
+                        .assertThat()
+                        .statusCode(200)
+                        .header("ETag", Matchers.not(Matchers.blankOrNullString()))
+                        .extract()
+                        .header("ETag");
+
+        given().header("If-None-Match", etag)
+                .when()
+                .get("/api/v4/discovery")
+                .then()
+                .assertThat()
+                .statusCode(304);
+
+        given().basePath("/")
+                .when()
+                .delete("/api/v4/targets/{id}", selfId)
+                .then()
+                .assertThat()
+                .statusCode(
+                        Matchers.both(Matchers.greaterThanOrEqualTo(200))
+                                .and(Matchers.lessThan(300)));
+        selfId = -1;
+
+        given().header("If-None-Match", etag)
+                .when()
+                .get("/api/v4/discovery")
+                .then()
+                .assertThat()
+                .statusCode(200)
+                .header("ETag", Matchers.not(Matchers.equalTo(etag)))
+                .body(
+                        "children.find { it.name == 'Custom Targets' }.children.target"
+                                + ".flatten().findAll { it != null }.connectUrl",
+                        Matchers.not(Matchers.hasItem(SELF_JMX_URL)));
+    }
+
     @Test
     void getDiscoveryPlugins() {
         List<Map<String, String>> plugins =
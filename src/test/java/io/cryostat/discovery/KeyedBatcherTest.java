@@ -0,0 +1,134 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class KeyedBatcherTest {
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testElementsWithinWindowDeliveredTogether() throws Exception {
+        Map<String, List<List<Integer>>> delivered = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        KeyedBatcher<String, Integer> batcher =
+                new KeyedBatcher<>(
+                        Duration.ofMillis(200),
+                        100,
+                        executor,
+                        (k, batch) -> {
+                            delivered.computeIfAbsent(k, x -> new ArrayList<>()).add(batch);
+                            latch.countDown();
+                        });
+
+        batcher.offer("a", 1);
+        batcher.offer("b", 10);
+        batcher.offer("a", 2);
+        batcher.offer("a", 3);
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(List.of(1, 2, 3)), delivered.get("a"));
+        Assertions.assertEquals(List.of(List.of(10)), delivered.get("b"));
+    }
+
+    @Test
+    void testBatchesLimitedToMaxSizeInOrder() throws Exception {
+        List<List<Integer>> delivered = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        KeyedBatcher<String, Integer> batcher =
+                new KeyedBatcher<>(
+                        Duration.ofMillis(100),
+                        2,
+                        executor,
+                        (k, batch) -> {
+                            synchronized (delivered) {
+                                delivered.add(batch);
+                            }
+                            latch.countDown();
+                        });
+
+        for (int i = 0; i < 5; i++) {
+            batcher.offer("a", i);
+        }
+
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(List.of(0, 1), List.of(2, 3), List.of(4)), delivered);
+    }
+
+    @Test
+    void testSameKeyDeliveredSerially() throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        KeyedBatcher<String, Integer> batcher =
+                new KeyedBatcher<>(
+                        Duration.ofMillis(10),
+                        100,
+                        executor,
+                        (k, batch) -> {
+                            maxConcurrent.accumulateAndGet(
+                                    concurrent.incrementAndGet(), Math::max);
+                            try {
+                                if (count.getAndIncrement() == 0) {
+                                    firstStarted.countDown();
+                                    release.await(5, TimeUnit.SECONDS);
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                concurrent.decrementAndGet();
+                                done.countDown();
+                            }
+                        });
+
+        batcher.offer("a", 1);
+        Assertions.assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        batcher.offer("a", 2);
+        Thread.sleep(100);
+        release.countDown();
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, maxConcurrent.get());
+    }
+}
@@ -973,6 +973,43 @@ class KubeEndpointSlicesDiscoveryTest extends AbstractTransactionalTestBase {
         assertEquals(0, podNodeCount, "No Pod node should exist for non-JMX pod");
     }
 
+    @Test
+    void testEndpointSliceChangesPublishedIncrementally() {
+        clearInvocations(bus);
+        String namespace = "delta-namespace";
+
+        EndpointSlice first = endpointSlice(namespace, "slice-a", "1");
+        EndpointSlice second = endpointSlice(namespace, "slice-b", "1");
+        EndpointSlice updated = endpointSlice(namespace, "slice-b", "2");
+
+        // the first change seen in a namespace fully reconciles it, later ones are deltas
+        discovery.onAdd(first);
+        discovery.onAdd(second);
+        // informer resyncs redeliver unchanged slices
+        discovery.onUpdate(second, second);
+        discovery.onUpdate(second, updated);
+        discovery.onDelete(updated, false);
+
+        verify(bus, times(1))
+                .publish(
+                        eq("NS_QUERY_ENDPOINT_SLICE"),
+                        any(KubeEndpointSlicesDiscovery.NamespaceQueryEvent.class));
+        verify(bus, times(3))
+                .publish(
+                        eq("ENDPOINT_SLICE_DELTA"),
+                        any(KubeEndpointSlicesDiscovery.EndpointSliceDeltaEvent.class));
+    }
+
+    private static EndpointSlice endpointSlice(String namespace, String name, String version) {
+        ObjectMeta meta = new ObjectMeta();
+        meta.setNamespace(namespace);
+        meta.setName(name);
+        meta.setResourceVersion(version);
+        EndpointSlice slice = new EndpointSlice();
+        slice.setMetadata(meta);
+        return slice;
+    }
+
     @Test
     void testEndpointSliceInformerEventsIgnoredDuringShutdown() {
         clearInvocations(bus);
@@ -1042,7 +1079,7 @@ class KubeEndpointSlicesDiscoveryTest extends AbstractTransactionalTestBase {
                     KubeEndpointSlicesDiscovery.EndpointDiscoveryEvent.from(
                             "test-namespace", target, null, Target.EventKind.LOST);
 
-            discovery.handleEndpointEvent(event);
+            discovery.handleEndpointEvents("test-namespace", List.of(event));
 
             entityManager.flush();
             entityManager.clear();
@@ -0,0 +1,160 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.discovery;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import io.cryostat.discovery.KubeEndpointSlicesDiscovery.KubeDiscoveryNodeType;
+
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.MixedOperation;
+import io.fabric8.kubernetes.client.dsl.NonNamespaceOperation;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.kubernetes.client.informers.cache.Indexer;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class KubeOwnerCacheTest {
+
+    KubeOwnerCache cache;
+
+    @Mock KubernetesClient client;
+    @Mock Logger logger;
+    @Mock MixedOperation<Pod, PodList, PodResource> pods;
+    @Mock NonNamespaceOperation<Pod, PodList, PodResource> namespacedPods;
+    @Mock PodResource podResource;
+    @Mock SharedIndexInformer<Pod> informer;
+    @Mock Indexer<Pod> store;
+
+    Pod pod;
+
+    @BeforeEach
+    void setup() {
+        cache = new KubeOwnerCache();
+        cache.client = client;
+        cache.logger = logger;
+        cache.enabled = true;
+
+        pod = new Pod();
+        ObjectMeta meta = new ObjectMeta();
+        meta.setNamespace("ns");
+        meta.setName("pod-1");
+        pod.setMetadata(meta);
+
+        lenient().when(client.pods()).thenReturn(pods);
+        lenient().when(pods.inNamespace("ns")).thenReturn(namespacedPods);
+        lenient().when(namespacedPods.withName("pod-1")).thenReturn(podResource);
+        lenient().when(podResource.get()).thenReturn(pod);
+        lenient().when(namespacedPods.runnableInformer(anyLong())).thenReturn(informer);
+        lenient().when(informer.exceptionHandler(any())).thenReturn(informer);
+        lenient().when(informer.run()).thenReturn(informer);
+        lenient().when(informer.getStore()).thenReturn(store);
+    }
+
+    @Test
+    void testLookupWithoutInformerQueriesApiServer() {
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(podResource).get();
+    }
+
+    @Test
+    void testLookupServedFromSyncedInformerStore() {
+        when(informer.hasSynced()).thenReturn(true);
+        when(store.getByKey("ns/pod-1")).thenReturn(pod);
+
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(namespacedPods, never()).withName(any());
+    }
+
+    @Test
+    void testLookupFallsBackBeforeInformerSync() {
+        when(informer.hasSynced()).thenReturn(false);
+
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(store, never()).getByKey(any());
+        verify(podResource).get();
+    }
+
+    @Test
+    void testLookupFallsBackOnStoreMiss() {
+        when(informer.hasSynced()).thenReturn(true);
+        when(store.getByKey("ns/pod-1")).thenReturn(null);
+
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(podResource).get();
+    }
+
+    @Test
+    void testInformersStartOnlyForWalkedKinds() {
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+        verify(namespacedPods, never()).runnableInformer(anyLong());
+
+        cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1");
+        cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1");
+
+        verify(namespacedPods, times(1)).runnableInformer(anyLong());
+        verify(client, never()).apps();
+    }
+
+    @Test
+    void testDisabledInformersAreNotStarted() {
+        cache.enabled = false;
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(namespacedPods, never()).runnableInformer(anyLong());
+        verify(podResource).get();
+    }
+
+    @Test
+    void testStopClosesInformers() {
+        when(informer.hasSynced()).thenReturn(true);
+        when(store.getByKey("ns/pod-1")).thenReturn(pod);
+        cache.start(List.of("ns"), Duration.ofSeconds(30));
+        cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1");
+
+        cache.stop();
+
+        verify(informer).close();
+        Assertions.assertSame(pod, cache.get(KubeDiscoveryNodeType.POD, "ns", "pod-1"));
+        verify(podResource).get();
+    }
+}
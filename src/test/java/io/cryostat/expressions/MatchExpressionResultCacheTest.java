@@ -0,0 +1,116 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.expressions;
+
+import java.net.URI;
+import java.util.Optional;
+
+import io.cryostat.targets.Target;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+public class MatchExpressionResultCacheTest {
+
+    @Inject MatchExpressionResultCache cache;
+    @Inject MeterRegistry meterRegistry;
+
+    @Test
+    void testInvalidateByTargetOnlyRemovesThatTarget() {
+        Target a = target(1001L, "a");
+        Target b = target(1002L, "b");
+        cache.put("true", a, true);
+        cache.put("false", a, false);
+        cache.put("true", b, true);
+
+        cache.invalidate(a);
+
+        MatcherAssert.assertThat(cache.get("true", a), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(cache.get("false", a), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(cache.get("true", b), Matchers.equalTo(Optional.of(true)));
+    }
+
+    @Test
+    void testInvalidateByExpressionOnlyRemovesThatExpression() {
+        Target a = target(1003L, "c");
+        Target b = target(1004L, "d");
+        cache.put("target.alias == 'c'", a, true);
+        cache.put("target.alias == 'c'", b, false);
+        cache.put("true", a, true);
+
+        double before = invalidations("expression");
+        cache.invalidate("target.alias == 'c'");
+
+        MatcherAssert.assertThat(
+                cache.get("target.alias == 'c'", a), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(
+                cache.get("target.alias == 'c'", b), Matchers.equalTo(Optional.empty()));
+        MatcherAssert.assertThat(cache.get("true", a), Matchers.equalTo(Optional.of(true)));
+        MatcherAssert.assertThat(invalidations("expression") - before, Matchers.equalTo(2.0));
+    }
+
+    @Test
+    void testInvalidateByTargetCoversPreviousVersions() {
+        Target before = target(1005L, "e");
+        Target after = target(1005L, "e-renamed");
+        cache.put("true", before, true);
+
+        // a MODIFIED discovery event carries the new state of the target, which is not equal to
+        // the state the result was cached under
+        cache.invalidate(after);
+
+        MatcherAssert.assertThat(cache.get("true", before), Matchers.equalTo(Optional.empty()));
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        MatchExpressionResultCache disabled = new MatchExpressionResultCache();
+        disabled.logger = Logger.getLogger(MatchExpressionResultCache.class);
+        disabled.meterRegistry = new SimpleMeterRegistry();
+        disabled.maxSize = 512;
+        disabled.legacyMaxSize = Optional.empty();
+        disabled.enabled = false;
+        disabled.init();
+
+        Target a = target(1006L, "f");
+        disabled.put("true", a, true);
+
+        MatcherAssert.assertThat(disabled.get("true", a), Matchers.equalTo(Optional.empty()));
+    }
+
+    private double invalidations(String reason) {
+        return meterRegistry
+                .get(MatchExpressionResultCache.METER_PREFIX + ".invalidations")
+                .tag("reason", reason)
+                .counter()
+                .count();
+    }
+
+    private static Target target(long id, String alias) {
+        Target target = new Target();
+        target.id = id;
+        target.alias = alias;
+        target.connectUrl = URI.create("service:jmx:rmi:///jndi/rmi://" + alias + ":9091/jmxrmi");
+        return target;
+    }
+}
@@ -21,10 +21,13 @@ import java.util.List;
 
 import io.cryostat.AbstractTransactionalTestBase;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.test.common.http.TestHTTPEndpoint;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.vertx.core.json.JsonObject;
+import jakarta.inject.Inject;
+import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -34,6 +37,9 @@ import org.junit.jupiter.params.provider.CsvSource;
 @TestHTTPEndpoint(MatchExpressions.class)
 public class MatchExpressionsTest extends AbstractTransactionalTestBase {
 
+    @Inject MatchExpressionEvaluator evaluator;
+    @Inject MeterRegistry meterRegistry;
+
     @Test
     public void testListNone() {
         given().log()
@@ -119,4 +125,60 @@ public class MatchExpressionsTest extends AbstractTransactionalTestBase {
             result.body("targets.size()", Matchers.equalTo(0));
         }
     }
+
+    @Test
+    public void testRepeatedEvaluationUsesConsistentResults() {
+        int id = defineSelfCustomTarget();
+        double hits = resultCacheHits();
+
+        var body = new JsonObject();
+        body.put("matchExpression", "target.alias == 'selftest'");
+        body.put("targetIds", List.of(id));
+        // the first request compiles and caches the program and results, the second must be
+        // served from those caches and produce the same answer
+        for (int i = 0; i < 2; i++) {
+            given().contentType(ContentType.JSON)
+                    .body(body.encodePrettily())
+                    .when()
+                    .post()
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .body("targets.size()", Matchers.equalTo(1))
+                    .body("targets[0].alias", Matchers.equalTo(SELFTEST_ALIAS));
+        }
+        MatcherAssert.assertThat(resultCacheHits(), Matchers.greaterThan(hits));
+    }
+
+    @Test
+    public void testEvaluationReusesTargetActivation() {
+        int id = defineSelfCustomTarget();
+        long hits = evaluator.activationStats().hitCount();
+
+        // distinct expressions do not share cached results, but are evaluated against the same
+        // activation for the target
+        for (String expression : List.of("target.alias == 'selftest'", "target.id > 0")) {
+            var body = new JsonObject();
+            body.put("matchExpression", expression);
+            body.put("targetIds", List.of(id));
+            given().contentType(ContentType.JSON)
+                    .body(body.encodePrettily())
+                    .when()
+                    .post()
+                    .then()
+                    .assertThat()
+                    .statusCode(200)
+                    .body("targets.size()", Matchers.equalTo(1));
+        }
+        MatcherAssert.assertThat(
+                evaluator.activationStats().hitCount(), Matchers.greaterThan(hits));
+    }
+
+    private double resultCacheHits() {
+        return meterRegistry
+                .get(MatchExpressionResultCache.METER_PREFIX + ".gets")
+                .tag("result", "hit")
+                .counter()
+                .count();
+    }
 }
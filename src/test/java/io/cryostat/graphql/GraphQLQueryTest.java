@@ -473,6 +473,44 @@ class GraphQLQueryTest extends AbstractGraphQLTestBase {
         assertThat("Name not found", nameExists, is(true));
     }
 
+    @Test
+    void testEnvironmentNodesCursorPagination() throws Exception {
+        List<DiscoveryNode> all = queryEnvironmentNodes("");
+        assertThat(all.size(), greaterThan(1));
+        List<Long> ids = all.stream().map(n -> n.id).toList();
+        assertThat(ids, contains(ids.stream().sorted().toArray()));
+
+        List<DiscoveryNode> firstPage = queryEnvironmentNodes("(first: 1)");
+        assertThat(firstPage, hasSize(1));
+        assertThat(firstPage.get(0).id, equalTo(ids.get(0)));
+
+        List<DiscoveryNode> secondPage =
+                queryEnvironmentNodes(String.format("(first: 1, after: %d)", ids.get(0)));
+        assertThat(secondPage, hasSize(1));
+        assertThat(secondPage.get(0).id, equalTo(ids.get(1)));
+
+        List<DiscoveryNode> rest =
+                queryEnvironmentNodes(String.format("(after: %d)", ids.get(0)));
+        assertThat(rest.size(), equalTo(ids.size() - 1));
+    }
+
+    private List<DiscoveryNode> queryEnvironmentNodes(String args) throws Exception {
+        JsonObject query = new JsonObject();
+        query.put("query", String.format("query { environmentNodes%s { id name } }", args));
+        Response response =
+                given().contentType(ContentType.JSON)
+                        .body(query.encode())
+                        .when()
+                        .post("/api/v4/graphql")
+                        .then()
+                        .statusCode(allOf(greaterThanOrEqualTo(200), lessThan(300)))
+                        .extract()
+                        .response();
+        return mapper.readValue(response.body().asString(), EnvironmentNodesResponse.class)
+                .getData()
+                .getEnvironmentNodes();
+    }
+
     @Test
     void testNodesHaveIds() throws Exception {
         // Query for environment nodes with their IDs
@@ -15,11 +15,14 @@
  */
 package io.cryostat.graphql.matchers;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -124,4 +127,32 @@ class LabelSelectorMatcherTest {
         LabelSelectorMatcher matcher = LabelSelectorMatcher.parse(expr);
         MatcherAssert.assertThat(expr, matcher.test(TEST_LABELS), Matchers.is(pass));
     }
+
+    @ParameterizedTest
+    @CsvSource(
+            value = {
+                "foo=bar # (labels @> jsonb_build_object(:p0_k, :p0_v))",
+                "foo!=bar # (NOT (labels @> jsonb_build_object(:p0_k, :p0_v)))",
+                "foo in (bar, baz) # ((labels ->> :p0_k) IN (:p0_v))",
+                "foo notin (bar, baz) # (((labels ->> :p0_k) IS NULL OR (labels ->> :p0_k) NOT IN"
+                        + " (:p0_v)))",
+                "foo # ((labels ->> :p0_k) IS NOT NULL)",
+                "!foo # ((labels ->> :p0_k) IS NULL)",
+            },
+            delimiter = '#')
+    void testToSql(String expr, String sql) {
+        Map<String, Object> params = new HashMap<>();
+        String actual = LabelSelectorMatcher.parse(expr).toSql("labels", "p", params);
+        MatcherAssert.assertThat(expr, actual, Matchers.equalTo(sql));
+        MatcherAssert.assertThat(params, Matchers.hasEntry("p0_k", "foo"));
+    }
+
+    @Test
+    void testToSqlBindsValues() {
+        Map<String, Object> params = new HashMap<>();
+        LabelSelectorMatcher.parse("env in (stage, qa)").toSql("labels", "p", params);
+        MatcherAssert.assertThat(params, Matchers.hasKey("p0_v"));
+        MatcherAssert.assertThat(
+                (List<?>) params.get("p0_v"), Matchers.containsInAnyOrder("stage", "qa"));
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+import io.cryostat.reports.AnalysisReportAggregator;
+import io.cryostat.reports.ReportsService;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.event.Event;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveFanOutTest {
+
+    ArchiveFanOut fanOut;
+
+    @Mock ReportsService reportsService;
+    @Mock Event<ArchivedRecordingCopy> copies;
+    @Mock Logger logger;
+
+    byte[] data = "not really a flight recording".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setup() {
+        fanOut = new ArchiveFanOut();
+        fanOut.reportsService = reportsService;
+        fanOut.copies = copies;
+        fanOut.logger = logger;
+    }
+
+    @Test
+    void testNoFanOutWithoutConsumers() throws Exception {
+        fanOut.analyticsPrefetch = false;
+
+        var tee = fanOut.begin("jvmId", "file.jfr", new Metadata(), new ByteArrayInputStream(data));
+
+        MatcherAssert.assertThat(tee.isEmpty(), Matchers.is(true));
+    }
+
+    @Test
+    void testAutoanalyzeGeneratesReportFromLocalCopy() throws Exception {
+        fanOut.analyticsPrefetch = false;
+        Metadata metadata =
+                new Metadata(Map.of(AnalysisReportAggregator.AUTOANALYZE_LABEL, "true"));
+        var path = ArgumentCaptor.forClass(Path.class);
+        when(reportsService.reportForCopy(eq("jvmId"), eq("file.jfr"), path.capture()))
+                .thenAnswer(
+                        inv -> {
+                            MatcherAssert.assertThat(
+                                    Files.readAllBytes(inv.getArgument(2)), Matchers.equalTo(data));
+                            return Uni.createFrom().item(Map.of());
+                        });
+
+        var tee =
+                fanOut.begin("jvmId", "file.jfr", metadata, new ByteArrayInputStream(data)).get();
+        tee.stream().readAllBytes();
+        fanOut.complete(tee);
+
+        verify(copies, never()).fire(any());
+        MatcherAssert.assertThat(Files.exists(path.getValue()), Matchers.is(false));
+    }
+
+    @Test
+    void testAnalyticsPrefetchHandsOffLocalCopy() throws Exception {
+        fanOut.analyticsPrefetch = true;
+        var copy = ArgumentCaptor.forClass(ArchivedRecordingCopy.class);
+
+        var tee =
+                fanOut.begin("jvmId", "file.jfr", new Metadata(), new ByteArrayInputStream(data))
+                        .get();
+        tee.stream().readAllBytes();
+        fanOut.complete(tee);
+
+        verify(copies).fire(copy.capture());
+        verify(reportsService, never()).reportForCopy(any(), any(), any());
+        try {
+            MatcherAssert.assertThat(
+                    Files.readAllBytes(copy.getValue().file()), Matchers.equalTo(data));
+        } finally {
+            Files.deleteIfExists(copy.getValue().file());
+        }
+    }
+
+    @Test
+    void testAbortDeletesLocalCopy() throws Exception {
+        fanOut.analyticsPrefetch = true;
+
+        var tee =
+                fanOut.begin("jvmId", "file.jfr", new Metadata(), new ByteArrayInputStream(data))
+                        .get();
+        fanOut.abort(tee);
+
+        MatcherAssert.assertThat(Files.exists(tee.copy()), Matchers.is(false));
+        verify(copies, never()).fire(any());
+    }
+}
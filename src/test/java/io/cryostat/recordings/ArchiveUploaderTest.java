@@ -0,0 +1,236 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@ExtendWith(MockitoExtension.class)
+class ArchiveUploaderTest {
+
+    static final int PART_SIZE = 1024;
+
+    ArchiveUploader uploader;
+
+    @Mock S3Client storage;
+    @Mock Logger logger;
+
+    PutObjectRequest request =
+            PutObjectRequest.builder()
+                    .bucket("archivedrecordings")
+                    .key("jvmId/recording.jfr")
+                    .contentType("application/octet-stream")
+                    .build();
+
+    @BeforeEach
+    void setup() {
+        uploader = new ArchiveUploader();
+        uploader.storage = storage;
+        uploader.logger = logger;
+        uploader.partSize = new MemorySize(BigInteger.valueOf(PART_SIZE));
+        uploader.maxBuffers = Optional.empty();
+        uploader.bufferTimeout = Duration.ofSeconds(30);
+        uploader.maxConcurrentParts = 2;
+        uploader.partRetries = 1;
+        uploader.init(PART_SIZE);
+    }
+
+    @AfterEach
+    void teardown() {
+        uploader.shutdown();
+    }
+
+    @Test
+    void testSmallStreamUsesSinglePut() throws Exception {
+        byte[] data = bytes(PART_SIZE / 2);
+        var body = ArgumentCaptor.forClass(RequestBody.class);
+        when(storage.putObject(any(PutObjectRequest.class), body.capture()))
+                .thenReturn(PutObjectResponse.builder().build());
+
+        long size = uploader.upload(request, new ByteArrayInputStream(data));
+
+        MatcherAssert.assertThat(size, Matchers.equalTo((long) data.length));
+        MatcherAssert.assertThat(read(body.getValue()), Matchers.equalTo(data));
+        verify(storage, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testConfiguredPartSizeBelowS3MinimumIsRaised() throws Exception {
+        uploader.init();
+        byte[] data = bytes(PART_SIZE * 4);
+        when(storage.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().build());
+
+        uploader.upload(request, new ByteArrayInputStream(data));
+
+        // the configured part size was raised to the minimum, so this now fits in one part
+        verify(storage, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testLargeStreamIsUploadedInOrderedParts() throws Exception {
+        byte[] data = bytes(PART_SIZE * 4 + PART_SIZE / 3);
+        Map<Integer, byte[]> received = stubMultipart(new AtomicBoolean());
+
+        long size = uploader.upload(request, new ByteArrayInputStream(data));
+
+        MatcherAssert.assertThat(size, Matchers.equalTo((long) data.length));
+        MatcherAssert.assertThat(received.size(), Matchers.equalTo(5));
+        var reassembled = new ByteArrayOutputStream();
+        for (int i = 1; i <= received.size(); i++) {
+            reassembled.write(received.get(i));
+        }
+        MatcherAssert.assertThat(reassembled.toByteArray(), Matchers.equalTo(data));
+
+        var complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(storage).completeMultipartUpload(complete.capture());
+        MatcherAssert.assertThat(
+                complete.getValue().multipartUpload().parts().stream()
+                        .map(CompletedPart::partNumber)
+                        .toList(),
+                Matchers.contains(1, 2, 3, 4, 5));
+        verify(storage, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testFailedPartIsRetriedWithoutRestarting() throws Exception {
+        byte[] data = bytes(PART_SIZE * 3);
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        Map<Integer, byte[]> received = stubMultipart(failOnce);
+
+        uploader.upload(request, new ByteArrayInputStream(data));
+
+        MatcherAssert.assertThat(received.size(), Matchers.equalTo(3));
+        verify(storage, times(1)).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        verify(storage, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(storage).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testNonRetryableFailureAbortsUpload() throws Exception {
+        byte[] data = bytes(PART_SIZE * 3);
+        when(storage.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(storage.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(403).message("denied").build());
+
+        Assertions.assertThrows(
+                S3Exception.class,
+                () -> uploader.upload(request, new ByteArrayInputStream(data)));
+
+        // the failed part is not retried, though parts already in flight may still be attempted
+        verify(storage, atMost(2))
+                .uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(storage).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(storage, never())
+                .completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testBuffersAreDroppedWhenIdle() throws Exception {
+        stubMultipart(new AtomicBoolean());
+
+        uploader.upload(request, new ByteArrayInputStream(bytes(PART_SIZE * 4)));
+
+        MatcherAssert.assertThat(uploader.buffers.idle(), Matchers.equalTo(0));
+    }
+
+    @Test
+    void testBufferAcquireTimesOut() throws Exception {
+        var pool = new ArchiveUploader.BufferPool(PART_SIZE, 1, Duration.ofMillis(10));
+        pool.acquire();
+
+        Assertions.assertThrows(IOException.class, pool::acquire);
+    }
+
+    private Map<Integer, byte[]> stubMultipart(AtomicBoolean failOnce) {
+        Map<Integer, byte[]> received = new ConcurrentHashMap<>();
+        when(storage.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(storage.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(
+                        inv -> {
+                            UploadPartRequest req = inv.getArgument(0);
+                            if (req.partNumber() == 2 && failOnce.getAndSet(false)) {
+                                throw SdkClientException.create(
+                                        "simulated failure", new IOException("connection reset"));
+                            }
+                            received.put(req.partNumber(), read(inv.getArgument(1)));
+                            return UploadPartResponse.builder()
+                                    .eTag("etag-" + req.partNumber())
+                                    .build();
+                        });
+        when(storage.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().build());
+        return received;
+    }
+
+    private static byte[] bytes(int n) {
+        byte[] b = new byte[n];
+        for (int i = 0; i < n; i++) {
+            b[i] = (byte) (i * 31);
+        }
+        return b;
+    }
+
+    private static byte[] read(RequestBody body) throws Exception {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.openjdk.jmc.flightrecorder.configuration.IRecordingDescriptor;
+
+import io.cryostat.AbstractTransactionalTestBase;
+import io.cryostat.recordings.ActiveRecordings.Metadata;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.TargetConnectionManager;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectSpy;
+import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
+import jdk.jfr.RecordingState;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+class RecordingHelperSyncTest extends AbstractTransactionalTestBase {
+
+    @Inject RecordingHelper recordingHelper;
+    @InjectSpy TargetConnectionManager connections;
+
+    // threads whose connections to the target are answered by the test rather than the target
+    final Set<Thread> testThreads = ConcurrentHashMap.newKeySet();
+    volatile Supplier<List<IRecordingDescriptor>> remote;
+
+    long targetId;
+
+    @BeforeEach
+    void setup() {
+        doAnswer(
+                        invocation -> {
+                            var r = remote;
+                            if (r == null) {
+                                return invocation.callRealMethod();
+                            }
+                            if (!testThreads.contains(Thread.currentThread())) {
+                                // keep background updates from modifying the target's recordings
+                                throw new IllegalStateException("connection disabled by test");
+                            }
+                            return r.get();
+                        })
+                .when(connections)
+                .executeConnectedTask(any(Target.class), any());
+        targetId = defineSelfCustomTarget();
+        testThreads.add(Thread.currentThread());
+    }
+
+    @Test
+    void shouldNotRemoveRecordingCreatedDuringSync() {
+        long stale = persistRecording("stale", 1001);
+        AtomicLong created = new AtomicLong();
+        remote =
+                () -> {
+                    // a recording started while the target's recordings are being retrieved
+                    created.set(persistRecording("started", 1002));
+                    return List.of();
+                };
+
+        recordingHelper.syncActiveRecordings(target());
+
+        assertThat(findRecording(stale), nullValue());
+        assertThat(findRecording(created.get()), notNullValue());
+    }
+
+    @Test
+    void shouldShareRecordingRetrievalBetweenConcurrentSyncs() throws Exception {
+        persistRecording("existing", 1001);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        remote =
+                () -> {
+                    fetches.incrementAndGet();
+                    fetching.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return List.of();
+                };
+        Target target = target();
+
+        var first = new CompletableFuture<List<ActiveRecording>>();
+        var second = new CompletableFuture<List<ActiveRecording>>();
+        Thread t1 = syncThread(target, first);
+        Thread t2 = syncThread(target, second);
+        t1.start();
+        assertThat(fetching.await(30, TimeUnit.SECONDS), is(true));
+        t2.start();
+        // wait for the second sync to join the first one's in-flight retrieval
+        while (t2.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThat(first.get(30, TimeUnit.SECONDS), empty());
+        assertThat(second.get(30, TimeUnit.SECONDS), empty());
+        assertThat(fetches.get(), equalTo(1));
+    }
+
+    @Test
+    void shouldRetrySyncOnConcurrentModification() {
+        long id = persistRecording("existing", 1001);
+        IRecordingDescriptor descriptor = descriptor(1001);
+        when(descriptor.getState())
+                .thenThrow(new OptimisticLockException())
+                .thenReturn(IRecordingDescriptor.RecordingState.CREATED);
+
+        recordingHelper.syncActiveRecordings(target(), Set.of(id), List.of(descriptor));
+
+        verify(descriptor, times(2)).getState();
+        assertThat(findRecording(id).state, equalTo(RecordingState.DELAYED));
+    }
+
+    @Test
+    void shouldRetrySyncOnDuplicateRecording() {
+        long id = persistRecording("existing", 1001);
+        IRecordingDescriptor descriptor = descriptor(1001);
+        when(descriptor.getState())
+                .thenThrow(
+                        new ConstraintViolationException(
+                                "duplicate",
+                                new SQLException(),
+                                // as reported by PostgreSQL, which folds unquoted names
+                                "ukr8nr64n7i34ipp019xrbbbyeh"))
+                .thenReturn(IRecordingDescriptor.RecordingState.RUNNING);
+
+        recordingHelper.syncActiveRecordings(target(), Set.of(id), List.of(descriptor));
+
+        verify(descriptor, times(2)).getState();
+    }
+
+    @Test
+    void shouldNotRetrySyncOnOtherConstraintViolation() {
+        long id = persistRecording("existing", 1001);
+        IRecordingDescriptor descriptor = descriptor(1001);
+        when(descriptor.getState())
+                .thenThrow(
+                        new ConstraintViolationException(
+                                "other", new SQLException(), "some_other_constraint"));
+
+        assertThrows(
+                RuntimeException.class,
+                () ->
+                        recordingHelper.syncActiveRecordings(
+                                target(), Set.of(id), List.of(descriptor)));
+
+        verify(descriptor, times(1)).getState();
+    }
+
+    private Thread syncThread(Target target, CompletableFuture<List<ActiveRecording>> result) {
+        Thread thread =
+                new Thread(
+                        () -> {
+                            try {
+                                result.complete(recordingHelper.syncActiveRecordings(target));
+                            } catch (Exception e) {
+                                result.completeExceptionally(e);
+                            }
+                        });
+        testThreads.add(thread);
+        return thread;
+    }
+
+    private IRecordingDescriptor descriptor(long remoteId) {
+        IRecordingDescriptor descriptor = mock(IRecordingDescriptor.class);
+        when(descriptor.getId()).thenReturn(remoteId);
+        return descriptor;
+    }
+
+    private Target target() {
+        return QuarkusTransaction.requiringNew().call(() -> Target.getTargetById(targetId));
+    }
+
+    private ActiveRecording findRecording(long id) {
+        return QuarkusTransaction.requiringNew().call(() -> ActiveRecording.findById(id));
+    }
+
+    private long persistRecording(String name, long remoteId) {
+        return QuarkusTransaction.requiringNew()
+                .call(
+                        () -> {
+                            Target target = Target.getTargetById(targetId);
+                            ActiveRecording recording = new ActiveRecording();
+                            recording.target = target;
+                            recording.name = name;
+                            recording.remoteId = remoteId;
+                            recording.state = RecordingState.RUNNING;
+                            recording.external = true;
+                            recording.metadata = new Metadata(Map.of());
+                            recording.persist();
+                            target.activeRecordings.add(recording);
+                            return recording.id;
+                        });
+    }
+}
@@ -216,4 +216,65 @@ class RecordingHelperTest extends AbstractTransactionalTestBase {
             Files.deleteIfExists(recordingFile);
         }
     }
+
+    @Test
+    void shouldQueryArchivedRecordingCatalogByLabelsAndSize() throws Exception {
+        String jvmId = "catalog-query-jvm-id";
+        Path small = Files.createTempFile("recording-helper-catalog-small", ".jfr");
+        Path large = Files.createTempFile("recording-helper-catalog-large", ".jfr");
+        Files.write(small, new byte[] {1, 2});
+        Files.write(large, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+        try {
+            recordingHelper.uploadArchivedRecording(
+                    jvmId,
+                    new TestFileUpload("small.jfr", small),
+                    new ActiveRecordings.Metadata(Map.of("tier", "gold")));
+            recordingHelper.uploadArchivedRecording(
+                    jvmId,
+                    new TestFileUpload("large.jfr", large),
+                    new ActiveRecordings.Metadata(Map.of("tier", "silver")));
+
+            var byLabel =
+                    recordingHelper.queryArchivedRecordings(
+                            new ArchivedRecordingInfo.Criteria(
+                                    jvmId, Map.of("tier", "gold"), null, null, null, null, 0, 10));
+            assertThat(byLabel.totalCount(), is(1L));
+            assertThat(byLabel.recordings().get(0).name(), is("small.jfr"));
+            assertThat(byLabel.recordings().get(0).size(), is(2L));
+
+            var bySize =
+                    recordingHelper.queryArchivedRecordings(
+                            new ArchivedRecordingInfo.Criteria(
+                                    jvmId, Map.of(), 4L, null, null, null, 0, 10));
+            assertThat(bySize.totalCount(), is(1L));
+            assertThat(bySize.recordings().get(0).name(), is("large.jfr"));
+
+            var paged =
+                    recordingHelper.queryArchivedRecordings(
+                            new ArchivedRecordingInfo.Criteria(
+                                    jvmId, null, null, null, null, null, 1, 1));
+            assertThat(paged.totalCount(), is(2L));
+            assertThat(paged.recordings(), hasSize(1));
+
+            recordingHelper.deleteArchivedRecording(jvmId, "small.jfr");
+            assertThat(
+                    recordingHelper.listArchivedRecordings(jvmId).stream()
+                            .map(ArchivedRecordings.ArchivedRecording::name)
+                            .toList(),
+                    contains("large.jfr"));
+        } finally {
+            recordingHelper.listArchivedRecordings(jvmId).stream()
+                    .forEach(
+                            r -> {
+                                try {
+                                    recordingHelper.deleteArchivedRecording(jvmId, r.name());
+                                } catch (Exception e) {
+                                    // ignore cleanup errors
+                                }
+                            });
+            Files.deleteIfExists(small);
+            Files.deleteIfExists(large);
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ChunkAggregationTest {
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "SELECT * FROM \"JFR\".\"jdk.ObjectAllocationSample\"",
+                "SELECT \"weight\" FROM \"JFR\".\"jdk.ObjectAllocationSample\"",
+                "SELECT COUNT(DISTINCT \"weight\") FROM \"JFR\".\"jdk.ObjectAllocationSample\"",
+                "SELECT \"eventThread\", COUNT(*) FROM \"JFR\".\"jdk.ObjectAllocationSample\""
+                        + " GROUP BY \"eventThread\" ORDER BY 2 DESC LIMIT 5",
+                "SELECT COUNT(*) FROM \"JFR\".\"jdk.ObjectAllocationSample\" a"
+                        + " JOIN \"JFR\".\"jdk.ThreadStart\" b ON a.\"eventThread\" ="
+                        + " b.\"thread\"",
+                "SELECT COUNT(*) OVER () FROM \"JFR\".\"jdk.ObjectAllocationSample\"",
+                "SELECT COUNT(*) + 1 FROM \"JFR\".\"jdk.ObjectAllocationSample\"",
+                "SELECT \"eventThread\", COUNT(*) FROM \"JFR\".\"jdk.ObjectAllocationSample\""
+                        + " GROUP BY \"eventThread\" HAVING COUNT(*) > 1",
+                "tables",
+            })
+    void testNonDecomposableQueriesAreNotPlanned(String sql) {
+        MatcherAssert.assertThat(ChunkAggregation.plan(sql).isPresent(), Matchers.is(false));
+    }
+
+    @Test
+    void testChunkQueryPushesDownFilterAndGrouping() {
+        var plan =
+                ChunkAggregation.plan(
+                                """
+                                SELECT "eventThread", AVG("weight") AS w, COUNT(*)
+                                FROM "JFR"."jdk.ObjectAllocationSample"
+                                WHERE "weight" > 100
+                                GROUP BY "eventThread"
+                                """)
+                        .orElseThrow();
+
+        String query = plan.chunkQuery();
+        MatcherAssert.assertThat(
+                query,
+                Matchers.startsWith(
+                        "SELECT \"eventThread\", SUM(\"weight\"), COUNT(\"weight\"),"
+                                + " COUNT(*) FROM"));
+        MatcherAssert.assertThat(query, Matchers.containsString("\"weight\" > 100"));
+        MatcherAssert.assertThat(query, Matchers.endsWith("GROUP BY \"eventThread\""));
+    }
+
+    @Test
+    void testPartialsAreMergedAcrossChunks() throws Exception {
+        var plan =
+                ChunkAggregation.plan(
+                                """
+                                SELECT "eventThread", COUNT(*), SUM("weight"), MIN("weight"),
+                                    MAX("weight"), AVG("weight")
+                                FROM "JFR"."jdk.ObjectAllocationSample"
+                                GROUP BY "eventThread"
+                                """)
+                        .orElseThrow();
+
+        // partial columns: key, COUNT, SUM, MIN, MAX, SUM (avg), COUNT (avg)
+        var chunk1 = plan.newPartials();
+        chunk1.accumulate(row("main", 2L, 30L, 10L, 20L, 30L, 2L));
+        chunk1.accumulate(row("worker", 1L, 5L, 5L, 5L, 5L, 1L));
+        var chunk2 = plan.newPartials();
+        chunk2.accumulate(row("main", 3L, 60L, 5L, 40L, 60L, 3L));
+
+        var merged = plan.newPartials();
+        merged.merge(chunk1);
+        merged.merge(chunk2);
+
+        MatcherAssert.assertThat(
+                merged.rows(),
+                Matchers.containsInAnyOrder(
+                        List.of("main", "5", "90", "5", "40", "18"),
+                        List.of("worker", "1", "5", "5", "5", "5")));
+    }
+
+    @Test
+    void testUngroupedAggregateIgnoresLimit() throws Exception {
+        var plan =
+                ChunkAggregation.plan(
+                                "SELECT COUNT(*) FROM \"JFR\".\"jdk.ObjectAllocationSample\""
+                                        + " LIMIT 1")
+                        .orElseThrow();
+
+        var merged = plan.newPartials();
+        for (long n : new long[] {4, 0, 7}) {
+            var chunk = plan.newPartials();
+            chunk.accumulate(row(n));
+            merged.merge(chunk);
+        }
+
+        MatcherAssert.assertThat(merged.rows(), Matchers.equalTo(List.of(List.of("11"))));
+    }
+
+    private static ChunkAggregation.Row row(Object... values) {
+        List<Object> list = Arrays.asList(values);
+        return new ChunkAggregation.Row() {
+            @Override
+            public String getString(int column) {
+                Object o = list.get(column - 1);
+                return o == null ? null : o.toString();
+            }
+
+            @Override
+            public Object getObject(int column) {
+                return list.get(column - 1);
+            }
+        };
+    }
+}
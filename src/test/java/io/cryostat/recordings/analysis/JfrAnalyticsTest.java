@@ -1419,4 +1419,72 @@ public class JfrAnalyticsTest {
 
         MatcherAssert.assertThat(result.get(0).get(0), Matchers.equalTo("533557248"));
     }
+
+    @Test
+    void testRepeatedQueryReturnsSameResult() {
+        String query =
+                """
+                SELECT COUNT(*) FROM "JFR"."jdk.ObjectAllocationSample" LIMIT 1
+                """;
+        for (int i = 0; i < 3; i++) {
+            List<List<String>> result =
+                    given().when()
+                            .pathParams("jvmId", "uploads", "filename", RECORDING_FILENAME)
+                            .formParam("query", query)
+                            .post("/api/beta/recording_analytics/{jvmId}/{filename}")
+                            .then()
+                            .assertThat()
+                            .statusCode(200)
+                            .and()
+                            .extract()
+                            .body()
+                            .jsonPath()
+                            .getList("$");
+
+            MatcherAssert.assertThat(result, Matchers.equalTo(List.of(List.of("9391"))));
+        }
+    }
+
+    @Test
+    void testStreamQuery() {
+        List<List<String>> result =
+                given().log()
+                        .all()
+                        .when()
+                        .pathParams("jvmId", "uploads", "filename", RECORDING_FILENAME)
+                        .formParam(
+                                "query",
+                                """
+                                SELECT "weight" FROM "JFR"."jdk.ObjectAllocationSample"
+                                    ORDER BY "startTime", CLASS_NAME("objectClass"), "weight"
+                                    LIMIT 10
+                                """)
+                        .post("/api/beta/recording_analytics/{jvmId}/{filename}/stream")
+                        .then()
+                        .log()
+                        .all()
+                        .and()
+                        .assertThat()
+                        .statusCode(200)
+                        .contentType(ContentType.JSON)
+                        .and()
+                        .extract()
+                        .body()
+                        .jsonPath()
+                        .getList("$");
+
+        MatcherAssert.assertThat(result.size(), Matchers.equalTo(10));
+        MatcherAssert.assertThat(result.get(0), Matchers.equalTo(List.of("81232")));
+    }
+
+    @Test
+    void testStreamInvalidQuery() {
+        given().when()
+                .pathParams("jvmId", "uploads", "filename", RECORDING_FILENAME)
+                .formParam("query", "INVALID SQL QUERY")
+                .post("/api/beta/recording_analytics/{jvmId}/{filename}/stream")
+                .then()
+                .assertThat()
+                .statusCode(400);
+    }
 }
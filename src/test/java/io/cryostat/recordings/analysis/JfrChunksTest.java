@@ -0,0 +1,90 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrChunksTest {
+
+    @TempDir Path tempDir;
+
+    @Test
+    void testLocateAndSplitChunks() throws IOException {
+        byte[] first = chunk(64, (byte) 1);
+        byte[] second = chunk(32, (byte) 2);
+        Path file = tempDir.resolve("recording.jfr");
+        Files.write(file, concat(first, second));
+
+        List<JfrChunks.Chunk> chunks = JfrChunks.locate(file);
+        MatcherAssert.assertThat(
+                chunks,
+                Matchers.equalTo(
+                        List.of(new JfrChunks.Chunk(0, 64), new JfrChunks.Chunk(64, 32))));
+
+        List<Path> files = JfrChunks.split(file, chunks, tempDir.resolve("chunks"));
+        MatcherAssert.assertThat(files, Matchers.hasSize(2));
+        Assertions.assertArrayEquals(first, Files.readAllBytes(files.get(0)));
+        Assertions.assertArrayEquals(second, Files.readAllBytes(files.get(1)));
+    }
+
+    @Test
+    void testLocateRejectsInvalidMagic() throws IOException {
+        byte[] bytes = chunk(32, (byte) 0);
+        bytes[0] = 'X';
+        Path file = tempDir.resolve("invalid.jfr");
+        Files.write(file, bytes);
+
+        Assertions.assertThrows(IOException.class, () -> JfrChunks.locate(file));
+    }
+
+    @Test
+    void testLocateRejectsTruncatedChunk() throws IOException {
+        byte[] bytes = Arrays.copyOf(chunk(64, (byte) 0), 48);
+        Path file = tempDir.resolve("truncated.jfr");
+        Files.write(file, bytes);
+
+        Assertions.assertThrows(IOException.class, () -> JfrChunks.locate(file));
+    }
+
+    private static byte[] chunk(int size, byte fill) {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.put(new byte[] {'F', 'L', 'R', 0});
+        buf.putShort((short) 2);
+        buf.putShort((short) 1);
+        buf.putLong(size);
+        while (buf.hasRemaining()) {
+            buf.put(fill);
+        }
+        return buf.array();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+}
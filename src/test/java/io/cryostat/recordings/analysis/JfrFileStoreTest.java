@@ -0,0 +1,204 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.recordings.analysis;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import io.cryostat.recordings.RecordingHelper;
+import io.cryostat.recordings.analysis.JfrAnalytics.RecordingKey;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class JfrFileStoreTest {
+
+    static final int MB = 1024 * 1024;
+
+    @TempDir Path directory;
+    @Mock RecordingHelper recordings;
+    @Mock Logger logger;
+
+    JfrFileStore store;
+
+    @BeforeEach
+    void setup() throws Exception {
+        store = newStore();
+    }
+
+    @AfterEach
+    void teardown() {
+        store.shutdown();
+    }
+
+    @Test
+    void testIdenticalContentIsStoredOnce() throws Exception {
+        stub("a.jfr", content(1));
+        stub("b.jfr", content(1));
+
+        Path a = read("a.jfr");
+        Path b = read("b.jfr");
+
+        MatcherAssert.assertThat(a, Matchers.equalTo(b));
+        MatcherAssert.assertThat(store.entryCount(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(store.fileCount(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(store.bytes(), Matchers.equalTo((long) MB));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        stub("a.jfr", content(1));
+        stub("b.jfr", content(2));
+        stub("c.jfr", content(3));
+
+        Path a = read("a.jfr");
+        Path b = read("b.jfr");
+        read("a.jfr");
+        read("c.jfr");
+
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(true));
+        MatcherAssert.assertThat(Files.exists(b), Matchers.is(false));
+        MatcherAssert.assertThat(store.bytes(), Matchers.equalTo(2L * MB));
+        verify(recordings, times(1)).getArchivedRecordingStream("jvmId", "a.jfr");
+    }
+
+    @Test
+    void testEntriesSurviveRestart() throws Exception {
+        stub("a.jfr", content(1));
+        Path a = read("a.jfr");
+        store.shutdown();
+
+        store = newStore();
+        Path restored = read("a.jfr");
+
+        MatcherAssert.assertThat(restored, Matchers.equalTo(a));
+        verify(recordings, times(1)).getArchivedRecordingStream("jvmId", "a.jfr");
+    }
+
+    @Test
+    void testRestoredEntriesAreNotExpiredByDowntime() throws Exception {
+        stub("a.jfr", content(1));
+        Path a = read("a.jfr");
+        store.shutdown();
+        // last used long before the TTL
+        new ObjectMapper()
+                .writeValue(
+                        directory.resolve("index.json").toFile(),
+                        List.of(
+                                new JfrFileStore.IndexEntry(
+                                        "jvmId", "a.jfr", hash(a.getFileName().toString()), 0L)));
+
+        store = newStore();
+        Path restored = read("a.jfr");
+
+        MatcherAssert.assertThat(restored, Matchers.equalTo(a));
+        verify(recordings, times(1)).getArchivedRecordingStream("jvmId", "a.jfr");
+    }
+
+    @Test
+    void testInvalidationDeletesUnsharedFile() throws Exception {
+        stub("a.jfr", content(1));
+        Path a = read("a.jfr");
+
+        store.invalidate(new RecordingKey("jvmId", "a.jfr"));
+
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(false));
+        MatcherAssert.assertThat(store.entryCount(), Matchers.equalTo(0));
+        verify(recordings, never()).getArchivedRecordingStream("jvmId", "b.jfr");
+    }
+
+    @Test
+    void testReservationEvictsLeastRecentlyUsedEntry() throws Exception {
+        stub("a.jfr", content(1));
+        stub("b.jfr", content(2));
+        Path a = read("a.jfr");
+        Path b = read("b.jfr");
+
+        MatcherAssert.assertThat(store.reserve(MB), Matchers.is(true));
+
+        MatcherAssert.assertThat(Files.exists(a), Matchers.is(false));
+        MatcherAssert.assertThat(Files.exists(b), Matchers.is(true));
+        MatcherAssert.assertThat(store.bytes(), Matchers.equalTo(2L * MB));
+
+        store.unreserve(MB);
+        MatcherAssert.assertThat(store.bytes(), Matchers.equalTo((long) MB));
+    }
+
+    @Test
+    void testReservationLargerThanCacheIsRefused() throws Exception {
+        stub("a.jfr", content(1));
+        read("a.jfr");
+
+        MatcherAssert.assertThat(store.reserve(3L * MB), Matchers.is(false));
+
+        MatcherAssert.assertThat(store.entryCount(), Matchers.equalTo(1));
+        MatcherAssert.assertThat(store.bytes(), Matchers.equalTo((long) MB));
+    }
+
+    private JfrFileStore newStore() throws Exception {
+        JfrFileStore s = new JfrFileStore();
+        s.directory = directory;
+        s.maxCacheWeight = 2;
+        s.cacheTtl = Duration.ofMinutes(10);
+        s.recordings = recordings;
+        s.mapper = new ObjectMapper();
+        s.meterRegistry = new SimpleMeterRegistry();
+        s.logger = logger;
+        s.init();
+        return s;
+    }
+
+    private void stub(String filename, byte[] data) {
+        when(recordings.getArchivedRecordingStream("jvmId", filename))
+                .thenAnswer(inv -> new ByteArrayInputStream(data));
+    }
+
+    private Path read(String filename) throws Exception {
+        try (var handle = store.acquire(new RecordingKey("jvmId", filename)).get()) {
+            return handle.path();
+        }
+    }
+
+    private static String hash(String blobName) {
+        return blobName.substring(0, blobName.length() - ".jfr".length());
+    }
+
+    private static byte[] content(int seed) {
+        byte[] b = new byte[MB];
+        Arrays.fill(b, (byte) seed);
+        return b;
+    }
+}
@@ -46,7 +46,7 @@ public class ReportGenerationCacheEnabledTest extends AbstractTransactionalTestB
                 "quarkus.cache.enabled", "false",
                 "cryostat.services.reports.memory-cache.enabled", "false",
                 "cryostat.services.reports.storage-cache.enabled", "false",
-                "quarkus.cache.caffeine.matchexpressions.maximum-size", "0",
+                "cryostat.expressions.result-cache.max-size", "0",
                 "quarkus.cache.caffeine.activereports.maximum-size", "0",
                 "quarkus.cache.caffeine.archivedreports.maximum-size", "0",
                 "quarkus.cache.caffeine.reports-aggregator.maximum-size", "0");
@@ -0,0 +1,74 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmc.flightrecorder.rules.IRule;
+import org.openjdk.jmc.flightrecorder.rules.RuleRegistry;
+
+import io.cryostat.core.reports.InterruptibleReportGenerator.AnalysisResult;
+import io.cryostat.core.util.RuleFilterParser;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReportRuleFilterTest {
+
+    ReportRuleFilter filter;
+    Map<String, AnalysisResult> report;
+
+    @BeforeEach
+    void setup() {
+        filter = new ReportRuleFilter();
+        filter.ruleFilterParser = new RuleFilterParser();
+        report = new HashMap<>();
+        for (IRule rule : RuleRegistry.getRules()) {
+            report.put(rule.getId(), mock(AnalysisResult.class));
+        }
+    }
+
+    @Test
+    void testBlankFilterSelectsCompleteReport() {
+        MatcherAssert.assertThat(filter.apply(report, null), Matchers.sameInstance(report));
+        MatcherAssert.assertThat(filter.apply(report, ""), Matchers.sameInstance(report));
+    }
+
+    @Test
+    void testRuleIdFilterSelectsSingleResult() {
+        String id = RuleRegistry.getRules().iterator().next().getId();
+
+        Map<String, AnalysisResult> filtered = filter.apply(report, id);
+
+        MatcherAssert.assertThat(filtered, Matchers.aMapWithSize(1));
+        MatcherAssert.assertThat(filtered, Matchers.hasEntry(id, report.get(id)));
+    }
+
+    @Test
+    void testFilterDoesNotModifyCachedReport() {
+        int size = report.size();
+        String id = RuleRegistry.getRules().iterator().next().getId();
+
+        filter.apply(report, id);
+
+        MatcherAssert.assertThat(report, Matchers.aMapWithSize(size));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.reports;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+@ExtendWith(MockitoExtension.class)
+class StoredReportIndexTest {
+
+    StoredReportIndex index;
+
+    @Mock S3Client storage;
+    @Mock Logger logger;
+
+    @BeforeEach
+    void setup() {
+        index = new StoredReportIndex();
+        index.bucket = "archivedreports";
+        index.ttl = Duration.ofMinutes(1);
+        index.storage = storage;
+        index.logger = logger;
+        index.init();
+    }
+
+    private void givenStoredKeys(String... keys) {
+        List<S3Object> objects =
+                List.of(keys).stream().map(k -> S3Object.builder().key(k).build()).toList();
+        ListObjectsV2Iterable pages = mock(ListObjectsV2Iterable.class);
+        when(pages.contents()).thenReturn(objects::iterator);
+        doReturn(pages).when(storage).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    void testListsEachJvmOnce() {
+        givenStoredKeys("abc/one.jfr.report.json", "abc/two.jfr.report.json", "abc/other.txt");
+
+        Assertions.assertTrue(index.contains("abc", "abc/one.jfr"));
+        Assertions.assertTrue(index.contains("abc", "abc/two.jfr"));
+        Assertions.assertFalse(index.contains("abc", "abc/three.jfr"));
+        Assertions.assertFalse(index.contains("abc", "abc/other.txt"));
+
+        verify(storage, times(1)).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    void testAddAndRemoveUpdateListing() {
+        givenStoredKeys("abc/one.jfr.report.json");
+        Assertions.assertFalse(index.contains("abc", "abc/two.jfr"));
+
+        index.add("abc", "abc/two.jfr");
+        index.remove("abc", "abc/one.jfr");
+
+        Assertions.assertTrue(index.contains("abc", "abc/two.jfr"));
+        Assertions.assertFalse(index.contains("abc", "abc/one.jfr"));
+        verify(storage, times(1)).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    void testAddDuringListingIsApplied() throws Exception {
+        CountDownLatch listing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ListObjectsV2Iterable pages = mock(ListObjectsV2Iterable.class);
+        when(pages.contents())
+                .thenAnswer(
+                        invocation -> {
+                            listing.countDown();
+                            release.await();
+                            // the listing was taken before the report was stored
+                            return (SdkIterable<S3Object>) () -> List.<S3Object>of().iterator();
+                        });
+        doReturn(pages).when(storage).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+
+        Thread lookup = Thread.ofVirtual().start(() -> index.contains("abc", "abc/one.jfr"));
+        listing.await();
+        Thread store = Thread.ofVirtual().start(() -> index.add("abc", "abc/one.jfr"));
+        // let the store either wait for the listing or complete before the listing does
+        while (store.getState() == Thread.State.NEW || store.getState() == Thread.State.RUNNABLE) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        lookup.join();
+        store.join();
+
+        Assertions.assertTrue(index.contains("abc", "abc/one.jfr"));
+        verify(storage, times(1)).listObjectsV2Paginator(any(ListObjectsV2Request.class));
+    }
+
+    @Test
+    void testListingFailureIsNotRetained() {
+        when(storage.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+                .thenThrow(S3Exception.builder().message("unavailable").build());
+        Assertions.assertFalse(index.contains("abc", "abc/one.jfr"));
+
+        givenStoredKeys("abc/one.jfr.report.json");
+        Assertions.assertTrue(index.contains("abc", "abc/one.jfr"));
+    }
+
+    @Test
+    void testObjectKeyAppendsReportSuffix() {
+        Assertions.assertEquals(
+                "abc/one.jfr.report.json", StoredReportIndex.objectKey("abc/one.jfr"));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.targets;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+class TargetCompareTest {
+
+    static Target target(String url, String alias, Map<String, String> labels) {
+        Target t = new Target();
+        t.connectUrl = URI.create(url);
+        t.alias = alias;
+        t.labels = labels;
+        return t;
+    }
+
+    @Test
+    void testAddedRemovedAndUpdated() {
+        Target kept = target("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi", "a", Map.of());
+        Target lost = target("service:jmx:rmi:///jndi/rmi://b:9091/jmxrmi", "b", Map.of());
+        Target before = target("service:jmx:rmi:///jndi/rmi://c:9091/jmxrmi", "c", Map.of());
+        Target after =
+                target("service:jmx:rmi:///jndi/rmi://c:9091/jmxrmi", "c", Map.of("k", "v"));
+        Target found = target("service:jmx:rmi:///jndi/rmi://d:9091/jmxrmi", "d", Map.of());
+
+        Target.Compare diff =
+                Target.compare(List.of(kept, lost, before)).to(List.of(kept, after, found));
+
+        MatcherAssert.assertThat(diff.added(), Matchers.contains(found));
+        MatcherAssert.assertThat(diff.removed(), Matchers.contains(lost));
+        MatcherAssert.assertThat(diff.updated(true), Matchers.contains(before));
+        MatcherAssert.assertThat(diff.updated(false), Matchers.contains(after));
+        MatcherAssert.assertThat(diff.updates(), Matchers.hasSize(1));
+        MatcherAssert.assertThat(
+                diff.updates().iterator().next().changed(),
+                Matchers.equalTo(Set.of(Target.Field.LABELS)));
+    }
+
+    @Test
+    void testIdenticalSetsHaveNoChanges() {
+        Target a = target("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi", "a", Map.of());
+        Target copy = target("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi", "a", Map.of());
+
+        Target.Compare diff = Target.compare(List.of(a)).to(List.of(copy));
+
+        MatcherAssert.assertThat(diff.added(), Matchers.empty());
+        MatcherAssert.assertThat(diff.removed(), Matchers.empty());
+        MatcherAssert.assertThat(diff.updates(), Matchers.empty());
+    }
+
+    @Test
+    void testAliasAndJvmIdChangesReported() {
+        Target before = target("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi", "a", Map.of());
+        Target after = target("service:jmx:rmi:///jndi/rmi://a:9091/jmxrmi", "b", Map.of());
+        after.jvmId = "jvm";
+
+        Target.Compare diff = Target.compare(List.of(before)).to(List.of(after));
+
+        MatcherAssert.assertThat(
+                diff.updates().iterator().next().changed(),
+                Matchers.equalTo(Set.of(Target.Field.ALIAS, Target.Field.JVM_ID)));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.targets;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.targets.events.TargetEvents;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TargetUpdateServiceTest {
+
+    TargetUpdateService service;
+    SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        TargetUpdateService s = new TargetUpdateService();
+        s.logger = Logger.getLogger(TargetUpdateService.class);
+        s.meterRegistry = meterRegistry;
+        s.period = Duration.ofSeconds(120);
+        s.jitter = Duration.ofSeconds(15);
+        s.concurrency = 4;
+        s.batchSize = 2;
+        s.pushGrace = Duration.ofMinutes(5);
+        s.init();
+        service = spy(s);
+        doNothing().when(service).update(anyList());
+    }
+
+    @Test
+    void testSweepUpdatesDueTargetsOnce() {
+        long now = System.currentTimeMillis();
+        service.fireTargetUpdate(2L);
+        service.fireTargetUpdate(1L);
+
+        service.sweep(now);
+        verify(service, never()).update(anyList());
+
+        service.sweep(now + 2_000);
+        verify(service).update(List.of(1L, 2L));
+
+        // rescheduled one jittered period later
+        service.sweep(now + 60_000);
+        verify(service).update(anyList());
+        service.sweep(now + 2_000 + 136_000);
+        verify(service, times(2)).update(List.of(1L, 2L));
+    }
+
+    @Test
+    void testOnlyConnectionChangesMakeUpdatedTargetsDue() {
+        long now = System.currentTimeMillis();
+        service.onTargetCreated(
+                new TargetEvents.TargetCreated(snapshot(5L, "service:jmx:rmi:///jndi/a", null)));
+        service.sweep(now + 2_000);
+        verify(service).update(List.of(5L));
+
+        // this service's own JVM ID write, and a relabelling
+        service.onTargetUpdated(
+                new TargetEvents.TargetUpdated(snapshot(5L, "service:jmx:rmi:///jndi/a", "id")));
+        service.onTargetUpdated(
+                new TargetEvents.TargetUpdated(snapshot(5L, "service:jmx:rmi:///jndi/a", "id")));
+        service.sweep(now + 4_000);
+        verify(service, times(1)).update(List.of(5L));
+
+        service.onTargetUpdated(
+                new TargetEvents.TargetUpdated(snapshot(5L, "service:jmx:rmi:///jndi/b", "id")));
+        service.sweep(now + 6_000);
+        verify(service, times(2)).update(List.of(5L));
+    }
+
+    @Test
+    void testPushingTargetsAreNotPolled() {
+        long now = System.currentTimeMillis();
+        Target pushing = new Target();
+        pushing.id = 3L;
+        service.onStatePushed(pushing);
+        verify(service).update(List.of(3L));
+
+        service.fireTargetUpdate(3L);
+        service.fireTargetUpdate(4L);
+        service.sweep(now + 2_000);
+
+        verify(service).update(List.of(4L));
+        MatcherAssert.assertThat(
+                meterRegistry
+                        .get(TargetUpdateService.METER_PREFIX + ".polls")
+                        .tag("result", "pushed")
+                        .counter()
+                        .count(),
+                Matchers.equalTo(1.0));
+    }
+
+    private static TargetEvents.TargetSnapshot snapshot(long id, String connectUrl, String jvmId) {
+        return new TargetEvents.TargetSnapshot(
+                id,
+                URI.create(connectUrl),
+                "alias",
+                jvmId,
+                Map.of(),
+                new Target.Annotations(Map.of(), Map.of()));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.events.TargetNotificationObserver.NotificationPayload;
+import io.cryostat.targets.events.TargetNotificationObserver.ServiceRef;
+import io.cryostat.targets.events.TargetNotificationObserver.TargetDiscovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MessagingServerTest {
+
+    MessagingServer server;
+    ObjectMapper mapper;
+    List<List<String>> inboxes;
+
+    @BeforeEach
+    void setup() {
+        mapper = spy(new ObjectMapper());
+        server = new MessagingServer();
+        server.mapper = mapper;
+        server.logger = Logger.getLogger(MessagingServerTest.class);
+        server.meterRegistry = new SimpleMeterRegistry();
+        server.maxQueueSize = 16;
+        server.maxBatchSize = 16;
+        server.coalesceWindow = Duration.ZERO;
+        server.init();
+        inboxes = new ArrayList<>();
+    }
+
+    @AfterEach
+    void teardown() {
+        server.shutdown();
+    }
+
+    List<String> connect(String id, String subscription) throws Exception {
+        List<String> received = new ArrayList<>();
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(
+                        invocation -> {
+                            received.add(invocation.getArgument(0));
+                            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+                            return null;
+                        })
+                .when(remote)
+                .sendText(anyString(), any(SendHandler.class));
+        server.onOpen(session);
+        if (subscription != null) {
+            server.onMessage(session, subscription);
+        }
+        inboxes.add(received);
+        return received;
+    }
+
+    // discards the client activity notifications sent while the test's clients were connecting
+    void clearInboxes() {
+        inboxes.forEach(List::clear);
+        Mockito.clearInvocations(mapper);
+    }
+
+    static Notification discovery(String jvmId, Map<String, String> labels) {
+        return new Notification(
+                Target.TARGET_JVM_DISCOVERY,
+                new NotificationPayload(
+                        new TargetDiscovery(
+                                EventKind.FOUND,
+                                new ServiceRef(1, null, jvmId, jvmId, labels, null, false),
+                                jvmId)));
+    }
+
+    @Test
+    void deliversEverythingWithoutSubscription() throws Exception {
+        List<String> received = connect("a", null);
+        clearInboxes();
+        server.broadcast(new Notification("Foo", Map.of("jvmId", "jvm-a")));
+        MatcherAssert.assertThat(received, Matchers.hasSize(1));
+        MatcherAssert.assertThat(received.get(0), Matchers.containsString("\"Foo\""));
+    }
+
+    @Test
+    void filtersByCategoryAndTarget() throws Exception {
+        List<String> all = connect("a", null);
+        List<String> foo = connect("b", "{\"categories\":[\"Foo\"]}");
+        List<String> jvmA = connect("c", "{\"jvmIds\":[\"jvm-a\"]}");
+        clearInboxes();
+
+        server.broadcast(new Notification("Foo", Map.of("jvmId", "jvm-b")));
+        server.broadcast(new Notification("Bar", Map.of("jvmId", "jvm-a")));
+
+        MatcherAssert.assertThat(all, Matchers.hasSize(2));
+        MatcherAssert.assertThat(foo, Matchers.hasSize(1));
+        MatcherAssert.assertThat(foo.get(0), Matchers.containsString("jvm-b"));
+        MatcherAssert.assertThat(jvmA, Matchers.hasSize(1));
+        MatcherAssert.assertThat(jvmA.get(0), Matchers.containsString("\"Bar\""));
+    }
+
+    @Test
+    void filtersByDiscoveredLabels() throws Exception {
+        List<String> petclinic = connect("a", "{\"labels\":{\"app\":\"petclinic\"}}");
+        clearInboxes();
+
+        server.broadcast(discovery("jvm-a", Map.of("app", "petclinic")));
+        server.broadcast(discovery("jvm-b", Map.of("app", "other")));
+        server.broadcast(new Notification("Foo", Map.of("jvmId", "jvm-a")));
+        server.broadcast(new Notification("Foo", Map.of("jvmId", "jvm-b")));
+
+        MatcherAssert.assertThat(petclinic, Matchers.hasSize(2));
+        MatcherAssert.assertThat(petclinic.get(0), Matchers.containsString("jvm-a"));
+        MatcherAssert.assertThat(petclinic.get(1), Matchers.containsString("jvm-a"));
+    }
+
+    @Test
+    void ignoresInvalidSubscription() throws Exception {
+        List<String> received = connect("a", "not json");
+        clearInboxes();
+        server.broadcast(new Notification("Foo", Map.of()));
+        MatcherAssert.assertThat(received, Matchers.hasSize(1));
+    }
+
+    @Test
+    void serializesOncePerNotification() throws Exception {
+        connect("a", null);
+        connect("b", null);
+        connect("c", "{\"categories\":[\"Foo\"]}");
+        clearInboxes();
+
+        server.broadcast(new Notification("Foo", Map.of()));
+        verify(mapper, Mockito.times(1)).writeValueAsString(any());
+    }
+
+    @Test
+    void skipsSerializationWithoutRecipients() throws Exception {
+        connect("a", "{\"categories\":[\"Foo\"]}");
+        clearInboxes();
+
+        server.broadcast(new Notification("Bar", Map.of()));
+        verify(mapper, Mockito.never()).writeValueAsString(any());
+    }
+}
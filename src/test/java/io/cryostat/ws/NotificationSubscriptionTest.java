@@ -0,0 +1,169 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import io.cryostat.recordings.ActiveRecordings.LinkedRecordingDescriptor;
+import io.cryostat.recordings.RecordingNotifications.ActiveRecordingNotification;
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.events.TargetNotificationObserver.NotificationPayload;
+import io.cryostat.targets.events.TargetNotificationObserver.TargetDiscovery;
+import io.cryostat.ws.notifications.NotificationPayloads.TemplatePayload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class NotificationSubscriptionTest {
+
+    static final Function<String, Map<String, String>> LABELS =
+            jvmId -> "jvm-a".equals(jvmId) ? Map.of("app", "petclinic", "env", "prod") : Map.of();
+
+    @Test
+    void emptySubscriptionMatchesEverything() {
+        MatcherAssert.assertThat(
+                NotificationSubscription.ALL.matches("Anything", Optional.of("jvm-z"), LABELS),
+                Matchers.is(true));
+        MatcherAssert.assertThat(
+                NotificationSubscription.ALL.filtersTargets(), Matchers.is(false));
+    }
+
+    @Test
+    void filtersByCategory() {
+        var subscription = new NotificationSubscription(Set.of("A", "B"), null, null);
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.empty(), LABELS), Matchers.is(true));
+        MatcherAssert.assertThat(
+                subscription.matches("C", Optional.empty(), LABELS), Matchers.is(false));
+    }
+
+    @Test
+    void filtersByJvmId() {
+        var subscription = new NotificationSubscription(null, Set.of("jvm-a"), null);
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.of("jvm-a"), LABELS), Matchers.is(true));
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.of("jvm-b"), LABELS), Matchers.is(false));
+        // notifications which are not about any target are not filtered by target
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.empty(), LABELS), Matchers.is(true));
+    }
+
+    @Test
+    void filtersByLabels() {
+        var subscription = new NotificationSubscription(null, null, Map.of("app", "petclinic"));
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.of("jvm-a"), LABELS), Matchers.is(true));
+        MatcherAssert.assertThat(
+                subscription.matches("A", Optional.of("jvm-b"), LABELS), Matchers.is(false));
+
+        var mismatch = new NotificationSubscription(null, null, Map.of("env", "dev"));
+        MatcherAssert.assertThat(
+                mismatch.matches("A", Optional.of("jvm-a"), LABELS), Matchers.is(false));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void doesNotResolveLabelsUnlessFiltered() {
+        Function<String, Map<String, String>> labelsOf = Mockito.mock(Function.class);
+        var subscription = new NotificationSubscription(null, Set.of("jvm-a"), null);
+        subscription.matches("A", Optional.of("jvm-a"), labelsOf);
+        Mockito.verifyNoInteractions(labelsOf);
+    }
+
+    @Test
+    void deserializesPartialSubscription() throws Exception {
+        var subscription =
+                new ObjectMapper()
+                        .readValue(
+                                "{\"categories\":[\"A\"],\"labels\":{\"app\":\"petclinic\"}}",
+                                NotificationSubscription.class);
+        MatcherAssert.assertThat(subscription.categories(), Matchers.contains("A"));
+        MatcherAssert.assertThat(subscription.jvmIds(), Matchers.empty());
+        MatcherAssert.assertThat(
+                subscription.labels(), Matchers.equalTo(Map.of("app", "petclinic")));
+    }
+
+    @Test
+    void parsesSubscriptionMessages() {
+        ObjectMapper mapper = new ObjectMapper();
+        MatcherAssert.assertThat(
+                NotificationSubscription.parse(mapper, "{}"),
+                Matchers.equalTo(Optional.of(NotificationSubscription.ALL)));
+        MatcherAssert.assertThat(
+                NotificationSubscription.parse(
+                        mapper, "{\"jvmIds\":[\"jvm-a\"],\"labels\":{\"app\":\"petclinic\"}}"),
+                Matchers.equalTo(
+                        Optional.of(
+                                new NotificationSubscription(
+                                        null, Set.of("jvm-a"), Map.of("app", "petclinic")))));
+    }
+
+    @Test
+    void ignoresMessagesWhichAreNotSubscriptions() {
+        ObjectMapper mapper = new ObjectMapper();
+        for (String message :
+                new String[] {
+                    "not json",
+                    "",
+                    "null",
+                    "[\"A\"]",
+                    "\"ping\"",
+                    "{\"type\":\"ping\"}",
+                    "{\"categories\":\"A\"}",
+                    "{\"jvmIds\":[1]}",
+                    "{\"labels\":{\"app\":1}}",
+                }) {
+            MatcherAssert.assertThat(
+                    message,
+                    NotificationSubscription.parse(mapper, message),
+                    Matchers.equalTo(Optional.empty()));
+        }
+    }
+
+    @Test
+    void extractsJvmIdFromPayloads() {
+        MatcherAssert.assertThat(
+                NotificationPolicy.jvmId(
+                        new Notification(
+                                Target.TARGET_JVM_DISCOVERY,
+                                new NotificationPayload(
+                                        new TargetDiscovery(EventKind.FOUND, null, "jvm-a")))),
+                Matchers.equalTo(Optional.of("jvm-a")));
+        MatcherAssert.assertThat(
+                NotificationPolicy.jvmId(new Notification("A", Map.of("jvmId", "jvm-b"))),
+                Matchers.equalTo(Optional.of("jvm-b")));
+        MatcherAssert.assertThat(
+                NotificationPolicy.jvmId(
+                        new Notification(
+                                "A",
+                                new ActiveRecordingNotification.Payload(
+                                        "service:jmx:rmi:///jndi/rmi://localhost:0/jmxrmi",
+                                        Mockito.mock(LinkedRecordingDescriptor.class),
+                                        "jvm-c"))),
+                Matchers.equalTo(Optional.of("jvm-c")));
+        MatcherAssert.assertThat(
+                NotificationPolicy.jvmId(new Notification("A", new TemplatePayload("t"))),
+                Matchers.equalTo(Optional.empty()));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright The Cryostat Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.cryostat.ws;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.cryostat.targets.Target;
+import io.cryostat.targets.Target.EventKind;
+import io.cryostat.targets.events.TargetNotificationObserver.NotificationPayload;
+import io.cryostat.targets.events.TargetNotificationObserver.ServiceRef;
+import io.cryostat.targets.events.TargetNotificationObserver.TargetDiscovery;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SessionChannelTest {
+
+    MeterRegistry registry;
+    SessionChannel.Meters meters;
+    Session session;
+    List<String> frames;
+    List<SendHandler> pending;
+
+    @BeforeEach
+    void setup() {
+        registry = new SimpleMeterRegistry();
+        meters =
+                new SessionChannel.Meters(
+                        registry.counter("sent"),
+                        registry.counter("frames"),
+                        registry.counter("coalesced"),
+                        registry.counter("dropped"),
+                        Timer.builder("lag").register(registry));
+        frames = new ArrayList<>();
+        pending = new ArrayList<>();
+        session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        // hold each send open until the test completes it, as a slow client would
+        doAnswer(
+                        invocation -> {
+                            frames.add(invocation.getArgument(0));
+                            pending.add(invocation.getArgument(1));
+                            return null;
+                        })
+                .when(remote)
+                .sendText(anyString(), any(SendHandler.class));
+    }
+
+    SessionChannel channel(boolean batching, int maxQueueSize) {
+        return new SessionChannel(
+                session,
+                batching,
+                maxQueueSize,
+                64,
+                Duration.ZERO,
+                null,
+                meters,
+                Logger.getLogger(SessionChannelTest.class));
+    }
+
+    void complete() {
+        pending.remove(0).onResult(new SendResult());
+    }
+
+    static SessionChannel.Outbound discovery(
+            EventKind kind, long targetId, String jvmId, String json) {
+        Notification notification =
+                new Notification(
+                        Target.TARGET_JVM_DISCOVERY,
+                        new NotificationPayload(
+                                new TargetDiscovery(
+                                        kind,
+                                        new ServiceRef(
+                                                targetId, null, jvmId, jvmId, null, null, false),
+                                        jvmId)));
+        return new SessionChannel.Outbound(
+                NotificationPolicy.coalesceKey(notification),
+                NotificationPolicy.droppable(notification),
+                json);
+    }
+
+    static SessionChannel.Outbound plain(String json) {
+        Notification notification = new Notification("Plain", Map.of("n", json));
+        return new SessionChannel.Outbound(
+                NotificationPolicy.coalesceKey(notification),
+                NotificationPolicy.droppable(notification),
+                json);
+    }
+
+    static double count(Counter counter) {
+        return counter.count();
+    }
+
+    @Test
+    void sendsImmediatelyWhenIdle() {
+        SessionChannel channel = channel(false, 16);
+        channel.offer(plain("a"));
+
+        MatcherAssert.assertThat(frames, Matchers.contains("a"));
+        complete();
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(0));
+        MatcherAssert.assertThat(count(meters.sent()), Matchers.equalTo(1.0));
+        MatcherAssert.assertThat(meters.lag().count(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void coalescesModificationsOfSameTargetWhileSending() {
+        SessionChannel channel = channel(false, 16);
+        channel.offer(plain("first"));
+        channel.offer(discovery(EventKind.MODIFIED, 1, "jvm-a", "a1"));
+        channel.offer(discovery(EventKind.MODIFIED, 2, "jvm-b", "b1"));
+        channel.offer(discovery(EventKind.MODIFIED, 1, "jvm-a", "a2"));
+
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(count(meters.coalesced()), Matchers.equalTo(1.0));
+
+        complete();
+        complete();
+        complete();
+        MatcherAssert.assertThat(frames, Matchers.contains("first", "b1", "a2"));
+        MatcherAssert.assertThat(pending, Matchers.empty());
+    }
+
+    @Test
+    void doesNotCoalesceDistinctTargetsOfSameJvm() {
+        SessionChannel channel = channel(false, 16);
+        channel.offer(plain("first"));
+        channel.offer(discovery(EventKind.FOUND, 1, "jvm-a", "jmx"));
+        channel.offer(discovery(EventKind.FOUND, 2, "jvm-a", "agent"));
+
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(2));
+        MatcherAssert.assertThat(count(meters.coalesced()), Matchers.equalTo(0.0));
+    }
+
+    @Test
+    void doesNotCoalesceLostOrDifferentKinds() {
+        SessionChannel channel = channel(false, 16);
+        channel.offer(plain("first"));
+        channel.offer(discovery(EventKind.FOUND, 1, "jvm-a", "found"));
+        channel.offer(discovery(EventKind.MODIFIED, 1, "jvm-a", "modified"));
+        channel.offer(discovery(EventKind.LOST, 1, "jvm-a", "lost1"));
+        channel.offer(discovery(EventKind.LOST, 1, "jvm-a", "lost2"));
+
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(4));
+        MatcherAssert.assertThat(count(meters.coalesced()), Matchers.equalTo(0.0));
+    }
+
+    @Test
+    void evictsDroppableNotificationsFirstWhenFull() {
+        SessionChannel channel = channel(false, 3);
+        channel.offer(plain("first"));
+        channel.offer(plain("p1"));
+        channel.offer(discovery(EventKind.MODIFIED, 1, "jvm-a", "m1"));
+        channel.offer(plain("p2"));
+        channel.offer(plain("p3"));
+
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(3));
+        MatcherAssert.assertThat(count(meters.dropped()), Matchers.equalTo(1.0));
+
+        complete();
+        complete();
+        complete();
+        MatcherAssert.assertThat(frames, Matchers.contains("first", "p1", "p2", "p3"));
+    }
+
+    @Test
+    void evictsOldestWhenNothingDroppable() {
+        SessionChannel channel = channel(false, 2);
+        channel.offer(plain("first"));
+        channel.offer(plain("p1"));
+        channel.offer(plain("p2"));
+        channel.offer(plain("p3"));
+
+        complete();
+        complete();
+        MatcherAssert.assertThat(frames, Matchers.contains("first", "p2", "p3"));
+        MatcherAssert.assertThat(count(meters.dropped()), Matchers.equalTo(1.0));
+    }
+
+    @Test
+    void batchesQueuedNotificationsAsJsonArray() {
+        SessionChannel channel = channel(true, 16);
+        channel.offer(plain("{\"n\":1}"));
+        channel.offer(plain("{\"n\":2}"));
+        channel.offer(plain("{\"n\":3}"));
+
+        complete();
+        MatcherAssert.assertThat(
+                frames, Matchers.contains("[{\"n\":1}]", "[{\"n\":2},{\"n\":3}]"));
+        complete();
+        MatcherAssert.assertThat(count(meters.sent()), Matchers.equalTo(3.0));
+        MatcherAssert.assertThat(count(meters.frames()), Matchers.equalTo(2.0));
+    }
+
+    @Test
+    void discardsQueueOnClose() {
+        SessionChannel channel = channel(false, 16);
+        channel.offer(plain("first"));
+        channel.offer(plain("second"));
+        channel.close();
+        channel.offer(plain("third"));
+
+        complete();
+        MatcherAssert.assertThat(frames, Matchers.contains("first"));
+        MatcherAssert.assertThat(channel.queued(), Matchers.equalTo(0));
+    }
+}